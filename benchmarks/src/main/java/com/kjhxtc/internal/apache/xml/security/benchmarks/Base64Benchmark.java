@@ -0,0 +1,126 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.benchmarks;
+
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import com.kjhxtc.internal.apache.xml.security.utils.Base64DecodingWriter;
+import com.kjhxtc.internal.apache.xml.security.utils.Base64EncodingOutputStream;
+import org.apache.commons.codec.binary.Base64OutputStream;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Benchmarks the base64 coding of CipherValue text as the StAX encryption processors do it:
+ * the decoding of the character events written in chunks by the parser, and the encoding of
+ * the cipher output. The <code>commons*</code> benchmarks use the commons-codec streams the
+ * processors used before, with an OutputStreamWriter in front of the decoder.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class Base64Benchmark {
+
+    /** The size of the character events of a typical StAX parser */
+    private static final int CHUNK_SIZE = 4096;
+
+    @Param({"1024", "1048576"})
+    public int size;
+
+    private byte[] data;
+    private char[] encoded;
+
+    @Setup
+    public void setUp() {
+        data = new byte[size];
+        new Random(42).nextBytes(data);
+        encoded = Base64.getMimeEncoder().encodeToString(data).toCharArray();
+    }
+
+    @Benchmark
+    public long commonsDecode() throws Exception {
+        BenchmarkSupport.CountingOutputStream out = new BenchmarkSupport.CountingOutputStream();
+        try (Writer writer =
+                 new OutputStreamWriter(new Base64OutputStream(out, false), StandardCharsets.UTF_8)) {
+            writeChunks(writer);
+        }
+        return out.count;
+    }
+
+    @Benchmark
+    public long decode() throws Exception {
+        BenchmarkSupport.CountingOutputStream out = new BenchmarkSupport.CountingOutputStream();
+        try (Writer writer = new Base64DecodingWriter(out)) {
+            writeChunks(writer);
+        }
+        return out.count;
+    }
+
+    private void writeChunks(Writer writer) throws Exception {
+        for (int off = 0; off < encoded.length; off += CHUNK_SIZE) {
+            writer.write(encoded, off, Math.min(CHUNK_SIZE, encoded.length - off));
+        }
+    }
+
+    @Benchmark
+    public long commonsEncode() throws Exception {
+        BenchmarkSupport.CountingOutputStream out = new BenchmarkSupport.CountingOutputStream();
+        try (OutputStream encoder = new Base64OutputStream(out, true)) {
+            writeChunks(encoder);
+        }
+        return out.count;
+    }
+
+    @Benchmark
+    public long encode() throws Exception {
+        BenchmarkSupport.CountingOutputStream out = new BenchmarkSupport.CountingOutputStream();
+        try (OutputStream encoder =
+                 new Base64EncodingOutputStream(out, Base64EncodingOutputStream.MIME_LINE_LENGTH)) {
+            writeChunks(encoder);
+        }
+        return out.count;
+    }
+
+    /**
+     * Writes the data in the blocks a CipherOutputStream produces.
+     */
+    private void writeChunks(OutputStream out) throws Exception {
+        for (int off = 0; off < data.length; off += 512) {
+            out.write(data, off, Math.min(512, data.length - off));
+        }
+    }
+}
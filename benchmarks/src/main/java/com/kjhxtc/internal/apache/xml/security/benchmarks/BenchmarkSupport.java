@@ -0,0 +1,178 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.benchmarks;
+
+import java.io.OutputStream;
+import java.security.Key;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.Security;
+import java.security.spec.ECGenParameterSpec;
+
+import javax.crypto.KeyGenerator;
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import com.kjhxtc.internal.apache.xml.security.algorithms.JCEMapper;
+import com.kjhxtc.internal.apache.xml.security.algorithms.MessageDigestAlgorithm;
+import com.kjhxtc.internal.apache.xml.security.signature.XMLSignature;
+import org.bouncycastle.jce.provider.BouncyCastleProvider;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Shared fixtures for the benchmarks: synthetic documents and key material for
+ * each of the benchmarked signature algorithms.
+ */
+final class BenchmarkSupport {
+
+    static final String NS = "urn:example:benchmark";
+
+    private static boolean initialized;
+
+    private BenchmarkSupport() {
+        // complete
+    }
+
+    /**
+     * The signature algorithms covered by the signature benchmarks.
+     */
+    enum SignatureAlg {
+        RSA(XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA256, MessageDigestAlgorithm.ALGO_ID_DIGEST_SHA256),
+        ECDSA(XMLSignature.ALGO_ID_SIGNATURE_ECDSA_SHA256, MessageDigestAlgorithm.ALGO_ID_DIGEST_SHA256),
+        EDDSA(XMLSignature.ALGO_ID_SIGNATURE_EDDSA_ED25519, MessageDigestAlgorithm.ALGO_ID_DIGEST_SHA256),
+        SM2(XMLSignature.ALGO_ID_SIGNATURE_SM2_SM3, MessageDigestAlgorithm.ALGO_ID_DIGEST_SM3),
+        HMAC(XMLSignature.ALGO_ID_MAC_HMAC_SHA256, MessageDigestAlgorithm.ALGO_ID_DIGEST_SHA256);
+
+        final String signatureURI;
+        final String digestURI;
+
+        SignatureAlg(String signatureURI, String digestURI) {
+            this.signatureURI = signatureURI;
+            this.digestURI = digestURI;
+        }
+
+        /**
+         * @return the signing key at index 0 and the verification key at index 1; both are
+         * the same secret key for HMAC
+         */
+        Key[] generateKeys() throws Exception {
+            KeyPairGenerator kpg;
+            switch (this) {
+            case RSA:
+                kpg = KeyPairGenerator.getInstance("RSA");
+                kpg.initialize(2048);
+                break;
+            case ECDSA:
+                kpg = KeyPairGenerator.getInstance("EC");
+                kpg.initialize(new ECGenParameterSpec("secp256r1"));
+                break;
+            case EDDSA:
+                kpg = KeyPairGenerator.getInstance("Ed25519", BouncyCastleProvider.PROVIDER_NAME);
+                break;
+            case SM2:
+                kpg = KeyPairGenerator.getInstance("EC", BouncyCastleProvider.PROVIDER_NAME);
+                kpg.initialize(new ECGenParameterSpec("sm2p256v1"));
+                break;
+            case HMAC:
+            default:
+                KeyGenerator keyGenerator = KeyGenerator.getInstance("HmacSHA256");
+                keyGenerator.init(256);
+                Key secret = keyGenerator.generateKey();
+                return new Key[] {secret, secret};
+            }
+            KeyPair keyPair = kpg.generateKeyPair();
+            return new Key[] {keyPair.getPrivate(), keyPair.getPublic()};
+        }
+    }
+
+    /**
+     * Initialises the library and installs BouncyCastle for SM2/SM3 and EdDSA.
+     */
+    static synchronized void init() {
+        if (initialized) {
+            return;
+        }
+        com.kjhxtc.internal.apache.xml.security.Init.init();
+        if (Security.getProvider(BouncyCastleProvider.PROVIDER_NAME) == null) {
+            Security.addProvider(new BouncyCastleProvider());
+        }
+        // The default JCE mappings carry no entry for SM2 signatures
+        if (JCEMapper.translateURItoJCEID(XMLSignature.ALGO_ID_SIGNATURE_SM2_SM3) == null) {
+            JCEMapper.register(
+                XMLSignature.ALGO_ID_SIGNATURE_SM2_SM3, new JCEMapper.Algorithm("EC", "SM3withSM2", "Signature")
+            );
+        }
+        initialized = true;
+    }
+
+    /**
+     * Builds a document with <code>parts</code> sibling elements carrying an <code>Id</code>
+     * attribute, which together contain <code>elementCount</code> leaf elements with
+     * attributes, namespace declarations and text.
+     */
+    static Document createDocument(int elementCount, int parts) throws Exception {
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        Document doc = dbf.newDocumentBuilder().newDocument();
+        Element root = doc.createElementNS(NS, "b:Envelope");
+        root.setAttributeNS("http://www.w3.org/2000/xmlns/", "xmlns:b", NS);
+        doc.appendChild(root);
+
+        int perPart = Math.max(1, elementCount / parts);
+        for (int p = 0; p < parts; p++) {
+            Element part = doc.createElementNS(NS, "b:Part");
+            part.setAttributeNS(null, "Id", partId(p));
+            part.setIdAttributeNS(null, "Id", true);
+            root.appendChild(part);
+            for (int i = 0; i < perPart; i++) {
+                Element item = doc.createElementNS(NS, "b:Item");
+                item.setAttributeNS(null, "seq", Integer.toString(i));
+                item.setAttributeNS(null, "amount", "12.50");
+                item.setAttributeNS("urn:example:ext", "x:note", "a & b < c");
+                item.setAttributeNS("http://www.w3.org/2000/xmlns/", "xmlns:x", "urn:example:ext");
+                item.appendChild(doc.createTextNode("Line item " + i + " é中\r\n"));
+                part.appendChild(item);
+            }
+        }
+        return doc;
+    }
+
+    static String partId(int index) {
+        return "part-" + index;
+    }
+
+    /**
+     * An OutputStream that discards everything written to it but keeps a byte count, so
+     * the JIT cannot eliminate the writes.
+     */
+    static final class CountingOutputStream extends OutputStream {
+        long count;
+
+        @Override
+        public void write(int b) {
+            count++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            count += len;
+        }
+    }
+
+}
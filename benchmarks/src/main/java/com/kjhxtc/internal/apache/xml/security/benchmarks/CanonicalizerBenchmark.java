@@ -0,0 +1,95 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.benchmarks;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import com.kjhxtc.internal.apache.xml.security.c14n.Canonicalizer;
+import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Node;
+
+/**
+ * Benchmarks every registered {@link com.kjhxtc.internal.apache.xml.security.c14n.CanonicalizerSpi}
+ * for subtree and (where supported) XPath node-set canonicalization.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class CanonicalizerBenchmark {
+
+    @Param({"100", "10000"})
+    public int elementCount;
+
+    @Param({
+        Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS,
+        Canonicalizer.ALGO_ID_C14N_WITH_COMMENTS,
+        Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS,
+        Canonicalizer.ALGO_ID_C14N_EXCL_WITH_COMMENTS,
+        Canonicalizer.ALGO_ID_C14N11_OMIT_COMMENTS,
+        Canonicalizer.ALGO_ID_C14N11_WITH_COMMENTS,
+        Canonicalizer.ALGO_ID_C14N_PHYSICAL
+    })
+    public String algorithm;
+
+    private Document document;
+    private Set<Node> nodeSet;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkSupport.init();
+        document = BenchmarkSupport.createDocument(elementCount, 1);
+        nodeSet = new HashSet<>();
+        XMLUtils.getSet(document, nodeSet, null, true);
+    }
+
+    @Benchmark
+    public long canonicalizeSubtree() throws Exception {
+        BenchmarkSupport.CountingOutputStream out = new BenchmarkSupport.CountingOutputStream();
+        Canonicalizer.getInstance(algorithm).canonicalizeSubtree(document, out);
+        return out.count;
+    }
+
+    @Benchmark
+    public long canonicalizeXPathNodeSet() throws Exception {
+        if (Canonicalizer.ALGO_ID_C14N_PHYSICAL.equals(algorithm)) {
+            // The physical serializer only supports subtrees
+            return 0;
+        }
+        BenchmarkSupport.CountingOutputStream out = new BenchmarkSupport.CountingOutputStream();
+        Canonicalizer.getInstance(algorithm).canonicalizeXPathNodeSet(nodeSet, out);
+        return out.count;
+    }
+}
@@ -0,0 +1,116 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.benchmarks;
+
+import java.security.Key;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.SignedInfo;
+import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMSignContext;
+import javax.xml.crypto.dsig.dom.DOMValidateContext;
+import javax.xml.crypto.dsig.spec.C14NMethodParameterSpec;
+import javax.xml.crypto.dsig.spec.TransformParameterSpec;
+
+import com.kjhxtc.internal.apache.jcp.xml.dsig.internal.dom.XMLDSigRI;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Benchmarks unmarshalling and validating a signature through the JSR-105
+ * <code>DOMXMLSignature.validate</code> implementation.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DOMXMLSignatureBenchmark {
+
+    @Param({"100", "10000"})
+    public int elementCount;
+
+    @Param({"1", "10"})
+    public int referenceCount;
+
+    @Param({"RSA", "ECDSA", "EDDSA", "SM2", "HMAC"})
+    public String algorithm;
+
+    private XMLSignatureFactory factory;
+    private Key verificationKey;
+    private Element signatureElement;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkSupport.init();
+        factory = XMLSignatureFactory.getInstance("DOM", new XMLDSigRI());
+
+        BenchmarkSupport.SignatureAlg alg = BenchmarkSupport.SignatureAlg.valueOf(algorithm);
+        Key[] keys = alg.generateKeys();
+        verificationKey = keys[1];
+
+        Document document = BenchmarkSupport.createDocument(elementCount, referenceCount);
+        List<Reference> references = new ArrayList<>();
+        for (int i = 0; i < referenceCount; i++) {
+            references.add(factory.newReference(
+                "#" + BenchmarkSupport.partId(i),
+                factory.newDigestMethod(alg.digestURI, null),
+                Collections.singletonList(
+                    factory.newTransform(CanonicalizationMethod.EXCLUSIVE, (TransformParameterSpec) null)),
+                null, null));
+        }
+        SignedInfo signedInfo = factory.newSignedInfo(
+            factory.newCanonicalizationMethod(CanonicalizationMethod.EXCLUSIVE, (C14NMethodParameterSpec) null),
+            factory.newSignatureMethod(alg.signatureURI, null),
+            references);
+        XMLSignature signature = factory.newXMLSignature(signedInfo, null);
+        DOMSignContext signContext = new DOMSignContext(keys[0], document.getDocumentElement());
+        signature.sign(signContext);
+
+        signatureElement = (Element) document.getDocumentElement().getLastChild();
+    }
+
+    @Benchmark
+    public boolean validate() throws Exception {
+        DOMValidateContext validateContext = new DOMValidateContext(verificationKey, signatureElement);
+        XMLSignature signature = factory.unmarshalXMLSignature(validateContext);
+        if (!signature.validate(validateContext)) {
+            throw new IllegalStateException("Signature validation failed");
+        }
+        return true;
+    }
+}
@@ -0,0 +1,170 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.math.BigInteger;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.KeyStore;
+import java.security.Signature;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.security.spec.ECGenParameterSpec;
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import com.kjhxtc.internal.apache.xml.security.algorithms.MessageDigestAlgorithm;
+import com.kjhxtc.internal.apache.xml.security.keys.KeyInfo;
+import com.kjhxtc.internal.apache.xml.security.keys.content.X509Data;
+import com.kjhxtc.internal.apache.xml.security.keys.storage.StorageResolver;
+import org.bouncycastle.asn1.ASN1EncodableVector;
+import org.bouncycastle.asn1.ASN1Encoding;
+import org.bouncycastle.asn1.ASN1Integer;
+import org.bouncycastle.asn1.DERBitString;
+import org.bouncycastle.asn1.DEROctetString;
+import org.bouncycastle.asn1.DERSequence;
+import org.bouncycastle.asn1.x500.X500Name;
+import org.bouncycastle.asn1.x509.AlgorithmIdentifier;
+import org.bouncycastle.asn1.x509.Extension;
+import org.bouncycastle.asn1.x509.ExtensionsGenerator;
+import org.bouncycastle.asn1.x509.SubjectPublicKeyInfo;
+import org.bouncycastle.asn1.x509.TBSCertificate;
+import org.bouncycastle.asn1.x509.Time;
+import org.bouncycastle.asn1.x509.V3TBSCertificateGenerator;
+import org.bouncycastle.asn1.x9.X9ObjectIdentifiers;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Benchmarks the resolution of an X509Data KeyInfo against a KeyStore of
+ * <code>certificateCount</code> certificates, by each of the certificate references the
+ * storage based key resolvers handle. The referenced certificate is the last one added.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class KeyResolverBenchmark {
+
+    private static final String ISSUER = "CN=Benchmark CA,O=Apache,C=US";
+
+    @Param({"10", "1000"})
+    public int certificateCount;
+
+    @Param({"SubjectName", "IssuerSerial", "SKI", "Digest"})
+    public String reference;
+
+    private Element keyInfoElement;
+    private StorageResolver storage;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkSupport.init();
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("EC");
+        kpg.initialize(new ECGenParameterSpec("secp256r1"));
+        KeyPair keyPair = kpg.generateKeyPair();
+
+        KeyStore keyStore = KeyStore.getInstance("JKS");
+        keyStore.load(null, null);
+        X509Certificate cert = null;
+        for (int i = 0; i < certificateCount; i++) {
+            cert = createCertificate(i, keyPair);
+            keyStore.setCertificateEntry("cert" + i, cert);
+        }
+        storage = new StorageResolver(keyStore);
+
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        Document doc = dbf.newDocumentBuilder().newDocument();
+        KeyInfo keyInfo = new KeyInfo(doc);
+        X509Data x509Data = new X509Data(doc);
+        switch (reference) {
+        case "SubjectName":
+            x509Data.addSubjectName(cert);
+            break;
+        case "IssuerSerial":
+            x509Data.addIssuerSerial(cert.getIssuerX500Principal().getName(), cert.getSerialNumber());
+            break;
+        case "SKI":
+            x509Data.addSKI(cert);
+            break;
+        default:
+            x509Data.addDigest(cert, MessageDigestAlgorithm.ALGO_ID_DIGEST_SHA256);
+            break;
+        }
+        keyInfo.add(x509Data);
+        keyInfoElement = keyInfo.getElement();
+        doc.appendChild(keyInfoElement);
+    }
+
+    @Benchmark
+    public X509Certificate resolve() throws Exception {
+        KeyInfo keyInfo = new KeyInfo(keyInfoElement, "");
+        keyInfo.addStorageResolver(storage);
+        return keyInfo.getX509Certificate();
+    }
+
+    private static X509Certificate createCertificate(int index, KeyPair keyPair) throws Exception {
+        long now = System.currentTimeMillis();
+        AlgorithmIdentifier signatureAlgorithm = new AlgorithmIdentifier(X9ObjectIdentifiers.ecdsa_with_SHA256);
+        V3TBSCertificateGenerator generator = new V3TBSCertificateGenerator();
+        generator.setSerialNumber(new ASN1Integer(BigInteger.valueOf(index + 1L)));
+        generator.setIssuer(new X500Name(ISSUER));
+        generator.setSubject(new X500Name("CN=Benchmark " + index + ",O=Apache,C=US"));
+        generator.setStartDate(new Time(new Date(now)));
+        generator.setEndDate(new Time(new Date(now + TimeUnit.DAYS.toMillis(365))));
+        generator.setSubjectPublicKeyInfo(SubjectPublicKeyInfo.getInstance(keyPair.getPublic().getEncoded()));
+        generator.setSignature(signatureAlgorithm);
+        byte[] ski = new byte[20];
+        ski[0] = (byte) (index >>> 8);
+        ski[1] = (byte) index;
+        ExtensionsGenerator extensions = new ExtensionsGenerator();
+        extensions.addExtension(Extension.subjectKeyIdentifier, false, new DEROctetString(ski));
+        generator.setExtensions(extensions.generate());
+        TBSCertificate tbsCertificate = generator.generateTBSCertificate();
+
+        Signature signature = Signature.getInstance("SHA256withECDSA");
+        signature.initSign(keyPair.getPrivate());
+        signature.update(tbsCertificate.getEncoded(ASN1Encoding.DER));
+
+        ASN1EncodableVector certificate = new ASN1EncodableVector();
+        certificate.add(tbsCertificate);
+        certificate.add(signatureAlgorithm);
+        certificate.add(new DERBitString(signature.sign()));
+        byte[] encoded = new DERSequence(certificate).getEncoded(ASN1Encoding.DER);
+        return (X509Certificate) CertificateFactory.getInstance("X.509")
+            .generateCertificate(new ByteArrayInputStream(encoded));
+    }
+}
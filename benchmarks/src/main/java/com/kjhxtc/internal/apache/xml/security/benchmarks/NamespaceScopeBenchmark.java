@@ -0,0 +1,125 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import com.kjhxtc.internal.apache.xml.security.c14n.Canonicalizer;
+import com.kjhxtc.internal.apache.xml.security.c14n.implementations.NameSpaceSymbTable;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Benchmarks the namespace scoping of the DOM canonicalizers on deeply nested documents
+ * where every element redeclares the same handful of namespaces, as SOAP / WS-Security
+ * envelopes produced by many toolkits do. <code>symbolTable</code> drives the
+ * {@link NameSpaceSymbTable} directly with the same push / declare / render / pop pattern.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class NamespaceScopeBenchmark {
+
+    private static final String XMLNS_URI = "http://www.w3.org/2000/xmlns/";
+    private static final String[] PREFIXES = {"soap", "wsse", "wsu", "ds", "xenc", "saml"};
+
+    @Param({"50", "500"})
+    public int depth;
+
+    @Param({
+        Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS,
+        Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS
+    })
+    public String algorithm;
+
+    private Document document;
+    private Attr[] declarations;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkSupport.init();
+        DocumentBuilderFactory dbf = DocumentBuilderFactory.newInstance();
+        dbf.setNamespaceAware(true);
+        document = dbf.newDocumentBuilder().newDocument();
+
+        Element parent = null;
+        for (int i = 0; i < depth; i++) {
+            String prefix = PREFIXES[i % PREFIXES.length];
+            Element element = document.createElementNS("urn:" + prefix, prefix + ":e" + i);
+            for (String p : PREFIXES) {
+                element.setAttributeNS(XMLNS_URI, "xmlns:" + p, "urn:" + p);
+            }
+            element.setAttributeNS("urn:wsu", "wsu:Id", "id-" + i);
+            element.appendChild(document.createTextNode("text"));
+            if (parent == null) {
+                document.appendChild(element);
+            } else {
+                parent.appendChild(element);
+            }
+            parent = element;
+        }
+
+        declarations = new Attr[PREFIXES.length];
+        for (int i = 0; i < PREFIXES.length; i++) {
+            declarations[i] = document.getDocumentElement().getAttributeNodeNS(XMLNS_URI, PREFIXES[i]);
+        }
+    }
+
+    @Benchmark
+    public long canonicalizeSubtree() throws Exception {
+        BenchmarkSupport.CountingOutputStream out = new BenchmarkSupport.CountingOutputStream();
+        Canonicalizer.getInstance(algorithm).canonicalizeSubtree(document, out);
+        return out.count;
+    }
+
+    @Benchmark
+    public int symbolTable() {
+        NameSpaceSymbTable ns = new NameSpaceSymbTable();
+        int rendered = 0;
+        for (int i = 0; i < depth; i++) {
+            ns.outputNodePush();
+            for (int j = 0; j < PREFIXES.length; j++) {
+                if (ns.addMappingAndRender(PREFIXES[j], declarations[j].getValue(), declarations[j]) != null) {
+                    rendered++;
+                }
+            }
+        }
+        for (int i = 0; i < depth; i++) {
+            ns.outputNodePop();
+        }
+        return rendered;
+    }
+}
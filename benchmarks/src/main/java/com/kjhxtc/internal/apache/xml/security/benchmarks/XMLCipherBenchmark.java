@@ -0,0 +1,131 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.benchmarks;
+
+import java.io.InputStream;
+import java.util.concurrent.TimeUnit;
+
+import javax.crypto.KeyGenerator;
+import javax.crypto.SecretKey;
+
+import com.kjhxtc.internal.apache.xml.security.encryption.XMLCipher;
+import com.kjhxtc.internal.apache.xml.security.utils.EncryptionConstants;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Benchmarks {@link XMLCipher#doFinal(Document, Element, boolean)} for encryption and
+ * decryption, {@link XMLCipher#decryptToByteArray(Element)}, and
+ * {@link XMLCipher#decryptToInputStream(Element)} read through a small buffer.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class XMLCipherBenchmark {
+
+    @Param({"100", "10000"})
+    public int elementCount;
+
+    @Param({XMLCipher.AES_128, XMLCipher.AES_256_GCM})
+    public String algorithm;
+
+    private SecretKey key;
+    private Document encryptedDocument;
+    private Element encryptedDataElement;
+
+    private Document plainCopy;
+    private Document encryptedCopy;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkSupport.init();
+        KeyGenerator keyGenerator = KeyGenerator.getInstance("AES");
+        keyGenerator.init(XMLCipher.AES_128.equals(algorithm) ? 128 : 256);
+        key = keyGenerator.generateKey();
+
+        encryptedDocument = BenchmarkSupport.createDocument(elementCount, 1);
+        XMLCipher cipher = XMLCipher.getInstance(algorithm);
+        cipher.init(XMLCipher.ENCRYPT_MODE, key);
+        cipher.doFinal(encryptedDocument, encryptedDocument.getDocumentElement(), true);
+        encryptedDataElement = (Element) encryptedDocument.getElementsByTagNameNS(
+            EncryptionConstants.EncryptionSpecNS, EncryptionConstants._TAG_ENCRYPTEDDATA).item(0);
+    }
+
+    /**
+     * doFinal modifies the document in place, so each invocation works on fresh copies.
+     */
+    @Setup(Level.Invocation)
+    public void copyDocuments() throws Exception {
+        plainCopy = BenchmarkSupport.createDocument(elementCount, 1);
+        encryptedCopy = (Document) encryptedDocument.cloneNode(true);
+    }
+
+    @Benchmark
+    public Document encrypt() throws Exception {
+        XMLCipher cipher = XMLCipher.getInstance(algorithm);
+        cipher.init(XMLCipher.ENCRYPT_MODE, key);
+        return cipher.doFinal(plainCopy, plainCopy.getDocumentElement(), true);
+    }
+
+    @Benchmark
+    public Document decrypt() throws Exception {
+        Element ee = (Element) encryptedCopy.getElementsByTagNameNS(
+            EncryptionConstants.EncryptionSpecNS, EncryptionConstants._TAG_ENCRYPTEDDATA).item(0);
+        XMLCipher cipher = XMLCipher.getInstance();
+        cipher.init(XMLCipher.DECRYPT_MODE, key);
+        return cipher.doFinal(encryptedCopy, ee);
+    }
+
+    @Benchmark
+    public byte[] decryptToByteArray() throws Exception {
+        XMLCipher cipher = XMLCipher.getInstance();
+        cipher.init(XMLCipher.DECRYPT_MODE, key);
+        return cipher.decryptToByteArray(encryptedDataElement);
+    }
+
+    @Benchmark
+    public long decryptToInputStream() throws Exception {
+        XMLCipher cipher = XMLCipher.getInstance();
+        cipher.init(XMLCipher.DECRYPT_MODE, key);
+        long count = 0;
+        byte[] buf = new byte[8192];
+        try (InputStream is = cipher.decryptToInputStream(encryptedDataElement)) {
+            int n;
+            while ((n = is.read(buf)) != -1) {
+                count += n;
+            }
+        }
+        return count;
+    }
+}
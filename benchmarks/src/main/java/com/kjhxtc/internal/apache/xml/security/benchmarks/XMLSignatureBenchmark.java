@@ -0,0 +1,113 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.benchmarks;
+
+import java.security.Key;
+import java.util.concurrent.TimeUnit;
+
+import com.kjhxtc.internal.apache.xml.security.c14n.Canonicalizer;
+import com.kjhxtc.internal.apache.xml.security.signature.XMLSignature;
+import com.kjhxtc.internal.apache.xml.security.transforms.Transforms;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+/**
+ * Benchmarks {@link XMLSignature#sign(Key)} and {@link XMLSignature#checkSignatureValue(Key)}
+ * for enveloped signatures with one reference per signed part.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class XMLSignatureBenchmark {
+
+    @Param({"100", "10000"})
+    public int elementCount;
+
+    @Param({"1", "10"})
+    public int referenceCount;
+
+    @Param({"RSA", "ECDSA", "EDDSA", "SM2", "HMAC"})
+    public String algorithm;
+
+    private BenchmarkSupport.SignatureAlg alg;
+    private Key signingKey;
+    private Key verificationKey;
+    private Document document;
+    private Document signedDocument;
+    private Element signatureElement;
+
+    @Setup
+    public void setUp() throws Exception {
+        BenchmarkSupport.init();
+        alg = BenchmarkSupport.SignatureAlg.valueOf(algorithm);
+        Key[] keys = alg.generateKeys();
+        signingKey = keys[0];
+        verificationKey = keys[1];
+
+        document = BenchmarkSupport.createDocument(elementCount, referenceCount);
+
+        signedDocument = BenchmarkSupport.createDocument(elementCount, referenceCount);
+        XMLSignature signature = newSignature(signedDocument);
+        signature.sign(signingKey);
+        signatureElement = signature.getElement();
+    }
+
+    @Benchmark
+    public XMLSignature sign() throws Exception {
+        XMLSignature signature = newSignature(document);
+        signature.sign(signingKey);
+        document.getDocumentElement().removeChild(signature.getElement());
+        return signature;
+    }
+
+    @Benchmark
+    public boolean checkSignatureValue() throws Exception {
+        XMLSignature signature = new XMLSignature(signatureElement, "");
+        if (!signature.checkSignatureValue(verificationKey)) {
+            throw new IllegalStateException("Signature verification failed");
+        }
+        return true;
+    }
+
+    private XMLSignature newSignature(Document doc) throws Exception {
+        XMLSignature signature =
+            new XMLSignature(doc, "", alg.signatureURI, Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS);
+        doc.getDocumentElement().appendChild(signature.getElement());
+        for (int i = 0; i < referenceCount; i++) {
+            Transforms transforms = new Transforms(doc);
+            transforms.addTransform(Transforms.TRANSFORM_C14N_EXCL_OMIT_COMMENTS);
+            signature.addDocument("#" + BenchmarkSupport.partId(i), transforms, alg.digestURI);
+        }
+        return signature;
+    }
+}
@@ -43,6 +43,7 @@ public class DigesterOutputStream extends OutputStream {
     private final boolean buffer;
     private UnsyncByteArrayOutputStream bos;
     private final MessageDigest md;
+    private long bytesDigested;
 
     /**
      * Creates a DigesterOutputStream.
@@ -72,6 +73,7 @@ public class DigesterOutputStream extends OutputStream {
         if (buffer) {
             bos.write(input);
         }
+        bytesDigested++;
         md.update((byte)input);
     }
 
@@ -88,6 +90,7 @@ public class DigesterOutputStream extends OutputStream {
             }
             LOG.debug(sb.toString());
         }
+        bytesDigested += len;
         md.update(input, offset, len);
     }
 
@@ -98,6 +101,13 @@ public class DigesterOutputStream extends OutputStream {
          return md.digest();
     }
 
+    /**
+     * @return the number of bytes written to (and digested by) this stream
+     */
+    public long getBytesDigested() {
+        return bytesDigested;
+    }
+
     /**
      * @return an input stream containing the cached bytes, or
      *    null if not cached
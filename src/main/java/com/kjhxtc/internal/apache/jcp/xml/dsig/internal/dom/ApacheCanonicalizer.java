@@ -188,17 +188,12 @@ public abstract class ApacheCanonicalizer extends TransformService {
         return null;
     }
 
-    @Override
-    public Data transform(Data data, XMLCryptoContext xc, OutputStream os)
-        throws TransformException
-    {
-        if (data == null) {
-            throw new NullPointerException("data must not be null");
-        }
-        if (os == null) {
-            throw new NullPointerException("output stream must not be null");
-        }
-
+    /**
+     * Creates the underlying Apache Transform, if not done yet. This adds (detached) nodes
+     * to the owner document, so it is done up front when References are validated
+     * concurrently.
+     */
+    void initTransform(XMLCryptoContext xc) throws TransformException {
         if (ownerDoc == null) {
             throw new TransformException("transform must be marshalled");
         }
@@ -214,6 +209,20 @@ public abstract class ApacheCanonicalizer extends TransformService {
                     ("Couldn't find Transform for: " + getAlgorithm(), ex);
             }
         }
+    }
+
+    @Override
+    public Data transform(Data data, XMLCryptoContext xc, OutputStream os)
+        throws TransformException
+    {
+        if (data == null) {
+            throw new NullPointerException("data must not be null");
+        }
+        if (os == null) {
+            throw new NullPointerException("output stream must not be null");
+        }
+
+        initTransform(xc);
 
         XMLSignatureInput in;
         if (data instanceof ApacheData) {
@@ -128,9 +128,12 @@ public abstract class ApacheTransform extends TransformService {
         return transformIt(data, xc, os);
     }
 
-    private Data transformIt(Data data, XMLCryptoContext xc, OutputStream os)
-        throws TransformException
-    {
+    /**
+     * Creates the underlying Apache Transform, if not done yet. This adds (detached) nodes
+     * to the owner document, so it is done up front when References are validated
+     * concurrently.
+     */
+    void initTransform(XMLCryptoContext xc) throws TransformException {
         if (ownerDoc == null) {
             throw new TransformException("transform must be marshalled");
         }
@@ -146,6 +149,12 @@ public abstract class ApacheTransform extends TransformService {
                                              getAlgorithm(), ex);
             }
         }
+    }
+
+    private Data transformIt(Data data, XMLCryptoContext xc, OutputStream os)
+        throws TransformException
+    {
+        initTransform(xc);
 
         if (Utils.secureValidation(xc)) {
             String algorithm = getAlgorithm();
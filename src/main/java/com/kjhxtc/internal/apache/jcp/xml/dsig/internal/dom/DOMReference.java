@@ -68,7 +68,6 @@ import javax.xml.crypto.dsig.XMLValidateContext;
 import com.kjhxtc.internal.apache.jcp.xml.dsig.internal.DigesterOutputStream;
 import com.kjhxtc.internal.apache.xml.security.algorithms.MessageDigestAlgorithm;
 import com.kjhxtc.internal.apache.xml.security.signature.XMLSignatureInput;
-import com.kjhxtc.internal.apache.xml.security.utils.UnsyncBufferedOutputStream;
 import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
@@ -119,6 +118,7 @@ public final class DOMReference extends DOMStructure
     private InputStream dis;
     private MessageDigest md;
     private Provider provider;
+    private long bytesDigested = -1;
 
     /**
      * Creates a <code>Reference</code> from the specified parameters.
@@ -431,6 +431,37 @@ public final class DOMReference extends DOMStructure
         return dis;
     }
 
+    /**
+     * Returns the number of bytes that were digested when this reference was last
+     * digested or validated, i.e. the size of the transformed (canonicalized) data.
+     *
+     * @return the number of bytes digested, or -1 if this reference has not been
+     *    digested or validated yet
+     */
+    public long getBytesDigested() {
+        return bytesDigested;
+    }
+
+    /**
+     * Initializes the Apache Transforms backing the transforms of this reference in
+     * advance, as this adds (detached) nodes to the document, which must not happen
+     * while the document is read by other threads.
+     */
+    void initTransforms(XMLCryptoContext context) throws XMLSignatureException {
+        try {
+            for (Transform transform : transforms) {
+                TransformService spi = ((DOMTransform)transform).spi;
+                if (spi instanceof ApacheTransform) {
+                    ((ApacheTransform)spi).initTransform(context);
+                } else if (spi instanceof ApacheCanonicalizer) {
+                    ((ApacheCanonicalizer)spi).initTransform(context);
+                }
+            }
+        } catch (TransformException ex) {
+            throw new XMLSignatureException(ex);
+        }
+    }
+
     private Data dereference(XMLCryptoContext context)
         throws XMLSignatureException
     {
@@ -476,7 +507,9 @@ public final class DOMReference extends DOMStructure
         }
         Data data = dereferencedData;
         XMLSignatureInput xi = null;
-        try (OutputStream os = new UnsyncBufferedOutputStream(dos)) { //NOPMD
+        // The canonicalizers write large blocks, so digest directly without an
+        // intermediate buffer
+        try (OutputStream os = dos) { //NOPMD
             for (int i = 0, size = transforms.size(); i < size; i++) {
                 DOMTransform transform = (DOMTransform)transforms.get(i);
                 if (i < size - 1) {
@@ -566,6 +599,8 @@ public final class DOMReference extends DOMStructure
                    "or its Transforms.");
             }
             os.flush();
+            bytesDigested = dos.getBytesDigested();
+            LOG.debug("Digested {} bytes for Reference URI {}", bytesDigested, uri);
             if (cache != null && cache) {
                 this.dis = dos.getInputStream();
             }
@@ -36,6 +36,8 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import javax.xml.crypto.KeySelector;
 import javax.xml.crypto.KeySelectorException;
@@ -58,6 +60,7 @@ import javax.xml.crypto.dsig.dom.DOMSignContext;
 import javax.xml.crypto.dsig.dom.DOMValidateContext;
 import javax.xml.crypto.dsig.keyinfo.KeyInfo;
 
+import com.kjhxtc.internal.apache.xml.security.utils.OrderedTasks;
 import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
@@ -66,7 +69,14 @@ import org.w3c.dom.Node;
 
 /**
  * DOM-based implementation of XMLSignature.
- *
+ * <p></p>
+ * If the validation context property
+ * <code>com.kjhxtc.internal.apache.jcp.xml.dsig.referenceValidationExecutor</code> is set to a
+ * <code>java.util.concurrent.Executor</code>, the References are validated concurrently on
+ * that executor. The outcome is the same as for sequential validation: the first invalid
+ * Reference in document order fails the validation and the first exception in document
+ * order is thrown. The document must not be modified during validation, and a custom
+ * URIDereferencer must be thread safe.
  */
 public final class DOMXMLSignature extends DOMStructure
     implements XMLSignature {
@@ -287,12 +297,18 @@ public final class DOMXMLSignature extends DOMStructure
         // validate all References
         @SuppressWarnings("unchecked")
         List<Reference> refs = this.si.getReferences();
+        Executor executor = (Executor)
+            vc.getProperty("com.kjhxtc.internal.apache.jcp.xml.dsig.referenceValidationExecutor");
         boolean validateRefs = true;
-        for (int i = 0, size = refs.size(); validateRefs && i < size; i++) {
-            Reference ref = refs.get(i);
-            boolean refValid = ref.validate(vc);
-            LOG.debug("Reference [{}] is valid: {}", ref.getURI(), refValid);
-            validateRefs &= refValid;
+        if (executor != null && refs.size() > 1 && canValidateConcurrently(refs)) {
+            validateRefs = validateReferences(refs, vc, executor);
+        } else {
+            for (int i = 0, size = refs.size(); validateRefs && i < size; i++) {
+                Reference ref = refs.get(i);
+                boolean refValid = ref.validate(vc);
+                LOG.debug("Reference [{}] is valid: {}", ref.getURI(), refValid);
+                validateRefs &= refValid;
+            }
         }
         if (!validateRefs) {
             LOG.debug("Couldn't validate the References");
@@ -319,6 +335,10 @@ public final class DOMXMLSignature extends DOMStructure
                         @SuppressWarnings("unchecked")
                         List<Reference> manRefs = man.getReferences();
                         int rsize = manRefs.size();
+                        if (executor != null && rsize > 1 && canValidateConcurrently(manRefs)) {
+                            validateMans = validateReferences(manRefs, vc, executor);
+                            continue;
+                        }
                         for (int k = 0; validateMans && k < rsize; k++) {
                             Reference ref = manRefs.get(k);
                             boolean refValid = ref.validate(vc);
@@ -337,6 +357,76 @@ public final class DOMXMLSignature extends DOMStructure
         return validationStatus;
     }
 
+    /**
+     * Returns whether the given References can be validated concurrently. They cannot if
+     * the digest of one of them modifies the document, as the XPath and XSLT transforms may,
+     * or if one of them points to a Manifest.
+     */
+    private static boolean canValidateConcurrently(List<Reference> refs) {
+        for (Reference ref : refs) {
+            if (Manifest.TYPE.equals(ref.getType())) {
+                return false;
+            }
+            @SuppressWarnings("unchecked")
+            List<Transform> transforms = ref.getTransforms();
+            for (Transform transform : transforms) {
+                String algorithm = transform.getAlgorithm();
+                if (Transform.XPATH.equals(algorithm) || Transform.XPATH2.equals(algorithm)
+                    || Transform.XSLT.equals(algorithm)) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Validates the given References concurrently on the executor. As in the sequential
+     * case, validation stops at the first invalid Reference (in document order) and the
+     * first exception (in document order) is thrown, whichever Reference finished first.
+     */
+    private boolean validateReferences(List<Reference> refs, XMLValidateContext vc,
+                                       Executor executor)
+        throws XMLSignatureException
+    {
+        if (ownerDoc != null) {
+            // The DOM must be fully built before it is read by several threads, and the
+            // namespace declarations which canonicalizing a node-set copies onto the
+            // elements must already be in place
+            XMLUtils.expandNodes(ownerDoc);
+            XMLUtils.circumventBug2650(ownerDoc);
+        }
+        List<Callable<Boolean>> tasks = new ArrayList<>(refs.size());
+        for (Reference ref : refs) {
+            if (ref instanceof DOMReference) {
+                // creates the transforms, which modifies the document
+                ((DOMReference)ref).initTransforms(vc);
+            }
+            tasks.add(() -> ref.validate(vc));
+        }
+
+        OrderedTasks<Boolean> results = new OrderedTasks<>(executor, tasks);
+        try {
+            for (int i = 0, size = refs.size(); i < size; i++) {
+                boolean refValid = results.get(i);
+                LOG.debug("Reference [{}] is valid: {}", refs.get(i).getURI(), refValid);
+                if (!refValid) {
+                    return false;
+                }
+            }
+            return true;
+        } catch (XMLSignatureException | RuntimeException ex) {
+            throw ex;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new XMLSignatureException(ex);
+        } catch (Exception ex) {
+            throw new XMLSignatureException(ex);
+        } finally {
+            results.cancel();
+        }
+    }
+
     @Override
     public void sign(XMLSignContext signContext)
         throws MarshalException, XMLSignatureException
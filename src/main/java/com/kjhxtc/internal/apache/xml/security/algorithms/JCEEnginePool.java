@@ -0,0 +1,152 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.algorithms;
+
+import java.security.AccessController;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PrivilegedAction;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * A bounded pool of JCE engine objects, so that the provider lookup done by the JCE
+ * <code>getInstance</code> methods is not repeated every time an algorithm object is created.
+ * <p></p>
+ * Engines are pooled by JCE algorithm name (as translated by {@link JCEMapper}) and provider id,
+ * at most <code>com.kjhxtc.internal.apache.xml.security.jce.pool-size</code> (default 20) idle
+ * engines for each of them; a pool size of 0 disables pooling. An engine taken with
+ * {@link #acquire(String, String)} belongs to the caller until it is given back with
+ * {@link #release(String, String, Object)}, and must not be used afterwards.
+ * <p></p>
+ * Only keyless engines are pooled, and they are reset when they are given back. Signature,
+ * Mac and Cipher engines are not: they keep the key of their last initialisation, which the
+ * next user of a shared engine could use.
+ */
+public final class JCEEnginePool<T> {
+
+    private static final int POOL_SIZE =
+        AccessController.doPrivileged(
+            (PrivilegedAction<Integer>) () -> Integer.getInteger("com.kjhxtc.internal.apache.xml.security.jce.pool-size", 20));
+
+    /** The pool of {@link MessageDigest} engines */
+    public static final JCEEnginePool<MessageDigest> MESSAGE_DIGEST =
+        new JCEEnginePool<>(
+            (algorithm, providerId) -> providerId == null
+                ? MessageDigest.getInstance(algorithm) : MessageDigest.getInstance(algorithm, providerId),
+            MessageDigest::reset);
+
+    private final Map<Key, Queue<T>> engines = new ConcurrentHashMap<>();
+    private final EngineFactory<T> factory;
+    private final Consumer<T> reset;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    private JCEEnginePool(EngineFactory<T> factory, Consumer<T> reset) {
+        this.factory = factory;
+        this.reset = reset;
+    }
+
+    /**
+     * Takes an idle engine from the pool, or creates a new one if there is none.
+     *
+     * @param algorithm the JCE algorithm name
+     * @param providerId the JCE provider id, or null for the default providers
+     * @return an engine, which should be given back with {@link #release(String, String, Object)}
+     * @throws GeneralSecurityException if the engine cannot be created
+     */
+    public T acquire(String algorithm, String providerId) throws GeneralSecurityException {
+        if (POOL_SIZE > 0) {
+            Queue<T> queue = engines.get(new Key(algorithm, providerId));
+            T engine = queue == null ? null : queue.poll();
+            if (engine != null) {
+                hits.increment();
+                return engine;
+            }
+        }
+        misses.increment();
+        return factory.getInstance(algorithm, providerId);
+    }
+
+    /**
+     * Resets an engine and gives it back to the pool. The engine is dropped if the
+     * pool for its algorithm and provider is full.
+     *
+     * @param algorithm the JCE algorithm name the engine was acquired for
+     * @param providerId the JCE provider id the engine was acquired for
+     * @param engine the engine
+     */
+    public void release(String algorithm, String providerId, T engine) {
+        if (engine == null || POOL_SIZE <= 0) {
+            return;
+        }
+        reset.accept(engine);
+        Queue<T> queue =
+            engines.computeIfAbsent(new Key(algorithm, providerId), k -> new ArrayBlockingQueue<>(POOL_SIZE));
+        queue.offer(engine);
+    }
+
+    /**
+     * @return how many engines were taken from the pool
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return how many engines had to be created because the pool had none
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    @FunctionalInterface
+    private interface EngineFactory<T> {
+        T getInstance(String algorithm, String providerId) throws GeneralSecurityException;
+    }
+
+    private static final class Key {
+        private final String algorithm;
+        private final String providerId;
+
+        Key(String algorithm, String providerId) {
+            this.algorithm = algorithm;
+            this.providerId = providerId;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (!(obj instanceof Key)) {
+                return false;
+            }
+            Key other = (Key) obj;
+            return algorithm.equals(other.algorithm) && Objects.equals(providerId, other.providerId);
+        }
+
+        @Override
+        public int hashCode() {
+            return algorithm.hashCode() * 31 + Objects.hashCode(providerId);
+        }
+    }
+}
@@ -18,9 +18,8 @@
  */
 package com.kjhxtc.internal.apache.xml.security.algorithms;
 
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
-import java.security.NoSuchAlgorithmException;
-import java.security.NoSuchProviderException;
 
 import com.kjhxtc.internal.apache.xml.security.signature.XMLSignatureException;
 import com.kjhxtc.internal.apache.xml.security.utils.Constants;
@@ -71,8 +70,15 @@ public final class MessageDigestAlgorithm extends Algorithm {
 
     public static final String ALGO_ID_DIGEST_SM3 =
         Constants.MoreAlgorithmsSpecNS + "sm3";
-    /** Field algorithm stores the actual {@link java.security.MessageDigest} */
-    private final MessageDigest algorithm;
+    /** The JCE algorithm name and provider the digest engine is pooled for */
+    private final String algorithmID;
+    private final String providerId;
+
+    /**
+     * Field algorithm stores the actual {@link java.security.MessageDigest}, or null once it has
+     * been given back to the {@link JCEEnginePool}
+     */
+    private MessageDigest algorithm;
 
     /**
      * Constructor for the brave who pass their own message digest algorithms and the
@@ -84,7 +90,13 @@ public final class MessageDigestAlgorithm extends Algorithm {
         throws XMLSignatureException {
         super(doc, algorithmURI);
 
-        algorithm = getDigestInstance(algorithmURI);
+        algorithmID = JCEMapper.translateURItoJCEID(algorithmURI);
+        if (algorithmID == null) {
+            Object[] exArgs = { algorithmURI };
+            throw new XMLSignatureException("algorithms.NoSuchMap", exArgs);
+        }
+        providerId = JCEMapper.getProviderId();
+        algorithm = getDigestInstance(algorithmID, providerId);
     }
 
     /**
@@ -101,29 +113,15 @@ public final class MessageDigestAlgorithm extends Algorithm {
         return new MessageDigestAlgorithm(doc, algorithmURI);
     }
 
-    private static MessageDigest getDigestInstance(String algorithmURI) throws XMLSignatureException {
-        String algorithmID = JCEMapper.translateURItoJCEID(algorithmURI);
-
-        if (algorithmID == null) {
-            Object[] exArgs = { algorithmURI };
-            throw new XMLSignatureException("algorithms.NoSuchMap", exArgs);
-        }
-
-        MessageDigest md;
-        String provider = JCEMapper.getProviderId();
+    private static MessageDigest getDigestInstance(String algorithmID, String providerId)
+        throws XMLSignatureException {
         try {
-            if (provider == null) {
-                md = MessageDigest.getInstance(algorithmID);
-            } else {
-                md = MessageDigest.getInstance(algorithmID, provider);
-            }
-        } catch (NoSuchAlgorithmException | NoSuchProviderException ex) {
+            return JCEEnginePool.MESSAGE_DIGEST.acquire(algorithmID, providerId);
+        } catch (GeneralSecurityException ex) {
             Object[] exArgs = { algorithmID, ex.getLocalizedMessage() };
 
             throw new XMLSignatureException("algorithms.NoSuchAlgorithm", exArgs);
         }
-
-        return md;
     }
 
     /**
@@ -132,9 +130,29 @@ public final class MessageDigestAlgorithm extends Algorithm {
      * @return the actual {@link java.security.MessageDigest} algorithm object
      */
     public MessageDigest getAlgorithm() {
+        if (algorithm == null) {
+            try {
+                algorithm = getDigestInstance(algorithmID, providerId);
+            } catch (XMLSignatureException ex) {
+                // The same engine could be created when this object was constructed
+                throw new IllegalStateException(ex);
+            }
+        }
         return algorithm;
     }
 
+    /**
+     * Gives the {@link java.security.MessageDigest} back to the {@link JCEEnginePool}, once
+     * a digest has been calculated. The MessageDigest returned by {@link #getAlgorithm()} must
+     * not be used afterwards, while this object takes a new one when it is used again.
+     */
+    public void release() {
+        if (algorithm != null) {
+            JCEEnginePool.MESSAGE_DIGEST.release(algorithmID, providerId, algorithm);
+            algorithm = null;
+        }
+    }
+
     /**
      * Proxy method for {@link java.security.MessageDigest#isEqual}
      * which is executed on the internal {@link java.security.MessageDigest} object.
@@ -154,7 +172,7 @@ public final class MessageDigestAlgorithm extends Algorithm {
      * @return the result of the {@link java.security.MessageDigest#digest()} method
      */
     public byte[] digest() {
-        return algorithm.digest();
+        return getAlgorithm().digest();
     }
 
     /**
@@ -165,7 +183,7 @@ public final class MessageDigestAlgorithm extends Algorithm {
      * @return the result of the {@link java.security.MessageDigest#digest(byte[])} method
      */
     public byte[] digest(byte[] input) {
-        return algorithm.digest(input);
+        return getAlgorithm().digest(input);
     }
 
     /**
@@ -179,7 +197,7 @@ public final class MessageDigestAlgorithm extends Algorithm {
      * @throws java.security.DigestException
      */
     public int digest(byte[] buf, int offset, int len) throws java.security.DigestException {
-        return algorithm.digest(buf, offset, len);
+        return getAlgorithm().digest(buf, offset, len);
     }
 
     /**
@@ -189,7 +207,7 @@ public final class MessageDigestAlgorithm extends Algorithm {
      * @return the result of the {@link java.security.MessageDigest#getAlgorithm} method
      */
     public String getJCEAlgorithmString() {
-        return algorithm.getAlgorithm();
+        return algorithmID;
     }
 
     /**
@@ -199,7 +217,7 @@ public final class MessageDigestAlgorithm extends Algorithm {
      * @return the result of the {@link java.security.MessageDigest#getProvider} method
      */
     public java.security.Provider getJCEProvider() {
-        return algorithm.getProvider();
+        return getAlgorithm().getProvider();
     }
 
     /**
@@ -209,7 +227,7 @@ public final class MessageDigestAlgorithm extends Algorithm {
      * @return the result of the {@link java.security.MessageDigest#getDigestLength} method
      */
     public int getDigestLength() {
-        return algorithm.getDigestLength();
+        return getAlgorithm().getDigestLength();
     }
 
     /**
@@ -218,7 +236,7 @@ public final class MessageDigestAlgorithm extends Algorithm {
      *
      */
     public void reset() {
-        algorithm.reset();
+        getAlgorithm().reset();
     }
 
     /**
@@ -228,7 +246,7 @@ public final class MessageDigestAlgorithm extends Algorithm {
      * @param input
      */
     public void update(byte[] input) {
-        algorithm.update(input);
+        getAlgorithm().update(input);
     }
 
     /**
@@ -238,7 +256,7 @@ public final class MessageDigestAlgorithm extends Algorithm {
      * @param input
      */
     public void update(byte input) {
-        algorithm.update(input);
+        getAlgorithm().update(input);
     }
 
     /**
@@ -250,7 +268,7 @@ public final class MessageDigestAlgorithm extends Algorithm {
      * @param len
      */
     public void update(byte[] buf, int offset, int len) {
-        algorithm.update(buf, offset, len);
+        getAlgorithm().update(buf, offset, len);
     }
 
     /** {@inheritDoc} */
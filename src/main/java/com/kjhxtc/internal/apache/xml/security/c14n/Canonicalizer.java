@@ -91,6 +91,10 @@ public final class Canonicalizer {
     private static Map<String, Class<? extends CanonicalizerSpi>> canonicalizerHash =
         new ConcurrentHashMap<>();
 
+    /** Instances of the thread safe engines, shared by all Canonicalizers */
+    private static Map<Class<? extends CanonicalizerSpi>, CanonicalizerSpi> sharedCanonicalizers =
+        new ConcurrentHashMap<>();
+
     private final CanonicalizerSpi canonicalizerSpi;
 
     /**
@@ -104,7 +108,14 @@ public final class Canonicalizer {
             Class<? extends CanonicalizerSpi> implementingClass =
                 canonicalizerHash.get(algorithmURI);
 
-            canonicalizerSpi = JavaUtils.newInstanceWithEmptyConstructor(implementingClass);
+            CanonicalizerSpi spi = sharedCanonicalizers.get(implementingClass);
+            if (spi == null) {
+                spi = JavaUtils.newInstanceWithEmptyConstructor(implementingClass);
+                if (spi.engineIsThreadSafe()) {
+                    sharedCanonicalizers.putIfAbsent(implementingClass, spi);
+                }
+            }
+            canonicalizerSpi = spi;
         } catch (Exception e) {
             Object[] exArgs = { algorithmURI };
             throw new InvalidCanonicalizerException(
@@ -116,6 +127,9 @@ public final class Canonicalizer {
     /**
      * Method getInstance
      *
+     * Canonicalizers whose engine is thread safe share a single engine instance,
+     * so this is cheap to call for every canonicalization.
+     *
      * @param algorithmURI
      * @return a Canonicalizer instance ready for the job
      * @throws InvalidCanonicalizerException
@@ -54,6 +54,18 @@ public abstract class CanonicalizerSpi {
         this.engineCanonicalizeSubTree(document, writer);
     }
 
+    /**
+     * Returns whether a single instance of this engine may be shared between threads and
+     * reused for any number of canonicalizations. Engines which keep the state of a
+     * canonicalization in instance fields must return <code>false</code> (the default), in
+     * which case {@link Canonicalizer#getInstance(String)} creates a new instance per call.
+     *
+     * @return true if this engine is stateless and thread safe
+     */
+    public boolean engineIsThreadSafe() {
+        return false;
+    }
+
     /**
      * Returns the URI of this engine.
      * @return the URI
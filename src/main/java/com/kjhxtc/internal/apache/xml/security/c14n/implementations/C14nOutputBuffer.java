@@ -0,0 +1,277 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.c14n.implementations;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * The sink the DOM canonicalizers write their output to. Names, text and attribute
+ * values are escaped and UTF-8 encoded straight into a reusable buffer, which is
+ * handed to the target <code>OutputStream</code> (e.g. a
+ * {@link com.kjhxtc.internal.apache.xml.security.utils.DigesterOutputStream}) in
+ * large blocks instead of one <code>write</code> call per character.
+ * <p></p>
+ * A buffer is owned by a {@link CanonicalizerContext} and so is only ever used by one thread.
+ */
+final class C14nOutputBuffer extends OutputStream {
+
+    private static final int BUFFER_SIZE = 8 * 1024;
+
+    private static final byte[] XA = {'&','#','x','A',';'};
+    private static final byte[] X9 = {'&','#','x','9',';'};
+    private static final byte[] QUOT = {'&','q','u','o','t',';'};
+    private static final byte[] XD = {'&','#','x','D',';'};
+    private static final byte[] GT = {'&','g','t',';'};
+    private static final byte[] LT = {'&','l','t',';'};
+    private static final byte[] AMP = {'&','a','m','p',';'};
+
+    private final byte[] buf = new byte[BUFFER_SIZE];
+    private int count;
+    private OutputStream out;
+
+    /**
+     * Starts writing to the given stream, discarding anything left over from a previous
+     * (failed) canonicalization.
+     */
+    void setOutputStream(OutputStream out) {
+        this.out = out;
+        count = 0;
+    }
+
+    /**
+     * Drops the reference to the target stream and any pending output.
+     */
+    void reset() {
+        out = null;
+        count = 0;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (count == buf.length) {
+            flushBuffer();
+        }
+        buf[count++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len > buf.length - count) {
+            flushBuffer();
+            if (len >= buf.length) {
+                out.write(b, off, len);
+                return;
+            }
+        }
+        System.arraycopy(b, off, buf, count, len);
+        count += len;
+    }
+
+    /**
+     * Writes the pending output and flushes the target stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    /**
+     * Hands the pending output to the target stream.
+     */
+    void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buf, 0, count);
+            count = 0;
+        }
+    }
+
+    /**
+     * Writes an element or attribute name. ASCII names are copied straight into the
+     * buffer, others are encoded once and kept in <code>cache</code>.
+     */
+    void writeName(String name, Utf8NameCache cache) throws IOException {
+        final int length = name.length();
+        if (length <= buf.length) {
+            if (length > buf.length - count) {
+                flushBuffer();
+            }
+            int pos = count;
+            int i = 0;
+            for (; i < length; i++) {
+                char c = name.charAt(i);
+                if (c >= 0x80) {
+                    break;
+                }
+                buf[pos++] = (byte) c;
+            }
+            if (i == length) {
+                count = pos;
+                return;
+            }
+        }
+        write(cache.get(name));
+    }
+
+    /**
+     * Writes the value of a text or CDATA node, escaping <code>&amp;</code>, <code>&lt;</code>,
+     * <code>&gt;</code> and <code>#xD</code>.
+     */
+    void writeText(String text) throws IOException {
+        final int length = text.length();
+        for (int i = 0; i < length; i++) {
+            char c = text.charAt(i);
+            switch (c) {
+            case '&' :
+                writeEscape(AMP);
+                break;
+            case '<' :
+                writeEscape(LT);
+                break;
+            case '>' :
+                writeEscape(GT);
+                break;
+            case 0xD :
+                writeEscape(XD);
+                break;
+            default :
+                if (c < 0x80) {
+                    if (count == buf.length) {
+                        flushBuffer();
+                    }
+                    buf[count++] = (byte) c;
+                } else {
+                    i = writeCodePoint(text, i);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Writes an attribute value, escaping <code>&amp;</code>, <code>&lt;</code>,
+     * <code>&quot;</code>, <code>#x9</code>, <code>#xA</code> and <code>#xD</code>.
+     */
+    void writeAttributeValue(String value) throws IOException {
+        final int length = value.length();
+        for (int i = 0; i < length; i++) {
+            char c = value.charAt(i);
+            switch (c) {
+            case '&' :
+                writeEscape(AMP);
+                break;
+            case '<' :
+                writeEscape(LT);
+                break;
+            case '"' :
+                writeEscape(QUOT);
+                break;
+            case 0x09 :    // '\t'
+                writeEscape(X9);
+                break;
+            case 0x0A :    // '\n'
+                writeEscape(XA);
+                break;
+            case 0x0D :    // '\r'
+                writeEscape(XD);
+                break;
+            default :
+                if (c < 0x80) {
+                    if (count == buf.length) {
+                        flushBuffer();
+                    }
+                    buf[count++] = (byte) c;
+                } else {
+                    i = writeCodePoint(value, i);
+                }
+                break;
+            }
+        }
+    }
+
+    /**
+     * Writes the target or data of a processing instruction or the data of a comment,
+     * escaping <code>#xD</code> only.
+     */
+    void writeData(String data) throws IOException {
+        final int length = data.length();
+        for (int i = 0; i < length; i++) {
+            char c = data.charAt(i);
+            if (c == 0xD) {
+                writeEscape(XD);
+            } else if (c < 0x80) {
+                if (count == buf.length) {
+                    flushBuffer();
+                }
+                buf[count++] = (byte) c;
+            } else {
+                i = writeCodePoint(data, i);
+            }
+        }
+    }
+
+    private void writeEscape(byte[] escape) throws IOException {
+        if (escape.length > buf.length - count) {
+            flushBuffer();
+        }
+        System.arraycopy(escape, 0, buf, count, escape.length);
+        count += escape.length;
+    }
+
+    /**
+     * UTF-8 encodes the (non ASCII) code point starting at <code>index</code>, with the
+     * same handling of invalid code points as {@link UtfHelpper#writeCodePointToUtf8}.
+     *
+     * @return the index of the last char consumed
+     */
+    private int writeCodePoint(String str, int index) throws IOException {
+        int c = str.codePointAt(index);
+        if (buf.length - count < 4) {
+            flushBuffer();
+        }
+        if (c >= 0xD800 && c <= 0xDFFF) {
+            // unpaired surrogate
+            buf[count++] = 0x3f;
+            return index;
+        }
+        if (c < 0x800) {
+            buf[count++] = (byte) (0xC0 | (c >>> 6));
+            buf[count++] = (byte) (0x80 | (c & 0x3F));
+            return index;
+        }
+        if (c < 0x10000) {
+            buf[count++] = (byte) (0xE0 | (c >>> 12));
+            buf[count++] = (byte) (0x80 | ((c >>> 6) & 0x3F));
+            buf[count++] = (byte) (0x80 | (c & 0x3F));
+            return index;
+        }
+        if (UtfHelpper.OLD_UTF8) {
+            // version 2 or before output 2 question mark characters for 32 bit chars
+            buf[count++] = 0x3f;
+            buf[count++] = 0x3f;
+        } else {
+            buf[count++] = (byte) (0xF0 | (c >>> 18));
+            buf[count++] = (byte) (0x80 | ((c >>> 12) & 0x3F));
+            buf[count++] = (byte) (0x80 | ((c >>> 6) & 0x3F));
+            buf[count++] = (byte) (0x80 | (c & 0x3F));
+        }
+        return index + 1;
+    }
+}
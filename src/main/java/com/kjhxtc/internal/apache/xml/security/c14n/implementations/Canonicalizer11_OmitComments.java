@@ -33,4 +33,9 @@ public class Canonicalizer11_OmitComments extends Canonicalizer20010315 {
         return Canonicalizer.ALGO_ID_C14N11_OMIT_COMMENTS;
     }
 
+    @Override
+    public boolean engineIsThreadSafe() {
+        return getClass() == Canonicalizer11_OmitComments.class;
+    }
+
 }
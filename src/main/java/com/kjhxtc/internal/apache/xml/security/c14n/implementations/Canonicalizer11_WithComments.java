@@ -33,4 +33,9 @@ public class Canonicalizer11_WithComments extends Canonicalizer20010315 {
         return Canonicalizer.ALGO_ID_C14N11_WITH_COMMENTS;
     }
 
+    @Override
+    public boolean engineIsThreadSafe() {
+        return getClass() == Canonicalizer11_WithComments.class;
+    }
+
 }
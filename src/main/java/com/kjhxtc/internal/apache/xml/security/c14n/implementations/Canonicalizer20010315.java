@@ -20,10 +20,7 @@ package com.kjhxtc.internal.apache.xml.security.c14n.implementations;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Map;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 import com.kjhxtc.internal.apache.xml.security.c14n.CanonicalizationException;
 import com.kjhxtc.internal.apache.xml.security.c14n.helper.C14nHelper;
@@ -44,9 +41,6 @@ import org.w3c.dom.Node;
  */
 public abstract class Canonicalizer20010315 extends CanonicalizerBase {
 
-    private boolean firstCall = true;
-
-    private final XmlAttrStack xmlattrStack;
     private final boolean c14n11;
 
     /**
@@ -66,7 +60,6 @@ public abstract class Canonicalizer20010315 extends CanonicalizerBase {
      */
     public Canonicalizer20010315(boolean includeComments, boolean c14n11) {
         super(includeComments);
-        xmlattrStack = new XmlAttrStack(c14n11);
         this.c14n11 = c14n11;
     }
 
@@ -124,11 +117,12 @@ public abstract class Canonicalizer20010315 extends CanonicalizerBase {
      * Output the Attr[]s for the given element.
      * <br>
      * The code of this method is a copy of
-     * {@link #outputAttributes(Element, NameSpaceSymbTable, Map, OutputStream)},
+     * {@link #outputAttributes(CanonicalizerContext, Element, NameSpaceSymbTable, Map, C14nOutputBuffer)},
      * whereas it takes into account that subtree-c14n is -- well -- subtree-based.
      * So if the element in question isRoot of c14n, it's parent is not in the
      * node set, as well as all other ancestors.
      *
+     * @param context
      * @param element
      * @param ns
      * @param cache
@@ -136,14 +130,14 @@ public abstract class Canonicalizer20010315 extends CanonicalizerBase {
      * @throws CanonicalizationException, DOMException, IOException
      */
     @Override
-    protected void outputAttributesSubtree(Element element, NameSpaceSymbTable ns,
-                                           Map<String, byte[]> cache, OutputStream writer)
+    protected void outputAttributesSubtree(CanonicalizerContext context, Element element, NameSpaceSymbTable ns,
+                                           Utf8NameCache cache, C14nOutputBuffer writer)
         throws CanonicalizationException, DOMException, IOException {
-        if (!element.hasAttributes() && !firstCall) {
+        if (!element.hasAttributes() && !context.firstCall) {
             return;
         }
         // result will contain the attrs which have to be output
-        SortedSet<Attr> result = new TreeSet<>(COMPARE);
+        SortedAttrs result = context.sortedAttrs();
 
         if (element.hasAttributes()) {
             NamedNodeMap attrs = element.getAttributes();
@@ -176,19 +170,21 @@ public abstract class Canonicalizer20010315 extends CanonicalizerBase {
             }
         }
 
-        if (firstCall) {
+        if (context.firstCall) {
             //It is the first node of the subtree
             //Obtain all the namespaces defined in the parents, and added to the output.
             ns.getUnrenderedNodes(result);
             //output the attributes in the xml namespace.
-            xmlattrStack.getXmlnsAttr(result);
-            firstCall = false;
+            context.getXmlAttrStack(c14n11).getXmlnsAttr(result);
+            context.firstCall = false;
         }
 
         //we output all Attrs which are available
-        for (Attr attr : result) {
+        for (int i = 0; i < result.size(); i++) {
+            Attr attr = result.get(i);
             outputAttrToWriter(attr.getNodeName(), attr.getNodeValue(), writer, cache);
         }
+        result.clear();
     }
 
     /**
@@ -198,6 +194,7 @@ public abstract class Canonicalizer20010315 extends CanonicalizerBase {
      * been prepared using {@link com.kjhxtc.internal.apache.xml.security.utils.XMLUtils#circumventBug2650(
      * org.w3c.dom.Document)}.
      *
+     * @param context
      * @param element
      * @param ns
      * @param cache
@@ -205,13 +202,14 @@ public abstract class Canonicalizer20010315 extends CanonicalizerBase {
      * @throws CanonicalizationException, DOMException, IOException
      */
     @Override
-    protected void outputAttributes(Element element, NameSpaceSymbTable ns,
-                                    Map<String, byte[]> cache, OutputStream writer)
+    protected void outputAttributes(CanonicalizerContext context, Element element, NameSpaceSymbTable ns,
+                                    Utf8NameCache cache, C14nOutputBuffer writer)
         throws CanonicalizationException, DOMException, IOException {
+        XmlAttrStack xmlattrStack = context.getXmlAttrStack(c14n11);
         // result will contain the attrs which have to be output
         xmlattrStack.push(ns.getLevel());
-        boolean isRealVisible = isVisibleDO(element, ns.getLevel()) == 1;
-        SortedSet<Attr> result = new TreeSet<>(COMPARE);
+        boolean isRealVisible = isVisibleDO(context, element, ns.getLevel()) == 1;
+        SortedAttrs result = context.sortedAttrs();
 
         if (element.hasAttributes()) {
             NamedNodeMap attrs = element.getAttributes();
@@ -244,7 +242,7 @@ public abstract class Canonicalizer20010315 extends CanonicalizerBase {
                      * the xml prefix, if its string value is http://www.w3.org/XML/1998/namespace.
                      */
                     //add the prefix binding to the ns symb table.
-                    if (isVisible(attribute))  {
+                    if (isVisible(context, attribute))  {
                         if (isRealVisible || !ns.removeMappingIfRender(NName)) {
                             //The xpath select this node output it if needed.
                             Node n = ns.addMappingAndRender(NName, NValue, attribute);
@@ -275,11 +273,11 @@ public abstract class Canonicalizer20010315 extends CanonicalizerBase {
             if (xmlns == null) {
                 //No xmlns def just get the already defined.
                 n = ns.getMapping(XMLNS);
-            } else if (!isVisible(xmlns)) {
+            } else if (!isVisible(context, xmlns)) {
                 //There is a definition but the xmlns is not selected by the xpath.
                 //then xmlns=""
                 n = ns.addMappingAndRender(
-                        XMLNS, "", getNullNode(xmlns.getOwnerDocument()));
+                        XMLNS, "", getNullNode(context, xmlns.getOwnerDocument()));
             }
             //output the xmlns def if needed.
             if (n != null) {
@@ -291,13 +289,15 @@ public abstract class Canonicalizer20010315 extends CanonicalizerBase {
         }
 
         //we output all Attrs which are available
-        for (Attr attr : result) {
+        for (int i = 0; i < result.size(); i++) {
+            Attr attr = result.get(i);
             outputAttrToWriter(attr.getNodeName(), attr.getNodeValue(), writer, cache);
         }
+        result.clear();
     }
 
     @Override
-    protected void circumventBugIfNeeded(XMLSignatureInput input)
+    protected void circumventBugIfNeeded(CanonicalizerContext context, XMLSignatureInput input)
         throws XMLParserException, IOException {
         if (!input.isNeedsToBeExpanded()) {
             return;
@@ -312,10 +312,11 @@ public abstract class Canonicalizer20010315 extends CanonicalizerBase {
     }
 
     @Override
-    protected void handleParent(Element e, NameSpaceSymbTable ns) {
+    protected void handleParent(CanonicalizerContext context, Element e, NameSpaceSymbTable ns) {
         if (!e.hasAttributes() && e.getNamespaceURI() == null) {
             return;
         }
+        XmlAttrStack xmlattrStack = context.getXmlAttrStack(c14n11);
         xmlattrStack.push(-1);
         NamedNodeMap attrs = e.getAttributes();
         int attrsLength = attrs.getLength();
@@ -20,11 +20,9 @@ package com.kjhxtc.internal.apache.xml.security.c14n.implementations;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Collections;
-import java.util.Map;
+import java.util.List;
 import java.util.Set;
 import java.util.SortedSet;
-import java.util.TreeSet;
 
 import com.kjhxtc.internal.apache.xml.security.c14n.CanonicalizationException;
 import com.kjhxtc.internal.apache.xml.security.c14n.helper.C14nHelper;
@@ -55,13 +53,6 @@ import org.w3c.dom.Node;
  */
 public abstract class Canonicalizer20010315Excl extends CanonicalizerBase {
 
-    /**
-     * This Set contains the names (Strings like "xmlns" or "xmlns:foo") of
-     * the inclusive namespaces.
-     */
-    private SortedSet<String> inclusiveNSSet = Collections.emptySortedSet();
-    private boolean propagateDefaultNamespace = false;
-
     /**
      * Constructor Canonicalizer20010315Excl
      *
@@ -112,8 +103,14 @@ public abstract class Canonicalizer20010315Excl extends CanonicalizerBase {
     public void engineCanonicalizeSubTree(
         Node rootNode, String inclusiveNamespaces, boolean propagateDefaultNamespace, OutputStream writer
     ) throws CanonicalizationException {
-        this.propagateDefaultNamespace = propagateDefaultNamespace;
-        engineCanonicalizeSubTree(rootNode, inclusiveNamespaces, null, writer);
+        CanonicalizerContext context = acquireContext();
+        try {
+            context.propagateDefaultNamespace = propagateDefaultNamespace;
+            context.inclusiveNSSet = InclusiveNamespaces.prefixStr2Set(inclusiveNamespaces);
+            engineCanonicalizeSubTree(context, rootNode, null, writer);
+        } finally {
+            context.release();
+        }
     }
 
     /**
@@ -127,8 +124,13 @@ public abstract class Canonicalizer20010315Excl extends CanonicalizerBase {
     public void engineCanonicalizeSubTree(
         Node rootNode, String inclusiveNamespaces, Node excl, OutputStream writer
     ) throws CanonicalizationException{
-        inclusiveNSSet = InclusiveNamespaces.prefixStr2Set(inclusiveNamespaces);
-        super.engineCanonicalizeSubTree(rootNode, excl, writer);
+        CanonicalizerContext context = acquireContext();
+        try {
+            context.inclusiveNSSet = InclusiveNamespaces.prefixStr2Set(inclusiveNamespaces);
+            engineCanonicalizeSubTree(context, rootNode, excl, writer);
+        } finally {
+            context.release();
+        }
     }
 
     /**
@@ -142,8 +144,13 @@ public abstract class Canonicalizer20010315Excl extends CanonicalizerBase {
     public void engineCanonicalize(
         XMLSignatureInput rootNode, String inclusiveNamespaces, OutputStream writer, boolean secureValidation
     ) throws CanonicalizationException {
-        inclusiveNSSet = InclusiveNamespaces.prefixStr2Set(inclusiveNamespaces);
-        super.engineCanonicalize(rootNode, writer, secureValidation);
+        CanonicalizerContext context = acquireContext();
+        try {
+            context.inclusiveNSSet = InclusiveNamespaces.prefixStr2Set(inclusiveNamespaces);
+            engineCanonicalize(context, rootNode, writer, secureValidation);
+        } finally {
+            context.release();
+        }
     }
 
     /**
@@ -158,20 +165,26 @@ public abstract class Canonicalizer20010315Excl extends CanonicalizerBase {
     public void engineCanonicalizeXPathNodeSet(
         Set<Node> xpathNodeSet, String inclusiveNamespaces, OutputStream writer
     ) throws CanonicalizationException {
-        inclusiveNSSet = InclusiveNamespaces.prefixStr2Set(inclusiveNamespaces);
-        super.engineCanonicalizeXPathNodeSet(xpathNodeSet, writer);
+        CanonicalizerContext context = acquireContext();
+        try {
+            context.inclusiveNSSet = InclusiveNamespaces.prefixStr2Set(inclusiveNamespaces);
+            engineCanonicalizeXPathNodeSet(context, xpathNodeSet, writer);
+        } finally {
+            context.release();
+        }
     }
 
     @Override
-    protected void outputAttributesSubtree(Element element, NameSpaceSymbTable ns,
-                                           Map<String, byte[]> cache, OutputStream writer)
+    protected void outputAttributesSubtree(CanonicalizerContext context, Element element, NameSpaceSymbTable ns,
+                                           Utf8NameCache cache, C14nOutputBuffer writer)
         throws CanonicalizationException, DOMException, IOException {
+        SortedSet<String> inclusiveNSSet = context.inclusiveNSSet;
         // result will contain the attrs which have to be output
-        SortedSet<Attr> result = new TreeSet<>(COMPARE);
+        SortedAttrs result = context.sortedAttrs();
 
         // The prefix visibly utilized (in the attribute or in the name) in
-        // the element
-        SortedSet<String> visiblyUtilized = new TreeSet<>();
+        // the element. The order does not matter as the result is sorted.
+        List<String> visiblyUtilized = context.visiblyUtilizedPrefixes();
         if (!inclusiveNSSet.isEmpty()) {
             visiblyUtilized.addAll(inclusiveNSSet);
         }
@@ -190,7 +203,7 @@ public abstract class Canonicalizer20010315Excl extends CanonicalizerBase {
                     // visiblyUtilized
                     String prefix = attribute.getPrefix();
                     if (prefix != null && !(prefix.equals(XML) || prefix.equals(XMLNS))) {
-                        visiblyUtilized.add(prefix);
+                        addPrefix(visiblyUtilized, prefix);
                     }
                     // Add to the result.
                     result.add(attribute);
@@ -206,12 +219,12 @@ public abstract class Canonicalizer20010315Excl extends CanonicalizerBase {
                 }
             }
         }
-        if (propagateDefaultNamespace && ns.getLevel() == 1 &&
+        if (context.propagateDefaultNamespace && ns.getLevel() == 1 &&
                 inclusiveNSSet.contains(XMLNS) &&
                 ns.getMappingWithoutRendered(XMLNS) == null) {
                 ns.removeMapping(XMLNS);
                 ns.addMapping(
-                    XMLNS, "", getNullNode(element.getOwnerDocument()));
+                    XMLNS, "", getNullNode(context, element.getOwnerDocument()));
         }
         String prefix = null;
         if (element.getNamespaceURI() != null
@@ -220,7 +233,7 @@ public abstract class Canonicalizer20010315Excl extends CanonicalizerBase {
         } else {
             prefix = XMLNS;
         }
-        visiblyUtilized.add(prefix);
+        addPrefix(visiblyUtilized, prefix);
 
         for (String s : visiblyUtilized) {
             Attr key = ns.getMapping(s);
@@ -230,25 +243,28 @@ public abstract class Canonicalizer20010315Excl extends CanonicalizerBase {
         }
 
         //we output all Attrs which are available
-        for (Attr attr : result) {
+        for (int i = 0; i < result.size(); i++) {
+            Attr attr = result.get(i);
             outputAttrToWriter(attr.getNodeName(), attr.getNodeValue(), writer, cache);
         }
+        result.clear();
     }
 
     @Override
-    protected void outputAttributes(Element element, NameSpaceSymbTable ns,
-                                    Map<String, byte[]> cache, OutputStream writer)
+    protected void outputAttributes(CanonicalizerContext context, Element element, NameSpaceSymbTable ns,
+                                    Utf8NameCache cache, C14nOutputBuffer writer)
         throws CanonicalizationException, DOMException, IOException {
+        SortedSet<String> inclusiveNSSet = context.inclusiveNSSet;
         // result will contain the attrs which have to be output
-        SortedSet<Attr> result = new TreeSet<>(COMPARE);
+        SortedAttrs result = context.sortedAttrs();
 
         // The prefix visibly utilized (in the attribute or in the name) in
-        // the element
-        Set<String> visiblyUtilized = null;
+        // the element. The order does not matter as the result is sorted.
+        List<String> visiblyUtilized = null;
         // It's the output selected.
-        boolean isOutputElement = isVisibleDO(element, ns.getLevel()) == 1;
+        boolean isOutputElement = isVisibleDO(context, element, ns.getLevel()) == 1;
         if (isOutputElement) {
-            visiblyUtilized = new TreeSet<>();
+            visiblyUtilized = context.visiblyUtilizedPrefixes();
             if (!inclusiveNSSet.isEmpty()) {
                 visiblyUtilized.addAll(inclusiveNSSet);
             }
@@ -264,20 +280,20 @@ public abstract class Canonicalizer20010315Excl extends CanonicalizerBase {
                 String NNodeValue = attribute.getNodeValue();
 
                 if (!XMLNS_URI.equals(attribute.getNamespaceURI())) {
-                    if (isVisible(attribute) && isOutputElement) {
+                    if (isVisible(context, attribute) && isOutputElement) {
                         // The Element is output element, add the prefix (if used)
                         // to visibyUtilized
                         String prefix = attribute.getPrefix();
                         if (prefix != null && !(prefix.equals(XML) || prefix.equals(XMLNS))) {
-                            visiblyUtilized.add(prefix);
+                            addPrefix(visiblyUtilized, prefix);
                         }
                         // Add to the result.
                         result.add(attribute);
                     }
-                } else if (isOutputElement && !isVisible(attribute) && !XMLNS.equals(NName)) {
+                } else if (isOutputElement && !isVisible(context, attribute) && !XMLNS.equals(NName)) {
                     ns.removeMappingIfNotRender(NName);
                 } else {
-                    if (!isOutputElement && isVisible(attribute)
+                    if (!isOutputElement && isVisible(context, attribute)
                         && inclusiveNSSet.contains(NName)
                         && !ns.removeMappingIfRender(NName)) {
                         Node n = ns.addMappingAndRender(NName, NNodeValue, attribute);
@@ -307,10 +323,10 @@ public abstract class Canonicalizer20010315Excl extends CanonicalizerBase {
         if (isOutputElement) {
             // The element is visible, handle the xmlns definition
             Attr xmlns = element.getAttributeNodeNS(XMLNS_URI, XMLNS);
-            if (xmlns != null && !isVisible(xmlns)) {
+            if (xmlns != null && !isVisible(context, xmlns)) {
                 // There is a definition but the xmlns is not selected by the
                 // xpath. then xmlns=""
-                ns.addMapping(XMLNS, "", getNullNode(xmlns.getOwnerDocument()));
+                ns.addMapping(XMLNS, "", getNullNode(context, xmlns.getOwnerDocument()));
             }
 
             String prefix = null;
@@ -320,7 +336,7 @@ public abstract class Canonicalizer20010315Excl extends CanonicalizerBase {
             } else {
                 prefix = XMLNS;
             }
-            visiblyUtilized.add(prefix);
+            addPrefix(visiblyUtilized, prefix);
 
             for (String s : visiblyUtilized) {
                 Attr key = ns.getMapping(s);
@@ -331,15 +347,23 @@ public abstract class Canonicalizer20010315Excl extends CanonicalizerBase {
         }
 
         //we output all Attrs which are available
-        for (Attr attr : result) {
+        for (int i = 0; i < result.size(); i++) {
+            Attr attr = result.get(i);
             outputAttrToWriter(attr.getNodeName(), attr.getNodeValue(), writer, cache);
         }
+        result.clear();
+    }
+
+    private static void addPrefix(List<String> visiblyUtilized, String prefix) {
+        if (!visiblyUtilized.contains(prefix)) {
+            visiblyUtilized.add(prefix);
+        }
     }
 
     @Override
-    protected void circumventBugIfNeeded(XMLSignatureInput input)
+    protected void circumventBugIfNeeded(CanonicalizerContext context, XMLSignatureInput input)
         throws XMLParserException, IOException {
-        if (!input.isNeedsToBeExpanded() || inclusiveNSSet.isEmpty()) {
+        if (!input.isNeedsToBeExpanded() || context.inclusiveNSSet.isEmpty()) {
             return;
         }
         Document doc = null;
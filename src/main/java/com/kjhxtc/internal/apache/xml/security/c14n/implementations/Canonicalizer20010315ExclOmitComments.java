@@ -35,4 +35,9 @@ public class Canonicalizer20010315ExclOmitComments extends Canonicalizer20010315
         return Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS;
     }
 
+    @Override
+    public boolean engineIsThreadSafe() {
+        return getClass() == Canonicalizer20010315ExclOmitComments.class;
+    }
+
 }
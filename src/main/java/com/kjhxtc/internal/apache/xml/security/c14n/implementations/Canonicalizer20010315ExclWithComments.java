@@ -39,4 +39,9 @@ public class Canonicalizer20010315ExclWithComments extends Canonicalizer20010315
         return Canonicalizer.ALGO_ID_C14N_EXCL_WITH_COMMENTS;
     }
 
+    @Override
+    public boolean engineIsThreadSafe() {
+        return getClass() == Canonicalizer20010315ExclWithComments.class;
+    }
+
 }
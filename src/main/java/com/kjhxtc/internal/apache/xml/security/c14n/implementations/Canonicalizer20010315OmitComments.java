@@ -38,4 +38,9 @@ public class Canonicalizer20010315OmitComments extends Canonicalizer20010315 {
         return Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS;
     }
 
+    @Override
+    public boolean engineIsThreadSafe() {
+        return getClass() == Canonicalizer20010315OmitComments.class;
+    }
+
 }
@@ -37,4 +37,9 @@ public class Canonicalizer20010315WithComments extends Canonicalizer20010315 {
         return Canonicalizer.ALGO_ID_C14N_WITH_COMMENTS;
     }
 
+    @Override
+    public boolean engineIsThreadSafe() {
+        return getClass() == Canonicalizer20010315WithComments.class;
+    }
+
 }
@@ -21,12 +21,13 @@ package com.kjhxtc.internal.apache.xml.security.c14n.implementations;
 import java.io.IOException;
 import java.io.OutputStream;
 import java.io.UnsupportedEncodingException;
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
 import java.util.ArrayList;
-import java.util.HashMap;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.ListIterator;
-import java.util.Map;
 import java.util.Set;
 
 import com.kjhxtc.internal.apache.xml.security.c14n.CanonicalizationException;
@@ -48,8 +49,10 @@ import org.w3c.dom.ProcessingInstruction;
 
 /**
  * Abstract base class for canonicalization algorithms.
- * Please note that these implementations are NOT thread safe - please see the following JIRA for more information:
- * https://issues.apache.org/jira/browse/SANTUARIO-463
+ * <p></p>
+ * Implementations are thread safe (see SANTUARIO-463): the state of a canonicalization
+ * is kept in a {@link CanonicalizerContext} which is pooled per thread, so a single
+ * instance can be shared and reused for any number of documents.
  */
 public abstract class CanonicalizerBase extends CanonicalizerSpi {
     public static final String XML = "xml";
@@ -62,31 +65,16 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
     protected static final int NODE_NOT_BEFORE_OR_AFTER_DOCUMENT_ELEMENT = 0;
     protected static final int NODE_AFTER_DOCUMENT_ELEMENT = 1;
 
-    // Make sure you clone the following mutable arrays before passing to
-    // potentially untrusted objects such as OutputStreams.
+    // The following mutable arrays are only ever copied into a C14nOutputBuffer,
+    // they must not be passed to potentially untrusted objects such as OutputStreams.
     private static final byte[] END_PI = {'?','>'};
     private static final byte[] BEGIN_PI = {'<','?'};
     private static final byte[] END_COMM = {'-','-','>'};
     private static final byte[] BEGIN_COMM = {'<','!','-','-'};
-    private static final byte[] XA = {'&','#','x','A',';'};
-    private static final byte[] X9 = {'&','#','x','9',';'};
-    private static final byte[] QUOT = {'&','q','u','o','t',';'};
-    private static final byte[] XD = {'&','#','x','D',';'};
-    private static final byte[] GT = {'&','g','t',';'};
-    private static final byte[] LT = {'&','l','t',';'};
     private static final byte[] END_TAG = {'<','/'};
-    private static final byte[] AMP = {'&','a','m','p',';'};
     private static final byte[] EQUALS_STR = {'=','\"'};
 
-    private boolean includeComments;
-    private List<NodeFilter> nodeFilter;
-
-    private Set<Node> xpathNodeSet;
-
-    /**
-     * The null xmlns definition.
-     */
-    private Attr nullNode;
+    private final boolean includeComments;
 
     /**
      * Constructor CanonicalizerBase
@@ -97,6 +85,14 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
         this.includeComments = includeComments;
     }
 
+    /**
+     * @return the calling thread's context, initialized for this canonicalizer. It must be
+     * released once the canonicalization is done.
+     */
+    CanonicalizerContext acquireContext() {
+        return CanonicalizerContext.acquire(includeComments);
+    }
+
     /**
      * Method engineCanonicalizeSubTree
      * {@inheritDoc}
@@ -120,8 +116,18 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
     @Override
     public void engineCanonicalizeXPathNodeSet(Set<Node> xpathNodeSet, OutputStream writer)
         throws CanonicalizationException {
-        this.xpathNodeSet = xpathNodeSet;
-        engineCanonicalizeXPathNodeSetInternal(XMLUtils.getOwnerDocument(this.xpathNodeSet), writer);
+        CanonicalizerContext context = acquireContext();
+        try {
+            engineCanonicalizeXPathNodeSet(context, xpathNodeSet, writer);
+        } finally {
+            context.release();
+        }
+    }
+
+    void engineCanonicalizeXPathNodeSet(CanonicalizerContext context, Set<Node> xpathNodeSet, OutputStream writer)
+        throws CanonicalizationException {
+        context.xpathNodeSet = xpathNodeSet;
+        engineCanonicalizeXPathNodeSetInternal(context, XMLUtils.getOwnerDocument(xpathNodeSet), writer);
     }
 
     /**
@@ -133,23 +139,40 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
      * @throws CanonicalizationException
      */
     public void engineCanonicalize(XMLSignatureInput input, OutputStream writer, boolean secureValidation) throws CanonicalizationException {
+        CanonicalizerContext context = acquireContext();
+        try {
+            engineCanonicalize(context, input, writer, secureValidation);
+        } finally {
+            context.release();
+        }
+    }
+
+    void engineCanonicalize(
+        CanonicalizerContext context, XMLSignatureInput input, OutputStream writer, boolean secureValidation
+    ) throws CanonicalizationException {
         try {
             if (input.isExcludeComments()) {
-                includeComments = false;
+                context.includeComments = false;
             }
             if (input.isOctetStream()) {
-                engineCanonicalize(input.getBytes(), writer, secureValidation);
+                Document document = null;
+                try (InputStream is = new ByteArrayInputStream(input.getBytes())) {
+                    document = XMLUtils.read(is, secureValidation);
+                }
+                // As engineCanonicalizeSubTree(Node, OutputStream), i.e. without inclusive namespaces
+                context.inclusiveNSSet = Collections.emptySortedSet();
+                engineCanonicalizeSubTree(context, document, null, writer);
             } else if (input.isElement()) {
-                engineCanonicalizeSubTree(input.getSubNode(), input.getExcludeNode(), writer);
+                engineCanonicalizeSubTree(context, input.getSubNode(), input.getExcludeNode(), writer);
             } else if (input.isNodeSet()) {
-                nodeFilter = input.getNodeFilters();
+                context.nodeFilter = input.getNodeFilters();
 
-                circumventBugIfNeeded(input);
+                circumventBugIfNeeded(context, input);
 
                 if (input.getSubNode() != null) {
-                    engineCanonicalizeXPathNodeSetInternal(input.getSubNode(), writer);
+                    engineCanonicalizeXPathNodeSetInternal(context, input.getSubNode(), writer);
                 } else {
-                    engineCanonicalizeXPathNodeSet(input.getNodeSet(), writer);
+                    engineCanonicalizeXPathNodeSet(context, input.getNodeSet(), writer);
                 }
             }
         } catch (XMLParserException | IOException ex) {
@@ -169,16 +192,28 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
      */
     protected void engineCanonicalizeSubTree(Node rootNode, Node excludeNode, OutputStream writer)
         throws CanonicalizationException {
+        CanonicalizerContext context = acquireContext();
         try {
-            NameSpaceSymbTable ns = new NameSpaceSymbTable();
+            engineCanonicalizeSubTree(context, rootNode, excludeNode, writer);
+        } finally {
+            context.release();
+        }
+    }
+
+    void engineCanonicalizeSubTree(
+        CanonicalizerContext context, Node rootNode, Node excludeNode, OutputStream writer
+    ) throws CanonicalizationException {
+        try {
+            NameSpaceSymbTable ns = context.ns;
             int nodeLevel = NODE_BEFORE_DOCUMENT_ELEMENT;
             if (rootNode != null && Node.ELEMENT_NODE == rootNode.getNodeType()) {
                 //Fills the nssymbtable with the definitions of the parent of the root subnode
-                getParentNameSpaces((Element)rootNode, ns);
+                getParentNameSpaces(context, (Element)rootNode, ns);
                 nodeLevel = NODE_NOT_BEFORE_OR_AFTER_DOCUMENT_ELEMENT;
             }
-            this.canonicalizeSubTree(rootNode, ns, rootNode, nodeLevel, excludeNode, writer);
-            writer.flush();
+            context.output.setOutputStream(writer);
+            this.canonicalizeSubTree(context, rootNode, ns, rootNode, nodeLevel, excludeNode, context.output);
+            context.output.flush();
         } catch (UnsupportedEncodingException ex) {
             throw new CanonicalizationException(ex);
         } catch (IOException ex) {
@@ -190,6 +225,7 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
     /**
      * Method canonicalizeSubTree, this function is a recursive one.
      *
+     * @param context
      * @param currentNode
      * @param ns
      * @param endnode
@@ -200,15 +236,15 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
      * @throws IOException
      */
     private void canonicalizeSubTree(
-        Node currentNode, NameSpaceSymbTable ns, Node endnode, int documentLevel,
-        Node excludeNode, OutputStream writer
+        CanonicalizerContext context, Node currentNode, NameSpaceSymbTable ns, Node endnode, int documentLevel,
+        Node excludeNode, C14nOutputBuffer writer
     ) throws CanonicalizationException, IOException {
-        if (currentNode == null || isVisibleInt(currentNode) == -1) {
+        if (currentNode == null || isVisibleInt(context, currentNode) == -1) {
             return;
         }
         Node sibling = null;
         Node parentNode = null;
-        Map<String, byte[]> cache = new HashMap<>();
+        Utf8NameCache cache = Utf8NameCache.getInstance();
         do {    //NOPMD
             switch (currentNode.getNodeType()) {
 
@@ -226,7 +262,7 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
                 break;
 
             case Node.COMMENT_NODE :
-                if (includeComments) {
+                if (context.includeComments) {
                     outputCommentToWriter((Comment) currentNode, writer, documentLevel);
                 }
                 break;
@@ -250,15 +286,15 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
                 ns.outputNodePush();
                 writer.write('<');
                 String name = currentElement.getTagName();
-                UtfHelpper.writeByte(name, writer, cache);
+                writer.writeName(name, cache);
 
-                outputAttributesSubtree(currentElement, ns, cache, writer);
+                outputAttributesSubtree(context, currentElement, ns, cache, writer);
 
                 writer.write('>');
                 sibling = currentNode.getFirstChild();
                 if (sibling == null) {
-                    writer.write(END_TAG.clone());
-                    UtfHelpper.writeStringToUtf8(name, writer);
+                    writer.write(END_TAG);
+                    writer.writeName(name, cache);
                     writer.write('>');
                     //We finished with this level, pop to the previous definitions.
                     ns.outputNodePop();
@@ -275,8 +311,8 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
                 break;
             }
             while (sibling == null && parentNode != null) {
-                writer.write(END_TAG.clone());
-                UtfHelpper.writeByte(((Element)parentNode).getTagName(), writer, cache);
+                writer.write(END_TAG);
+                writer.writeName(((Element)parentNode).getTagName(), cache);
                 writer.write('>');
                 //We finished with this level, pop to the previous definitions.
                 ns.outputNodePop();
@@ -299,11 +335,12 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
     }
 
 
-    private void engineCanonicalizeXPathNodeSetInternal(Node doc, OutputStream writer)
+    private void engineCanonicalizeXPathNodeSetInternal(CanonicalizerContext context, Node doc, OutputStream writer)
         throws CanonicalizationException {
         try {
-            this.canonicalizeXPathNodeSet(doc, doc, writer);
-            writer.flush();
+            context.output.setOutputStream(writer);
+            this.canonicalizeXPathNodeSet(context, doc, doc, context.output);
+            context.output.flush();
         } catch (IOException ex) {
             throw new CanonicalizationException(ex);
         }
@@ -311,23 +348,25 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
 
     /**
      * Canonicalizes all the nodes included in the currentNode and contained in the
-     * xpathNodeSet field.
+     * xpathNodeSet of the context.
      *
+     * @param context
      * @param currentNode
      * @param endnode
      * @param writer OutputStream to write the canonicalization result
      * @throws CanonicalizationException
      * @throws IOException
      */
-    private void canonicalizeXPathNodeSet(Node currentNode, Node endnode, OutputStream writer)
-        throws CanonicalizationException, IOException {
-        if (isVisibleInt(currentNode) == -1) {
+    private void canonicalizeXPathNodeSet(
+        CanonicalizerContext context, Node currentNode, Node endnode, C14nOutputBuffer writer
+    ) throws CanonicalizationException, IOException {
+        if (isVisibleInt(context, currentNode) == -1) {
             return;
         }
         boolean currentNodeIsVisible = false;
-        NameSpaceSymbTable ns = new NameSpaceSymbTable();
+        NameSpaceSymbTable ns = context.ns;
         if (currentNode != null && Node.ELEMENT_NODE == currentNode.getNodeType()) {
-            getParentNameSpaces((Element)currentNode, ns);
+            getParentNameSpaces(context, (Element)currentNode, ns);
         }
         if (currentNode == null) {
             return;
@@ -335,7 +374,7 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
         Node sibling = null;
         Node parentNode = null;
         int documentLevel = NODE_BEFORE_DOCUMENT_ELEMENT;
-        Map<String, byte[]> cache = new HashMap<>();
+        Utf8NameCache cache = Utf8NameCache.getInstance();
         do {    //NOPMD
             switch (currentNode.getNodeType()) {
 
@@ -353,20 +392,20 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
                 break;
 
             case Node.COMMENT_NODE :
-                if (includeComments && isVisibleDO(currentNode, ns.getLevel()) == 1) {
+                if (context.includeComments && isVisibleDO(context, currentNode, ns.getLevel()) == 1) {
                     outputCommentToWriter((Comment) currentNode, writer, documentLevel);
                 }
                 break;
 
             case Node.PROCESSING_INSTRUCTION_NODE :
-                if (isVisible(currentNode)) {
+                if (isVisible(context, currentNode)) {
                     outputPItoWriter((ProcessingInstruction) currentNode, writer, documentLevel);
                 }
                 break;
 
             case Node.TEXT_NODE :
             case Node.CDATA_SECTION_NODE :
-                if (isVisible(currentNode)) {
+                if (isVisible(context, currentNode)) {
                     outputTextToWriter(currentNode.getNodeValue(), writer);
                     for (Node nextSibling = currentNode.getNextSibling();
                         nextSibling != null && (nextSibling.getNodeType() == Node.TEXT_NODE
@@ -384,7 +423,7 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
                 Element currentElement = (Element) currentNode;
                 //Add a level to the nssymbtable. So latter can be pop-back.
                 String name = null;
-                int i = isVisibleDO(currentNode, ns.getLevel());
+                int i = isVisibleDO(context, currentNode, ns.getLevel());
                 if (i == -1) {
                     sibling = currentNode.getNextSibling();
                     break;
@@ -394,12 +433,12 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
                     ns.outputNodePush();
                     writer.write('<');
                     name = currentElement.getTagName();
-                    UtfHelpper.writeByte(name, writer, cache);
+                    writer.writeName(name, cache);
                 } else {
                     ns.push();
                 }
 
-                outputAttributes(currentElement, ns, cache, writer);
+                outputAttributes(context, currentElement, ns, cache, writer);
 
                 if (currentNodeIsVisible) {
                     writer.write('>');
@@ -408,8 +447,8 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
 
                 if (sibling == null) {
                     if (currentNodeIsVisible) {
-                        writer.write(END_TAG.clone());
-                        UtfHelpper.writeByte(name, writer, cache);
+                        writer.write(END_TAG);
+                        writer.writeName(name, cache);
                         writer.write('>');
                         //We finished with this level, pop to the previous definitions.
                         ns.outputNodePop();
@@ -429,9 +468,9 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
                 break;
             }
             while (sibling == null && parentNode != null) {
-                if (isVisible(parentNode)) {
-                    writer.write(END_TAG.clone());
-                    UtfHelpper.writeByte(((Element)parentNode).getTagName(), writer, cache);
+                if (isVisible(context, parentNode)) {
+                    writer.write(END_TAG);
+                    writer.writeName(((Element)parentNode).getTagName(), cache);
                     writer.write('>');
                     //We finished with this level, pop to the previous definitions.
                     ns.outputNodePop();
@@ -456,9 +495,9 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
         } while(true);
     }
 
-    protected int isVisibleDO(Node currentNode, int level) throws CanonicalizationException {
-        if (nodeFilter != null) {
-            Iterator<NodeFilter> it = nodeFilter.iterator();
+    protected int isVisibleDO(CanonicalizerContext context, Node currentNode, int level) throws CanonicalizationException {
+        if (context.nodeFilter != null) {
+            Iterator<NodeFilter> it = context.nodeFilter.iterator();
             while (it.hasNext()) {
                 try {
                     int i = it.next().isNodeIncludeDO(currentNode, level);
@@ -470,15 +509,15 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
                 }
             }
         }
-        if (this.xpathNodeSet != null && !this.xpathNodeSet.contains(currentNode)) {
+        if (context.xpathNodeSet != null && !context.xpathNodeSet.contains(currentNode)) {
             return 0;
         }
         return 1;
     }
 
-    protected int isVisibleInt(Node currentNode) throws CanonicalizationException {
-        if (nodeFilter != null) {
-            Iterator<NodeFilter> it = nodeFilter.iterator();
+    protected int isVisibleInt(CanonicalizerContext context, Node currentNode) throws CanonicalizationException {
+        if (context.nodeFilter != null) {
+            Iterator<NodeFilter> it = context.nodeFilter.iterator();
             while (it.hasNext()) {
                 try {
                     int i = it.next().isNodeInclude(currentNode);
@@ -490,15 +529,15 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
                 }
             }
         }
-        if (this.xpathNodeSet != null && !this.xpathNodeSet.contains(currentNode)) {
+        if (context.xpathNodeSet != null && !context.xpathNodeSet.contains(currentNode)) {
             return 0;
         }
         return 1;
     }
 
-    protected boolean isVisible(Node currentNode) throws CanonicalizationException {
-        if (nodeFilter != null) {
-            Iterator<NodeFilter> it = nodeFilter.iterator();
+    protected boolean isVisible(CanonicalizerContext context, Node currentNode) throws CanonicalizationException {
+        if (context.nodeFilter != null) {
+            Iterator<NodeFilter> it = context.nodeFilter.iterator();
             while (it.hasNext()) {
                 try {
                     if (it.next().isNodeInclude(currentNode) != 1) {
@@ -510,10 +549,10 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
             }
         }
 
-        return this.xpathNodeSet == null || this.xpathNodeSet.contains(currentNode);
+        return context.xpathNodeSet == null || context.xpathNodeSet.contains(currentNode);
     }
 
-    protected void handleParent(Element e, NameSpaceSymbTable ns) {
+    protected void handleParent(CanonicalizerContext context, Element e, NameSpaceSymbTable ns) {
         if (!e.hasAttributes() && e.getNamespaceURI() == null) {
             return;
         }
@@ -547,10 +586,11 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
 
     /**
      * Adds to ns the definitions from the parent elements of el
+     * @param context
      * @param el
      * @param ns
      */
-    private void getParentNameSpaces(Element el, NameSpaceSymbTable ns)  {
+    private void getParentNameSpaces(CanonicalizerContext context, Element el, NameSpaceSymbTable ns)  {
         Node n1 = el.getParentNode();
         if (n1 == null || Node.ELEMENT_NODE != n1.getNodeType()) {
             return;
@@ -566,43 +606,45 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
         ListIterator<Element> it = parents.listIterator(parents.size());
         while (it.hasPrevious()) {
             Element ele = it.previous();
-            handleParent(ele, ns);
+            handleParent(context, ele, ns);
         }
         parents.clear();
         Attr nsprefix = ns.getMappingWithoutRendered(XMLNS);
         if (nsprefix != null && nsprefix.getValue().length() == 0) {
             ns.addMappingAndRender(
-                    XMLNS, "", getNullNode(nsprefix.getOwnerDocument()));
+                    XMLNS, "", getNullNode(context, nsprefix.getOwnerDocument()));
         }
     }
 
     /**
      * Output the attributes for this node in XPathNodeSet c14n.
      *
+     * @param context
      * @param element
      * @param ns
      * @param cache
      * @param writer OutputStream to write the canonicalization result
      * @throws CanonicalizationException, DOMException, IOException
      */
-    abstract void outputAttributes(Element element, NameSpaceSymbTable ns,
-                                   Map<String, byte[]> cache, OutputStream writer)
+    abstract void outputAttributes(CanonicalizerContext context, Element element, NameSpaceSymbTable ns,
+                                   Utf8NameCache cache, C14nOutputBuffer writer)
         throws CanonicalizationException, DOMException, IOException;
 
     /**
      * Output the attributes for this node in a Subtree c14n.
      *
+     * @param context
      * @param element
      * @param ns
      * @param cache
      * @param writer OutputStream to write the canonicalization result
      * @throws CanonicalizationException, DOMException, IOException
      */
-    abstract void outputAttributesSubtree(Element element, NameSpaceSymbTable ns,
-                                          Map<String, byte[]> cache, OutputStream writer)
+    abstract void outputAttributesSubtree(CanonicalizerContext context, Element element, NameSpaceSymbTable ns,
+                                          Utf8NameCache cache, C14nOutputBuffer writer)
         throws CanonicalizationException, DOMException, IOException;
 
-    abstract void circumventBugIfNeeded(XMLSignatureInput input)
+    abstract void circumventBugIfNeeded(CanonicalizerContext context, XMLSignatureInput input)
         throws XMLParserException, IOException;
 
     /**
@@ -626,55 +668,12 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
      */
     protected static final void outputAttrToWriter(
         final String name, final String value,
-        final OutputStream writer, final Map<String, byte[]> cache
+        final C14nOutputBuffer writer, final Utf8NameCache cache
     ) throws IOException {
         writer.write(' ');
-        UtfHelpper.writeByte(name, writer, cache);
-        writer.write(EQUALS_STR.clone());
-        byte[] toWrite;
-        final int length = value.length();
-        int i = 0;
-        while (i < length) {
-            int c = value.codePointAt(i);
-            i += Character.charCount(c);
-
-            switch (c) {
-
-            case '&' :
-                toWrite = AMP.clone();
-                break;
-
-            case '<' :
-                toWrite = LT.clone();
-                break;
-
-            case '"' :
-                toWrite = QUOT.clone();
-                break;
-
-            case 0x09 :    // '\t'
-                toWrite = X9.clone();
-                break;
-
-            case 0x0A :    // '\n'
-                toWrite = XA.clone();
-                break;
-
-            case 0x0D :    // '\r'
-                toWrite = XD.clone();
-                break;
-
-            default :
-                if (c < 0x80) {
-                    writer.write(c);
-                } else {
-                    UtfHelpper.writeCodePointToUtf8(c, writer);
-                }
-                continue;
-            }
-            writer.write(toWrite);
-        }
-
+        writer.writeName(name, cache);
+        writer.write(EQUALS_STR);
+        writer.writeAttributeValue(value);
         writer.write('\"');
     }
 
@@ -686,49 +685,22 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
      * @throws IOException
      */
     protected void outputPItoWriter(
-        ProcessingInstruction currentPI, OutputStream writer, int position
+        ProcessingInstruction currentPI, C14nOutputBuffer writer, int position
     ) throws IOException {
         if (position == NODE_AFTER_DOCUMENT_ELEMENT) {
             writer.write('\n');
         }
-        writer.write(BEGIN_PI.clone());
-
-        final String target = currentPI.getTarget();
-        int length = target.length();
+        writer.write(BEGIN_PI);
 
-        for (int i = 0; i < length; ) {
-            int c = target.codePointAt(i);
-            i += Character.charCount(c);
-            if (c == 0x0D) {
-                writer.write(XD.clone());
-            } else {
-                if (c < 0x80) {
-                    writer.write(c);
-                } else {
-                    UtfHelpper.writeCodePointToUtf8(c, writer);
-                }
-            }
-        }
+        writer.writeData(currentPI.getTarget());
 
         final String data = currentPI.getData();
-
-        length = data.length();
-
-        if (length > 0) {
+        if (data.length() > 0) {
             writer.write(' ');
-
-            for (int i = 0; i < length; ) {
-                int c = data.codePointAt(i);
-                i += Character.charCount(c);
-                if (c == 0x0D) {
-                    writer.write(XD.clone());
-                } else {
-                    UtfHelpper.writeCodePointToUtf8(c, writer);
-                }
-            }
+            writer.writeData(data);
         }
 
-        writer.write(END_PI.clone());
+        writer.write(END_PI);
         if (position == NODE_BEFORE_DOCUMENT_ELEMENT) {
             writer.write('\n');
         }
@@ -742,31 +714,16 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
      * @throws IOException
      */
     protected void outputCommentToWriter(
-        Comment currentComment, OutputStream writer, int position
+        Comment currentComment, C14nOutputBuffer writer, int position
     ) throws IOException {
         if (position == NODE_AFTER_DOCUMENT_ELEMENT) {
             writer.write('\n');
         }
-        writer.write(BEGIN_COMM.clone());
+        writer.write(BEGIN_COMM);
 
-        final String data = currentComment.getData();
-        final int length = data.length();
+        writer.writeData(currentComment.getData());
 
-        for (int i = 0; i < length; ) {
-            int c = data.codePointAt(i);
-            i += Character.charCount(c);
-            if (c == 0x0D) {
-                writer.write(XD.clone());
-            } else {
-                if (c < 0x80) {
-                    writer.write(c);
-                } else {
-                    UtfHelpper.writeCodePointToUtf8(c, writer);
-                }
-            }
-        }
-
-        writer.write(END_COMM.clone());
+        writer.write(END_COMM);
         if (position == NODE_BEFORE_DOCUMENT_ELEMENT) {
             writer.write('\n');
         }
@@ -780,56 +737,24 @@ public abstract class CanonicalizerBase extends CanonicalizerSpi {
      * @throws IOException
      */
     private static final void outputTextToWriter(
-        final String text, final OutputStream writer
+        final String text, final C14nOutputBuffer writer
     ) throws IOException {
-        final int length = text.length();
-        byte[] toWrite;
-        for (int i = 0; i < length; ) {
-            int c = text.codePointAt(i);
-            i += Character.charCount(c);
-
-            switch (c) {
-
-            case '&' :
-                toWrite = AMP.clone();
-                break;
-
-            case '<' :
-                toWrite = LT.clone();
-                break;
-
-            case '>' :
-                toWrite = GT.clone();
-                break;
-
-            case 0xD :
-                toWrite = XD.clone();
-                break;
-
-            default :
-                if (c < 0x80) {
-                    writer.write(c);
-                } else {
-                    UtfHelpper.writeCodePointToUtf8(c, writer);
-                }
-                continue;
-            }
-            writer.write(toWrite);
-        }
+        writer.writeText(text);
     }
 
     // The null xmlns definition.
-    protected Attr getNullNode(Document ownerDocument) {
-        if (nullNode == null) {
+    protected Attr getNullNode(CanonicalizerContext context, Document ownerDocument) {
+        if (context.nullNode == null) {
             try {
-                nullNode = ownerDocument.createAttributeNS(
+                Attr nullNode = ownerDocument.createAttributeNS(
                                     Constants.NamespaceSpecNS, XMLNS);
                 nullNode.setValue("");
+                context.nullNode = nullNode;
             } catch (Exception e) {
                 throw new RuntimeException("Unable to create nullNode: " + e);
             }
         }
-        return nullNode;
+        return context.nullNode;
     }
 
 }
@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.c14n.implementations;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.SortedSet;
+
+import com.kjhxtc.internal.apache.xml.security.signature.NodeFilter;
+import org.w3c.dom.Attr;
+import org.w3c.dom.Node;
+
+/**
+ * Holds the mutable state of a single canonicalization walk, so that the
+ * {@link CanonicalizerBase} implementations themselves can be shared between threads.
+ * <p></p>
+ * Contexts are pooled per thread: {@link #acquire(boolean)} hands out the thread's
+ * context (or a fresh one if it is already in use by an enclosing canonicalization)
+ * and {@link #release()} resets it and drops every reference to the DOM.
+ */
+final class CanonicalizerContext {
+
+    private static final ThreadLocal<CanonicalizerContext> POOL =
+        ThreadLocal.withInitial(CanonicalizerContext::new);
+
+    final NameSpaceSymbTable ns = new NameSpaceSymbTable();
+    final C14nOutputBuffer output = new C14nOutputBuffer();
+
+    boolean includeComments;
+    List<NodeFilter> nodeFilter;
+    Set<Node> xpathNodeSet;
+
+    /** Canonical XML 1.0/1.1 only: whether the next element is the apex of the subtree */
+    boolean firstCall;
+
+    /** Exclusive c14n only */
+    SortedSet<String> inclusiveNSSet = Collections.emptySortedSet();
+    boolean propagateDefaultNamespace;
+
+    /** The null xmlns definition, created on demand for the document being canonicalized */
+    Attr nullNode;
+
+    private final SortedAttrs sortedAttrs = new SortedAttrs();
+    private final List<String> visiblyUtilizedPrefixes = new ArrayList<>();
+    private XmlAttrStack xmlattrStack;
+    private XmlAttrStack xmlattrStack11;
+    private boolean inUse;
+
+    private CanonicalizerContext() {
+    }
+
+    /**
+     * Returns a reset context for the current thread.
+     *
+     * @param includeComments whether comments are included by the calling canonicalizer
+     * @return a context which must be given back with {@link #release()}
+     */
+    static CanonicalizerContext acquire(boolean includeComments) {
+        CanonicalizerContext context = POOL.get();
+        if (context.inUse) {
+            // A canonicalization nested in another one on the same thread
+            context = new CanonicalizerContext();
+        }
+        context.inUse = true;
+        context.includeComments = includeComments;
+        context.firstCall = true;
+        return context;
+    }
+
+    /**
+     * Resets this context and makes it available for the next canonicalization on this thread.
+     */
+    void release() {
+        ns.reset();
+        output.reset();
+        sortedAttrs.clear();
+        visiblyUtilizedPrefixes.clear();
+        if (xmlattrStack != null) {
+            xmlattrStack.reset();
+        }
+        if (xmlattrStack11 != null) {
+            xmlattrStack11.reset();
+        }
+        nodeFilter = null;
+        xpathNodeSet = null;
+        inclusiveNSSet = Collections.emptySortedSet();
+        propagateDefaultNamespace = false;
+        nullNode = null;
+        inUse = false;
+    }
+
+    /**
+     * @return the empty collection in which the attributes of the current element are sorted
+     */
+    SortedAttrs sortedAttrs() {
+        sortedAttrs.clear();
+        return sortedAttrs;
+    }
+
+    /**
+     * @return the empty list of the prefixes visibly utilized by the current element (exclusive c14n)
+     */
+    List<String> visiblyUtilizedPrefixes() {
+        visiblyUtilizedPrefixes.clear();
+        return visiblyUtilizedPrefixes;
+    }
+
+    XmlAttrStack getXmlAttrStack(boolean c14n11) {
+        if (c14n11) {
+            if (xmlattrStack11 == null) {
+                xmlattrStack11 = new XmlAttrStack(true);
+            }
+            return xmlattrStack11;
+        }
+        if (xmlattrStack == null) {
+            xmlattrStack = new XmlAttrStack(false);
+        }
+        return xmlattrStack;
+    }
+}
@@ -20,10 +20,7 @@ package com.kjhxtc.internal.apache.xml.security.c14n.implementations;
 
 import java.io.IOException;
 import java.io.OutputStream;
-import java.util.Map;
 import java.util.Set;
-import java.util.SortedSet;
-import java.util.TreeSet;
 
 import com.kjhxtc.internal.apache.xml.security.c14n.CanonicalizationException;
 import com.kjhxtc.internal.apache.xml.security.c14n.Canonicalizer;
@@ -109,11 +106,12 @@ public class CanonicalizerPhysical extends CanonicalizerBase {
      * Output the Attr[]s for the given element.
      * <br>
      * The code of this method is a copy of
-     * {@link #outputAttributes(Element, NameSpaceSymbTable, Map, OutputStream)},
+     * {@link #outputAttributes(CanonicalizerContext, Element, NameSpaceSymbTable, Map, C14nOutputBuffer)},
      * whereas it takes into account that subtree-c14n is -- well -- subtree-based.
      * So if the element in question isRoot of c14n, it's parent is not in the
      * node set, as well as all other ancestors.
      *
+     * @param context
      * @param element
      * @param ns
      * @param cache
@@ -121,12 +119,12 @@ public class CanonicalizerPhysical extends CanonicalizerBase {
      * @throws CanonicalizationException, DOMException, IOException
      */
     @Override
-    protected void outputAttributesSubtree(Element element, NameSpaceSymbTable ns,
-                                           Map<String, byte[]> cache, OutputStream writer)
+    protected void outputAttributesSubtree(CanonicalizerContext context, Element element, NameSpaceSymbTable ns,
+                                           Utf8NameCache cache, C14nOutputBuffer writer)
         throws CanonicalizationException, DOMException, IOException {
         if (element.hasAttributes()) {
             // result will contain all the attrs declared directly on that element
-            SortedSet<Attr> result = new TreeSet<>(COMPARE);
+            SortedAttrs result = context.sortedAttrs();
 
             NamedNodeMap attrs = element.getAttributes();
             int attrsLength = attrs.getLength();
@@ -137,15 +135,17 @@ public class CanonicalizerPhysical extends CanonicalizerBase {
             }
 
             //we output all Attrs which are available
-            for (Attr attr : result) {
+            for (int j = 0; j < result.size(); j++) {
+                Attr attr = result.get(j);
                 outputAttrToWriter(attr.getNodeName(), attr.getNodeValue(), writer, cache);
             }
+            result.clear();
         }
     }
 
     @Override
-    protected void outputAttributes(Element element, NameSpaceSymbTable ns,
-                                    Map<String, byte[]> cache, OutputStream writer)
+    protected void outputAttributes(CanonicalizerContext context, Element element, NameSpaceSymbTable ns,
+                                    Utf8NameCache cache, C14nOutputBuffer writer)
         throws CanonicalizationException, DOMException, IOException {
 
         /** $todo$ well, should we throw UnsupportedOperationException ? */
@@ -153,13 +153,13 @@ public class CanonicalizerPhysical extends CanonicalizerBase {
     }
 
     @Override
-    protected void circumventBugIfNeeded(XMLSignatureInput input)
+    protected void circumventBugIfNeeded(CanonicalizerContext context, XMLSignatureInput input)
         throws XMLParserException, IOException {
         // nothing to do
     }
 
     @Override
-    protected void handleParent(Element e, NameSpaceSymbTable ns) {
+    protected void handleParent(CanonicalizerContext context, Element e, NameSpaceSymbTable ns) {
         // nothing to do
     }
 
@@ -169,16 +169,21 @@ public class CanonicalizerPhysical extends CanonicalizerBase {
         return Canonicalizer.ALGO_ID_C14N_PHYSICAL;
     }
 
+    @Override
+    public boolean engineIsThreadSafe() {
+        return getClass() == CanonicalizerPhysical.class;
+    }
+
     @Override
     protected void outputPItoWriter(ProcessingInstruction currentPI,
-                                    OutputStream writer, int position) throws IOException {
+                                    C14nOutputBuffer writer, int position) throws IOException {
         // Processing Instructions before or after the document element are not treated specially
         super.outputPItoWriter(currentPI, writer, NODE_NOT_BEFORE_OR_AFTER_DOCUMENT_ELEMENT);
     }
 
     @Override
     protected void outputCommentToWriter(Comment currentComment,
-                                         OutputStream writer, int position) throws IOException {
+                                         C14nOutputBuffer writer, int position) throws IOException {
         // Comments before or after the document element are not treated specially
         super.outputCommentToWriter(currentComment, writer, NODE_NOT_BEFORE_OR_AFTER_DOCUMENT_ELEMENT);
     }
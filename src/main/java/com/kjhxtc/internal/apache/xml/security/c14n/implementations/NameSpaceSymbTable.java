@@ -18,50 +18,86 @@
  */
 package com.kjhxtc.internal.apache.xml.security.c14n.implementations;
 
-import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.List;
 
 import org.w3c.dom.Attr;
 import org.w3c.dom.Node;
 
 /**
  * A stack based Symbol Table.
- *<br>For speed reasons all the symbols are introduced in the same map,
- * and at the same time in a list so it can be removed when the frame is pop back.
+ *<br>Every prefix seen is given a slot, and the current definition of all the prefixes is
+ * held in parallel arrays indexed by slot. Instead of copying the table when a frame changes
+ * a definition, the previous state of the slot is appended to an undo log the first time it
+ * is changed in the frame, and {@link #pop()} restores the logged states of the frame.
  */
 public class NameSpaceSymbTable {
 
-    private static final org.slf4j.Logger LOG =
-        org.slf4j.LoggerFactory.getLogger(NameSpaceSymbTable.class);
-
     private static final String XMLNS = "xmlns";
-    private static final SymbMap initialMap = new SymbMap();
-
-    static {
-        NameSpaceSymbEntry ne = new NameSpaceSymbEntry("", null, true, XMLNS);
-        ne.lastrendered = "";
-        initialMap.put(XMLNS, ne);
-    }
 
-    /**The map betwen prefix-> entry table. */
-    private SymbMap symb;
-
-    /**The stacks for removing the definitions when doing pop.*/
-    private final List<SymbMap> level = new ArrayList<>();
-    private boolean cloned = true;
+    /** Open addressing table from prefix to slot */
+    private String[] hashKeys = new String[32];
+    private int[] hashSlots = new int[32];
+
+    /** The current definition of each slot, a null uri meaning no definition */
+    private String[] prefixes = new String[16];
+    private String[] uris = new String[16];
+    private Attr[] nodes = new Attr[16];
+    /** The last output URI for this prefix (This for speed reason) */
+    private String[] lastRendered = new String[16];
+    /** This prefix-URI has been already render or not */
+    private boolean[] rendered = new boolean[16];
+    /** The frame in which the slot was last logged, to log it at most once per frame */
+    private int[] savedAt = new int[16];
+    private int slotCount;
+
+    /** The undo log: the state of a slot before it was first changed in a frame */
+    private int[] undoSlots = new int[16];
+    private String[] undoUris = new String[16];
+    private Attr[] undoNodes = new Attr[16];
+    private String[] undoLastRendered = new String[16];
+    private boolean[] undoRendered = new boolean[16];
+    private int[] undoSavedAt = new int[16];
+    private int undoSize;
+
+    /** The size of the undo log when each frame was pushed */
+    private int[] frames = new int[16];
+    private int depth;
 
     /**
      * Default constractor
      **/
     public NameSpaceSymbTable() {
         //Insert the default binding for xmlns.
-        try {
-            symb = initialMap.clone();
-        } catch (CloneNotSupportedException e) {
-            LOG.error("Error cloning the initial map");
-        }
+        initXmlns();
+    }
+
+    private void initXmlns() {
+        int slot = slot(XMLNS, true);
+        uris[slot] = "";
+        lastRendered[slot] = "";
+        rendered[slot] = true;
+    }
+
+    /**
+     * Clears all the frames and definitions, leaving the table as it was
+     * constructed so that it can be reused for another document.
+     **/
+    public void reset() {
+        Arrays.fill(hashKeys, null);
+        Arrays.fill(prefixes, 0, slotCount, null);
+        Arrays.fill(uris, 0, slotCount, null);
+        Arrays.fill(nodes, 0, slotCount, null);
+        Arrays.fill(lastRendered, 0, slotCount, null);
+        Arrays.fill(rendered, 0, slotCount, false);
+        Arrays.fill(savedAt, 0, slotCount, 0);
+        slotCount = 0;
+        Arrays.fill(undoUris, 0, undoSize, null);
+        Arrays.fill(undoNodes, 0, undoSize, null);
+        Arrays.fill(undoLastRendered, 0, undoSize, null);
+        undoSize = 0;
+        depth = 0;
+        initXmlns();
     }
 
     /**
@@ -70,16 +106,15 @@ public class NameSpaceSymbTable {
      * @param result the list where to fill the unrendered xmlns definitions.
      **/
     public void getUnrenderedNodes(Collection<Attr> result) {
-        for (NameSpaceSymbEntry nsEntry : symb.entrySet()) {
+        for (int slot = 0; slot < slotCount; slot++) {
+            String uri = uris[slot];
             //put them rendered?
-            if (!nsEntry.rendered && nsEntry.n != null) {
-                nsEntry = nsEntry.clone();
-                needsClone();
-                symb.put(nsEntry.prefix, nsEntry);
-                nsEntry.lastrendered = nsEntry.uri;
-                nsEntry.rendered = true;
-
-                result.add(nsEntry.n);
+            if (uri != null && !uri.isEmpty() && !rendered[slot] && nodes[slot] != null) {
+                save(slot);
+                lastRendered[slot] = uri;
+                rendered[slot] = true;
+
+                result.add(nodes[slot]);
             }
         }
     }
@@ -104,9 +139,11 @@ public class NameSpaceSymbTable {
      * Inclusive or Exclusive.
      **/
     public void push() {
-        //Put the number of namespace definitions in the stack.
-        level.add(null);
-        cloned = false;
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth << 1);
+        }
+        //Put the size of the undo log in the stack.
+        frames[depth++] = undoSize;
     }
 
     /**
@@ -114,32 +151,123 @@ public class NameSpaceSymbTable {
      * Inclusive or Exclusive.
      **/
     public void pop() {
-        int size = level.size() - 1;
-        Object ob = level.remove(size);
-        if (ob != null) {
-            symb = (SymbMap)ob;
-            if (size == 0) {
-                cloned = false;
-            } else {
-                cloned = level.get(size - 1) != symb;
+        int start = frames[--depth];
+        while (undoSize > start) {
+            int i = --undoSize;
+            int slot = undoSlots[i];
+            uris[slot] = undoUris[i];
+            nodes[slot] = undoNodes[i];
+            lastRendered[slot] = undoLastRendered[i];
+            rendered[slot] = undoRendered[i];
+            savedAt[slot] = undoSavedAt[i];
+            undoUris[i] = null;
+            undoNodes[i] = null;
+            undoLastRendered[i] = null;
+        }
+    }
+
+    /**
+     * Logs the state of the slot, unless it was already logged in the current frame.
+     */
+    private void save(int slot) {
+        if (depth == 0 || savedAt[slot] == depth) {
+            // Changes outside of any frame are never undone
+            return;
+        }
+        if (undoSize == undoSlots.length) {
+            int newLength = undoSize << 1;
+            undoSlots = Arrays.copyOf(undoSlots, newLength);
+            undoUris = Arrays.copyOf(undoUris, newLength);
+            undoNodes = Arrays.copyOf(undoNodes, newLength);
+            undoLastRendered = Arrays.copyOf(undoLastRendered, newLength);
+            undoRendered = Arrays.copyOf(undoRendered, newLength);
+            undoSavedAt = Arrays.copyOf(undoSavedAt, newLength);
+        }
+        int i = undoSize++;
+        undoSlots[i] = slot;
+        undoUris[i] = uris[slot];
+        undoNodes[i] = nodes[slot];
+        undoLastRendered[i] = lastRendered[slot];
+        undoRendered[i] = rendered[slot];
+        undoSavedAt[i] = savedAt[slot];
+        savedAt[slot] = depth;
+    }
+
+    /**
+     * Returns the slot of the prefix.
+     *
+     * @param prefix the prefix
+     * @param create whether to allocate a slot for a prefix not seen before
+     * @return the slot, or -1 if the prefix has none and <code>create</code> is false
+     */
+    private int slot(String prefix, boolean create) {
+        int mask = hashKeys.length - 1;
+        int h = prefix.hashCode();
+        int index = (h ^ h >>> 16) & mask;
+        String key;
+        while ((key = hashKeys[index]) != null) {
+            if (key.equals(prefix)) {
+                return hashSlots[index];
             }
-        } else {
-            cloned = false;
+            index = index + 1 & mask;
+        }
+        if (!create) {
+            return -1;
         }
+
+        if (slotCount == prefixes.length) {
+            int newLength = slotCount << 1;
+            prefixes = Arrays.copyOf(prefixes, newLength);
+            uris = Arrays.copyOf(uris, newLength);
+            nodes = Arrays.copyOf(nodes, newLength);
+            lastRendered = Arrays.copyOf(lastRendered, newLength);
+            rendered = Arrays.copyOf(rendered, newLength);
+            savedAt = Arrays.copyOf(savedAt, newLength);
+        }
+        int slot = slotCount++;
+        prefixes[slot] = prefix;
+        hashKeys[index] = prefix;
+        hashSlots[index] = slot;
+        if (slotCount << 1 > hashKeys.length) {
+            rehash(hashKeys.length << 1);
+        }
+        return slot;
     }
 
-    final void needsClone() {
-        if (!cloned) {
-            level.set(level.size() - 1, symb);
-            try {
-                symb = symb.clone();
-            } catch (CloneNotSupportedException e) {
-                LOG.error("Error cloning the symbol map");
+    private void rehash(int newCapacity) {
+        hashKeys = new String[newCapacity];
+        hashSlots = new int[newCapacity];
+        int mask = newCapacity - 1;
+        for (int slot = 0; slot < slotCount; slot++) {
+            int h = prefixes[slot].hashCode();
+            int index = (h ^ h >>> 16) & mask;
+            while (hashKeys[index] != null) {
+                index = index + 1 & mask;
             }
-            cloned = true;
+            hashKeys[index] = prefixes[slot];
+            hashSlots[index] = slot;
         }
     }
 
+    /**
+     * @return the slot of the prefix if it is currently defined, otherwise -1
+     */
+    private int definedSlot(String prefix) {
+        int slot = slot(prefix, false);
+        return slot >= 0 && uris[slot] != null ? slot : -1;
+    }
+
+    private void define(int slot, String uri, Attr n, boolean render, String last) {
+        save(slot);
+        uris[slot] = uri;
+        nodes[slot] = n;
+        rendered[slot] = render;
+        lastRendered[slot] = last;
+    }
+
+    private void undefine(int slot) {
+        define(slot, null, null, false, null);
+    }
 
     /**
      * Gets the attribute node that defines the binding for the prefix.
@@ -148,23 +276,19 @@ public class NameSpaceSymbTable {
      * definition.
      **/
     public Attr getMapping(String prefix) {
-        NameSpaceSymbEntry entry = symb.get(prefix);
-        if (entry == null) {
+        int slot = definedSlot(prefix);
+        if (slot < 0) {
             //There is no definition for the prefix(a bug?).
             return null;
         }
-        if (entry.rendered) {
+        if (rendered[slot]) {
             //No need to render an entry already rendered.
             return null;
         }
         // Mark this entry as render.
-        entry = entry.clone();
-        needsClone();
-        symb.put(prefix, entry);
-        entry.rendered = true;
-        entry.lastrendered = entry.uri;
+        define(slot, uris[slot], nodes[slot], true, uris[slot]);
         // Return the node for outputing.
-        return entry.n;
+        return nodes[slot];
     }
 
     /**
@@ -174,14 +298,11 @@ public class NameSpaceSymbTable {
      * @return the attr to render, null if there is no need to render
      **/
     public Attr getMappingWithoutRendered(String prefix) {
-        NameSpaceSymbEntry entry = symb.get(prefix);
-        if (entry == null) {
-            return null;
-        }
-        if (entry.rendered) {
+        int slot = definedSlot(prefix);
+        if (slot < 0 || rendered[slot]) {
             return null;
         }
-        return entry.n;
+        return nodes[slot];
     }
 
     /**
@@ -192,24 +313,16 @@ public class NameSpaceSymbTable {
      * @return true if there is already defined.
      **/
     public boolean addMapping(String prefix, String uri, Attr n) {
-        NameSpaceSymbEntry ob = symb.get(prefix);
-        if (ob != null && uri.equals(ob.uri)) {
+        int slot = slot(prefix, true);
+        String oldUri = uris[slot];
+        if (uri.equals(oldUri)) {
             //If we have it previously defined. Don't keep working.
             return false;
         }
-        //Creates and entry in the table for this new definition.
-        NameSpaceSymbEntry ne = new NameSpaceSymbEntry(uri, n, false, prefix);
-        needsClone();
-        symb.put(prefix, ne);
-        if (ob != null) {
-            //We have a previous definition store it for the pop.
-            //Check if a previous definition(not the inmidiatly one) has been rendered.
-            ne.lastrendered = ob.lastrendered;
-            if (ob.lastrendered != null && ob.lastrendered.equals(uri)) {
-                //Yes it is. Mark as rendered.
-                ne.rendered = true;
-            }
-        }
+        //We have a previous definition store it for the pop.
+        //Check if a previous definition(not the inmidiatly one) has been rendered.
+        String last = oldUri == null ? null : lastRendered[slot];
+        define(slot, uri, n, uri.equals(last), last);
         return true;
     }
 
@@ -222,186 +335,48 @@ public class NameSpaceSymbTable {
      * @return the attr to render, null if there is no need to render
      **/
     public Node addMappingAndRender(String prefix, String uri, Attr n) {
-        NameSpaceSymbEntry ob = symb.get(prefix);
-
-        if (ob != null && uri.equals(ob.uri)) {
-            if (!ob.rendered) {
-                ob = ob.clone();
-                needsClone();
-                symb.put(prefix, ob);
-                ob.lastrendered = uri;
-                ob.rendered = true;
-                return ob.n;
+        int slot = slot(prefix, true);
+        String oldUri = uris[slot];
+
+        if (uri.equals(oldUri)) {
+            if (!rendered[slot]) {
+                define(slot, uri, nodes[slot], true, uri);
+                return nodes[slot];
             }
             return null;
         }
 
-        NameSpaceSymbEntry ne = new NameSpaceSymbEntry(uri, n, true, prefix);
-        ne.lastrendered = uri;
-        needsClone();
-        symb.put(prefix, ne);
-        if (ob != null && ob.lastrendered != null && ob.lastrendered.equals(uri)) {
-            ne.rendered = true;
-            return null;
-        }
-        return ne.n;
+        boolean renderedBefore = oldUri != null && uri.equals(lastRendered[slot]);
+        define(slot, uri, n, true, uri);
+        return renderedBefore ? null : n;
     }
 
     public int getLevel() {
-        return level.size();
+        return depth;
     }
 
     public void removeMapping(String prefix) {
-        NameSpaceSymbEntry ob = symb.get(prefix);
+        int slot = definedSlot(prefix);
 
-        if (ob != null) {
-            needsClone();
-            symb.put(prefix, null);
+        if (slot >= 0) {
+            undefine(slot);
         }
     }
 
     public void removeMappingIfNotRender(String prefix) {
-        NameSpaceSymbEntry ob = symb.get(prefix);
+        int slot = definedSlot(prefix);
 
-        if (ob != null && !ob.rendered) {
-            needsClone();
-            symb.put(prefix, null);
+        if (slot >= 0 && !rendered[slot]) {
+            undefine(slot);
         }
     }
 
     public boolean removeMappingIfRender(String prefix) {
-        NameSpaceSymbEntry ob = symb.get(prefix);
+        int slot = definedSlot(prefix);
 
-        if (ob != null && ob.rendered) {
-            needsClone();
-            symb.put(prefix, null);
+        if (slot >= 0 && rendered[slot]) {
+            undefine(slot);
         }
         return false;
     }
 }
-
-/**
- * The internal structure of NameSpaceSymbTable.
- **/
-class NameSpaceSymbEntry implements Cloneable {
-
-    final String prefix;
-
-    /**The URI that the prefix defines */
-    final String uri;
-
-    /**The attribute to include.*/
-    final Attr n;
-
-    /**The last output in the URI for this prefix (This for speed reason).*/
-    String lastrendered = null;
-
-    /**This prefix-URI has been already render or not.*/
-    boolean rendered = false;
-
-    NameSpaceSymbEntry(String name, Attr n, boolean rendered, String prefix) {
-        this.uri = name;
-        this.rendered = rendered;
-        this.n = n;
-        this.prefix = prefix;
-    }
-
-    /** {@inheritDoc} */
-    @Override
-    public NameSpaceSymbEntry clone() { //NOPMD
-        try {
-            return (NameSpaceSymbEntry)super.clone();
-        } catch (CloneNotSupportedException e) {
-            return null;
-        }
-    }
-}
-
-class SymbMap implements Cloneable {
-    int free = 23;
-    NameSpaceSymbEntry[] entries;
-    String[] keys;
-
-    SymbMap() {
-        entries = new NameSpaceSymbEntry[free];
-        keys = new String[free];
-    }
-
-    void put(String key, NameSpaceSymbEntry value) {
-        int index = index(key);
-        Object oldKey = keys[index];
-        keys[index] = key;
-        entries[index] = value;
-        if ((oldKey == null || !oldKey.equals(key)) && --free == 0) {
-            free = entries.length;
-            int newCapacity = free << 2;
-            rehash(newCapacity);
-        }
-    }
-
-    List<NameSpaceSymbEntry> entrySet() {
-        List<NameSpaceSymbEntry> a = new ArrayList<>();
-        for (NameSpaceSymbEntry nsEntry : entries) {
-            if (nsEntry != null && !nsEntry.uri.isEmpty()) {
-                a.add(nsEntry);
-            }
-        }
-        return a;
-    }
-
-    protected int index(Object obj) {
-        Object[] set = keys;
-        int length = set.length;
-        //abs of index
-        int index = (obj.hashCode() & 0x7fffffff) % length;
-        Object cur = set[index];
-
-        if (cur == null || cur.equals(obj)) {
-            return index;
-        }
-        length--;
-        do {
-            index = index == length ? 0 : ++index;
-            cur = set[index];
-        } while (cur != null && !cur.equals(obj));
-        return index;
-    }
-
-    /**
-     * rehashes the map to the new capacity.
-     *
-     * @param newCapacity an <code>int</code> value
-     */
-    protected void rehash(int newCapacity) {
-        int oldCapacity = keys.length;
-        String[] oldKeys = keys;
-        NameSpaceSymbEntry oldVals[] = entries;
-
-        keys = new String[newCapacity];
-        entries = new NameSpaceSymbEntry[newCapacity];
-
-        for (int i = oldCapacity; i-- > 0;) {
-            if (oldKeys[i] != null) {
-                String o = oldKeys[i];
-                int index = index(o);
-                keys[index] = o;
-                entries[index] = oldVals[i];
-            }
-        }
-    }
-
-    NameSpaceSymbEntry get(String key) {
-        return entries[index(key)];
-    }
-
-    @Override
-    public SymbMap clone() throws CloneNotSupportedException  {
-        SymbMap copy = (SymbMap) super.clone();
-        copy.entries = new NameSpaceSymbEntry[entries.length];
-        System.arraycopy(entries, 0, copy.entries, 0, entries.length);
-        copy.keys = new String[keys.length];
-        System.arraycopy(keys, 0, copy.keys, 0, keys.length);
-
-        return copy;
-    }
-}
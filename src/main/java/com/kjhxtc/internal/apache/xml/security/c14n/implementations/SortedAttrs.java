@@ -0,0 +1,165 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.c14n.implementations;
+
+import java.util.AbstractCollection;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.kjhxtc.internal.apache.xml.security.c14n.helper.AttrCompare;
+import com.kjhxtc.internal.apache.xml.security.utils.Constants;
+import org.w3c.dom.Attr;
+
+/**
+ * A reusable, array backed replacement for a <code>TreeSet&lt;Attr&gt;</code> ordered by
+ * {@link AttrCompare}, used to collect the attributes and namespace nodes of one element.
+ * <p></p>
+ * The sort keys of every attribute are read from the DOM once when it is added and kept
+ * alongside it, and the attributes are kept in order by insertion sort, which beats a tree
+ * for the handful of attributes a typical element carries. Like a <code>TreeSet</code>, an
+ * attribute that compares equal to one already collected is ignored.
+ */
+final class SortedAttrs extends AbstractCollection<Attr> {
+
+    private static final String XMLNS = Constants.NamespaceSpecNS;
+
+    /** Namespace nodes sort before attributes without a namespace, which sort before the rest */
+    private static final int NAMESPACE_NODE = 0;
+    private static final int NO_NAMESPACE = 1;
+    private static final int QUALIFIED = 2;
+
+    private Attr[] attrs = new Attr[8];
+    private int[] kinds = new int[8];
+    private String[] primaryKeys = new String[8];
+    private String[] secondaryKeys = new String[8];
+    private int size;
+
+    @Override
+    public boolean add(Attr attr) {
+        String namespaceURI = attr.getNamespaceURI();
+        int kind;
+        String primary;
+        String secondary = null;
+        if (XMLNS.equals(namespaceURI)) {
+            kind = NAMESPACE_NODE;
+            primary = attr.getLocalName();
+            if ("xmlns".equals(primary)) {
+                primary = "";
+            }
+        } else if (namespaceURI == null) {
+            kind = NO_NAMESPACE;
+            primary = attr.getName();
+        } else {
+            kind = QUALIFIED;
+            primary = namespaceURI;
+            secondary = attr.getLocalName();
+        }
+
+        int pos = size;
+        while (pos > 0) {
+            int c = compare(kind, primary, secondary, pos - 1);
+            if (c == 0) {
+                return false;
+            } else if (c > 0) {
+                break;
+            }
+            pos--;
+        }
+
+        if (size == attrs.length) {
+            int newLength = size << 1;
+            attrs = Arrays.copyOf(attrs, newLength);
+            kinds = Arrays.copyOf(kinds, newLength);
+            primaryKeys = Arrays.copyOf(primaryKeys, newLength);
+            secondaryKeys = Arrays.copyOf(secondaryKeys, newLength);
+        }
+        int moved = size - pos;
+        if (moved > 0) {
+            System.arraycopy(attrs, pos, attrs, pos + 1, moved);
+            System.arraycopy(kinds, pos, kinds, pos + 1, moved);
+            System.arraycopy(primaryKeys, pos, primaryKeys, pos + 1, moved);
+            System.arraycopy(secondaryKeys, pos, secondaryKeys, pos + 1, moved);
+        }
+        attrs[pos] = attr;
+        kinds[pos] = kind;
+        primaryKeys[pos] = primary;
+        secondaryKeys[pos] = secondary;
+        size++;
+        return true;
+    }
+
+    private int compare(int kind, String primary, String secondary, int index) {
+        if (kind != kinds[index]) {
+            return kind < kinds[index] ? -1 : 1;
+        }
+        int c = primary.compareTo(primaryKeys[index]);
+        if (c != 0 || kind != QUALIFIED) {
+            return c;
+        }
+        return secondary.compareTo(secondaryKeys[index]);
+    }
+
+    /**
+     * @param index the position in sort order
+     * @return the attribute at that position
+     */
+    Attr get(int index) {
+        if (index >= size) {
+            throw new IndexOutOfBoundsException(String.valueOf(index));
+        }
+        return attrs[index];
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Empties this collection, dropping its references to the DOM.
+     */
+    @Override
+    public void clear() {
+        Arrays.fill(attrs, 0, size, null);
+        Arrays.fill(primaryKeys, 0, size, null);
+        Arrays.fill(secondaryKeys, 0, size, null);
+        size = 0;
+    }
+
+    @Override
+    public Iterator<Attr> iterator() {
+        return new Iterator<Attr>() {
+            private int next;
+
+            @Override
+            public boolean hasNext() {
+                return next < size;
+            }
+
+            @Override
+            public Attr next() {
+                if (next >= size) {
+                    throw new NoSuchElementException();
+                }
+                return attrs[next++];
+            }
+        };
+    }
+}
@@ -0,0 +1,138 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.c14n.implementations;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.kjhxtc.internal.apache.xml.security.utils.CacheStatistics;
+
+/**
+ * A bounded, lock-free cache of the UTF-8 encoding of element, attribute and prefix names,
+ * shared by the DOM and the StAX canonicalizers.
+ * <p></p>
+ * The cache is a two-way set associative table: a name may live in one of two neighbouring
+ * slots chosen by its hash code. A new name is put into the first slot and the previous
+ * occupant of the first slot is moved to the second one, evicting the entry there. Entries
+ * are immutable, so concurrent readers and writers need no locking; a race at worst loses
+ * an entry, which is simply encoded again on the next lookup.
+ * <p></p>
+ * The size of the shared cache is read from the system property
+ * <code>com.kjhxtc.internal.apache.xml.security.c14n.nameCacheSize</code> (default 2048) and
+ * rounded up to a power of two.
+ */
+public final class Utf8NameCache {
+
+    private static final int DEFAULT_SIZE =
+        AccessController.doPrivileged(
+            (PrivilegedAction<Integer>) () -> Integer.getInteger("com.kjhxtc.internal.apache.xml.security.c14n.nameCacheSize", 2048));
+
+    private static final Utf8NameCache INSTANCE = new Utf8NameCache(DEFAULT_SIZE);
+
+    private final AtomicReferenceArray<Entry> table;
+    private final int mask;
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    /**
+     * @param size the maximum number of cached names, rounded up to a power of two (at least 2)
+     */
+    public Utf8NameCache(int size) {
+        int capacity = 2;
+        while (capacity < size && capacity < 1 << 30) {
+            capacity <<= 1;
+        }
+        this.table = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @return the cache shared by all canonicalizers
+     */
+    public static Utf8NameCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the UTF-8 encoding of the given name as produced by
+     * {@link UtfHelpper#getStringInUtf8(String)}. The returned array must not be modified.
+     *
+     * @param name the name to encode
+     * @return the (possibly cached) encoding of the name
+     */
+    public byte[] get(String name) {
+        int h = name.hashCode();
+        int index = (h ^ h >>> 16) & mask;
+        Entry entry = table.get(index);
+        if (entry != null && entry.name.equals(name)) {
+            statistics.hit();
+            return entry.utf8;
+        }
+        int second = index ^ 1;
+        Entry secondEntry = table.get(second);
+        if (secondEntry != null && secondEntry.name.equals(name)) {
+            statistics.hit();
+            return secondEntry.utf8;
+        }
+
+        statistics.miss();
+        byte[] utf8 = UtfHelpper.getStringInUtf8(name);
+        if (entry != null) {
+            if (secondEntry != null) {
+                statistics.eviction();
+            }
+            table.lazySet(second, entry);
+        }
+        table.lazySet(index, new Entry(name, utf8));
+        return utf8;
+    }
+
+    /**
+     * Drops all cached names. The statistics are kept.
+     */
+    public void clear() {
+        for (int i = 0; i < table.length(); i++) {
+            table.lazySet(i, null);
+        }
+    }
+
+    /**
+     * @return the maximum number of cached names
+     */
+    public int getCapacity() {
+        return table.length();
+    }
+
+    /**
+     * @return the hit, miss and eviction counts of the cache
+     */
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    private static final class Entry {
+        private final String name;
+        private final byte[] utf8;
+
+        Entry(String name, byte[] utf8) {
+            this.name = name;
+            this.utf8 = utf8;
+        }
+    }
+}
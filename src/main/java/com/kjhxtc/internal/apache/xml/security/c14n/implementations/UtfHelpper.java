@@ -32,7 +32,7 @@ public final class UtfHelpper {
      * to verify signatures generated by version 2 or before that contains 32 bit chars in the
      * XML document.
      */
-    private static final boolean OLD_UTF8 =
+    static final boolean OLD_UTF8 =
         AccessController.doPrivileged((PrivilegedAction<Boolean>)
             () -> Boolean.getBoolean("com.kjhxtc.internal.apache.xml.security.c14n.oldUtf8"));
 
@@ -54,6 +54,17 @@ public final class UtfHelpper {
         out.write(result);
     }
 
+    /**
+     * Writes the UTF-8 encoding of the given name, looked up in the given {@link Utf8NameCache}.
+     */
+    public static void writeByte(
+        final String str,
+        final OutputStream out,
+        Utf8NameCache cache
+    ) throws IOException {
+        out.write(cache.get(str));
+    }
+
     public static void writeCodePointToUtf8(final int c, final OutputStream out) throws IOException {
         if (!Character.isValidCodePoint(c) || c >= 0xD800 && c <= 0xDBFF || c >= 0xDC00 && c <= 0xDFFF) {
             // valid code point: c >= 0x0000 && c <= 0x10FFFF
@@ -18,10 +18,15 @@
  */
 package com.kjhxtc.internal.apache.xml.security.encryption;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
-import java.io.OutputStreamWriter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.SequenceInputStream;
 import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -39,6 +44,8 @@ import org.w3c.dom.NodeList;
  */
 public abstract class AbstractSerializer implements Serializer {
 
+    private static final byte[] CONTEXT_END = "</dummy>".getBytes(StandardCharsets.UTF_8);
+
     private final Canonicalizer canon;
     protected final boolean secureValidation;
 
@@ -59,7 +66,7 @@ public abstract class AbstractSerializer implements Serializer {
     @Override
     public byte[] serializeToByteArray(Element element) throws Exception {
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            canon.canonicalizeSubtree(element, baos);
+            serialize(element, baos);
             return baos.toByteArray();
         }
     }
@@ -76,47 +83,47 @@ public abstract class AbstractSerializer implements Serializer {
     @Override
     public byte[] serializeToByteArray(NodeList content) throws Exception {
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-            for (int i = 0; i < content.getLength(); i++) {
-                canon.canonicalizeSubtree(content.item(i), baos);
-            }
+            serialize(content, baos);
             return baos.toByteArray();
         }
     }
 
+    /**
+     * Canonicalizes the specified <code>Element</code> straight to an
+     * <code>OutputStream</code>. XMLCipher encrypts through this method, so a
+     * subclass which changes the serialized form has to override it rather than
+     * <code>serializeToByteArray</code>.
+     *
+     * @param element the <code>Element</code> to serialize.
+     * @param os the <code>OutputStream</code> to write to.
+     * @throws Exception
+     */
+    @Override
+    public void serialize(Element element, OutputStream os) throws Exception {
+        canon.canonicalizeSubtree(element, os);
+    }
+
+    /**
+     * Canonicalizes the specified <code>NodeList</code> straight to an
+     * <code>OutputStream</code>.
+     *
+     * @param content the <code>NodeList</code> to serialize.
+     * @param os the <code>OutputStream</code> to write to.
+     * @throws Exception
+     */
+    @Override
+    public void serialize(NodeList content, OutputStream os) throws Exception {
+        for (int i = 0; i < content.getLength(); i++) {
+            canon.canonicalizeSubtree(content.item(i), os);
+        }
+    }
+
     protected static byte[] createContext(byte[] source, Node ctx) throws XMLEncryptionException {
         // Create the context to parse the document against
-        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream();
-            OutputStreamWriter outputStreamWriter = new OutputStreamWriter(byteArrayOutputStream, StandardCharsets.UTF_8)) {
-            outputStreamWriter.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?><dummy");
-
-            // Run through each node up to the document node and find any xmlns: nodes
-            Map<String, String> storedNamespaces = new HashMap<>();
-            Node wk = ctx;
-            while (wk != null) {
-                NamedNodeMap atts = wk.getAttributes();
-                if (atts != null) {
-                    for (int i = 0; i < atts.getLength(); ++i) {    //NOPMD
-                        Node att = atts.item(i);
-                        String nodeName = att.getNodeName();
-                        if (("xmlns".equals(nodeName) || nodeName.startsWith("xmlns:"))
-                                && !storedNamespaces.containsKey(att.getNodeName())) {
-                            outputStreamWriter.write(" ");
-                            outputStreamWriter.write(nodeName);
-                            outputStreamWriter.write("=\"");
-                            outputStreamWriter.write(att.getNodeValue());
-                            outputStreamWriter.write("\"");
-                            storedNamespaces.put(nodeName, att.getNodeValue());
-                        }
-                    }
-                }
-                wk = wk.getParentNode();
-            }
-            outputStreamWriter.write(">");
-            outputStreamWriter.flush();
+        try (ByteArrayOutputStream byteArrayOutputStream = new ByteArrayOutputStream()) {
+            byteArrayOutputStream.write(createContextStart(ctx));
             byteArrayOutputStream.write(source);
-
-            outputStreamWriter.write("</dummy>");
-            outputStreamWriter.close();
+            byteArrayOutputStream.write(CONTEXT_END);
 
             return byteArrayOutputStream.toByteArray();
         } catch (IOException e) {
@@ -124,4 +131,45 @@ public abstract class AbstractSerializer implements Serializer {
         }
     }
 
+    /**
+     * Wraps a stream of serialized nodes in the context to parse them against, without
+     * copying them.
+     *
+     * @param source the serialized nodes
+     * @param ctx the node the parsed nodes are to be inserted into
+     * @return the stream of the serialized nodes in the context
+     */
+    protected static InputStream createContext(InputStream source, Node ctx) {
+        return new SequenceInputStream(
+            Collections.enumeration(Arrays.asList(
+                new ByteArrayInputStream(createContextStart(ctx)), source, new ByteArrayInputStream(CONTEXT_END)
+            ))
+        );
+    }
+
+    private static byte[] createContextStart(Node ctx) {
+        StringBuilder sb = new StringBuilder("<?xml version=\"1.0\" encoding=\"UTF-8\"?><dummy");
+
+        // Run through each node up to the document node and find any xmlns: nodes
+        Map<String, String> storedNamespaces = new HashMap<>();
+        Node wk = ctx;
+        while (wk != null) {
+            NamedNodeMap atts = wk.getAttributes();
+            if (atts != null) {
+                for (int i = 0; i < atts.getLength(); ++i) {    //NOPMD
+                    Node att = atts.item(i);
+                    String nodeName = att.getNodeName();
+                    if (("xmlns".equals(nodeName) || nodeName.startsWith("xmlns:"))
+                            && !storedNamespaces.containsKey(att.getNodeName())) {
+                        sb.append(' ').append(nodeName).append("=\"").append(att.getNodeValue()).append('"');
+                        storedNamespaces.put(nodeName, att.getNodeValue());
+                    }
+                }
+            }
+            wk = wk.getParentNode();
+        }
+        sb.append('>');
+        return sb.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
 }
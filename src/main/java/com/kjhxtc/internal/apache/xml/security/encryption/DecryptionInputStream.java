@@ -0,0 +1,271 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.encryption;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.util.Arrays;
+
+import javax.crypto.Cipher;
+
+import com.kjhxtc.internal.apache.xml.security.utils.Base64DecodingWriter;
+
+/**
+ * An InputStream of the octets decrypted from the base64 text of a CipherValue, or from the
+ * octets of a dereferenced CipherReference. The source is decoded and decrypted a chunk at a
+ * time as the stream is read, so that neither the encrypted nor the decrypted octets are held
+ * in full.
+ * <p></p>
+ * The first octets of the source are the IV, with which the cipher is initialised. With an
+ * AEAD cipher such as AES-GCM nothing is returned until the authentication tag has been
+ * verified: the cipher text is collected and decrypted in one go at the end, as some providers
+ * hand out unauthenticated plaintext on each update, and the others buffer it anyway. Errors
+ * of the cipher are thrown as an IOException with the GeneralSecurityException as its cause.
+ */
+final class DecryptionInputStream extends InputStream {
+
+    private static final int CHUNK_SIZE = 4096;
+
+    private final Cipher cipher;
+    private final Key key;
+    private final String algorithm;
+    private final byte[] iv;
+    private int ivPos;
+    private final boolean authenticated;
+    /** The cipher text collected for an AEAD cipher */
+    private byte[] cipherText;
+    private int cipherTextLength;
+
+    /** The CipherValue text, or null */
+    private final String text;
+    /** The dereferenced octets when there is no text */
+    private final byte[] octets;
+    private int sourcePos;
+    private final Base64DecodingWriter decoder;
+    private final char[] chars;
+
+    private byte[] buffer = new byte[CHUNK_SIZE * 2];
+    private int pos;
+    private int limit;
+    private boolean finished;
+
+    /**
+     * @param cipher the cipher, not yet initialised
+     * @param key the decryption key
+     * @param algorithm the encryption algorithm URI, which determines the parameters
+     * @param ivLength the length in octets of the IV
+     * @param text the base64 CipherValue text, or null
+     * @param octets the octets to decrypt if there is no text
+     */
+    DecryptionInputStream(
+        Cipher cipher, Key key, String algorithm, int ivLength,
+        String text, byte[] octets
+    ) throws GeneralSecurityException {
+        this.cipher = cipher;
+        this.key = key;
+        this.algorithm = algorithm;
+        this.iv = new byte[ivLength];
+        this.authenticated = XMLCipherUtil.isAuthenticatedEncryption(algorithm);
+        this.text = text;
+        this.octets = octets;
+        if (authenticated) {
+            cipherText = new byte[text != null ? text.length() / 4 * 3 : octets.length];
+        }
+        if (text != null) {
+            chars = new char[CHUNK_SIZE];
+            decoder = new Base64DecodingWriter(new OutputStream() {
+                @Override
+                public void write(int b) throws IOException {
+                    write(new byte[] {(byte) b}, 0, 1);
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) throws IOException {
+                    decrypt(b, off, len);
+                }
+            }, CHUNK_SIZE);
+        } else {
+            chars = null;
+            decoder = null;
+        }
+        if (ivLength == 0) {
+            init();
+        }
+    }
+
+    private void init() throws GeneralSecurityException {
+        cipher.init(Cipher.DECRYPT_MODE, key, XMLCipherUtil.constructBlockCipherParameters(algorithm, iv));
+    }
+
+    private void decrypt(byte[] b, int off, int len) throws IOException {
+        try {
+            if (ivPos < iv.length) {
+                int n = Math.min(len, iv.length - ivPos);
+                System.arraycopy(b, off, iv, ivPos, n);
+                ivPos += n;
+                off += n;
+                len -= n;
+                if (ivPos == iv.length) {
+                    init();
+                }
+            }
+            if (len == 0) {
+                return;
+            }
+            if (authenticated) {
+                if (cipherText.length - cipherTextLength < len) {
+                    cipherText = Arrays.copyOf(cipherText, Math.max(cipherText.length * 2, cipherTextLength + len));
+                }
+                System.arraycopy(b, off, cipherText, cipherTextLength, len);
+                cipherTextLength += len;
+            } else {
+                ensureCapacity(cipher.getOutputSize(len));
+                limit += cipher.update(b, off, len, buffer, limit);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        }
+    }
+
+    private void append(byte[] b) {
+        if (b == null || b.length == 0) {
+            return;
+        } else if (pos == limit && b.length >= buffer.length) {
+            // typically the whole plaintext of an AEAD cipher
+            buffer = b;
+            pos = 0;
+            limit = b.length;
+            return;
+        }
+        ensureCapacity(b.length);
+        System.arraycopy(b, 0, buffer, limit, b.length);
+        limit += b.length;
+    }
+
+    private void ensureCapacity(int length) {
+        if (buffer.length - limit < length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, limit + length));
+        }
+    }
+
+    /**
+     * Decrypts the next chunk of the source, or finishes the decryption at its end.
+     */
+    private void fill() throws IOException {
+        if (text != null) {
+            int n = Math.min(CHUNK_SIZE, text.length() - sourcePos);
+            if (n > 0) {
+                text.getChars(sourcePos, sourcePos + n, chars, 0);
+                sourcePos += n;
+                decoder.write(chars, 0, n);
+                return;
+            }
+            decoder.close();
+        } else {
+            int n = Math.min(CHUNK_SIZE, octets.length - sourcePos);
+            if (n > 0) {
+                decrypt(octets, sourcePos, n);
+                sourcePos += n;
+                return;
+            }
+        }
+        if (ivPos < iv.length) {
+            throw new IOException(new XMLEncryptionException("empty", "The cipher text is shorter than the IV"));
+        }
+        try {
+            if (authenticated) {
+                byte[] plainText = cipher.doFinal(cipherText, 0, cipherTextLength);
+                cipherText = null;
+                append(plainText);
+            } else {
+                ensureCapacity(cipher.getOutputSize(0));
+                limit += cipher.doFinal(buffer, limit);
+            }
+        } catch (GeneralSecurityException e) {
+            throw new IOException(e);
+        } finally {
+            finished = true;
+        }
+    }
+
+    /**
+     * @return whether there are decrypted octets to read
+     */
+    private boolean available0() throws IOException {
+        while (pos == limit || authenticated && !finished) {
+            if (finished) {
+                return false;
+            }
+            if (pos == limit) {
+                pos = 0;
+                limit = 0;
+            }
+            fill();
+        }
+        return true;
+    }
+
+    /**
+     * Decrypts the rest of the source in one go.
+     *
+     * @return the decrypted octets which have not been read yet
+     */
+    byte[] readRemaining() throws IOException {
+        while (!finished) {
+            fill();
+        }
+        byte[] remaining = pos == 0 && limit == buffer.length ? buffer : Arrays.copyOfRange(buffer, pos, limit);
+        close();
+        return remaining;
+    }
+
+    @Override
+    public int read() throws IOException {
+        return available0() ? buffer[pos++] & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!available0()) {
+            return -1;
+        }
+        int n = Math.min(len, limit - pos);
+        System.arraycopy(buffer, pos, b, off, n);
+        pos += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return authenticated && !finished ? 0 : limit - pos;
+    }
+
+    @Override
+    public void close() {
+        finished = true;
+        pos = limit;
+        cipherText = null;
+    }
+}
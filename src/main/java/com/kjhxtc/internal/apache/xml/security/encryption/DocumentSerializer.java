@@ -22,9 +22,15 @@ import java.io.ByteArrayInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
 import com.kjhxtc.internal.apache.xml.security.c14n.Canonicalizer;
 import com.kjhxtc.internal.apache.xml.security.c14n.InvalidCanonicalizerException;
 import com.kjhxtc.internal.apache.xml.security.parser.XMLParserException;
+import com.kjhxtc.internal.apache.xml.security.utils.Constants;
 import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
 import org.w3c.dom.Document;
 import org.w3c.dom.DocumentFragment;
@@ -36,6 +42,17 @@ import org.w3c.dom.Node;
  */
 public class DocumentSerializer extends AbstractSerializer {
 
+    private static final XMLInputFactory XML_INPUT_FACTORY = createXMLInputFactory(false);
+
+    private static final XMLInputFactory SECURE_XML_INPUT_FACTORY = createXMLInputFactory(true);
+
+    /**
+     * The entity expansion and attribute limits the JDK enforces under secure processing, which
+     * the DOM path always turns on.
+     */
+    private static final int ENTITY_EXPANSION_LIMIT = 64000;
+    private static final int ELEMENT_ATTRIBUTE_LIMIT = 10000;
+
     public DocumentSerializer(boolean secureValidation) throws InvalidCanonicalizerException {
         this(Canonicalizer.ALGO_ID_C14N_PHYSICAL, secureValidation);
     }
@@ -58,6 +75,156 @@ public class DocumentSerializer extends AbstractSerializer {
         }
     }
 
+    /**
+     * Parses the serialized nodes as they are read from the stream with a StAX parser, and
+     * builds them straight into a fragment of the document of the context node, rather than
+     * parsing them into a new document and importing them. The parser is configured with the
+     * same entity and attribute limits as the DOM parser when secure validation is enabled.
+     *
+     * @param source
+     * @param ctx
+     * @return the Node resulting from the parse of the source
+     * @throws XMLEncryptionException
+     */
+    @Override
+    public Node deserialize(InputStream source, Node ctx) throws XMLEncryptionException, IOException {
+        Document contextDocument = null;
+        if (Node.DOCUMENT_NODE == ctx.getNodeType()) {
+            contextDocument = (Document)ctx;
+        } else {
+            contextDocument = ctx.getOwnerDocument();
+        }
+
+        XMLStreamReader reader = null;
+        try {
+            XMLInputFactory xmlInputFactory = secureValidation ? SECURE_XML_INPUT_FACTORY : XML_INPUT_FACTORY;
+            reader = xmlInputFactory.createXMLStreamReader(createContext(source, ctx));
+            // Skip to the dummy element
+            reader.nextTag();
+            return buildFragment(reader, contextDocument);
+        } catch (XMLStreamException e) {
+            if (e.getCause() instanceof IOException) {
+                // e.g. a failure of the decryption
+                throw (IOException) e.getCause();
+            }
+            throw new XMLEncryptionException(e);
+        } finally {
+            if (reader != null) {
+                try {
+                    reader.close();
+                } catch (XMLStreamException e) { //NOPMD
+                    //ignore, the fragment is complete or an error is already reported
+                }
+            }
+        }
+    }
+
+    /**
+     * Builds the content of the current element of the reader into a fragment.
+     */
+    private static DocumentFragment buildFragment(XMLStreamReader reader, Document document)
+        throws XMLStreamException, XMLEncryptionException {
+        DocumentFragment result = document.createDocumentFragment();
+        Node parent = result;
+        StringBuilder text = new StringBuilder();
+        while (true) {
+            int eventType = reader.next();
+            if (text.length() > 0 && eventType != XMLStreamConstants.CHARACTERS
+                && eventType != XMLStreamConstants.SPACE) {
+                // a run of text may be reported as several events
+                parent.appendChild(document.createTextNode(text.toString()));
+                text.setLength(0);
+            }
+            switch (eventType) {
+            case XMLStreamConstants.START_ELEMENT:
+                Element element = document.createElementNS(
+                    emptyToNull(reader.getNamespaceURI()), qualifiedName(reader.getPrefix(), reader.getLocalName())
+                );
+                for (int i = 0; i < reader.getNamespaceCount(); i++) {
+                    String prefix = reader.getNamespacePrefix(i);
+                    String uri = reader.getNamespaceURI(i);
+                    element.setAttributeNS(
+                        Constants.NamespaceSpecNS,
+                        prefix == null || prefix.isEmpty() ? "xmlns" : "xmlns:" + prefix,
+                        uri == null ? "" : uri
+                    );
+                }
+                for (int i = 0; i < reader.getAttributeCount(); i++) {
+                    element.setAttributeNS(
+                        emptyToNull(reader.getAttributeNamespace(i)),
+                        qualifiedName(reader.getAttributePrefix(i), reader.getAttributeLocalName(i)),
+                        reader.getAttributeValue(i)
+                    );
+                }
+                parent.appendChild(element);
+                parent = element;
+                break;
+            case XMLStreamConstants.END_ELEMENT:
+                if (parent == result) {
+                    // the end of the dummy element
+                    return result;
+                }
+                parent = parent.getParentNode();
+                break;
+            case XMLStreamConstants.CHARACTERS:
+            case XMLStreamConstants.SPACE:
+                text.append(reader.getTextCharacters(), reader.getTextStart(), reader.getTextLength());
+                break;
+            case XMLStreamConstants.CDATA:
+                parent.appendChild(document.createCDATASection(reader.getText()));
+                break;
+            case XMLStreamConstants.COMMENT:
+                parent.appendChild(document.createComment(reader.getText()));
+                break;
+            case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                parent.appendChild(
+                    document.createProcessingInstruction(reader.getPITarget(), reader.getPIData())
+                );
+                break;
+            default:
+                // entity references and DTDs can't be resolved in a fragment
+                throw new XMLEncryptionException("empty", "Unexpected XML event in decrypted content: " + eventType);
+            }
+        }
+    }
+
+    private static String emptyToNull(String s) {
+        return s == null || s.isEmpty() ? null : s;
+    }
+
+    private static String qualifiedName(String prefix, String localName) {
+        return prefix == null || prefix.isEmpty() ? localName : prefix + ":" + localName;
+    }
+
+    private static XMLInputFactory createXMLInputFactory(boolean secureValidation) {
+        XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+        xmlInputFactory.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+        xmlInputFactory.setProperty(XMLInputFactory.IS_COALESCING, false);
+        try {
+            // the JDK parser reports CDATA sections as characters otherwise
+            xmlInputFactory.setProperty("http://java.sun.com/xml/stream/properties/report-cdata-event", true);
+        } catch (IllegalArgumentException e) { //NOPMD
+            //not supported, e.g. Woodstox which reports them anyway
+        }
+        if (secureValidation) {
+            // the JDK parser
+            setLimit(xmlInputFactory, "http://www.oracle.com/xml/jaxp/properties/entityExpansionLimit", ENTITY_EXPANSION_LIMIT);
+            setLimit(xmlInputFactory, "http://www.oracle.com/xml/jaxp/properties/elementAttributeLimit", ELEMENT_ATTRIBUTE_LIMIT);
+            // Woodstox, whose default attribute limit is already lower
+            setLimit(xmlInputFactory, "com.ctc.wstx.maxEntityCount", ENTITY_EXPANSION_LIMIT);
+        }
+        return xmlInputFactory;
+    }
+
+    private static void setLimit(XMLInputFactory xmlInputFactory, String property, int limit) {
+        try {
+            xmlInputFactory.setProperty(property, limit);
+        } catch (IllegalArgumentException e) { //NOPMD
+            //the property belongs to another parser implementation
+        }
+    }
+
     /**
      * @param ctx
      * @param inputStream
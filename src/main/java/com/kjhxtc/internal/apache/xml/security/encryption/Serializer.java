@@ -19,7 +19,10 @@
 package com.kjhxtc.internal.apache.xml.security.encryption;
 
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
 
+import com.kjhxtc.internal.apache.xml.security.utils.UnsyncByteArrayOutputStream;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
@@ -51,6 +54,30 @@ public interface Serializer {
      */
     byte[] serializeToByteArray(NodeList content) throws Exception;
 
+    /**
+     * Writes the serialized form of the specified <code>Element</code> to an
+     * <code>OutputStream</code>.
+     *
+     * @param element the <code>Element</code> to serialize.
+     * @param os the <code>OutputStream</code> to write to.
+     * @throws Exception
+     */
+    default void serialize(Element element, OutputStream os) throws Exception {
+        os.write(serializeToByteArray(element));
+    }
+
+    /**
+     * Writes the serialized form of the specified <code>NodeList</code> to an
+     * <code>OutputStream</code>.
+     *
+     * @param content the <code>NodeList</code> to serialize.
+     * @param os the <code>OutputStream</code> to write to.
+     * @throws Exception
+     */
+    default void serialize(NodeList content, OutputStream os) throws Exception {
+        os.write(serializeToByteArray(content));
+    }
+
     /**
      * @param source
      * @param ctx
@@ -58,4 +85,24 @@ public interface Serializer {
      * @throws XMLEncryptionException
      */
     Node deserialize(byte[] source, Node ctx) throws XMLEncryptionException, IOException;
+
+    /**
+     * Parses the serialized nodes read from a stream, such as the plaintext of an
+     * <code>EncryptedData</code> as it is decrypted. The caller remains responsible
+     * for closing the stream.
+     *
+     * @param source the stream to read the serialized nodes from
+     * @param ctx the node the parsed nodes are to be inserted into
+     * @return the Node resulting from the parse of the source
+     * @throws XMLEncryptionException
+     */
+    default Node deserialize(InputStream source, Node ctx) throws XMLEncryptionException, IOException {
+        UnsyncByteArrayOutputStream bytes = new UnsyncByteArrayOutputStream(); //NOPMD
+        byte[] buf = new byte[8192];
+        int numBytes;
+        while ((numBytes = source.read(buf)) != -1) {
+            bytes.write(buf, 0, numBytes);
+        }
+        return deserialize(bytes.toByteArray(), ctx);
+    }
 }
@@ -77,6 +77,20 @@ public class TransformSerializer extends AbstractSerializer {
         }
     }
 
+    /**
+     * Parses the serialized nodes as they are read from the stream, into a fragment of the
+     * document of the context node.
+     *
+     * @param source
+     * @param ctx
+     * @return the Node resulting from the parse of the source
+     * @throws XMLEncryptionException
+     */
+    @Override
+    public Node deserialize(InputStream source, Node ctx) throws XMLEncryptionException, IOException {
+        return deserialize(ctx, new StreamSource(createContext(source, ctx)));
+    }
+
     /**
      * @param ctx
      * @param source
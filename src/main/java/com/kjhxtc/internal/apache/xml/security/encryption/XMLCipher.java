@@ -18,13 +18,13 @@
  */
 package com.kjhxtc.internal.apache.xml.security.encryption;
 
-import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.UnsupportedEncodingException;
+import java.io.OutputStream;
 import java.net.URI;
 import java.net.URISyntaxException;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Key;
@@ -46,6 +46,7 @@ import java.util.Set;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
+import javax.crypto.CipherOutputStream;
 import javax.crypto.IllegalBlockSizeException;
 import javax.crypto.NoSuchPaddingException;
 import javax.crypto.spec.OAEPParameterSpec;
@@ -65,6 +66,7 @@ import com.kjhxtc.internal.apache.xml.security.signature.XMLSignatureException;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.XMLSecurityConstants;
 import com.kjhxtc.internal.apache.xml.security.transforms.InvalidTransformException;
 import com.kjhxtc.internal.apache.xml.security.transforms.TransformationException;
+import com.kjhxtc.internal.apache.xml.security.utils.Base64EncodingOutputStream;
 import com.kjhxtc.internal.apache.xml.security.utils.Constants;
 import com.kjhxtc.internal.apache.xml.security.utils.ElementProxy;
 import com.kjhxtc.internal.apache.xml.security.utils.EncryptionConstants;
@@ -1101,28 +1103,17 @@ public class XMLCipher {
             throw new XMLEncryptionException("empty", "The element can't be serialized as it has no parent");
         }
 
-        byte[] serializedOctets = null;
-        if (serializedData == null) {
-            if (EncryptionConstants.TYPE_CONTENT.equals(type)) {
-                if (element == null) {
-                    throw new XMLEncryptionException("empty", "Cannot encrypt null element");
-                }
-                NodeList children = element.getChildNodes();
-                if (null != children) {
-                    serializedOctets = serializer.serializeToByteArray(children);
-                } else {
-                    throw new XMLEncryptionException("empty", "Element has no content.");
-                }
-            } else {
-                serializedOctets = serializer.serializeToByteArray(element);
+        NodeList children = null;
+        if (serializedData == null && EncryptionConstants.TYPE_CONTENT.equals(type)) {
+            if (element == null) {
+                throw new XMLEncryptionException("empty", "Cannot encrypt null element");
             }
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("Serialized octets:\n" + new String(serializedOctets, StandardCharsets.UTF_8));
+            children = element.getChildNodes();
+            if (null == children) {
+                throw new XMLEncryptionException("empty", "Element has no content.");
             }
         }
 
-        byte[] encryptedBytes = null;
-
         // Now create the working cipher if none was created already
         Cipher c;
         if (contextCipher == null) {
@@ -1141,52 +1132,43 @@ public class XMLCipher {
             throw new XMLEncryptionException(ike);
         }
 
-        try {
+        // Get IV from Cipher Object. If this is null (see BouncyCastle issue BJA-473) then use
+        // the original IV that was generated
+        if (c.getIV() != null) {
+            iv = c.getIV();
+        }
+
+        // The plaintext is serialized straight into the cipher, and the IV and the cipher text
+        // are base64 encoded as they come out of it, so the only full copy is the CipherValue
+        StringBuilder base64EncodedEncryptedOctets = new StringBuilder();
+        try (OutputStream cipherOutputStream = newEncryptingOutputStream(c, iv, base64EncodedEncryptedOctets)) {
             if (serializedData != null) {
                 int numBytes;
                 byte[] buf = new byte[8192];
-                try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-                    while ((numBytes = serializedData.read(buf)) != -1) {
-                        byte[] data = c.update(buf, 0, numBytes);
-                        baos.write(data);
-                    }
-                    baos.write(c.doFinal());
-                    encryptedBytes = baos.toByteArray();
+                while ((numBytes = serializedData.read(buf)) != -1) {
+                    cipherOutputStream.write(buf, 0, numBytes);
                 }
+            } else if (children != null) {
+                serializer.serialize(children, cipherOutputStream);
             } else {
-                encryptedBytes = c.doFinal(serializedOctets);
-                if (LOG.isDebugEnabled()) {
-                    LOG.debug("Expected cipher.outputSize = " +
-                        Integer.toString(c.getOutputSize(serializedOctets.length)));
-                }
-            }
-            if (LOG.isDebugEnabled()) {
-                LOG.debug("Actual cipher.outputSize = "
-                             + Integer.toString(encryptedBytes.length));
+                serializer.serialize(element, cipherOutputStream);
             }
-        } catch (IllegalStateException | IllegalBlockSizeException
-                | BadPaddingException | UnsupportedEncodingException e) {
+        } catch (IllegalStateException e) {
             throw new XMLEncryptionException(e);
+        } catch (IOException e) {
+            if (e.getCause() instanceof GeneralSecurityException) {
+                throw new XMLEncryptionException((GeneralSecurityException) e.getCause());
+            }
+            throw e;
         }
 
-        // Get IV from Cipher Object. If this is null (see BouncyCastle issue BJA-473) then use
-        // the original IV that was generated
-        if (c.getIV() != null) {
-            iv = c.getIV();
-        }
-        // Now build up to a properly XML Encryption encoded octet stream
-        byte[] finalEncryptedBytes = new byte[iv.length + encryptedBytes.length];
-        System.arraycopy(iv, 0, finalEncryptedBytes, 0, iv.length);
-        System.arraycopy(encryptedBytes, 0, finalEncryptedBytes, iv.length, encryptedBytes.length);
-        String base64EncodedEncryptedOctets = XMLUtils.encodeToString(finalEncryptedBytes);
-
         LOG.debug("Encrypted octets:\n{}", base64EncodedEncryptedOctets);
         LOG.debug("Encrypted octets length = {}", base64EncodedEncryptedOctets.length());
 
         try {
             CipherData cd = ed.getCipherData();
             CipherValue cv = cd.getCipherValue();
-            cv.setValue(base64EncodedEncryptedOctets);
+            cv.setValue(base64EncodedEncryptedOctets.toString());
 
             if (type != null) {
                 ed.setType(new URI(type).toString());
@@ -1201,6 +1183,46 @@ public class XMLCipher {
         return ed;
     }
 
+    /**
+     * Returns an OutputStream which encrypts the octets written to it with an initialised
+     * cipher, and appends the IV and the cipher text, base64 encoded, to a StringBuilder.
+     * The cipher is finished when the stream is closed. Errors of the cipher are thrown as
+     * an IOException with the GeneralSecurityException as its cause.
+     */
+    private static OutputStream newEncryptingOutputStream(Cipher c, byte[] iv, StringBuilder base64)
+        throws IOException {
+        OutputStream base64OutputStream = new Base64EncodingOutputStream( //NOPMD
+            new OutputStream() {
+                @Override
+                public void write(int b) {
+                    base64.append((char) (b & 0xff));
+                }
+
+                @Override
+                public void write(byte[] b, int off, int len) {
+                    for (int i = off; i < off + len; i++) {
+                        base64.append((char) (b[i] & 0xff));
+                    }
+                }
+            },
+            XMLUtils.isIgnoreLineBreaks() ? 0 : Base64EncodingOutputStream.MIME_LINE_LENGTH
+        );
+        base64OutputStream.write(iv);
+
+        return new CipherOutputStream(base64OutputStream, c) {
+            //finish the cipher here, as CipherOutputStream ignores its errors on some JDKs
+            @Override
+            public void close() throws IOException {
+                super.flush();
+                try (OutputStream os = base64OutputStream) {
+                    os.write(c.doFinal());
+                } catch (IllegalBlockSizeException | BadPaddingException e) {
+                    throw new IOException(e);
+                }
+            }
+        };
+    }
+
     /**
      * Build an <code>AlgorithmParameterSpec</code> instance used to initialize a <code>Cipher</code> instance
      * for block cipher encryption and decryption.
@@ -1670,15 +1692,10 @@ public class XMLCipher {
             throw new XMLEncryptionException("empty", "XMLCipher unexpectedly not in DECRYPT_MODE...");
         }
 
-        byte[] octets = decryptToByteArray(element);
-
-        if (LOG.isDebugEnabled()) {
-            LOG.debug("Decrypted octets:\n" + new String(octets));
-        }
-
         Node sourceParent = element.getParentNode();
-        try {
-            Node decryptedNode = serializer.deserialize(octets, sourceParent);
+        // The plaintext is parsed as it is decrypted
+        try (InputStream decryptedStream = decryptToInputStream(element)) {
+            Node decryptedNode = serializer.deserialize(decryptedStream, sourceParent);
 
             // The de-serialiser returns a node whose children we need to take on.
             if (sourceParent != null && Node.DOCUMENT_NODE == sourceParent.getNodeType()) {
@@ -1689,7 +1706,17 @@ public class XMLCipher {
                 sourceParent.replaceChild(decryptedNode, element);
             }
         } catch (IOException ex) {
-            throw new XMLEncryptionException(ex);
+            throw toXMLEncryptionException(ex);
+        } catch (XMLEncryptionException ex) {
+            // a failure of the decryption may be reported through the parser
+            Throwable cause = ex.getCause();
+            while (cause != null && !(cause instanceof GeneralSecurityException)) {
+                cause = cause.getCause();
+            }
+            if (cause != null) {
+                throw new XMLEncryptionException((GeneralSecurityException) cause);
+            }
+            throw ex;
         }
 
         return contextDocument;
@@ -1729,6 +1756,34 @@ public class XMLCipher {
     public byte[] decryptToByteArray(Element element) throws XMLEncryptionException {
         LOG.debug("Decrypting to ByteArray...");
 
+        try (DecryptionInputStream decryptedStream = newDecryptionInputStream(element)) {
+            return decryptedStream.readRemaining();
+        } catch (IOException e) {
+            throw toXMLEncryptionException(e);
+        }
+    }
+
+    /**
+     * Decrypt an EncryptedData element to an InputStream.
+     *
+     * The cipher text is decoded and decrypted a block at a time as the stream is
+     * read, so that memory use does not grow with the size of the plaintext. With
+     * AES-GCM the plaintext is only returned once the authentication tag has been
+     * verified. A failure of the decryption is thrown by the stream as an
+     * <code>IOException</code>. The stream should be closed if it is not read to
+     * the end.
+     *
+     * Does not modify the source document.
+     * @param element
+     * @return the stream of the decrypted bytes
+     * @throws XMLEncryptionException
+     */
+    public InputStream decryptToInputStream(Element element) throws XMLEncryptionException {
+        LOG.debug("Decrypting to InputStream...");
+        return newDecryptionInputStream(element);
+    }
+
+    private DecryptionInputStream newDecryptionInputStream(Element element) throws XMLEncryptionException {
         if (cipherMode != DECRYPT_MODE) {
             throw new XMLEncryptionException("empty", "XMLCipher unexpectedly not in DECRYPT_MODE...");
         }
@@ -1758,10 +1813,19 @@ public class XMLCipher {
             }
         }
 
-        // Obtain the encrypted octets
-        XMLCipherInput cipherInput = new XMLCipherInput(encryptedData);
-        cipherInput.setSecureValidation(secureValidation);
-        byte[] encryptedBytes = cipherInput.getBytes();
+        // Obtain the encrypted octets, which are decoded as the stream is read
+        // if they are in a CipherValue
+        String base64EncodedEncryptedOctets = null;
+        byte[] encryptedBytes = null;
+        CipherData cipherData = encryptedData.getCipherData();
+        if (cipherData != null && cipherData.getDataType() == CipherData.VALUE_TYPE
+            && cipherData.getCipherValue() != null) {
+            base64EncodedEncryptedOctets = cipherData.getCipherValue().getValue();
+        } else {
+            XMLCipherInput cipherInput = new XMLCipherInput(encryptedData);
+            cipherInput.setSecureValidation(secureValidation);
+            encryptedBytes = cipherInput.getBytes();
+        }
 
         // Now create the working cipher
         String jceAlgorithm =
@@ -1780,32 +1844,32 @@ public class XMLCipher {
         }
 
         int ivLen = JCEMapper.getIVLengthFromURI(encMethodAlgorithm) / 8;
-        byte[] ivBytes = new byte[ivLen];
-
-        // You may be able to pass the entire piece in to IvParameterSpec
-        // and it will only take the first x bytes, but no way to be certain
-        // that this will work for every JCE provider, so lets copy the
-        // necessary bytes into a dedicated array.
-
-        System.arraycopy(encryptedBytes, 0, ivBytes, 0, ivLen);
 
         String blockCipherAlg = algorithm;
         if (blockCipherAlg == null) {
             blockCipherAlg = encMethodAlgorithm;
         }
-        AlgorithmParameterSpec paramSpec = constructBlockCipherParameters(blockCipherAlg, ivBytes);
 
         try {
-            c.init(cipherMode, key, paramSpec);
-        } catch (InvalidKeyException | InvalidAlgorithmParameterException e) {
+            return new DecryptionInputStream(
+                c, key, blockCipherAlg, ivLen, base64EncodedEncryptedOctets, encryptedBytes
+            );
+        } catch (GeneralSecurityException e) {
             throw new XMLEncryptionException(e);
         }
+    }
 
-        try {
-            return c.doFinal(encryptedBytes, ivLen, encryptedBytes.length - ivLen);
-        } catch (IllegalBlockSizeException | BadPaddingException e) {
-            throw new XMLEncryptionException(e);
+    /**
+     * Unwraps the exception of the cipher or the XMLEncryptionException which a
+     * DecryptionInputStream threw as an IOException.
+     */
+    private static XMLEncryptionException toXMLEncryptionException(IOException e) {
+        if (e.getCause() instanceof XMLEncryptionException) {
+            return (XMLEncryptionException) e.getCause();
+        } else if (e.getCause() instanceof GeneralSecurityException) {
+            return new XMLEncryptionException((GeneralSecurityException) e.getCause());
         }
+        return new XMLEncryptionException(e);
     }
 
     /*
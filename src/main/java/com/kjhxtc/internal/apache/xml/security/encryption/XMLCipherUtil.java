@@ -46,9 +46,7 @@ public final class XMLCipherUtil {
      *         specified algorithm
      */
     public static AlgorithmParameterSpec constructBlockCipherParameters(String algorithm, byte[] iv) {
-        if (EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES128_GCM.equals(algorithm)
-                || EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES192_GCM.equals(algorithm)
-                || EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES256_GCM.equals(algorithm)) {
+        if (isAuthenticatedEncryption(algorithm)) {
             return constructBlockCipherParametersForGCMAlgorithm(algorithm, iv);
         } else {
             LOG.debug("Saw non-AES-GCM mode block cipher, returning IvParameterSpec: {}", algorithm);
@@ -56,6 +54,17 @@ public final class XMLCipherUtil {
         }
     }
 
+    /**
+     * @param algorithm the XML encryption algorithm URI
+     * @return true if the algorithm is an authenticated encryption algorithm, whose cipher
+     *         verifies an authentication tag at the end of the cipher text
+     */
+    public static boolean isAuthenticatedEncryption(String algorithm) {
+        return EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES128_GCM.equals(algorithm)
+            || EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES192_GCM.equals(algorithm)
+            || EncryptionConstants.ALGO_ID_BLOCKCIPHER_AES256_GCM.equals(algorithm);
+    }
+
     public static AlgorithmParameterSpec constructBlockCipherParameters(boolean gcmAlgorithm, byte[] iv) {
         if (gcmAlgorithm) {
             return constructBlockCipherParametersForGCMAlgorithm("AES/GCM/NoPadding", iv);
@@ -117,6 +117,8 @@ public class KeyInfo extends SignatureElementProxy {
 
     private boolean secureValidation = true;
 
+    private KeyResolutionCache keyResolutionCache;
+
     /**
      * Constructor KeyInfo
      * @param doc
@@ -156,6 +158,16 @@ public class KeyInfo extends SignatureElementProxy {
         this.secureValidation = secureValidation;
     }
 
+    /**
+     * Set the cache of the public keys and certificates resolved from KeyInfo elements.
+     * The default is null, which resolves them every time.
+     *
+     * @param keyResolutionCache the cache to use, or null
+     */
+    public void setKeyResolutionCache(KeyResolutionCache keyResolutionCache) {
+        this.keyResolutionCache = keyResolutionCache;
+    }
+
     /**
      * Sets the <code>Id</code> attribute
      *
@@ -819,6 +831,26 @@ public class KeyInfo extends SignatureElementProxy {
      * @throws KeyResolverException
      */
     public PublicKey getPublicKey() throws KeyResolverException {
+        KeyResolutionCache cache = keyResolutionCache;
+        if (cache == null) {
+            return resolvePublicKey();
+        }
+        KeyResolutionCache.CacheKey cacheKey =
+            cache.getCacheKey(getElement(), internalKeyResolvers, storageResolvers, secureValidation);
+        if (cacheKey == null) {
+            return resolvePublicKey();
+        }
+        PublicKey pk = cache.getPublicKey(cacheKey);
+        if (pk == null) {
+            pk = resolvePublicKey();
+            if (pk != null) {
+                cache.putPublicKey(cacheKey, pk);
+            }
+        }
+        return pk;
+    }
+
+    private PublicKey resolvePublicKey() throws KeyResolverException {
         PublicKey pk = this.getPublicKeyFromInternalResolvers();
 
         if (pk != null) {
@@ -909,6 +941,26 @@ public class KeyInfo extends SignatureElementProxy {
      * @throws KeyResolverException
      */
     public X509Certificate getX509Certificate() throws KeyResolverException {
+        KeyResolutionCache cache = keyResolutionCache;
+        if (cache == null) {
+            return resolveX509Certificate();
+        }
+        KeyResolutionCache.CacheKey cacheKey =
+            cache.getCacheKey(getElement(), internalKeyResolvers, storageResolvers, secureValidation);
+        if (cacheKey == null) {
+            return resolveX509Certificate();
+        }
+        X509Certificate cert = cache.getX509Certificate(cacheKey);
+        if (cert == null) {
+            cert = resolveX509Certificate();
+            if (cert != null) {
+                cache.putX509Certificate(cacheKey, cert);
+            }
+        }
+        return cert;
+    }
+
+    private X509Certificate resolveX509Certificate() throws KeyResolverException {
         // First search using the individual resolvers from the user
         X509Certificate cert = this.getX509CertificateFromInternalResolvers();
 
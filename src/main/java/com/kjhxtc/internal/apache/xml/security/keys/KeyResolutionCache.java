@@ -0,0 +1,282 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.keys;
+
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.PublicKey;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import com.kjhxtc.internal.apache.xml.security.algorithms.JCEEnginePool;
+import com.kjhxtc.internal.apache.xml.security.algorithms.JCEMapper;
+import com.kjhxtc.internal.apache.xml.security.c14n.Canonicalizer;
+import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
+import com.kjhxtc.internal.apache.xml.security.keys.keyresolver.KeyResolverSpi;
+import com.kjhxtc.internal.apache.xml.security.keys.storage.StorageResolver;
+import com.kjhxtc.internal.apache.xml.security.utils.CacheStatistics;
+import com.kjhxtc.internal.apache.xml.security.utils.Constants;
+import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+/**
+ * A bounded cache of the public keys and certificates resolved from KeyInfo elements, which
+ * can be shared by many {@link KeyInfo} instances with {@link KeyInfo#setKeyResolutionCache}.
+ * <p></p>
+ * Entries are keyed by the SHA-256 digest of the exclusive canonical form of the KeyInfo
+ * element, so that KeyInfo elements with the same content share an entry whatever document
+ * they are in, together with the per-KeyInfo key resolvers, the storage resolvers and the
+ * secure validation setting of the KeyInfo. Resolvers are compared by identity, so KeyInfo
+ * instances only share entries when they are given the same resolver instances. The least recently used entry is dropped when the cache is full, and entries
+ * older than the time to live are resolved again. Only successful resolutions are cached.
+ * KeyInfo elements containing a RetrievalMethod or KeyInfoReference are never cached, as
+ * the key they point to depends on the document.
+ * <p></p>
+ * Call {@link #clear()} whenever the system-wide key resolvers, or the certificates and keys
+ * the resolvers return, change.
+ * <p></p>
+ * Instances are safe for use by several threads.
+ */
+public final class KeyResolutionCache {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(KeyResolutionCache.class);
+
+    private static final String DIGEST_ALGORITHM = "SHA-256";
+
+    private final int maximumSize;
+    private final long ttlNanos;
+    private final Map<CacheKey, Entry> entries;
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    /**
+     * @param maximumSize the maximum number of cached KeyInfo elements
+     * @param ttl the time in milliseconds a resolved key is reused, or 0 to reuse it until it
+     * is evicted
+     */
+    public KeyResolutionCache(int maximumSize, long ttl) {
+        if (maximumSize < 1) {
+            throw new IllegalArgumentException("maximumSize must be positive");
+        }
+        if (ttl < 0) {
+            throw new IllegalArgumentException("ttl must not be negative");
+        }
+        this.maximumSize = maximumSize;
+        this.ttlNanos = TimeUnit.MILLISECONDS.toNanos(ttl);
+        this.entries = new LinkedHashMap<CacheKey, Entry>(16, 0.75f, true) {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<CacheKey, Entry> eldest) {
+                if (size() > KeyResolutionCache.this.maximumSize) {
+                    statistics.eviction();
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * Drops all cached keys and certificates. The statistics are kept.
+     */
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    /**
+     * @return the number of cached KeyInfo elements
+     */
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    /**
+     * @return the maximum number of cached KeyInfo elements
+     */
+    public int getMaximumSize() {
+        return maximumSize;
+    }
+
+    /**
+     * @return the hit, miss and eviction counts of the cache
+     */
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    /**
+     * @param keyInfo a KeyInfo element
+     * @param keyResolvers the per-KeyInfo key resolvers
+     * @param storageResolvers the storage resolvers
+     * @param secureValidation whether secure validation is enabled
+     * @return the key of its cache entry, or null if it must not be cached
+     */
+    CacheKey getCacheKey(Element keyInfo, List<KeyResolverSpi> keyResolvers,
+                         List<StorageResolver> storageResolvers, boolean secureValidation) {
+        Node child = keyInfo.getFirstChild();
+        while (child != null) {
+            if (child.getNodeType() == Node.ELEMENT_NODE
+                && (XMLUtils.elementIsInSignatureSpace((Element) child, Constants._TAG_RETRIEVALMETHOD)
+                    || XMLUtils.elementIsInSignature11Space((Element) child, Constants._TAG_KEYINFOREFERENCE))) {
+                return null;
+            }
+            child = child.getNextSibling();
+        }
+
+        String providerId = JCEMapper.getProviderId();
+        MessageDigest md = null;
+        try {
+            md = JCEEnginePool.MESSAGE_DIGEST.acquire(DIGEST_ALGORITHM, providerId);
+            Canonicalizer.getInstance(Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS)
+                .canonicalizeSubtree(keyInfo, new DigestingOutputStream(md));
+            return new CacheKey(ByteBuffer.wrap(md.digest()), keyResolvers, storageResolvers, secureValidation);
+        } catch (GeneralSecurityException | XMLSecurityException ex) {
+            LOG.debug("Cannot compute the cache key of the KeyInfo: {}", ex.getMessage());
+            return null;
+        } finally {
+            if (md != null) {
+                JCEEnginePool.MESSAGE_DIGEST.release(DIGEST_ALGORITHM, providerId, md);
+            }
+        }
+    }
+
+    PublicKey getPublicKey(CacheKey cacheKey) {
+        Entry entry = get(cacheKey);
+        PublicKey publicKey = entry != null ? entry.publicKey : null;
+        count(publicKey != null);
+        return publicKey;
+    }
+
+    X509Certificate getX509Certificate(CacheKey cacheKey) {
+        Entry entry = get(cacheKey);
+        X509Certificate certificate = entry != null ? entry.certificate : null;
+        count(certificate != null);
+        return certificate;
+    }
+
+    synchronized void putPublicKey(CacheKey cacheKey, PublicKey publicKey) {
+        Entry entry = live(cacheKey);
+        entries.put(cacheKey, entry != null
+            ? new Entry(publicKey, entry.certificate, entry.created) : new Entry(publicKey, null, System.nanoTime()));
+    }
+
+    synchronized void putX509Certificate(CacheKey cacheKey, X509Certificate certificate) {
+        Entry entry = live(cacheKey);
+        entries.put(cacheKey, entry != null
+            ? new Entry(entry.publicKey, certificate, entry.created) : new Entry(null, certificate, System.nanoTime()));
+    }
+
+    private synchronized Entry get(CacheKey cacheKey) {
+        return live(cacheKey);
+    }
+
+    private Entry live(CacheKey cacheKey) {
+        Entry entry = entries.get(cacheKey);
+        if (entry != null && ttlNanos > 0 && System.nanoTime() - entry.created >= ttlNanos) {
+            entries.remove(cacheKey);
+            return null;
+        }
+        return entry;
+    }
+
+    private void count(boolean hit) {
+        if (hit) {
+            statistics.hit();
+        } else {
+            statistics.miss();
+        }
+    }
+
+    static final class CacheKey {
+        private final ByteBuffer digest;
+        private final List<KeyResolverSpi> keyResolvers;
+        private final List<StorageResolver> storageResolvers;
+        private final boolean secureValidation;
+        private final int hash;
+
+        CacheKey(ByteBuffer digest, List<KeyResolverSpi> keyResolvers,
+                 List<StorageResolver> storageResolvers, boolean secureValidation) {
+            this.digest = digest;
+            // copied, as the lists of a KeyInfo may change after the lookup
+            this.keyResolvers = new ArrayList<>(keyResolvers);
+            this.storageResolvers = new ArrayList<>(storageResolvers);
+            this.secureValidation = secureValidation;
+            this.hash = 31 * (31 * (31 * digest.hashCode() + this.keyResolvers.hashCode())
+                + this.storageResolvers.hashCode()) + Boolean.hashCode(secureValidation);
+        }
+
+        @Override
+        public int hashCode() {
+            return hash;
+        }
+
+        @Override
+        public boolean equals(Object obj) {
+            if (this == obj) {
+                return true;
+            }
+            if (!(obj instanceof CacheKey)) {
+                return false;
+            }
+            CacheKey other = (CacheKey) obj;
+            return secureValidation == other.secureValidation
+                && digest.equals(other.digest)
+                && keyResolvers.equals(other.keyResolvers)
+                && storageResolvers.equals(other.storageResolvers);
+        }
+    }
+
+    private static final class Entry {
+        private final PublicKey publicKey;
+        private final X509Certificate certificate;
+        private final long created;
+
+        Entry(PublicKey publicKey, X509Certificate certificate, long created) {
+            this.publicKey = publicKey;
+            this.certificate = certificate;
+            this.created = created;
+        }
+    }
+
+    private static final class DigestingOutputStream extends OutputStream {
+        private final MessageDigest md;
+
+        DigestingOutputStream(MessageDigest md) {
+            this.md = md;
+        }
+
+        @Override
+        public void write(int b) {
+            md.update((byte) b);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            md.update(b, off, len);
+        }
+    }
+}
@@ -0,0 +1,185 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.keys.content.x509;
+
+import java.io.ByteArrayInputStream;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.security.PublicKey;
+import java.security.cert.CertificateException;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import com.kjhxtc.internal.apache.xml.security.utils.CacheStatistics;
+
+/**
+ * A bounded, lock-free cache of parsed X.509 certificates by their encoded bytes, shared by
+ * the DOM and the StAX key handling, so that a certificate sent again and again is only
+ * parsed once.
+ * <p></p>
+ * The cache is a two-way set associative table like
+ * {@link com.kjhxtc.internal.apache.xml.security.c14n.implementations.Utf8NameCache}: an
+ * encoding may live in one of two neighbouring slots chosen by its hash code, and a new
+ * certificate evicts the older entry of its slot pair. A cached certificate is only returned
+ * for exactly the same bytes it was parsed from.
+ * <p></p>
+ * The size of the shared cache is read from the system property
+ * <code>com.kjhxtc.internal.apache.xml.security.x509.certificateCacheSize</code> (default 512)
+ * and rounded up to a power of two; a size of 0 disables caching.
+ */
+public final class X509CertificateCache {
+
+    private static final int DEFAULT_SIZE =
+        AccessController.doPrivileged(
+            (PrivilegedAction<Integer>) () -> Integer.getInteger("com.kjhxtc.internal.apache.xml.security.x509.certificateCacheSize", 512));
+
+    private static final X509CertificateCache INSTANCE = new X509CertificateCache(DEFAULT_SIZE);
+
+    private final AtomicReferenceArray<Entry> table;
+    private final int mask;
+    private final CacheStatistics statistics = new CacheStatistics();
+
+    /**
+     * @param size the maximum number of cached certificates, rounded up to a power of two
+     * (at least 2), or 0 to parse the certificates every time
+     */
+    public X509CertificateCache(int size) {
+        if (size <= 0) {
+            this.table = null;
+            this.mask = 0;
+            return;
+        }
+        int capacity = 2;
+        while (capacity < size && capacity < 1 << 30) {
+            capacity <<= 1;
+        }
+        this.table = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    /**
+     * @return the cache shared by the DOM and StAX key handling
+     */
+    public static X509CertificateCache getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * Returns the certificate encoded by the given bytes.
+     *
+     * @param encoded the encoded certificate, which is not modified or kept by this method
+     * @return the (possibly cached) certificate
+     * @throws CertificateException if the bytes cannot be parsed
+     */
+    public X509Certificate getCertificate(byte[] encoded) throws CertificateException {
+        return getEntry(encoded).certificate;
+    }
+
+    /**
+     * Returns the public key of the certificate encoded by the given bytes.
+     *
+     * @param encoded the encoded certificate, which is not modified or kept by this method
+     * @return the (possibly cached) public key of the certificate
+     * @throws CertificateException if the bytes cannot be parsed
+     */
+    public PublicKey getPublicKey(byte[] encoded) throws CertificateException {
+        return getEntry(encoded).publicKey;
+    }
+
+    private Entry getEntry(byte[] encoded) throws CertificateException {
+        if (table == null) {
+            statistics.miss();
+            return new Entry(null, 0, parse(encoded));
+        }
+        int h = Arrays.hashCode(encoded);
+        int index = (h ^ h >>> 16) & mask;
+        Entry entry = table.get(index);
+        if (entry != null && entry.matches(h, encoded)) {
+            statistics.hit();
+            return entry;
+        }
+        int second = index ^ 1;
+        Entry secondEntry = table.get(second);
+        if (secondEntry != null && secondEntry.matches(h, encoded)) {
+            statistics.hit();
+            return secondEntry;
+        }
+
+        statistics.miss();
+        Entry newEntry = new Entry(encoded.clone(), h, parse(encoded));
+        if (entry != null) {
+            if (secondEntry != null) {
+                statistics.eviction();
+            }
+            table.lazySet(second, entry);
+        }
+        table.lazySet(index, newEntry);
+        return newEntry;
+    }
+
+    private static X509Certificate parse(byte[] encoded) throws CertificateException {
+        CertificateFactory certFact = CertificateFactory.getInstance(XMLX509Certificate.JCA_CERT_ID);
+        return (X509Certificate) certFact.generateCertificate(new ByteArrayInputStream(encoded));
+    }
+
+    /**
+     * Drops all cached certificates. The statistics are kept.
+     */
+    public void clear() {
+        if (table != null) {
+            for (int i = 0; i < table.length(); i++) {
+                table.lazySet(i, null);
+            }
+        }
+    }
+
+    /**
+     * @return the maximum number of cached certificates
+     */
+    public int getCapacity() {
+        return table == null ? 0 : table.length();
+    }
+
+    /**
+     * @return the hit, miss and eviction counts of the cache
+     */
+    public CacheStatistics getStatistics() {
+        return statistics;
+    }
+
+    private static final class Entry {
+        private final byte[] encoded;
+        private final int hash;
+        private final X509Certificate certificate;
+        private final PublicKey publicKey;
+
+        Entry(byte[] encoded, int hash, X509Certificate certificate) {
+            this.encoded = encoded;
+            this.hash = hash;
+            this.certificate = certificate;
+            this.publicKey = certificate.getPublicKey();
+        }
+
+        boolean matches(int h, byte[] bytes) {
+            return hash == h && Arrays.equals(encoded, bytes);
+        }
+    }
+}
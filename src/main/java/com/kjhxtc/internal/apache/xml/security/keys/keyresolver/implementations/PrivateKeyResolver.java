@@ -18,6 +18,8 @@
  */
 package com.kjhxtc.internal.apache.xml.security.keys.keyresolver.implementations;
 
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.security.Key;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
@@ -26,8 +28,14 @@ import java.security.PublicKey;
 import java.security.cert.Certificate;
 import java.security.cert.CertificateEncodingException;
 import java.security.cert.X509Certificate;
-import java.util.Arrays;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import javax.crypto.SecretKey;
 
@@ -39,6 +47,7 @@ import com.kjhxtc.internal.apache.xml.security.keys.content.x509.XMLX509SKI;
 import com.kjhxtc.internal.apache.xml.security.keys.content.x509.XMLX509SubjectName;
 import com.kjhxtc.internal.apache.xml.security.keys.keyresolver.KeyResolverException;
 import com.kjhxtc.internal.apache.xml.security.keys.keyresolver.KeyResolverSpi;
+import com.kjhxtc.internal.apache.xml.security.keys.storage.CertificateIndex;
 import com.kjhxtc.internal.apache.xml.security.keys.storage.StorageResolver;
 import com.kjhxtc.internal.apache.xml.security.utils.Constants;
 import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
@@ -48,6 +57,16 @@ import org.w3c.dom.Element;
  * Resolves a PrivateKey within a KeyStore based on the KeyInfo hints.
  * For X509Data hints, the certificate associated with the private key entry must match.
  * For a KeyName hint, the KeyName must match the alias of a PrivateKey entry within the KeyStore.
+ * <p></p>
+ * The first X509Data resolution reads the certificate of every key entry and indexes the aliases
+ * by SKI, issuer and serial number, subject name and encoded certificate, so that a resolution
+ * no longer enumerates the KeyStore. Before a private key is recovered, the certificate of its
+ * entry is compared with the indexed one: if the entry was replaced, the index is read again.
+ * Key entries added to the KeyStore later are found by X509Data hints after {@link #refresh()}.
+ * <p></p>
+ * With a key cache time, recovered private keys are reused per alias for that time without
+ * going back to the KeyStore, which saves a round trip per resolution with HSM backed
+ * KeyStores. The cache is emptied whenever the index is read again.
  */
 public class PrivateKeyResolver extends KeyResolverSpi {
 
@@ -56,13 +75,42 @@ public class PrivateKeyResolver extends KeyResolverSpi {
 
     private final KeyStore keyStore;
     private final char[] password;
+    private final long keyCacheTtlNanos;
+    private final Map<String, CachedKey> keyCache = new ConcurrentHashMap<>();
+
+    private volatile AliasIndex aliasIndex;
 
     /**
      * Constructor.
      */
     public PrivateKeyResolver(KeyStore keyStore, char[] password) {
+        this(keyStore, password, 0L);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param keyStore the KeyStore holding the private keys
+     * @param password the password of the private keys
+     * @param keyCacheTtl the time in milliseconds a private key recovered from the KeyStore is
+     * reused for its alias, or 0 to recover it on every resolution
+     */
+    public PrivateKeyResolver(KeyStore keyStore, char[] password, long keyCacheTtl) {
+        if (keyCacheTtl < 0) {
+            throw new IllegalArgumentException("keyCacheTtl must not be negative");
+        }
         this.keyStore = keyStore;
         this.password = password;
+        this.keyCacheTtlNanos = TimeUnit.MILLISECONDS.toNanos(keyCacheTtl);
+    }
+
+    /**
+     * Reads the certificates of the key entries from the KeyStore again, on the next X509Data
+     * resolution, and forgets the cached private keys.
+     */
+    public void refresh() {
+        aliasIndex = null;
+        keyCache.clear();
     }
 
     /** {@inheritDoc} */
@@ -111,14 +159,7 @@ public class PrivateKeyResolver extends KeyResolverSpi {
             LOG.debug("Can I resolve KeyName?");
             String keyName = element.getFirstChild().getNodeValue();
 
-            try {
-                Key key = keyStore.getKey(keyName, password);
-                if (key instanceof PrivateKey) {
-                    return (PrivateKey) key;
-                }
-            } catch (Exception e) {
-                LOG.debug("Cannot recover the key", e);
-            }
+            return getPrivateKey(keyName, null);
         }
 
         return null;
@@ -129,200 +170,215 @@ public class PrivateKeyResolver extends KeyResolverSpi {
 
         try {
             X509Data x509Data = new X509Data(element, baseURI);
-
-            int len = x509Data.lengthSKI();
-            for (int i = 0; i < len; i++) {
-                XMLX509SKI x509SKI = x509Data.itemSKI(i);
-                PrivateKey privKey = resolveX509SKI(x509SKI);
-                if (privKey != null) {
-                    return privKey;
-                }
+            AliasIndex index = getAliasIndex();
+            PrivateKey privKey = resolveX509Data(x509Data, index);
+            if (privKey == null && aliasIndex != index) {
+                // an indexed entry was replaced, so search the entries read again
+                privKey = resolveX509Data(x509Data, getAliasIndex());
             }
+            return privKey;
+        } catch (XMLSecurityException e) {
+            LOG.debug("XMLSecurityException", e);
+        } catch (KeyStoreException e) {
+            LOG.debug("KeyStoreException", e);
+        }
 
-            len = x509Data.lengthIssuerSerial();
-            for (int i = 0; i < len; i++) {
-                XMLX509IssuerSerial x509Serial = x509Data.itemIssuerSerial(i);
-                PrivateKey privKey = resolveX509IssuerSerial(x509Serial);
-                if (privKey != null) {
-                    return privKey;
-                }
+        return null;
+    }
+
+    private PrivateKey resolveX509Data(X509Data x509Data, AliasIndex index) throws XMLSecurityException {
+        int len = x509Data.lengthSKI();
+        for (int i = 0; i < len; i++) {
+            XMLX509SKI x509SKI = x509Data.itemSKI(i);
+            PrivateKey privKey = resolveX509SKI(index, x509SKI);
+            if (privKey != null) {
+                return privKey;
             }
+        }
 
-            len = x509Data.lengthSubjectName();
-            for (int i = 0; i < len; i++) {
-                XMLX509SubjectName x509SubjectName = x509Data.itemSubjectName(i);
-                PrivateKey privKey = resolveX509SubjectName(x509SubjectName);
-                if (privKey != null) {
-                    return privKey;
-                }
+        len = x509Data.lengthIssuerSerial();
+        for (int i = 0; i < len; i++) {
+            XMLX509IssuerSerial x509Serial = x509Data.itemIssuerSerial(i);
+            PrivateKey privKey = resolveX509IssuerSerial(index, x509Serial);
+            if (privKey != null) {
+                return privKey;
             }
+        }
 
-            len = x509Data.lengthCertificate();
-            for (int i = 0; i < len; i++) {
-                XMLX509Certificate x509Cert = x509Data.itemCertificate(i);
-                PrivateKey privKey = resolveX509Certificate(x509Cert);
-                if (privKey != null) {
-                    return privKey;
-                }
+        len = x509Data.lengthSubjectName();
+        for (int i = 0; i < len; i++) {
+            XMLX509SubjectName x509SubjectName = x509Data.itemSubjectName(i);
+            PrivateKey privKey = resolveX509SubjectName(index, x509SubjectName);
+            if (privKey != null) {
+                return privKey;
             }
-        } catch (XMLSecurityException e) {
-            LOG.debug("XMLSecurityException", e);
-        } catch (KeyStoreException e) {
-            LOG.debug("KeyStoreException", e);
         }
 
+        len = x509Data.lengthCertificate();
+        for (int i = 0; i < len; i++) {
+            XMLX509Certificate x509Cert = x509Data.itemCertificate(i);
+            PrivateKey privKey = resolveX509Certificate(index, x509Cert);
+            if (privKey != null) {
+                return privKey;
+            }
+        }
         return null;
     }
 
     /*
      * Search for a private key entry in the KeyStore with the same Subject Key Identifier
      */
-    private PrivateKey resolveX509SKI(XMLX509SKI x509SKI) throws XMLSecurityException, KeyStoreException {
+    private PrivateKey resolveX509SKI(AliasIndex index, XMLX509SKI x509SKI) throws XMLSecurityException {
         LOG.debug("Can I resolve X509SKI?");
-
-        Enumeration<String> aliases = keyStore.aliases();
-        while (aliases.hasMoreElements()) {
-            String alias = aliases.nextElement();
-            if (keyStore.isKeyEntry(alias)) {
-
-                Certificate cert = keyStore.getCertificate(alias);
-                if (cert instanceof X509Certificate) {
-                    XMLX509SKI certSKI = new XMLX509SKI(x509SKI.getDocument(), (X509Certificate) cert);
-
-                    if (certSKI.equals(x509SKI)) {
-                        LOG.debug("match !!! ");
-
-                        try {
-                            Key key = keyStore.getKey(alias, password);
-                            if (key instanceof PrivateKey) {
-                                return (PrivateKey) key;
-                            }
-                        } catch (Exception e) {
-                            LOG.debug("Cannot recover the key", e);
-                            // Keep searching
-                        }
-                    }
-                }
-            }
-        }
-
-        return null;
+        return resolveAliases(index, index.bySKI.get(ByteBuffer.wrap(x509SKI.getSKIBytes())));
     }
 
     /*
      * Search for a private key entry in the KeyStore with the same Issuer/Serial Number pair.
      */
-    private PrivateKey resolveX509IssuerSerial(XMLX509IssuerSerial x509Serial) throws KeyStoreException {
+    private PrivateKey resolveX509IssuerSerial(AliasIndex index, XMLX509IssuerSerial x509Serial) {
         LOG.debug("Can I resolve X509IssuerSerial?");
-
-        Enumeration<String> aliases = keyStore.aliases();
-        while (aliases.hasMoreElements()) {
-            String alias = aliases.nextElement();
-            if (keyStore.isKeyEntry(alias)) {
-
-                Certificate cert = keyStore.getCertificate(alias);
-                if (cert instanceof X509Certificate) {
-                    XMLX509IssuerSerial certSerial =
-                        new XMLX509IssuerSerial(x509Serial.getDocument(), (X509Certificate) cert);
-
-                    if (certSerial.equals(x509Serial)) {
-                        LOG.debug("match !!! ");
-
-                        try {
-                            Key key = keyStore.getKey(alias, password);
-                            if (key instanceof PrivateKey) {
-                                return (PrivateKey) key;
-                            }
-                        } catch (Exception e) {
-                            LOG.debug("Cannot recover the key", e);
-                            // Keep searching
-                        }
-                    }
-                }
-            }
-        }
-
-        return null;
+        Map<BigInteger, List<String>> bySerial = index.byIssuerSerial.get(x509Serial.getIssuerName());
+        return bySerial != null ? resolveAliases(index, bySerial.get(x509Serial.getSerialNumber())) : null;
     }
 
     /*
      * Search for a private key entry in the KeyStore with the same Subject Name.
      */
-    private PrivateKey resolveX509SubjectName(XMLX509SubjectName x509SubjectName) throws KeyStoreException {
+    private PrivateKey resolveX509SubjectName(AliasIndex index, XMLX509SubjectName x509SubjectName) {
         LOG.debug("Can I resolve X509SubjectName?");
+        return resolveAliases(index, index.bySubjectName.get(x509SubjectName.getSubjectName()));
+    }
 
-        Enumeration<String> aliases = keyStore.aliases();
-        while (aliases.hasMoreElements()) {
-            String alias = aliases.nextElement();
-            if (keyStore.isKeyEntry(alias)) {
-
-                Certificate cert = keyStore.getCertificate(alias);
-                if (cert instanceof X509Certificate) {
-                    XMLX509SubjectName certSN =
-                        new XMLX509SubjectName(x509SubjectName.getDocument(), (X509Certificate) cert);
-
-                    if (certSN.equals(x509SubjectName)) {
-                        LOG.debug("match !!! ");
-
-                        try {
-                            Key key = keyStore.getKey(alias, password);
-                            if (key instanceof PrivateKey) {
-                                return (PrivateKey) key;
-                            }
-                        } catch (Exception e) {
-                            LOG.debug("Cannot recover the key", e);
-                            // Keep searching
-                        }
-                    }
-                }
+    /*
+     * Search for a private key entry in the KeyStore with the same Certificate.
+     */
+    private PrivateKey resolveX509Certificate(
+        AliasIndex index, XMLX509Certificate x509Cert
+    ) throws XMLSecurityException {
+        LOG.debug("Can I resolve X509Certificate?");
+        return resolveAliases(index, index.byCertificate.get(ByteBuffer.wrap(x509Cert.getCertificateBytes())));
+    }
+
+    private PrivateKey resolveAliases(AliasIndex index, List<String> aliases) {
+        if (aliases == null) {
+            return null;
+        }
+        for (String alias : aliases) {
+            LOG.debug("match !!! ");
+            PrivateKey privKey = getPrivateKey(alias, index.certificates.get(alias));
+            if (privKey != null) {
+                return privKey;
             }
+            // Keep searching
         }
+        return null;
+    }
 
+    /**
+     * @param alias the alias of a key entry
+     * @param certificate the certificate the entry was indexed with, or null
+     * @return the private key of the entry, or null if there is none or if the entry no longer
+     * has the given certificate
+     */
+    private PrivateKey getPrivateKey(String alias, X509Certificate certificate) {
+        if (keyCacheTtlNanos > 0) {
+            CachedKey cached = keyCache.get(alias);
+            if (cached != null && System.nanoTime() - cached.created < keyCacheTtlNanos) {
+                return cached.key;
+            }
+        }
+        try {
+            if (certificate != null && !certificate.equals(keyStore.getCertificate(alias))) {
+                LOG.debug("The KeyStore entry {} was replaced", alias);
+                refresh();
+                return null;
+            }
+            Key key = keyStore.getKey(alias, password);
+            if (key instanceof PrivateKey) {
+                if (keyCacheTtlNanos > 0) {
+                    keyCache.put(alias, new CachedKey((PrivateKey) key, System.nanoTime()));
+                }
+                return (PrivateKey) key;
+            }
+        } catch (Exception e) {
+            LOG.debug("Cannot recover the key", e);
+        }
         return null;
     }
 
-    /*
-     * Search for a private key entry in the KeyStore with the same Certificate.
+    private AliasIndex getAliasIndex() throws KeyStoreException {
+        AliasIndex current = aliasIndex;
+        if (current == null) {
+            keyCache.clear();
+            current = new AliasIndex(keyStore);
+            aliasIndex = current;
+        }
+        return current;
+    }
+
+    /**
+     * The aliases of the key entries of a KeyStore, by the identifiers of their certificates.
      */
-    private PrivateKey resolveX509Certificate(
-        XMLX509Certificate x509Cert
-    ) throws XMLSecurityException, KeyStoreException {
-        LOG.debug("Can I resolve X509Certificate?");
-        byte[] x509CertBytes = x509Cert.getCertificateBytes();
-
-        Enumeration<String> aliases = keyStore.aliases();
-        while (aliases.hasMoreElements()) {
-            String alias = aliases.nextElement();
-            if (keyStore.isKeyEntry(alias)) {
-
-                Certificate cert = keyStore.getCertificate(alias);
-                if (cert instanceof X509Certificate) {
-                    byte[] certBytes = null;
-
-                    try {
-                        certBytes = cert.getEncoded();
-                    } catch (CertificateEncodingException e1) {
-                        LOG.debug("Cannot recover the key", e1);
-                    }
-
-                    if (certBytes != null && Arrays.equals(certBytes, x509CertBytes)) {
-                        LOG.debug("match !!! ");
-
-                        try {
-                            Key key = keyStore.getKey(alias, password);
-                            if (key instanceof PrivateKey) {
-                                return (PrivateKey) key;
-                            }
-                        }
-                        catch (Exception e) {
-                            LOG.debug("Cannot recover the key", e);
-                            // Keep searching
-                        }
-                    }
+    private static final class AliasIndex {
+
+        private final Map<String, X509Certificate> certificates = new HashMap<>();
+        private final Map<ByteBuffer, List<String>> bySKI = new HashMap<>();
+        private final Map<String, Map<BigInteger, List<String>>> byIssuerSerial = new HashMap<>();
+        private final Map<String, List<String>> bySubjectName = new HashMap<>();
+        private final Map<ByteBuffer, List<String>> byCertificate = new HashMap<>();
+
+        AliasIndex(KeyStore keyStore) throws KeyStoreException {
+            Enumeration<String> aliases = keyStore.aliases();
+            while (aliases.hasMoreElements()) {
+                String alias = aliases.nextElement();
+                if (!keyStore.isKeyEntry(alias)) {
+                    continue;
+                }
+                Certificate certificate = keyStore.getCertificate(alias);
+                if (!(certificate instanceof X509Certificate)) {
+                    continue;
+                }
+                X509Certificate cert = (X509Certificate) certificate;
+                certificates.put(alias, cert);
+
+                byte[] ski = CertificateIndex.getSKI(cert);
+                if (ski != null) {
+                    add(bySKI, ByteBuffer.wrap(ski), alias);
+                }
+                add(byIssuerSerial.computeIfAbsent(CertificateIndex.getIssuerName(cert), k -> new HashMap<>()),
+                    cert.getSerialNumber(), alias);
+                add(bySubjectName, CertificateIndex.getSubjectName(cert), alias);
+                try {
+                    add(byCertificate, ByteBuffer.wrap(cert.getEncoded()), alias);
+                } catch (CertificateEncodingException e) {
+                    LOG.debug("Cannot encode the certificate of {}", alias, e);
                 }
             }
         }
 
-        return null;
+        private static <K> void add(Map<K, List<String>> map, K key, String alias) {
+            List<String> aliases = map.get(key);
+            if (aliases == null) {
+                map.put(key, Collections.singletonList(alias));
+            } else {
+                if (aliases.size() == 1) {
+                    aliases = new ArrayList<>(aliases);
+                    map.put(key, aliases);
+                }
+                aliases.add(alias);
+            }
+        }
+    }
+
+    private static final class CachedKey {
+
+        private final PrivateKey key;
+        private final long created;
+
+        CachedKey(PrivateKey key, long created) {
+            this.key = key;
+            this.created = created;
+        }
     }
 }
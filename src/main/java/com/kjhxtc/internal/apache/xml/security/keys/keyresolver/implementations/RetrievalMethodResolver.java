@@ -18,13 +18,10 @@
  */
 package com.kjhxtc.internal.apache.xml.security.keys.keyresolver.implementations;
 
-import java.io.ByteArrayInputStream;
 import java.io.IOException;
-import java.io.InputStream;
 import java.security.PrivateKey;
 import java.security.PublicKey;
 import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Iterator;
@@ -35,7 +32,7 @@ import java.util.Set;
 import com.kjhxtc.internal.apache.xml.security.c14n.CanonicalizationException;
 import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
 import com.kjhxtc.internal.apache.xml.security.keys.content.RetrievalMethod;
-import com.kjhxtc.internal.apache.xml.security.keys.content.x509.XMLX509Certificate;
+import com.kjhxtc.internal.apache.xml.security.keys.content.x509.X509CertificateCache;
 import com.kjhxtc.internal.apache.xml.security.keys.keyresolver.KeyResolver;
 import com.kjhxtc.internal.apache.xml.security.keys.keyresolver.KeyResolverException;
 import com.kjhxtc.internal.apache.xml.security.keys.keyresolver.KeyResolverSpi;
@@ -236,11 +233,7 @@ public class RetrievalMethodResolver extends KeyResolverSpi {
         throws CanonicalizationException, IOException, CertificateException {
         byte[] inputBytes = resource.getBytes();
         // if the resource stores a raw certificate, we have to handle it
-        CertificateFactory certFact =
-            CertificateFactory.getInstance(XMLX509Certificate.JCA_CERT_ID);
-        try (InputStream is = new ByteArrayInputStream(inputBytes)) {
-            return (X509Certificate) certFact.generateCertificate(is);
-        }
+        return X509CertificateCache.getInstance().getCertificate(inputBytes);
     }
 
     /**
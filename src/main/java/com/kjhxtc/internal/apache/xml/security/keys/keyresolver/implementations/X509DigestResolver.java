@@ -20,10 +20,7 @@ package com.kjhxtc.internal.apache.xml.security.keys.keyresolver.implementations
 
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
-import java.util.Arrays;
-import java.util.Iterator;
 
 import javax.crypto.SecretKey;
 
@@ -126,18 +123,12 @@ public class X509DigestResolver extends KeyResolverSpi {
                 x509Digests[i] = new XMLX509Digest(x509childNodes[i], baseURI);
             }
 
-            Iterator<Certificate> storageIterator = storage.getIterator();
-            while (storageIterator.hasNext()) {
-                X509Certificate cert = (X509Certificate) storageIterator.next();
-
-                for (XMLX509Digest keyInfoDigest : x509Digests) {
-                    byte[] certDigestBytes = XMLX509Digest.getDigestBytesFromCert(cert, keyInfoDigest.getAlgorithm());
-
-                    if (Arrays.equals(keyInfoDigest.getDigestBytes(), certDigestBytes)) {
-                        LOG.debug("Found certificate with: {}", cert.getSubjectX500Principal().getName());
-                        return cert;
-                    }
-
+            for (XMLX509Digest keyInfoDigest : x509Digests) {
+                X509Certificate cert =
+                    storage.getCertificateByDigest(keyInfoDigest.getAlgorithm(), keyInfoDigest.getDigestBytes());
+                if (cert != null) {
+                    LOG.debug("Found certificate with: {}", cert.getSubjectX500Principal().getName());
+                    return cert;
                 }
             }
 
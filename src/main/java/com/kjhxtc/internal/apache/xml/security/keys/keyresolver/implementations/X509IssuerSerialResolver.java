@@ -18,11 +18,10 @@
  */
 package com.kjhxtc.internal.apache.xml.security.keys.keyresolver.implementations;
 
+import java.math.BigInteger;
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
-import java.util.Iterator;
 
 import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
 import com.kjhxtc.internal.apache.xml.security.keys.content.X509Data;
@@ -98,26 +97,20 @@ public class X509IssuerSerialResolver extends KeyResolverSpi {
 
             int noOfISS = x509data.lengthIssuerSerial();
 
-            Iterator<Certificate> storageIterator = storage.getIterator();
-            while (storageIterator.hasNext()) {
-                X509Certificate cert = (X509Certificate)storageIterator.next();
-                XMLX509IssuerSerial certSerial = new XMLX509IssuerSerial(element.getOwnerDocument(), cert);
+            for (int i = 0; i < noOfISS; i++) {
+                XMLX509IssuerSerial xmliss = x509data.itemIssuerSerial(i);
+                String issuerName = xmliss.getIssuerName();
+                BigInteger serialNumber = xmliss.getSerialNumber();
 
-                LOG.debug("Found Certificate Issuer: {}", certSerial.getIssuerName());
-                LOG.debug("Found Certificate Serial: {}", certSerial.getSerialNumber().toString());
+                LOG.debug("Found Element Issuer:     {}", issuerName);
+                LOG.debug("Found Element Serial:     {}", serialNumber);
 
-                for (int i = 0; i < noOfISS; i++) {
-                    XMLX509IssuerSerial xmliss = x509data.itemIssuerSerial(i);
-
-                    LOG.debug("Found Element Issuer:     {}", xmliss.getIssuerName());
-                    LOG.debug("Found Element Serial:     {}", xmliss.getSerialNumber().toString());
-
-                    if (certSerial.equals(xmliss)) {
-                        LOG.debug("match !!! ");
-                        return cert;
-                    }
-                    LOG.debug("no match...");
+                X509Certificate cert = storage.getCertificateByIssuerSerial(issuerName, serialNumber);
+                if (cert != null) {
+                    LOG.debug("match !!! ");
+                    return cert;
                 }
+                LOG.debug("no match...");
             }
 
             return null;
@@ -20,9 +20,7 @@ package com.kjhxtc.internal.apache.xml.security.keys.keyresolver.implementations
 
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
-import java.util.Iterator;
 
 import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
 import com.kjhxtc.internal.apache.xml.security.keys.content.x509.XMLX509SKI;
@@ -89,21 +87,12 @@ public class X509SKIResolver extends KeyResolverSpi {
                 throw ex;
             }
 
-            XMLX509SKI[] x509childObject = new XMLX509SKI[x509childNodes.length];
-            for (int i = 0; i < x509childNodes.length; i++) {
-                x509childObject[i] = new XMLX509SKI(x509childNodes[i], baseURI);
-            }
-
-            Iterator<Certificate> storageIterator = storage.getIterator();
-            while (storageIterator.hasNext()) {
-                X509Certificate cert = (X509Certificate) storageIterator.next();
-                XMLX509SKI certSKI = new XMLX509SKI(element.getOwnerDocument(), cert);
-
-                for (XMLX509SKI childNodeSKI : x509childObject) {
-                    if (certSKI.equals(childNodeSKI)) {
-                        LOG.debug("Return PublicKey from {}", cert.getSubjectX500Principal().getName());
-                        return cert;
-                    }
+            for (Element x509childNode : x509childNodes) {
+                XMLX509SKI childNodeSKI = new XMLX509SKI(x509childNode, baseURI);
+                X509Certificate cert = storage.getCertificateBySKI(childNodeSKI.getSKIBytes());
+                if (cert != null) {
+                    LOG.debug("Return PublicKey from {}", cert.getSubjectX500Principal().getName());
+                    return cert;
                 }
             }
         } catch (XMLSecurityException ex) {
@@ -20,9 +20,7 @@ package com.kjhxtc.internal.apache.xml.security.keys.keyresolver.implementations
 
 import java.security.PrivateKey;
 import java.security.PublicKey;
-import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
-import java.util.Iterator;
 
 import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
 import com.kjhxtc.internal.apache.xml.security.keys.content.x509.XMLX509SubjectName;
@@ -88,27 +86,17 @@ public class X509SubjectNameResolver extends KeyResolverSpi {
                 throw ex;
             }
 
-            XMLX509SubjectName[] x509childObject = new XMLX509SubjectName[x509childNodes.length];
+            for (Element x509childNode : x509childNodes) {
+                XMLX509SubjectName childSubject = new XMLX509SubjectName(x509childNode, baseURI);
+                String subjectName = childSubject.getSubjectName();
+                LOG.debug("Found Element SN:     {}", subjectName);
 
-            for (int i = 0; i < x509childNodes.length; i++) {
-                x509childObject[i] = new XMLX509SubjectName(x509childNodes[i], baseURI);
-            }
-
-            Iterator<Certificate> storageIterator = storage.getIterator();
-            while (storageIterator.hasNext()) {
-                X509Certificate cert = (X509Certificate) storageIterator.next();
-                XMLX509SubjectName certSN = new XMLX509SubjectName(element.getOwnerDocument(), cert);
-                LOG.debug("Found Certificate SN: {}", certSN.getSubjectName());
-
-                for (XMLX509SubjectName childSubject : x509childObject) {
-                    LOG.debug("Found Element SN:     {}", childSubject.getSubjectName());
-
-                    if (certSN.equals(childSubject)) {
-                        LOG.debug("match !!! ");
-                        return cert;
-                    }
-                    LOG.debug("no match...");
+                X509Certificate cert = storage.getCertificateBySubjectName(subjectName);
+                if (cert != null) {
+                    LOG.debug("match !!! ");
+                    return cert;
                 }
+                LOG.debug("no match...");
             }
 
             return null;
@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.keys.storage;
+
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
+import com.kjhxtc.internal.apache.xml.security.keys.content.x509.XMLX509Digest;
+import com.kjhxtc.internal.apache.xml.security.keys.content.x509.XMLX509SKI;
+import com.kjhxtc.internal.apache.xml.security.utils.RFC2253Parser;
+
+/**
+ * An immutable snapshot of a set of certificates, indexed by normalized subject name, by
+ * normalized issuer name and serial number, and by subject key identifier. Digest indexes are
+ * built on first use for each digest algorithm. When several certificates share a key, the
+ * first one in iteration order is returned, as a linear search would.
+ * <p></p>
+ * Instances are safe for use by several threads.
+ */
+public final class CertificateIndex {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(CertificateIndex.class);
+
+    private final List<Certificate> certificates;
+    private final Map<String, X509Certificate> bySubjectName = new HashMap<>();
+    private final Map<String, Map<BigInteger, X509Certificate>> byIssuerSerial = new HashMap<>();
+    private final Map<ByteBuffer, X509Certificate> bySKI = new HashMap<>();
+    private final Map<String, Map<ByteBuffer, X509Certificate>> byDigest = new ConcurrentHashMap<>();
+
+    /**
+     * @param certificates the certificates to index; those which are not X.509 certificates
+     * are only kept for iteration
+     */
+    public CertificateIndex(Collection<? extends Certificate> certificates) {
+        this.certificates = Collections.unmodifiableList(new ArrayList<>(certificates));
+        for (Certificate certificate : this.certificates) {
+            if (!(certificate instanceof X509Certificate)) {
+                continue;
+            }
+            X509Certificate cert = (X509Certificate) certificate;
+            bySubjectName.putIfAbsent(getSubjectName(cert), cert);
+            byIssuerSerial.computeIfAbsent(getIssuerName(cert), k -> new HashMap<>())
+                .putIfAbsent(cert.getSerialNumber(), cert);
+            byte[] ski = getSKI(cert);
+            if (ski != null) {
+                bySKI.putIfAbsent(ByteBuffer.wrap(ski), cert);
+            }
+        }
+    }
+
+    /**
+     * @return the indexed certificates, in their original order
+     */
+    public List<Certificate> getCertificates() {
+        return certificates;
+    }
+
+    /**
+     * @param subjectName the subject name, normalized by {@link RFC2253Parser#normalize(String)}
+     * @return the certificate with this subject name, or null
+     */
+    public X509Certificate getBySubjectName(String subjectName) {
+        return bySubjectName.get(subjectName);
+    }
+
+    /**
+     * @param issuerName the issuer name, normalized by {@link RFC2253Parser#normalize(String)}
+     * @param serialNumber the serial number
+     * @return the certificate with this issuer name and serial number, or null
+     */
+    public X509Certificate getByIssuerSerial(String issuerName, BigInteger serialNumber) {
+        Map<BigInteger, X509Certificate> bySerial = byIssuerSerial.get(issuerName);
+        return bySerial != null ? bySerial.get(serialNumber) : null;
+    }
+
+    /**
+     * @param ski the subject key identifier
+     * @return the certificate with this subject key identifier, or null
+     */
+    public X509Certificate getBySKI(byte[] ski) {
+        return bySKI.get(ByteBuffer.wrap(ski));
+    }
+
+    /**
+     * @param algorithmURI the URI of the digest algorithm
+     * @param digest the digest of the encoded certificate
+     * @return the certificate with this digest, or null
+     * @throws XMLSecurityException if the digest algorithm is not supported
+     */
+    public X509Certificate getByDigest(String algorithmURI, byte[] digest) throws XMLSecurityException {
+        Map<ByteBuffer, X509Certificate> index = byDigest.get(algorithmURI);
+        if (index == null) {
+            index = new HashMap<>();
+            for (Certificate certificate : certificates) {
+                if (certificate instanceof X509Certificate) {
+                    X509Certificate cert = (X509Certificate) certificate;
+                    index.putIfAbsent(ByteBuffer.wrap(XMLX509Digest.getDigestBytesFromCert(cert, algorithmURI)), cert);
+                }
+            }
+            byDigest.putIfAbsent(algorithmURI, index);
+        }
+        return index.get(ByteBuffer.wrap(digest));
+    }
+
+    /**
+     * @param cert a certificate
+     * @return its subject name, normalized by {@link RFC2253Parser#normalize(String)}
+     */
+    public static String getSubjectName(X509Certificate cert) {
+        return RFC2253Parser.normalize(cert.getSubjectX500Principal().getName());
+    }
+
+    /**
+     * @param cert a certificate
+     * @return its issuer name, normalized by {@link RFC2253Parser#normalize(String)}
+     */
+    public static String getIssuerName(X509Certificate cert) {
+        return RFC2253Parser.normalize(cert.getIssuerX500Principal().getName());
+    }
+
+    /**
+     * @param cert a certificate
+     * @return its subject key identifier, or null if it has none
+     */
+    public static byte[] getSKI(X509Certificate cert) {
+        try {
+            return XMLX509SKI.getSKIBytesFromCert(cert);
+        } catch (XMLSecurityException ex) {
+            LOG.debug("No subject key identifier in {}: {}", cert.getSubjectX500Principal().getName(), ex.getMessage());
+            return null;
+        }
+    }
+}
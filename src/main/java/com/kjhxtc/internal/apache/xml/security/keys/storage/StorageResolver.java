@@ -18,6 +18,7 @@
  */
 package com.kjhxtc.internal.apache.xml.security.keys.storage;
 
+import java.math.BigInteger;
 import java.security.KeyStore;
 import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
@@ -26,6 +27,7 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.NoSuchElementException;
 
+import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
 import com.kjhxtc.internal.apache.xml.security.keys.storage.implementations.KeyStoreResolver;
 import com.kjhxtc.internal.apache.xml.security.keys.storage.implementations.SingleCertificateResolver;
 
@@ -98,6 +100,80 @@ public class StorageResolver {
         this.add(new SingleCertificateResolver(x509certificate));
     }
 
+    /**
+     * Method getCertificateBySubjectName
+     *
+     * @param subjectName the subject name, normalized by
+     * {@link com.kjhxtc.internal.apache.xml.security.utils.RFC2253Parser#normalize(String)}
+     * @return the first certificate with this subject name, or null
+     * @see StorageResolverSpi#getCertificateBySubjectName(String)
+     */
+    public X509Certificate getCertificateBySubjectName(String subjectName) {
+        for (StorageResolverSpi resolver : storageResolvers) {
+            X509Certificate cert = resolver.getCertificateBySubjectName(subjectName);
+            if (cert != null) {
+                return cert;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method getCertificateByIssuerSerial
+     *
+     * @param issuerName the issuer name, normalized by
+     * {@link com.kjhxtc.internal.apache.xml.security.utils.RFC2253Parser#normalize(String)}
+     * @param serialNumber the serial number
+     * @return the first certificate with this issuer name and serial number, or null
+     * @see StorageResolverSpi#getCertificateByIssuerSerial(String, BigInteger)
+     */
+    public X509Certificate getCertificateByIssuerSerial(String issuerName, BigInteger serialNumber) {
+        for (StorageResolverSpi resolver : storageResolvers) {
+            X509Certificate cert = resolver.getCertificateByIssuerSerial(issuerName, serialNumber);
+            if (cert != null) {
+                return cert;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method getCertificateBySKI
+     *
+     * @param ski the subject key identifier
+     * @return the first certificate with this subject key identifier, or null
+     * @see StorageResolverSpi#getCertificateBySKI(byte[])
+     */
+    public X509Certificate getCertificateBySKI(byte[] ski) {
+        for (StorageResolverSpi resolver : storageResolvers) {
+            X509Certificate cert = resolver.getCertificateBySKI(ski);
+            if (cert != null) {
+                return cert;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method getCertificateByDigest
+     *
+     * @param algorithmURI the URI of the digest algorithm
+     * @param digest the digest of the encoded certificate
+     * @return the first certificate with this digest, or null
+     * @throws XMLSecurityException if the digest algorithm is not supported
+     * @see StorageResolverSpi#getCertificateByDigest(String, byte[])
+     */
+    public X509Certificate getCertificateByDigest(String algorithmURI, byte[] digest)
+        throws XMLSecurityException {
+        for (StorageResolverSpi resolver : storageResolvers) {
+            X509Certificate cert = resolver.getCertificateByDigest(algorithmURI, digest);
+            if (cert != null) {
+                return cert;
+            }
+        }
+        return null;
+    }
+
     /**
      * Method getIterator
      * @return the iterator for the resolvers.
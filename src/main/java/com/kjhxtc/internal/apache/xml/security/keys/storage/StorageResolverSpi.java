@@ -18,9 +18,20 @@
  */
 package com.kjhxtc.internal.apache.xml.security.keys.storage;
 
+import java.math.BigInteger;
 import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
+import java.util.Arrays;
 import java.util.Iterator;
 
+import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
+import com.kjhxtc.internal.apache.xml.security.keys.content.x509.XMLX509Digest;
+
+/**
+ * The lookup methods of this class search the certificates of {@link #getIterator()} one
+ * after the other. Implementations which keep an index, such as one built with
+ * {@link CertificateIndex}, should override them.
+ */
 public abstract class StorageResolverSpi {
 
     /**
@@ -29,4 +40,87 @@ public abstract class StorageResolverSpi {
      * @return the iterator for the storage
      */
     public abstract Iterator<Certificate> getIterator();
+
+    /**
+     * Method getCertificateBySubjectName
+     *
+     * @param subjectName the subject name, normalized by
+     * {@link com.kjhxtc.internal.apache.xml.security.utils.RFC2253Parser#normalize(String)}
+     * @return the first certificate with this subject name, or null
+     */
+    public X509Certificate getCertificateBySubjectName(String subjectName) {
+        Iterator<Certificate> iterator = getIterator();
+        while (iterator.hasNext()) {
+            Certificate certificate = iterator.next();
+            if (certificate instanceof X509Certificate
+                && subjectName.equals(CertificateIndex.getSubjectName((X509Certificate) certificate))) {
+                return (X509Certificate) certificate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method getCertificateByIssuerSerial
+     *
+     * @param issuerName the issuer name, normalized by
+     * {@link com.kjhxtc.internal.apache.xml.security.utils.RFC2253Parser#normalize(String)}
+     * @param serialNumber the serial number
+     * @return the first certificate with this issuer name and serial number, or null
+     */
+    public X509Certificate getCertificateByIssuerSerial(String issuerName, BigInteger serialNumber) {
+        Iterator<Certificate> iterator = getIterator();
+        while (iterator.hasNext()) {
+            Certificate certificate = iterator.next();
+            if (certificate instanceof X509Certificate) {
+                X509Certificate cert = (X509Certificate) certificate;
+                if (serialNumber.equals(cert.getSerialNumber())
+                    && issuerName.equals(CertificateIndex.getIssuerName(cert))) {
+                    return cert;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method getCertificateBySKI
+     *
+     * @param ski the subject key identifier
+     * @return the first certificate with this subject key identifier, or null
+     */
+    public X509Certificate getCertificateBySKI(byte[] ski) {
+        Iterator<Certificate> iterator = getIterator();
+        while (iterator.hasNext()) {
+            Certificate certificate = iterator.next();
+            if (certificate instanceof X509Certificate
+                && Arrays.equals(ski, CertificateIndex.getSKI((X509Certificate) certificate))) {
+                return (X509Certificate) certificate;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Method getCertificateByDigest
+     *
+     * @param algorithmURI the URI of the digest algorithm
+     * @param digest the digest of the encoded certificate
+     * @return the first certificate with this digest, or null
+     * @throws XMLSecurityException if the digest algorithm is not supported
+     */
+    public X509Certificate getCertificateByDigest(String algorithmURI, byte[] digest)
+        throws XMLSecurityException {
+        Iterator<Certificate> iterator = getIterator();
+        while (iterator.hasNext()) {
+            Certificate certificate = iterator.next();
+            if (certificate instanceof X509Certificate) {
+                X509Certificate cert = (X509Certificate) certificate;
+                if (Arrays.equals(digest, XMLX509Digest.getDigestBytesFromCert(cert, algorithmURI))) {
+                    return cert;
+                }
+            }
+        }
+        return null;
+    }
 }
@@ -18,22 +18,30 @@
  */
 package com.kjhxtc.internal.apache.xml.security.keys.storage.implementations;
 
+import java.math.BigInteger;
 import java.security.KeyStore;
 import java.security.KeyStoreException;
 import java.security.cert.Certificate;
+import java.security.cert.X509Certificate;
 import java.util.ArrayList;
-import java.util.Collections;
 import java.util.Enumeration;
 import java.util.Iterator;
 import java.util.List;
-import java.util.NoSuchElementException;
 
+import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
+import com.kjhxtc.internal.apache.xml.security.keys.storage.CertificateIndex;
 import com.kjhxtc.internal.apache.xml.security.keys.storage.StorageResolverException;
 import com.kjhxtc.internal.apache.xml.security.keys.storage.StorageResolverSpi;
 
 /**
  * Makes the Certificates from a JAVA {@link KeyStore} object available to the
  * {@link com.kjhxtc.internal.apache.xml.security.keys.storage.StorageResolver}.
+ * <p></p>
+ * The certificates are read from the KeyStore on first use and kept in a {@link CertificateIndex}
+ * for the life of the resolver, so that lookups do not go back to the KeyStore. Entries added,
+ * removed or replaced afterwards are seen by a new resolver, such as the one each
+ * {@link com.kjhxtc.internal.apache.xml.security.keys.storage.StorageResolver#add(KeyStore)}
+ * creates, or after a call to {@link #refresh()}.
  */
 public class KeyStoreResolver extends StorageResolverSpi {
 
@@ -43,6 +51,9 @@ public class KeyStoreResolver extends StorageResolverSpi {
     /** Field keyStore */
     private final KeyStore keyStore;
 
+    /** The index of the certificates, read on first use */
+    private volatile CertificateIndex index;
+
     /**
      * Constructor KeyStoreResolver
      *
@@ -59,70 +70,67 @@ public class KeyStoreResolver extends StorageResolverSpi {
         }
     }
 
+    /**
+     * Reads the certificates from the KeyStore again.
+     */
+    public void refresh() {
+        index = readIndex();
+    }
+
     /** {@inheritDoc} */
     @Override
     public Iterator<Certificate> getIterator() {
-        return new KeyStoreIterator(this.keyStore);
+        return getIndex().getCertificates().iterator();
     }
 
-    /**
-     * Class KeyStoreIterator
-     */
-    static class KeyStoreIterator implements Iterator<Certificate> {
-
-        private final List<Certificate> certs;
-
-        private int i;
+    /** {@inheritDoc} */
+    @Override
+    public X509Certificate getCertificateBySubjectName(String subjectName) {
+        return getIndex().getBySubjectName(subjectName);
+    }
 
-        /**
-         * Constructor KeyStoreIterator
-         *
-         * @param keyStore
-         */
-        public KeyStoreIterator(KeyStore keyStore) {
+    /** {@inheritDoc} */
+    @Override
+    public X509Certificate getCertificateByIssuerSerial(String issuerName, BigInteger serialNumber) {
+        return getIndex().getByIssuerSerial(issuerName, serialNumber);
+    }
 
-            List<Certificate> tmpCerts = new ArrayList<>();
-            try {
-                Enumeration<String> aliases = keyStore.aliases();
-                while (aliases.hasMoreElements()) {
-                    String alias = aliases.nextElement();
-                    Certificate cert = keyStore.getCertificate(alias);
-                    if (cert != null) {
-                        tmpCerts.add(cert);
-                    }
-                }
-            } catch (KeyStoreException ex) {
-                LOG.debug("Error reading certificates: {}", ex.getMessage());
-            }
+    /** {@inheritDoc} */
+    @Override
+    public X509Certificate getCertificateBySKI(byte[] ski) {
+        return getIndex().getBySKI(ski);
+    }
 
-            certs = Collections.unmodifiableList(tmpCerts);
-            this.i = 0;
-        }
+    /** {@inheritDoc} */
+    @Override
+    public X509Certificate getCertificateByDigest(String algorithmURI, byte[] digest)
+        throws XMLSecurityException {
+        return getIndex().getByDigest(algorithmURI, digest);
+    }
 
-        /** {@inheritDoc} */
-        @Override
-        public boolean hasNext() {
-            return this.i < this.certs.size();
+    private CertificateIndex getIndex() {
+        CertificateIndex current = index;
+        if (current == null) {
+            current = readIndex();
+            index = current;
         }
+        return current;
+    }
 
-        /** {@inheritDoc} */
-        @Override
-        public Certificate next() {
-            if (hasNext()) {
-                return this.certs.get(this.i++);
+    private CertificateIndex readIndex() {
+        List<Certificate> certs = new ArrayList<>();
+        try {
+            Enumeration<String> aliases = keyStore.aliases();
+            while (aliases.hasMoreElements()) {
+                String alias = aliases.nextElement();
+                Certificate cert = keyStore.getCertificate(alias);
+                if (cert != null) {
+                    certs.add(cert);
+                }
             }
-
-            throw new NoSuchElementException();
-        }
-
-        /**
-         * Method remove
-         */
-        @Override
-        public void remove() {
-            throw new UnsupportedOperationException("Can't remove keys from KeyStore");
+        } catch (KeyStoreException ex) {
+            LOG.debug("Error reading certificates: {}", ex.getMessage());
         }
-
+        return new CertificateIndex(certs);
     }
-
 }
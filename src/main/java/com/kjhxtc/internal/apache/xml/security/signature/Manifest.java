@@ -28,6 +28,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
 
 import com.kjhxtc.internal.apache.xml.security.c14n.CanonicalizationException;
 import com.kjhxtc.internal.apache.xml.security.c14n.InvalidCanonicalizerException;
@@ -36,6 +38,8 @@ import com.kjhxtc.internal.apache.xml.security.parser.XMLParserException;
 import com.kjhxtc.internal.apache.xml.security.transforms.Transforms;
 import com.kjhxtc.internal.apache.xml.security.utils.Constants;
 import com.kjhxtc.internal.apache.xml.security.utils.I18n;
+import com.kjhxtc.internal.apache.xml.security.utils.IdIndex;
+import com.kjhxtc.internal.apache.xml.security.utils.OrderedTasks;
 import com.kjhxtc.internal.apache.xml.security.utils.SignatureElementProxy;
 import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
 import com.kjhxtc.internal.apache.xml.security.utils.resolver.ResourceResolverSpi;
@@ -79,6 +83,15 @@ public class Manifest extends SignatureElementProxy {
 
     private boolean secureValidation = true;
 
+    /** Field referenceValidationExecutor */
+    private Executor referenceValidationExecutor;
+
+    /**
+     * The ID index shared by the References while they are digested. It is cleared when
+     * reading a nested Manifest registers new IDs.
+     */
+    private IdIndex.Cache idIndexCache;
+
     /**
      * Constructs {@link Manifest}
      *
@@ -204,10 +217,15 @@ public class Manifest extends SignatureElementProxy {
      */
     public void generateDigestValues()
         throws XMLSignatureException, ReferenceNotInitializedException {
-        for (int i = 0; i < this.getLength(); i++) {
-            // update the cached Reference object, the Element content is automatically updated
-            Reference currentRef = this.references.get(i);
-            currentRef.generateDigestValue();
+        idIndexCache = new IdIndex.Cache();
+        try {
+            for (int i = 0; i < this.getLength(); i++) {
+                // update the cached Reference object, the Element content is automatically updated
+                Reference currentRef = this.references.get(i);
+                currentRef.generateDigestValue();
+            }
+        } finally {
+            idIndexCache = null;
         }
     }
 
@@ -325,16 +343,94 @@ public class Manifest extends SignatureElementProxy {
         }
 
         this.verificationResults = new ArrayList<>(referencesEl.length);
-        boolean verify = true;
-        for (int i = 0; i < this.referencesEl.length; i++) {
+        idIndexCache = new IdIndex.Cache();
+        OrderedTasks<Boolean> digests = null;
+        try {
+            if (referenceValidationExecutor != null && referencesEl.length > 1 && canDigestConcurrently()) {
+                digests = digestReferencesConcurrently();
+            }
+            return verifyReferences(followManifests, digests);
+        } finally {
+            if (digests != null) {
+                digests.cancel();
+            }
+            idIndexCache = null;
+        }
+    }
+
+    /**
+     * Returns whether the References can be digested concurrently. They cannot if the
+     * digest of one of them modifies the document, as the XPath and XSLT transforms may,
+     * or if one of them points to a Manifest, the reading of which registers new IDs.
+     */
+    private boolean canDigestConcurrently() {
+        for (Element referenceEl : referencesEl) {
+            if (Reference.MANIFEST_URI.equals(referenceEl.getAttributeNS(null, Constants._ATT_TYPE))) {
+                return false;
+            }
+            Element transformsEl =
+                XMLUtils.selectDsNode(referenceEl.getFirstChild(), Constants._TAG_TRANSFORMS, 0);
+            if (transformsEl != null) {
+                for (Element transformEl : XMLUtils.selectDsNodes(transformsEl.getFirstChild(), Constants._TAG_TRANSFORM)) {
+                    String algorithm = transformEl.getAttributeNS(null, Constants._ATT_ALGORITHM);
+                    if (Transforms.TRANSFORM_XPATH.equals(algorithm)
+                        || Transforms.TRANSFORM_XPATH2FILTER.equals(algorithm)
+                        || Transforms.TRANSFORM_XSLT.equals(algorithm)) {
+                        return false;
+                    }
+                }
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Creates all References and submits their digest calculation to the
+     * referenceValidationExecutor.
+     */
+    private OrderedTasks<Boolean> digestReferencesConcurrently() throws XMLSecurityException {
+        Document doc = getDocument();
+        // The DOM must be fully built before it is read by several threads, and the
+        // namespace declarations which canonicalizing a node-set copies onto the
+        // elements must already be in place
+        XMLUtils.expandNodes(doc);
+        XMLUtils.circumventBug2650(doc);
+        if (secureValidation) {
+            // No IDs are registered while the digests run, so the ID index they share
+            // is built here, before any of them starts
+            idIndexCache.get(doc);
+        }
+
+        List<Callable<Boolean>> tasks = new ArrayList<>(referencesEl.length);
+        for (int i = 0; i < referencesEl.length; i++) {
             Reference currentRef =
                 new Reference(referencesEl[i], this.baseURI, this, secureValidation);
+            // creating the digest algorithm modifies the document
+            currentRef.initDigestAlgorithm();
 
             this.references.set(i, currentRef);
+            tasks.add(currentRef::verify);
+        }
+        return new OrderedTasks<>(referenceValidationExecutor, tasks);
+    }
+
+    private boolean verifyReferences(boolean followManifests, OrderedTasks<Boolean> digests)
+        throws MissingResourceFailureException, XMLSecurityException {
+        boolean verify = true;
+        for (int i = 0; i < this.referencesEl.length; i++) {
+            Reference currentRef;
+            if (digests == null) {
+                currentRef = new Reference(referencesEl[i], this.baseURI, this, secureValidation);
+
+                this.references.set(i, currentRef);
+            } else {
+                currentRef = this.references.get(i);
+            }
 
             // if only one item does not verify, the whole verification fails
             try {
-                boolean currentRefVerified = currentRef.verify();
+                boolean currentRefVerified =
+                    digests == null ? currentRef.verify() : getVerificationResult(digests, i);
 
                 if (!currentRefVerified) {
                     verify = false;
@@ -346,7 +442,6 @@ public class Manifest extends SignatureElementProxy {
                 // was verification successful till now and do we want to verify the Manifest?
                 if (verify && followManifests && currentRef.typeIsReferenceToManifest()) {
                     LOG.debug("We have to follow a nested Manifest");
-
                     try {
                         XMLSignatureInput signedManifestNodes =
                             currentRef.dereferenceURIandPerformTransforms(null);
@@ -374,6 +469,9 @@ public class Manifest extends SignatureElementProxy {
                             }
                         }
 
+                        // Reading the nested Manifest may have registered new IDs
+                        idIndexCache.clear();
+
                         if (referencedManifest == null) {
                             // The Reference stated that it points to a ds:Manifest
                             // but we did not find a ds:Manifest in the signed area
@@ -383,6 +481,7 @@ public class Manifest extends SignatureElementProxy {
 
                         referencedManifest.perManifestResolvers = this.perManifestResolvers;
                         referencedManifest.resolverProperties = this.resolverProperties;
+                        referencedManifest.referenceValidationExecutor = this.referenceValidationExecutor;
 
                         boolean referencedManifestValid =
                             referencedManifest.verifyReferences(followManifests);
@@ -416,6 +515,20 @@ public class Manifest extends SignatureElementProxy {
         return verify;
     }
 
+    private static boolean getVerificationResult(OrderedTasks<Boolean> digests, int index)
+        throws XMLSecurityException {
+        try {
+            return digests.get(index);
+        } catch (XMLSecurityException | RuntimeException ex) {
+            throw ex;
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new XMLSecurityException(ex);
+        } catch (Exception ex) {
+            throw new XMLSecurityException(ex);
+        }
+    }
+
     /**
      * After verifying a {@link Manifest} or a {@link SignedInfo} using the
      * {@link Manifest#verifyReferences()} or {@link SignedInfo#verify()} methods,
@@ -514,6 +627,40 @@ public class Manifest extends SignatureElementProxy {
         return this.resolverProperties.get(key);
     }
 
+    /**
+     * Sets the <code>Executor</code> used to calculate the digests of the References
+     * concurrently in {@link #verifyReferences(boolean)}. By default (<code>null</code>) the
+     * References are verified one after another in the calling thread.
+     * <p></p>
+     * The results are still processed in document order, so the outcome of the verification,
+     * the exception thrown for a Reference that cannot be dereferenced and the
+     * {@link #getVerificationResults()} are the same as in the sequential case. The
+     * References are still verified one after another if one of them has an XPath, XPath
+     * Filter 2.0 or XSLT transform, or is of type Manifest. The document must not be
+     * modified during verification, and any {@link ResourceResolverSpi} in use must be
+     * thread safe.
+     *
+     * @param executor the executor, e.g. one using virtual threads, or <code>null</code>
+     */
+    public void setReferenceValidationExecutor(Executor executor) {
+        this.referenceValidationExecutor = executor;
+    }
+
+    /**
+     * @return the <code>Executor</code> used to verify the References concurrently,
+     * or <code>null</code> if they are verified sequentially
+     */
+    public Executor getReferenceValidationExecutor() {
+        return referenceValidationExecutor;
+    }
+
+    /**
+     * @return the ID index shared by the References while they are digested, or null
+     */
+    IdIndex.Cache getIdIndexCache() {
+        return idIndexCache;
+    }
+
     /**
      * Method getSignedContentItem
      *
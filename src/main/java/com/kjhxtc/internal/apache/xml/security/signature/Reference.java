@@ -43,7 +43,6 @@ import com.kjhxtc.internal.apache.xml.security.transforms.params.InclusiveNamesp
 import com.kjhxtc.internal.apache.xml.security.utils.Constants;
 import com.kjhxtc.internal.apache.xml.security.utils.DigesterOutputStream;
 import com.kjhxtc.internal.apache.xml.security.utils.SignatureElementProxy;
-import com.kjhxtc.internal.apache.xml.security.utils.UnsyncBufferedOutputStream;
 import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
 import com.kjhxtc.internal.apache.xml.security.utils.resolver.ResourceResolver;
 import com.kjhxtc.internal.apache.xml.security.utils.resolver.ResourceResolverContext;
@@ -137,6 +136,11 @@ public class Reference extends SignatureElementProxy {
 
     private ReferenceData referenceData;
 
+    private long bytesDigested = -1;
+
+    /** Created up front by initDigestAlgorithm() if the Reference is verified concurrently */
+    private MessageDigestAlgorithm digestAlgorithm;
+
     private static final Set<String> TRANSFORM_ALGORITHMS;
 
     static {
@@ -300,6 +304,17 @@ public class Reference extends SignatureElementProxy {
         return MessageDigestAlgorithm.getInstance(getDocument(), uri);
     }
 
+    /**
+     * Creates the MessageDigestAlgorithm used by {@link #verify()} in advance. Creating it
+     * adds a (detached) element to the document, which must not happen while the document
+     * is read by other threads.
+     *
+     * @throws XMLSignatureException
+     */
+    void initDigestAlgorithm() throws XMLSignatureException {
+        this.digestAlgorithm = this.getMessageDigestAlgorithm();
+    }
+
     /**
      * Sets the <code>URI</code> of this <code>Reference</code> element
      *
@@ -433,7 +448,7 @@ public class Reference extends SignatureElementProxy {
 
             ResourceResolverContext resolverContext =
                 new ResourceResolverContext(uriAttr, this.baseURI,
-                    secureValidation, this.manifest.getResolverProperties());
+                    secureValidation, this.manifest.getResolverProperties(), this.manifest.getIdIndexCache());
 
             return ResourceResolver.resolve(this.manifest.getPerManifestResolvers(), resolverContext);
         }  catch (ResourceResolverException ex) {
@@ -701,12 +716,16 @@ public class Reference extends SignatureElementProxy {
 
         cacheDereferencedElement(input);
 
-        MessageDigestAlgorithm mda = this.getMessageDigestAlgorithm();
+        MessageDigestAlgorithm mda = this.digestAlgorithm;
+        if (mda == null) {
+            mda = this.getMessageDigestAlgorithm();
+        }
         mda.reset();
 
         XMLSignatureInput output = null;
-        try (DigesterOutputStream diOs = new DigesterOutputStream(mda);
-            OutputStream os = new UnsyncBufferedOutputStream(diOs)) {
+        // The canonicalizers write large blocks, so digest directly without an
+        // intermediate buffer
+        try (DigesterOutputStream os = new DigesterOutputStream(mda)) {
 
             output = this.getContentsAfterTransformation(input, os);
             this.transformsOutput = output;
@@ -726,14 +745,14 @@ public class Reference extends SignatureElementProxy {
                 output.updateOutputStream(os);
             }
             os.flush();
+            this.bytesDigested = os.getBytesDigested();
+            LOG.debug("Digested {} bytes for URI \"{}\"", bytesDigested, this.getURI());
 
-            //this.getReferencedBytes(diOs);
-            //mda.update(data);
-
-            return diOs.getDigestValue();
+            return os.getDigestValue();
         } catch (XMLSecurityException | IOException ex) {
             throw new ReferenceNotInitializedException(ex);
         } finally { //NOPMD
+            mda.release();
             try {
                 if (output != null && output.getOctetStreamReal() != null) {
                     output.getOctetStreamReal().close();
@@ -744,6 +763,17 @@ public class Reference extends SignatureElementProxy {
         }
     }
 
+    /**
+     * Returns the number of bytes that were digested the last time the digest of this
+     * Reference was calculated, i.e. the size of the transformed (canonicalized) content.
+     *
+     * @return the number of bytes digested, or -1 if no digest has been calculated
+     * (or a pre-calculated digest was used)
+     */
+    public long getBytesDigested() {
+        return bytesDigested;
+    }
+
     /**
      * Get the pre-calculated digest value from the XMLSignatureInput.
      *
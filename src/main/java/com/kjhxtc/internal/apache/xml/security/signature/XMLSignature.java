@@ -25,6 +25,7 @@ import java.security.Provider;
 import java.security.PublicKey;
 import java.security.cert.X509Certificate;
 import java.security.spec.AlgorithmParameterSpec;
+import java.util.concurrent.Executor;
 
 import javax.crypto.SecretKey;
 
@@ -1030,6 +1031,18 @@ public final class XMLSignature extends SignatureElementProxy {
         this.followManifestsDuringValidation = followManifests;
     }
 
+    /**
+     * Sets the <code>Executor</code> used to digest the References of the SignedInfo (and of
+     * followed Manifests) concurrently when the signature is checked. By default
+     * (<code>null</code>) the References are digested one after another.
+     *
+     * @param executor the executor, e.g. one using virtual threads, or <code>null</code>
+     * @see Manifest#setReferenceValidationExecutor(Executor)
+     */
+    public void setReferenceValidationExecutor(Executor executor) {
+        this.getSignedInfo().setReferenceValidationExecutor(executor);
+    }
+
     /**
      * Get the local name of this element
      *
@@ -53,6 +53,10 @@ public class XMLSignatureInput {
      *         not other nodes.
      */
 
+    /** The (thread safe) canonicalizers used to serialize node sets */
+    private static final CanonicalizerBase C14N_OMIT_COMMENTS = new Canonicalizer20010315OmitComments();
+    private static final CanonicalizerBase C14N11_OMIT_COMMENTS = new Canonicalizer11_OmitComments();
+
     /**
      * Some InputStreams do not support the {@link java.io.InputStream#reset}
      * method, so we read it in completely and work on our Proxy.
@@ -272,9 +276,8 @@ public class XMLSignatureInput {
             return inputBytes;
         }
         if (isOctetStream() || isElement() || isNodeSet()) {
-            Canonicalizer20010315OmitComments c14nizer = new Canonicalizer20010315OmitComments();
             try (ByteArrayOutputStream baos = new ByteArrayOutputStream()) {
-                c14nizer.engineCanonicalize(this, baos, secureValidation);
+                C14N_OMIT_COMMENTS.engineCanonicalize(this, baos, secureValidation);
                 bytes = baos.toByteArray();
             }
         }
@@ -489,12 +492,7 @@ public class XMLSignatureInput {
         if (bytes != null) {
             diOs.write(bytes);
         } else if (inputOctetStreamProxy == null) {
-            CanonicalizerBase c14nizer = null;
-            if (c14n11) {
-                c14nizer = new Canonicalizer11_OmitComments();
-            } else {
-                c14nizer = new Canonicalizer20010315OmitComments();
-            }
+            CanonicalizerBase c14nizer = c14n11 ? C14N11_OMIT_COMMENTS : C14N_OMIT_COMMENTS;
             c14nizer.engineCanonicalize(this, diOs, secureValidation);
         } else {
             byte[] buffer = new byte[4 * 1024];
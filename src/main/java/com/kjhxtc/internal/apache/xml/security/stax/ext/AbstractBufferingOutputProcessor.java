@@ -18,6 +18,7 @@
  */
 package com.kjhxtc.internal.apache.xml.security.stax.ext;
 
+import java.io.UncheckedIOException;
 import java.util.ArrayDeque;
 import java.util.Deque;
 
@@ -25,39 +26,81 @@ import javax.xml.stream.XMLStreamException;
 
 import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.util.CompactXMLSecEventBuffer;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.util.XMLSecEventSpillBuffer;
 
 /**
  * An abstract OutputProcessor class for reusabilty
- *
+ * <p></p>
+ * The events are buffered in memory, in compact form if
+ * {@link XMLSecurityProperties#setCompactBufferedEvents(boolean)} is set, unless a
+ * {@link XMLSecurityProperties#setBufferedEventSpillThreshold(int) spill threshold} is configured,
+ * in which case the events past the threshold are buffered in a temporary file. The file is
+ * deleted once the buffer has been flushed, when processing the document fails, and when the
+ * XMLStreamWriter is closed.
  */
 public abstract class AbstractBufferingOutputProcessor extends AbstractOutputProcessor {
 
-    private final ArrayDeque<XMLSecEvent> xmlSecEventBuffer = new ArrayDeque<>(100);
+    private Deque<XMLSecEvent> xmlSecEventBuffer;
 
     protected AbstractBufferingOutputProcessor() throws XMLSecurityException {
         super();
     }
 
     protected Deque<XMLSecEvent> getXmlSecEventBuffer() {
+        if (xmlSecEventBuffer == null) {
+            XMLSecurityProperties securityProperties = getSecurityProperties();
+            int spillThreshold = securityProperties != null ? securityProperties.getBufferedEventSpillThreshold() : 0;
+            if (spillThreshold > 0) {
+                xmlSecEventBuffer = new XMLSecEventSpillBuffer(
+                    spillThreshold, securityProperties.getBufferedEventSpillDirectory());
+            } else if (securityProperties != null && securityProperties.isCompactBufferedEvents()) {
+                xmlSecEventBuffer = new CompactXMLSecEventBuffer();
+            } else {
+                xmlSecEventBuffer = new ArrayDeque<>(100);
+            }
+        }
         return xmlSecEventBuffer;
     }
 
     @Override
     public void processEvent(XMLSecEvent xmlSecEvent, OutputProcessorChain outputProcessorChain)
             throws XMLStreamException, XMLSecurityException {
-        xmlSecEventBuffer.offer(xmlSecEvent);
+        try {
+            getXmlSecEventBuffer().offer(xmlSecEvent);
+        } catch (UncheckedIOException e) {
+            abort();
+            throw new XMLStreamException(e.getCause());
+        }
     }
 
     @Override
     public void doFinal(OutputProcessorChain outputProcessorChain) throws XMLStreamException, XMLSecurityException {
         OutputProcessorChain subOutputProcessorChain = outputProcessorChain.createSubChain(this);
-        flushBufferAndCallbackAfterHeader(subOutputProcessorChain, getXmlSecEventBuffer());
+        Deque<XMLSecEvent> buffer = getXmlSecEventBuffer();
+        try {
+            flushBufferAndCallbackAfterHeader(subOutputProcessorChain, buffer);
+        } catch (UncheckedIOException e) {
+            throw new XMLStreamException(e.getCause());
+        } finally {
+            abort();
+        }
         //call final on the rest of the chain
         subOutputProcessorChain.doFinal();
         //this processor is now finished and we can remove it now
         outputProcessorChain.removeProcessor(this);
     }
 
+    /**
+     * Deletes the temporary file of the buffered events, if any.
+     */
+    @Override
+    public void abort() {
+        if (xmlSecEventBuffer instanceof XMLSecEventSpillBuffer) {
+            ((XMLSecEventSpillBuffer) xmlSecEventBuffer).close();
+        }
+    }
+
     protected abstract void processHeaderEvent(OutputProcessorChain outputProcessorChain)
             throws XMLStreamException, XMLSecurityException;
 
@@ -24,12 +24,12 @@ import java.util.Iterator;
 import java.util.List;
 
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
 import javax.xml.namespace.QName;
 
 import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEvent;
 import com.kjhxtc.internal.apache.xml.security.stax.impl.XMLSecurityEventReader;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.XMLSecurityStructureBinder;
 
 /**
  * Abstract class for SecurityHeaderHandlers with parse LOGic for the xml structures
@@ -40,9 +40,13 @@ public abstract class AbstractInputSecurityHeaderHandler implements XMLSecurityH
     @SuppressWarnings("unchecked")
     protected <T> T parseStructure(final Deque<XMLSecEvent> eventDeque, final int index,
                                    final XMLSecurityProperties securityProperties) throws XMLSecurityException {
+        Object structure = XMLSecurityStructureBinder.bind(eventDeque, index);
+        if (structure != null) {
+            return (T) structure;
+        }
         try {
-            Unmarshaller unmarshaller = XMLSecurityConstants.getJaxbUnmarshaller(securityProperties.isDisableSchemaValidation());
-            return (T) unmarshaller.unmarshal(new XMLSecurityEventReader(eventDeque, index));
+            return (T) XMLSecurityConstants.jaxbUnmarshal(
+                new XMLSecurityEventReader(eventDeque, index), securityProperties.isDisableSchemaValidation());
 
         } catch (JAXBException e) {
             if (e.getCause() != null && e.getCause() instanceof Exception) {
@@ -57,6 +61,11 @@ public abstract class AbstractInputSecurityHeaderHandler implements XMLSecurityH
         return xmlSecEvent.getElementPath();
     }
 
+    protected boolean matchesElementPath(Deque<XMLSecEvent> eventDeque, List<QName> elementPath) {
+        XMLSecEvent xmlSecEvent = eventDeque.peek();
+        return xmlSecEvent.matchesElementPath(elementPath);
+    }
+
     protected XMLSecEvent getResponsibleStartXMLEvent(Deque<XMLSecEvent> eventDeque, int index) {
         Iterator<XMLSecEvent> xmlSecEventIterator = eventDeque.descendingIterator();
         int curIdx = 0;
@@ -0,0 +1,146 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.stax.ext;
+
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.bind.Unmarshaller;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.validation.Schema;
+
+/**
+ * A bounded pool of JAXB Unmarshallers for the xml security structures, so that an
+ * Unmarshaller with its Schema is not created for every parsed structure.
+ * <p></p>
+ * At most <code>com.kjhxtc.internal.apache.xml.security.jaxb.pool-size</code> (default 20)
+ * idle Unmarshallers are kept; a pool size of 0 disables pooling. An Unmarshaller whose
+ * unmarshal call failed is not reused.
+ * <p></p>
+ * The pool also counts the structures it unmarshalled and the time spent on them,
+ * by the declared type of the unmarshalled element, e.g. SignatureType or EncryptedDataType.
+ */
+public final class JAXBUnmarshallerPool {
+
+    private static final int POOL_SIZE =
+        AccessController.doPrivileged(
+            (PrivilegedAction<Integer>) () -> Integer.getInteger("com.kjhxtc.internal.apache.xml.security.jaxb.pool-size", 20));
+
+    private final JAXBContext jaxbContext;
+    private final Schema schema;
+    private final Queue<Unmarshaller> unmarshallers;
+    private final Map<Class<?>, Statistics> statistics = new ConcurrentHashMap<>();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * @param jaxbContext the JAXBContext to create the Unmarshallers with
+     * @param schema the Schema to validate with, or null to disable schema validation
+     */
+    public JAXBUnmarshallerPool(JAXBContext jaxbContext, Schema schema) {
+        this.jaxbContext = jaxbContext;
+        this.schema = schema;
+        this.unmarshallers = new ArrayBlockingQueue<>(Math.max(POOL_SIZE, 1));
+    }
+
+    /**
+     * Unmarshals the structure read from the given XMLEventReader with a pooled Unmarshaller.
+     *
+     * @param xmlEventReader the events of the structure
+     * @return the unmarshalled structure, usually a JAXBElement
+     * @throws JAXBException if the structure cannot be unmarshalled or is not valid
+     */
+    public Object unmarshal(XMLEventReader xmlEventReader) throws JAXBException {
+        Unmarshaller unmarshaller = acquire();
+        long start = System.nanoTime();
+        Object result = unmarshaller.unmarshal(xmlEventReader);
+        long time = System.nanoTime() - start;
+
+        if (POOL_SIZE > 0) {
+            unmarshallers.offer(unmarshaller);
+        }
+        Class<?> type = result instanceof JAXBElement ? ((JAXBElement<?>) result).getDeclaredType() : result.getClass();
+        statistics.computeIfAbsent(type, k -> new Statistics()).add(time);
+        return result;
+    }
+
+    private Unmarshaller acquire() throws JAXBException {
+        Unmarshaller unmarshaller = POOL_SIZE > 0 ? unmarshallers.poll() : null;
+        if (unmarshaller != null) {
+            hits.increment();
+            return unmarshaller;
+        }
+        misses.increment();
+        unmarshaller = jaxbContext.createUnmarshaller();
+        if (schema != null) {
+            unmarshaller.setSchema(schema);
+        }
+        return unmarshaller;
+    }
+
+    /**
+     * @return how many Unmarshallers were taken from the pool
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return how many Unmarshallers had to be created because the pool had none
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @param type the declared type of the unmarshalled elements, e.g. SignatureType.class
+     * @return how many structures of the given type were unmarshalled
+     */
+    public long getUnmarshalCount(Class<?> type) {
+        Statistics s = statistics.get(type);
+        return s == null ? 0 : s.count.sum();
+    }
+
+    /**
+     * @param type the declared type of the unmarshalled elements, e.g. SignatureType.class
+     * @return the time spent unmarshalling structures of the given type, in nanoseconds
+     */
+    public long getUnmarshalTimeNanos(Class<?> type) {
+        Statistics s = statistics.get(type);
+        return s == null ? 0 : s.nanos.sum();
+    }
+
+    private static final class Statistics {
+        private final LongAdder count = new LongAdder();
+        private final LongAdder nanos = new LongAdder();
+
+        void add(long time) {
+            count.increment();
+            nanos.add(time);
+        }
+    }
+}
@@ -132,4 +132,12 @@ public interface OutputProcessor {
      * @throws XMLSecurityException thrown when a Security failure occurs
      */
     void doFinal(OutputProcessorChain outputProcessorChain) throws XMLStreamException, XMLSecurityException;
+
+    /**
+     * Will be called when the processing of the document has failed, and when the
+     * XMLStreamWriter is closed, so that the processor can release what it holds, such
+     * as a temporary file. The default implementation does nothing.
+     */
+    default void abort() {
+    }
 }
@@ -27,6 +27,7 @@ import javax.xml.bind.Unmarshaller;
 import javax.xml.datatype.DatatypeConfigurationException;
 import javax.xml.datatype.DatatypeFactory;
 import javax.xml.namespace.QName;
+import javax.xml.stream.XMLEventReader;
 import javax.xml.stream.XMLOutputFactory;
 import javax.xml.validation.Schema;
 
@@ -45,6 +46,8 @@ public class XMLSecurityConstants {
     private static final SecureRandom SECURE_RANDOM;
     private static JAXBContext jaxbContext;
     private static Schema schema;
+    private static volatile JAXBUnmarshallerPool jaxbUnmarshallerPool;
+    private static volatile JAXBUnmarshallerPool jaxbUnmarshallerPoolWithoutSchema;
 
     static {
         try {
@@ -88,16 +91,23 @@ public class XMLSecurityConstants {
 
     public static synchronized void setJaxbContext(JAXBContext jaxbContext) {
         XMLSecurityConstants.jaxbContext = jaxbContext;
+        jaxbUnmarshallerPool = null;
+        jaxbUnmarshallerPoolWithoutSchema = null;
     }
 
     public static synchronized void setJaxbSchemas(Schema schema) {
         XMLSecurityConstants.schema = schema;
+        jaxbUnmarshallerPool = null;
     }
 
     public static synchronized Schema getJaxbSchemas() {
         return XMLSecurityConstants.schema;
     }
 
+    /**
+     * Creates a new Unmarshaller. Use {@link #jaxbUnmarshal(XMLEventReader, boolean)} to unmarshal
+     * with a pooled Unmarshaller instead.
+     */
     public static Unmarshaller getJaxbUnmarshaller(boolean disableSchemaValidation) throws JAXBException {
         Unmarshaller unmarshaller = jaxbContext.createUnmarshaller();
         if (!disableSchemaValidation) {
@@ -106,6 +116,46 @@ public class XMLSecurityConstants {
         return unmarshaller;
     }
 
+    /**
+     * Returns the pool of Unmarshallers for the current JAXBContext and Schema. A new pool
+     * is created when the JAXBContext or the Schema is changed.
+     *
+     * @param disableSchemaValidation true for the pool of Unmarshallers without Schema
+     * @return the Unmarshaller pool
+     */
+    public static JAXBUnmarshallerPool getJaxbUnmarshallerPool(boolean disableSchemaValidation) {
+        JAXBUnmarshallerPool pool = disableSchemaValidation ? jaxbUnmarshallerPoolWithoutSchema : jaxbUnmarshallerPool;
+        if (pool == null) {
+            synchronized (XMLSecurityConstants.class) {
+                if (disableSchemaValidation) {
+                    if (jaxbUnmarshallerPoolWithoutSchema == null) {
+                        jaxbUnmarshallerPoolWithoutSchema = new JAXBUnmarshallerPool(jaxbContext, null);
+                    }
+                    pool = jaxbUnmarshallerPoolWithoutSchema;
+                } else {
+                    if (jaxbUnmarshallerPool == null) {
+                        jaxbUnmarshallerPool = new JAXBUnmarshallerPool(jaxbContext, schema);
+                    }
+                    pool = jaxbUnmarshallerPool;
+                }
+            }
+        }
+        return pool;
+    }
+
+    /**
+     * Unmarshals a structure with a pooled Unmarshaller.
+     *
+     * @param xmlEventReader the events of the structure
+     * @param disableSchemaValidation true to skip the schema validation
+     * @return the unmarshalled structure
+     * @throws JAXBException if the structure cannot be unmarshalled or is not valid
+     */
+    public static Object jaxbUnmarshal(XMLEventReader xmlEventReader, boolean disableSchemaValidation)
+            throws JAXBException {
+        return getJaxbUnmarshallerPool(disableSchemaValidation).unmarshal(xmlEventReader);
+    }
+
     public enum Phase {
         PREPROCESSING,
         PROCESSING,
@@ -18,6 +18,7 @@
  */
 package com.kjhxtc.internal.apache.xml.security.stax.ext;
 
+import java.nio.file.Path;
 import java.security.Key;
 import java.security.cert.X509Certificate;
 import java.security.spec.AlgorithmParameterSpec;
@@ -27,6 +28,7 @@ import java.util.HashMap;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.Executor;
 
 import javax.xml.namespace.QName;
 
@@ -85,6 +87,11 @@ public class XMLSecurityProperties {
     private QName signaturePositionQName;
     private boolean signaturePositionStart = false;
     private AlgorithmParameterSpec algorithmParameterSpec;
+    private Executor decryptionExecutor;
+    private int inlineDecryptionThreshold;
+    private int bufferedEventSpillThreshold;
+    private Path bufferedEventSpillDirectory;
+    private boolean compactBufferedEvents;
 
     public XMLSecurityProperties() {
     }
@@ -125,6 +132,11 @@ public class XMLSecurityProperties {
         this.signaturePositionQName = xmlSecurityProperties.signaturePositionQName;
         this.signaturePositionStart = xmlSecurityProperties.signaturePositionStart;
         this.algorithmParameterSpec = xmlSecurityProperties.algorithmParameterSpec;
+        this.decryptionExecutor = xmlSecurityProperties.decryptionExecutor;
+        this.inlineDecryptionThreshold = xmlSecurityProperties.inlineDecryptionThreshold;
+        this.bufferedEventSpillThreshold = xmlSecurityProperties.bufferedEventSpillThreshold;
+        this.bufferedEventSpillDirectory = xmlSecurityProperties.bufferedEventSpillDirectory;
+        this.compactBufferedEvents = xmlSecurityProperties.compactBufferedEvents;
     }
 
     public boolean isSignaturePositionStart() {
@@ -544,4 +556,85 @@ public class XMLSecurityProperties {
     public void setAlgorithmParameterSpec(AlgorithmParameterSpec algorithmParameterSpec) {
         this.algorithmParameterSpec = algorithmParameterSpec;
     }
+
+    public Executor getDecryptionExecutor() {
+        return decryptionExecutor;
+    }
+
+    /**
+     * specifies the Executor which runs the streaming decryption of EncryptedData elements. Each
+     * EncryptedData element is decrypted by a task that blocks until the decrypted data is read,
+     * so the Executor must run its tasks concurrently and must not queue them behind each other
+     * (nested EncryptedData elements are decrypted at the same time).
+     *
+     * @param decryptionExecutor the Executor to use, or null (default) for a new virtual thread
+     * per EncryptedData element on Java 21 and later, and a new platform thread otherwise
+     */
+    public void setDecryptionExecutor(Executor decryptionExecutor) {
+        this.decryptionExecutor = decryptionExecutor;
+    }
+
+    public int getInlineDecryptionThreshold() {
+        return inlineDecryptionThreshold;
+    }
+
+    /**
+     * specifies up to which size the CipherValue of an EncryptedData element is buffered and decrypted
+     * in the calling thread instead of being streamed to the decryption Executor
+     *
+     * @param inlineDecryptionThreshold the maximum number of base64 characters of a CipherValue which
+     * is decrypted inline, or 0 (default) to stream all EncryptedData elements
+     */
+    public void setInlineDecryptionThreshold(int inlineDecryptionThreshold) {
+        this.inlineDecryptionThreshold = inlineDecryptionThreshold;
+    }
+
+    public int getBufferedEventSpillThreshold() {
+        return bufferedEventSpillThreshold;
+    }
+
+    /**
+     * specifies how many events of the outbound document the signature and encryption ending
+     * processors keep in memory until the document is complete. Further events are written
+     * to a temporary file in a compact binary form and read back when the document is output.
+     *
+     * @param bufferedEventSpillThreshold the number of events kept in memory, or 0 (default) to
+     * keep all of them in memory
+     */
+    public void setBufferedEventSpillThreshold(int bufferedEventSpillThreshold) {
+        this.bufferedEventSpillThreshold = bufferedEventSpillThreshold;
+    }
+
+    public Path getBufferedEventSpillDirectory() {
+        return bufferedEventSpillDirectory;
+    }
+
+    /**
+     * specifies the directory of the temporary files written when the
+     * {@link #setBufferedEventSpillThreshold(int) spill threshold} is exceeded. The files hold the
+     * buffered part of the document in clear text.
+     *
+     * @param bufferedEventSpillDirectory the directory, or null (default) for the default
+     * temporary-file directory
+     */
+    public void setBufferedEventSpillDirectory(Path bufferedEventSpillDirectory) {
+        this.bufferedEventSpillDirectory = bufferedEventSpillDirectory;
+    }
+
+    public boolean isCompactBufferedEvents() {
+        return compactBufferedEvents;
+    }
+
+    /**
+     * specifies whether the events which are buffered in memory, by the signature and encryption
+     * ending processors and while looking for an EncryptedData element, are kept in a compact
+     * binary form instead of as objects. This takes several times less memory for large buffered
+     * documents, at the cost of encoding and decoding every buffered event.
+     *
+     * @param compactBufferedEvents true to keep buffered events in compact form, false (default)
+     * to keep them as objects
+     */
+    public void setCompactBufferedEvents(boolean compactBufferedEvents) {
+        this.compactBufferedEvents = compactBufferedEvents;
+    }
 }
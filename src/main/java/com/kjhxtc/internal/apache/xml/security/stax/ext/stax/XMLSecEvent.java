@@ -37,6 +37,23 @@ public interface XMLSecEvent extends XMLEvent {
 
     List<QName> getElementPath();
 
+    /**
+     * @return the hash code of the {@link #getElementPath() element path} list. Implementations
+     * may compute it without building the list.
+     */
+    default int getElementPathHash() {
+        return getElementPath().hashCode();
+    }
+
+    /**
+     * @param elementPath the element names from the document element down
+     * @return true if the element path of this event equals the given one. Implementations
+     * may compare it without building the element path list.
+     */
+    default boolean matchesElementPath(List<QName> elementPath) {
+        return getElementPath().equals(elementPath);
+    }
+
     XMLSecStartElement getStartElementAtLevel(int level);
 
     @Override
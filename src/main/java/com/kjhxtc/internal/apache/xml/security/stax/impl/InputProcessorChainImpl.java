@@ -184,12 +184,32 @@ public class InputProcessorChainImpl implements InputProcessorChain {
 
     @Override
     public XMLSecEvent processHeaderEvent() throws XMLStreamException, XMLSecurityException {
-        return inputProcessors.get(this.curPos++).processHeaderEvent(this);
+        InputProcessor inputProcessor = inputProcessors.get(this.curPos++);
+        if (!ProcessorStatistics.isEnabled()) {
+            return inputProcessor.processHeaderEvent(this);
+        }
+        long nestedNanos = ProcessorStatistics.enter();
+        long start = System.nanoTime();
+        try {
+            return inputProcessor.processHeaderEvent(this);
+        } finally {
+            ProcessorStatistics.exit(inputProcessor, nestedNanos, System.nanoTime() - start);
+        }
     }
 
     @Override
     public XMLSecEvent processEvent() throws XMLStreamException, XMLSecurityException {
-        return inputProcessors.get(this.curPos++).processEvent(this);
+        InputProcessor inputProcessor = inputProcessors.get(this.curPos++);
+        if (!ProcessorStatistics.isEnabled()) {
+            return inputProcessor.processEvent(this);
+        }
+        long nestedNanos = ProcessorStatistics.enter();
+        long start = System.nanoTime();
+        try {
+            return inputProcessor.processEvent(this);
+        } finally {
+            ProcessorStatistics.exit(inputProcessor, nestedNanos, System.nanoTime() - start);
+        }
     }
 
     @Override
@@ -191,7 +191,18 @@ public class OutputProcessorChainImpl implements OutputProcessorChain {
                     break;
             }
         }
-        outputProcessors.get(this.curPos++).processEvent(xmlSecEvent, this);
+        OutputProcessor outputProcessor = outputProcessors.get(this.curPos++);
+        if (!ProcessorStatistics.isEnabled()) {
+            outputProcessor.processEvent(xmlSecEvent, this);
+        } else {
+            long nestedNanos = ProcessorStatistics.enter();
+            long start = System.nanoTime();
+            try {
+                outputProcessor.processEvent(xmlSecEvent, this);
+            } finally {
+                ProcessorStatistics.exit(outputProcessor, nestedNanos, System.nanoTime() - start);
+            }
+        }
         if (reparent && parentXmlSecStartElement != null) {
             parentXmlSecStartElement = parentXmlSecStartElement.getParentXMLSecStartElement();
         }
@@ -0,0 +1,162 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.stax.impl;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Per processor class counters of the events dispatched by the input and output processor
+ * chains, for diagnosis. Counting is off unless the system property
+ * <code>com.kjhxtc.internal.apache.xml.security.stax.processorStatistics</code> is true or
+ * {@link #setEnabled(boolean)} is called.
+ * <p></p>
+ * The time of an event is the time spent in the processor itself: the time of the processors
+ * which it calls further down the chain, or through a sub-chain, on the same thread is
+ * subtracted and counted for those processors. The histogram counts the events
+ * by the power of two of their time in nanoseconds: bucket <code>i</code> counts the events
+ * which took less than <code>2^i</code> and at least <code>2^(i-1)</code> nanoseconds, and the
+ * last bucket counts all longer events.
+ */
+public final class ProcessorStatistics {
+
+    private static final int BUCKETS = 40;
+
+    private static volatile boolean enabled =
+        Boolean.getBoolean("com.kjhxtc.internal.apache.xml.security.stax.processorStatistics");
+
+    /** The time of the processor calls nested in the current call, on this thread */
+    private static final ThreadLocal<long[]> NESTED_NANOS = ThreadLocal.withInitial(() -> new long[1]);
+
+    private static final ConcurrentMap<String, ProcessorStatistics> STATISTICS = new ConcurrentHashMap<>();
+
+    private static final ClassValue<ProcessorStatistics> BY_CLASS = new ClassValue<ProcessorStatistics>() {
+        @Override
+        protected ProcessorStatistics computeValue(Class<?> type) {
+            return STATISTICS.computeIfAbsent(type.getName(), name -> new ProcessorStatistics());
+        }
+    };
+
+    private final LongAdder events = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder[] histogram = new LongAdder[BUCKETS];
+
+    ProcessorStatistics() {
+        for (int i = 0; i < BUCKETS; i++) {
+            histogram[i] = new LongAdder();
+        }
+    }
+
+    public static boolean isEnabled() {
+        return enabled;
+    }
+
+    public static void setEnabled(boolean enabled) {
+        ProcessorStatistics.enabled = enabled;
+    }
+
+    /**
+     * @return the counters of every processor class which has processed an event while counting
+     * was enabled, by class name
+     */
+    public static Map<String, ProcessorStatistics> getStatistics() {
+        return Collections.unmodifiableMap(new TreeMap<>(STATISTICS));
+    }
+
+    /**
+     * Sets all counters to zero.
+     */
+    public static void reset() {
+        for (ProcessorStatistics statistics : STATISTICS.values()) {
+            statistics.events.reset();
+            statistics.totalNanos.reset();
+            for (LongAdder bucket : statistics.histogram) {
+                bucket.reset();
+            }
+        }
+    }
+
+    /**
+     * Starts the timing of a processor call.
+     *
+     * @return the time of the calls nested so far in the enclosing call, to be given to
+     * {@link #exit(Object, long, long)}
+     */
+    static long enter() {
+        long[] nestedNanos = NESTED_NANOS.get();
+        long enclosingNestedNanos = nestedNanos[0];
+        nestedNanos[0] = 0;
+        return enclosingNestedNanos;
+    }
+
+    /**
+     * Records a processor call without the time of the calls nested in it.
+     *
+     * @param processor the processor called
+     * @param enclosingNestedNanos the value returned by {@link #enter()}
+     * @param nanos the time of the call, including the nested calls
+     */
+    static void exit(Object processor, long enclosingNestedNanos, long nanos) {
+        long[] nestedNanos = NESTED_NANOS.get();
+        record(processor, nanos - nestedNanos[0]);
+        nestedNanos[0] = enclosingNestedNanos + nanos;
+    }
+
+    private static void record(Object processor, long nanos) {
+        ProcessorStatistics statistics = BY_CLASS.get(processor.getClass());
+        statistics.events.increment();
+        statistics.totalNanos.add(nanos);
+        int bucket = 64 - Long.numberOfLeadingZeros(Math.max(nanos, 0));
+        statistics.histogram[Math.min(bucket, BUCKETS - 1)].increment();
+    }
+
+    /**
+     * @return the number of events processed
+     */
+    public long getEvents() {
+        return events.sum();
+    }
+
+    /**
+     * @return the total time spent in the processor, in nanoseconds
+     */
+    public long getTotalNanos() {
+        return totalNanos.sum();
+    }
+
+    /**
+     * @return the number of events in each bucket of the time histogram
+     */
+    public long[] getHistogram() {
+        long[] counts = new long[BUCKETS];
+        for (int i = 0; i < BUCKETS; i++) {
+            counts[i] = histogram[i].sum();
+        }
+        return counts;
+    }
+
+    @Override
+    public String toString() {
+        return "events=" + getEvents() + ", totalNanos=" + getTotalNanos();
+    }
+}
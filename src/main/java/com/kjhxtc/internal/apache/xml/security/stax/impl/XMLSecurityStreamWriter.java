@@ -30,6 +30,7 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamWriter;
 
 import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.OutputProcessor;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.OutputProcessorChain;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.SecurePart;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.XMLSecurityConstants;
@@ -58,9 +59,11 @@ public class XMLSecurityStreamWriter implements XMLStreamWriter {
     }
 
     private void chainProcessEvent(XMLSecEvent xmlSecEvent) throws XMLStreamException {
+        boolean processed = false;
         try {
             outputProcessorChain.reset();
             outputProcessorChain.processEvent(xmlSecEvent);
+            processed = true;
         } catch (XMLSecurityException e) {
             throw new XMLStreamException(e);
         } catch (XMLStreamException e) {
@@ -76,6 +79,20 @@ public class XMLSecurityStreamWriter implements XMLStreamWriter {
             //it seems it is not trivial to write a StAXResult because I couldn't find an implementation
             // which passes the testcases...hmm
             throw e;
+        } finally {
+            if (!processed) {
+                abortProcessors();
+            }
+        }
+    }
+
+    /**
+     * Lets the processors still in the chain release what they hold once the document has
+     * failed or the writer is closed.
+     */
+    private void abortProcessors() {
+        for (OutputProcessor outputProcessor : new ArrayList<>(outputProcessorChain.getProcessors())) {
+            outputProcessor.abort();
         }
     }
 
@@ -191,6 +208,8 @@ public class XMLSecurityStreamWriter implements XMLStreamWriter {
             outputProcessorChain.doFinal();
         } catch (XMLSecurityException e) {
             throw new XMLStreamException(e);
+        } finally {
+            abortProcessors();
         }
     }
 
@@ -0,0 +1,758 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.stax.impl;
+
+import java.math.BigInteger;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Base64;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+
+import com.kjhxtc.internal.apache.xml.security.binding.excc14n.InclusiveNamespaces;
+import com.kjhxtc.internal.apache.xml.security.binding.xmldsig.CanonicalizationMethodType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmldsig.DigestMethodType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmldsig.KeyInfoType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmldsig.ReferenceType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmldsig.SignatureMethodType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmldsig.SignatureType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmldsig.SignatureValueType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmldsig.SignedInfoType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmldsig.TransformType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmldsig.TransformsType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmldsig.X509DataType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmldsig.X509IssuerSerialType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmlenc.CipherDataType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmlenc.CipherValueType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmlenc.EncryptedDataType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmlenc.EncryptedKeyType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmlenc.EncryptedType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmlenc.EncryptionMethodType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmlenc.ReferenceList;
+import com.kjhxtc.internal.apache.xml.security.binding.xmlenc11.MGFType;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.XMLSecurityConstants;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecAttribute;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+
+/**
+ * Binds the common ds:Signature, ds:SignedInfo, ds:Reference, ds:KeyInfo, xenc:EncryptedData and
+ * xenc:EncryptedKey structures directly from the buffered XMLSecEvents, without going through JAXB.
+ * <p></p>
+ * Only a strictly schema-valid subset of these structures is bound here: every attribute, child element,
+ * element order and simple type (ID, anyURI, integer, base64Binary) is checked while binding. Anything
+ * outside that subset, e.g. ds:Object, ds:KeyValue, xenc:CipherReference, comments or a value that would
+ * need schema normalization, is left to JAXB by returning <code>null</code>, so that JAXB and the schema
+ * validation still decide about everything this class does not know. The result is built with the
+ * generated ObjectFactories and is the same as what JAXB unmarshals for the structure.
+ * <p></p>
+ * The binder can be switched off with the system property
+ * <code>com.kjhxtc.internal.apache.xml.security.stax.disableStructureBinder</code>.
+ */
+public final class XMLSecurityStructureBinder {
+
+    private static final boolean DISABLED =
+        AccessController.doPrivileged(
+            (PrivilegedAction<Boolean>) () -> Boolean.getBoolean("com.kjhxtc.internal.apache.xml.security.stax.disableStructureBinder"));
+
+    private static final QName TAG_xenc_KeySize = new QName(XMLSecurityConstants.NS_XMLENC, "KeySize");
+    private static final QName TAG_xenc_KeyReference = new QName(XMLSecurityConstants.NS_XMLENC, "KeyReference");
+    private static final QName TAG_xenc_CarriedKeyName = new QName(XMLSecurityConstants.NS_XMLENC, "CarriedKeyName");
+    private static final QName ATT_NULL_Recipient = new QName("Recipient");
+    private static final QName ATT_NULL_PrefixList = new QName("PrefixList");
+
+    private static final com.kjhxtc.internal.apache.xml.security.binding.xmldsig.ObjectFactory DSIG_FACTORY =
+        new com.kjhxtc.internal.apache.xml.security.binding.xmldsig.ObjectFactory();
+    private static final com.kjhxtc.internal.apache.xml.security.binding.xmlenc.ObjectFactory XENC_FACTORY =
+        new com.kjhxtc.internal.apache.xml.security.binding.xmlenc.ObjectFactory();
+    private static final com.kjhxtc.internal.apache.xml.security.binding.xmlenc11.ObjectFactory XENC11_FACTORY =
+        new com.kjhxtc.internal.apache.xml.security.binding.xmlenc11.ObjectFactory();
+    private static final com.kjhxtc.internal.apache.xml.security.binding.excc14n.ObjectFactory EXCC14N_FACTORY =
+        new com.kjhxtc.internal.apache.xml.security.binding.excc14n.ObjectFactory();
+
+    private static final String BASE64_PAD_1 = "AEIMQUYcgkosw048";
+    private static final String BASE64_PAD_2 = "AQgw";
+
+    private static final LongAdder BOUND = new LongAdder();
+    private static final LongAdder FALLBACKS = new LongAdder();
+
+    private final Iterator<XMLSecEvent> xmlSecEventIterator;
+    private final Set<String> ids = new HashSet<>();
+    private XMLSecEvent peekedEvent;
+
+    private XMLSecurityStructureBinder(Deque<XMLSecEvent> xmlSecEvents, int fromIndex) {
+        this.xmlSecEventIterator = xmlSecEvents.descendingIterator();
+        int curIdx = 0;
+        while (curIdx++ < fromIndex) {
+            this.xmlSecEventIterator.next();
+        }
+    }
+
+    /**
+     * Binds the structure starting at the given index, in the same way as
+     * {@link XMLSecurityEventReader} presents it to JAXB.
+     *
+     * @param xmlSecEvents the buffered events, the first event being the last in the deque
+     * @param fromIndex the index of the start element of the structure
+     * @return the bound structure as JAXBElement, or null if the structure must be unmarshalled by JAXB
+     */
+    public static Object bind(Deque<XMLSecEvent> xmlSecEvents, int fromIndex) {
+        if (DISABLED) {
+            return null;
+        }
+        try {
+            Object structure = new XMLSecurityStructureBinder(xmlSecEvents, fromIndex).bindRoot();
+            BOUND.increment();
+            return structure;
+        } catch (UnsupportedStructureException e) {
+            FALLBACKS.increment();
+            return null;
+        }
+    }
+
+    /**
+     * @return how many structures were bound without JAXB
+     */
+    public static long getBoundCount() {
+        return BOUND.sum();
+    }
+
+    /**
+     * @return how many structures were left to JAXB
+     */
+    public static long getFallbackCount() {
+        return FALLBACKS.sum();
+    }
+
+    private Object bindRoot() throws UnsupportedStructureException {
+        XMLSecEvent xmlSecEvent = nextEvent();
+        if (xmlSecEvent.getEventType() != XMLStreamConstants.START_ELEMENT) {
+            throw UnsupportedStructureException.INSTANCE;
+        }
+        XMLSecStartElement root = xmlSecEvent.asStartElement();
+        QName name = root.getName();
+        if (XMLSecurityConstants.TAG_dsig_Signature.equals(name)) {
+            return DSIG_FACTORY.createSignature(bindSignature(root));
+        } else if (XMLSecurityConstants.TAG_dsig_SignedInfo.equals(name)) {
+            return DSIG_FACTORY.createSignedInfo(bindSignedInfo(root));
+        } else if (XMLSecurityConstants.TAG_dsig_Reference.equals(name)) {
+            return DSIG_FACTORY.createReference(bindReference(root));
+        } else if (XMLSecurityConstants.TAG_dsig_KeyInfo.equals(name)) {
+            return DSIG_FACTORY.createKeyInfo(bindKeyInfo(root));
+        } else if (XMLSecurityConstants.TAG_xenc_EncryptedData.equals(name)) {
+            EncryptedDataType encryptedDataType = new EncryptedDataType();
+            requireEnd(bindEncryptedType(root, encryptedDataType));
+            return XENC_FACTORY.createEncryptedData(encryptedDataType);
+        } else if (XMLSecurityConstants.TAG_xenc_EncryptedKey.equals(name)) {
+            return XENC_FACTORY.createEncryptedKey(bindEncryptedKey(root));
+        }
+        throw UnsupportedStructureException.INSTANCE;
+    }
+
+    private SignatureType bindSignature(XMLSecStartElement element) throws UnsupportedStructureException {
+        SignatureType signatureType = new SignatureType();
+        signatureType.setId(id(element, XMLSecurityConstants.ATT_NULL_Id));
+        checkAttributes(element, XMLSecurityConstants.ATT_NULL_Id);
+
+        XMLSecStartElement child = requireChild(nextChild(null), XMLSecurityConstants.TAG_dsig_SignedInfo);
+        signatureType.setSignedInfo(bindSignedInfo(child));
+
+        child = requireChild(nextChild(null), XMLSecurityConstants.TAG_dsig_SignatureValue);
+        SignatureValueType signatureValueType = new SignatureValueType();
+        signatureValueType.setId(id(child, XMLSecurityConstants.ATT_NULL_Id));
+        checkAttributes(child, XMLSecurityConstants.ATT_NULL_Id);
+        signatureValueType.setValue(base64Content());
+        signatureType.setSignatureValue(signatureValueType);
+
+        child = nextChild(null);
+        if (isElement(child, XMLSecurityConstants.TAG_dsig_KeyInfo)) {
+            signatureType.setKeyInfo(bindKeyInfo(child));
+            child = nextChild(null);
+        }
+        // ds:Object is left to JAXB
+        requireEnd(child);
+        return signatureType;
+    }
+
+    private SignedInfoType bindSignedInfo(XMLSecStartElement element) throws UnsupportedStructureException {
+        SignedInfoType signedInfoType = new SignedInfoType();
+        signedInfoType.setId(id(element, XMLSecurityConstants.ATT_NULL_Id));
+        checkAttributes(element, XMLSecurityConstants.ATT_NULL_Id);
+
+        XMLSecStartElement child = requireChild(nextChild(null), XMLSecurityConstants.TAG_dsig_CanonicalizationMethod);
+        CanonicalizationMethodType canonicalizationMethodType = new CanonicalizationMethodType();
+        canonicalizationMethodType.setAlgorithm(algorithm(child));
+        bindInclusiveNamespacesContent(canonicalizationMethodType.getContent());
+        signedInfoType.setCanonicalizationMethod(canonicalizationMethodType);
+
+        child = requireChild(nextChild(null), XMLSecurityConstants.TAG_dsig_SignatureMethod);
+        signedInfoType.setSignatureMethod(bindSignatureMethod(child));
+
+        child = requireChild(nextChild(null), XMLSecurityConstants.TAG_dsig_Reference);
+        do {
+            signedInfoType.getReference().add(bindReference(child));
+            child = nextChild(null);
+        } while (isElement(child, XMLSecurityConstants.TAG_dsig_Reference));
+        requireEnd(child);
+        return signedInfoType;
+    }
+
+    private SignatureMethodType bindSignatureMethod(XMLSecStartElement element) throws UnsupportedStructureException {
+        SignatureMethodType signatureMethodType = new SignatureMethodType();
+        signatureMethodType.setAlgorithm(algorithm(element));
+        List<Object> content = signatureMethodType.getContent();
+
+        XMLSecStartElement child = nextChild(content);
+        if (isElement(child, XMLSecurityConstants.TAG_dsig_HMACOutputLength)) {
+            checkAttributes(child);
+            content.add(DSIG_FACTORY.createSignatureMethodTypeHMACOutputLength(integerContent()));
+            child = nextChild(content);
+        }
+        // RSAPSSParams and other extensions are left to JAXB
+        requireEnd(child);
+        return signatureMethodType;
+    }
+
+    private ReferenceType bindReference(XMLSecStartElement element) throws UnsupportedStructureException {
+        ReferenceType referenceType = new ReferenceType();
+        referenceType.setId(id(element, XMLSecurityConstants.ATT_NULL_Id));
+        referenceType.setURI(anyURI(element, XMLSecurityConstants.ATT_NULL_URI, false));
+        referenceType.setType(anyURI(element, XMLSecurityConstants.ATT_NULL_Type, false));
+        checkAttributes(element, XMLSecurityConstants.ATT_NULL_Id, XMLSecurityConstants.ATT_NULL_URI,
+                        XMLSecurityConstants.ATT_NULL_Type);
+
+        XMLSecStartElement child = nextChild(null);
+        if (isElement(child, XMLSecurityConstants.TAG_dsig_Transforms)) {
+            checkAttributes(child);
+            TransformsType transformsType = new TransformsType();
+            XMLSecStartElement transform = requireChild(nextChild(null), XMLSecurityConstants.TAG_dsig_Transform);
+            do {
+                TransformType transformType = new TransformType();
+                transformType.setAlgorithm(algorithm(transform));
+                bindInclusiveNamespacesContent(transformType.getContent());
+                transformsType.getTransform().add(transformType);
+                transform = nextChild(null);
+            } while (isElement(transform, XMLSecurityConstants.TAG_dsig_Transform));
+            requireEnd(transform);
+            referenceType.setTransforms(transformsType);
+            child = nextChild(null);
+        }
+
+        requireChild(child, XMLSecurityConstants.TAG_dsig_DigestMethod);
+        referenceType.setDigestMethod(bindDigestMethod(child));
+
+        child = requireChild(nextChild(null), XMLSecurityConstants.TAG_dsig_DigestValue);
+        checkAttributes(child);
+        referenceType.setDigestValue(base64Content());
+
+        requireEnd(nextChild(null));
+        return referenceType;
+    }
+
+    private DigestMethodType bindDigestMethod(XMLSecStartElement element) throws UnsupportedStructureException {
+        DigestMethodType digestMethodType = new DigestMethodType();
+        digestMethodType.setAlgorithm(algorithm(element));
+        requireEnd(nextChild(digestMethodType.getContent()));
+        return digestMethodType;
+    }
+
+    /**
+     * Binds the mixed content of a CanonicalizationMethod or Transform, which may only
+     * contain ec:InclusiveNamespaces elements here.
+     */
+    private void bindInclusiveNamespacesContent(List<Object> content) throws UnsupportedStructureException {
+        XMLSecStartElement child = nextChild(content);
+        while (isElement(child, XMLSecurityConstants.TAG_c14nExcl_InclusiveNamespaces)) {
+            checkAttributes(child, ATT_NULL_PrefixList);
+            InclusiveNamespaces inclusiveNamespaces = new InclusiveNamespaces();
+            String prefixList = attribute(child, ATT_NULL_PrefixList);
+            if (prefixList != null) {
+                List<String> prefixes = inclusiveNamespaces.getPrefixList();
+                for (String prefix : prefixList.split("[ \t\r\n]+")) {
+                    if (!prefix.isEmpty()) {
+                        prefixes.add(prefix);
+                    }
+                }
+                if (prefixes.isEmpty()) {
+                    throw UnsupportedStructureException.INSTANCE;
+                }
+            }
+            // the content of InclusiveNamespaces is empty, not even whitespace is allowed
+            XMLSecEvent xmlSecEvent = nextEvent();
+            if (xmlSecEvent.getEventType() != XMLStreamConstants.END_ELEMENT) {
+                throw UnsupportedStructureException.INSTANCE;
+            }
+            content.add(EXCC14N_FACTORY.createInclusiveNamespaces(inclusiveNamespaces));
+            child = nextChild(content);
+        }
+        requireEnd(child);
+    }
+
+    private KeyInfoType bindKeyInfo(XMLSecStartElement element) throws UnsupportedStructureException {
+        KeyInfoType keyInfoType = new KeyInfoType();
+        keyInfoType.setId(id(element, XMLSecurityConstants.ATT_NULL_Id));
+        checkAttributes(element, XMLSecurityConstants.ATT_NULL_Id);
+        List<Object> content = keyInfoType.getContent();
+
+        XMLSecStartElement child = nextChild(content);
+        if (child == null) {
+            // KeyInfo requires at least one child
+            throw UnsupportedStructureException.INSTANCE;
+        }
+        do {
+            QName name = child.getName();
+            if (XMLSecurityConstants.TAG_dsig_KeyName.equals(name)) {
+                checkAttributes(child);
+                content.add(DSIG_FACTORY.createKeyName(textContent()));
+            } else if (XMLSecurityConstants.TAG_dsig_X509Data.equals(name)) {
+                content.add(DSIG_FACTORY.createX509Data(bindX509Data(child)));
+            } else if (XMLSecurityConstants.TAG_xenc_EncryptedKey.equals(name)) {
+                content.add(XENC_FACTORY.createEncryptedKey(bindEncryptedKey(child)));
+            } else {
+                throw UnsupportedStructureException.INSTANCE;
+            }
+            child = nextChild(content);
+        } while (child != null);
+        return keyInfoType;
+    }
+
+    private X509DataType bindX509Data(XMLSecStartElement element) throws UnsupportedStructureException {
+        checkAttributes(element);
+        X509DataType x509DataType = new X509DataType();
+        List<Object> content = x509DataType.getX509IssuerSerialOrX509SKIOrX509SubjectName();
+
+        XMLSecStartElement child = nextChild(null);
+        if (child == null) {
+            throw UnsupportedStructureException.INSTANCE;
+        }
+        do {
+            checkAttributes(child);
+            QName name = child.getName();
+            if (XMLSecurityConstants.TAG_dsig_X509IssuerSerial.equals(name)) {
+                X509IssuerSerialType x509IssuerSerialType = new X509IssuerSerialType();
+                XMLSecStartElement issuerSerialChild =
+                    requireChild(nextChild(null), XMLSecurityConstants.TAG_dsig_X509IssuerName);
+                checkAttributes(issuerSerialChild);
+                x509IssuerSerialType.setX509IssuerName(textContent());
+                issuerSerialChild = requireChild(nextChild(null), XMLSecurityConstants.TAG_dsig_X509SerialNumber);
+                checkAttributes(issuerSerialChild);
+                x509IssuerSerialType.setX509SerialNumber(integerContent());
+                requireEnd(nextChild(null));
+                content.add(DSIG_FACTORY.createX509DataTypeX509IssuerSerial(x509IssuerSerialType));
+            } else if (XMLSecurityConstants.TAG_dsig_X509SKI.equals(name)) {
+                content.add(DSIG_FACTORY.createX509DataTypeX509SKI(base64Content()));
+            } else if (XMLSecurityConstants.TAG_dsig_X509SubjectName.equals(name)) {
+                content.add(DSIG_FACTORY.createX509DataTypeX509SubjectName(textContent()));
+            } else if (XMLSecurityConstants.TAG_dsig_X509Certificate.equals(name)) {
+                content.add(DSIG_FACTORY.createX509DataTypeX509Certificate(base64Content()));
+            } else {
+                throw UnsupportedStructureException.INSTANCE;
+            }
+            child = nextChild(null);
+        } while (child != null);
+        return x509DataType;
+    }
+
+    private EncryptedKeyType bindEncryptedKey(XMLSecStartElement element) throws UnsupportedStructureException {
+        EncryptedKeyType encryptedKeyType = new EncryptedKeyType();
+        encryptedKeyType.setRecipient(attribute(element, ATT_NULL_Recipient));
+        XMLSecStartElement child = bindEncryptedType(element, encryptedKeyType, ATT_NULL_Recipient);
+
+        if (isElement(child, XMLSecurityConstants.TAG_xenc_ReferenceList)) {
+            checkAttributes(child);
+            ReferenceList referenceList = new ReferenceList();
+            XMLSecStartElement reference = nextChild(null);
+            if (reference == null) {
+                throw UnsupportedStructureException.INSTANCE;
+            }
+            do {
+                com.kjhxtc.internal.apache.xml.security.binding.xmlenc.ReferenceType referenceType =
+                    new com.kjhxtc.internal.apache.xml.security.binding.xmlenc.ReferenceType();
+                referenceType.setURI(anyURI(reference, XMLSecurityConstants.ATT_NULL_URI, true));
+                checkAttributes(reference, XMLSecurityConstants.ATT_NULL_URI);
+                if (XMLSecurityConstants.TAG_xenc_DataReference.equals(reference.getName())) {
+                    referenceList.getDataReferenceOrKeyReference().add(
+                        XENC_FACTORY.createReferenceListDataReference(referenceType));
+                } else if (TAG_xenc_KeyReference.equals(reference.getName())) {
+                    referenceList.getDataReferenceOrKeyReference().add(
+                        XENC_FACTORY.createReferenceListKeyReference(referenceType));
+                } else {
+                    throw UnsupportedStructureException.INSTANCE;
+                }
+                requireEnd(nextChild(null));
+                reference = nextChild(null);
+            } while (reference != null);
+            encryptedKeyType.setReferenceList(referenceList);
+            child = nextChild(null);
+        }
+
+        if (isElement(child, TAG_xenc_CarriedKeyName)) {
+            checkAttributes(child);
+            encryptedKeyType.setCarriedKeyName(textContent());
+            child = nextChild(null);
+        }
+        requireEnd(child);
+        return encryptedKeyType;
+    }
+
+    /**
+     * Binds the attributes and the EncryptionMethod, KeyInfo and CipherData children shared by
+     * EncryptedData and EncryptedKey.
+     *
+     * @return the child following CipherData, or null if the element ended
+     */
+    private XMLSecStartElement bindEncryptedType(XMLSecStartElement element, EncryptedType encryptedType,
+                                                 QName... additionalAttributes) throws UnsupportedStructureException {
+        encryptedType.setId(id(element, XMLSecurityConstants.ATT_NULL_Id));
+        encryptedType.setType(anyURI(element, XMLSecurityConstants.ATT_NULL_Type, false));
+        encryptedType.setMimeType(attribute(element, XMLSecurityConstants.ATT_NULL_MimeType));
+        encryptedType.setEncoding(anyURI(element, XMLSecurityConstants.ATT_NULL_Encoding, false));
+        QName[] allowedAttributes = new QName[4 + additionalAttributes.length];
+        allowedAttributes[0] = XMLSecurityConstants.ATT_NULL_Id;
+        allowedAttributes[1] = XMLSecurityConstants.ATT_NULL_Type;
+        allowedAttributes[2] = XMLSecurityConstants.ATT_NULL_MimeType;
+        allowedAttributes[3] = XMLSecurityConstants.ATT_NULL_Encoding;
+        System.arraycopy(additionalAttributes, 0, allowedAttributes, 4, additionalAttributes.length);
+        checkAttributes(element, allowedAttributes);
+
+        XMLSecStartElement child = nextChild(null);
+        if (isElement(child, XMLSecurityConstants.TAG_xenc_EncryptionMethod)) {
+            encryptedType.setEncryptionMethod(bindEncryptionMethod(child));
+            child = nextChild(null);
+        }
+        if (isElement(child, XMLSecurityConstants.TAG_dsig_KeyInfo)) {
+            encryptedType.setKeyInfo(bindKeyInfo(child));
+            child = nextChild(null);
+        }
+
+        requireChild(child, XMLSecurityConstants.TAG_xenc_CipherData);
+        checkAttributes(child);
+        // CipherReference is left to JAXB
+        XMLSecStartElement cipherValue = requireChild(nextChild(null), XMLSecurityConstants.TAG_xenc_CipherValue);
+        checkAttributes(cipherValue);
+        CipherValueType cipherValueType = new CipherValueType();
+        String value = textContent();
+        if (!value.isEmpty()) {
+            cipherValueType.getContent().add(value);
+        }
+        CipherDataType cipherDataType = new CipherDataType();
+        cipherDataType.setCipherValue(cipherValueType);
+        encryptedType.setCipherData(cipherDataType);
+        requireEnd(nextChild(null));
+
+        // EncryptionProperties is left to JAXB
+        return nextChild(null);
+    }
+
+    private EncryptionMethodType bindEncryptionMethod(XMLSecStartElement element) throws UnsupportedStructureException {
+        EncryptionMethodType encryptionMethodType = new EncryptionMethodType();
+        encryptionMethodType.setAlgorithm(algorithm(element));
+        List<Object> content = encryptionMethodType.getContent();
+
+        XMLSecStartElement child = nextChild(content);
+        if (isElement(child, TAG_xenc_KeySize)) {
+            checkAttributes(child);
+            content.add(XENC_FACTORY.createEncryptionMethodTypeKeySize(integerContent()));
+            child = nextChild(content);
+        }
+        if (isElement(child, XMLSecurityConstants.TAG_xenc_OAEPparams)) {
+            checkAttributes(child);
+            content.add(XENC_FACTORY.createEncryptionMethodTypeOAEPparams(base64Content()));
+            child = nextChild(content);
+        }
+        while (child != null) {
+            if (XMLSecurityConstants.TAG_dsig_DigestMethod.equals(child.getName())) {
+                content.add(DSIG_FACTORY.createDigestMethod(bindDigestMethod(child)));
+            } else if (XMLSecurityConstants.TAG_xenc11_MGF.equals(child.getName())) {
+                MGFType mgfType = new MGFType();
+                mgfType.setAlgorithm(algorithm(child));
+                requireEnd(nextChild(null));
+                content.add(XENC11_FACTORY.createMGF(mgfType));
+            } else {
+                throw UnsupportedStructureException.INSTANCE;
+            }
+            child = nextChild(content);
+        }
+        return encryptionMethodType;
+    }
+
+    private XMLSecEvent nextEvent() throws UnsupportedStructureException {
+        if (peekedEvent != null) {
+            XMLSecEvent xmlSecEvent = peekedEvent;
+            peekedEvent = null;
+            return xmlSecEvent;
+        }
+        if (!xmlSecEventIterator.hasNext()) {
+            throw UnsupportedStructureException.INSTANCE;
+        }
+        return xmlSecEventIterator.next();
+    }
+
+    /**
+     * Reads the text up to the next start or end element. Comments, processing instructions
+     * and all other events are left to JAXB.
+     */
+    private String readText() throws UnsupportedStructureException {
+        StringBuilder stringBuilder = null;
+        while (true) {
+            XMLSecEvent xmlSecEvent = nextEvent();
+            switch (xmlSecEvent.getEventType()) {
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA:
+                case XMLStreamConstants.SPACE:
+                    if (stringBuilder == null) {
+                        stringBuilder = new StringBuilder();
+                    }
+                    stringBuilder.append(xmlSecEvent.asCharacters().getText());
+                    break;
+                case XMLStreamConstants.START_ELEMENT:
+                case XMLStreamConstants.END_ELEMENT:
+                    peekedEvent = xmlSecEvent;
+                    return stringBuilder == null ? "" : stringBuilder.toString();
+                default:
+                    throw UnsupportedStructureException.INSTANCE;
+            }
+        }
+    }
+
+    /**
+     * Returns the next child element, or null after consuming the end element of the current element.
+     *
+     * @param mixedContent the content list of a mixed element to add the text to, or null if the current
+     *                     element has element-only content and therefore only whitespace is allowed
+     */
+    private XMLSecStartElement nextChild(List<? super String> mixedContent) throws UnsupportedStructureException {
+        String text = readText();
+        if (mixedContent == null) {
+            if (!isWhitespace(text)) {
+                throw UnsupportedStructureException.INSTANCE;
+            }
+        } else if (!text.isEmpty()) {
+            mixedContent.add(text);
+        }
+        XMLSecEvent xmlSecEvent = nextEvent();
+        if (xmlSecEvent.getEventType() == XMLStreamConstants.END_ELEMENT) {
+            return null;
+        }
+        return xmlSecEvent.asStartElement();
+    }
+
+    /**
+     * Reads the text content of an element with simple content including its end element.
+     */
+    private String textContent() throws UnsupportedStructureException {
+        String text = readText();
+        if (nextEvent().getEventType() != XMLStreamConstants.END_ELEMENT) {
+            throw UnsupportedStructureException.INSTANCE;
+        }
+        return text;
+    }
+
+    private BigInteger integerContent() throws UnsupportedStructureException {
+        String text = trim(textContent());
+        int start = text.startsWith("+") || text.startsWith("-") ? 1 : 0;
+        if (text.length() == start) {
+            throw UnsupportedStructureException.INSTANCE;
+        }
+        for (int i = start; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c < '0' || c > '9') {
+                throw UnsupportedStructureException.INSTANCE;
+            }
+        }
+        return new BigInteger(text);
+    }
+
+    /**
+     * Decodes base64Binary content with the same lexical checks as the schema validation.
+     */
+    private byte[] base64Content() throws UnsupportedStructureException {
+        String text = textContent();
+        StringBuilder stringBuilder = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!isWhitespace(c)) {
+                stringBuilder.append(c);
+            }
+        }
+        int length = stringBuilder.length();
+        if (length == 0 || length % 4 != 0) {
+            throw UnsupportedStructureException.INSTANCE;
+        }
+        int padding = 0;
+        if (stringBuilder.charAt(length - 1) == '=') {
+            padding = stringBuilder.charAt(length - 2) == '=' ? 2 : 1;
+        }
+        for (int i = 0; i < length - padding; i++) {
+            char c = stringBuilder.charAt(i);
+            if (!(c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c >= '0' && c <= '9' || c == '+' || c == '/')) {
+                throw UnsupportedStructureException.INSTANCE;
+            }
+        }
+        // the bits not covered by the decoded bytes must be zero
+        if (padding == 1 && BASE64_PAD_1.indexOf(stringBuilder.charAt(length - 2)) < 0
+            || padding == 2 && BASE64_PAD_2.indexOf(stringBuilder.charAt(length - 3)) < 0) {
+            throw UnsupportedStructureException.INSTANCE;
+        }
+        return Base64.getDecoder().decode(stringBuilder.toString());
+    }
+
+    private static String attribute(XMLSecStartElement element, QName name) {
+        List<XMLSecAttribute> attributes = element.getOnElementDeclaredAttributes();
+        for (int i = 0; i < attributes.size(); i++) {
+            XMLSecAttribute attribute = attributes.get(i);
+            if (name.equals(attribute.getName())) {
+                return attribute.getValue();
+            }
+        }
+        return null;
+    }
+
+    private static void checkAttributes(XMLSecStartElement element, QName... allowed) throws UnsupportedStructureException {
+        List<XMLSecAttribute> attributes = element.getOnElementDeclaredAttributes();
+        for (int i = 0; i < attributes.size(); i++) {
+            QName name = attributes.get(i).getName();
+            boolean found = false;
+            for (QName allowedName : allowed) {
+                if (allowedName.equals(name)) {
+                    found = true;
+                    break;
+                }
+            }
+            if (!found) {
+                throw UnsupportedStructureException.INSTANCE;
+            }
+        }
+    }
+
+    private String id(XMLSecStartElement element, QName name) throws UnsupportedStructureException {
+        String id = attribute(element, name);
+        if (id != null && (!isNCName(id) || !ids.add(id))) {
+            throw UnsupportedStructureException.INSTANCE;
+        }
+        return id;
+    }
+
+    private static String algorithm(XMLSecStartElement element) throws UnsupportedStructureException {
+        String algorithm = anyURI(element, XMLSecurityConstants.ATT_NULL_Algorithm, true);
+        checkAttributes(element, XMLSecurityConstants.ATT_NULL_Algorithm);
+        return algorithm;
+    }
+
+    /**
+     * Accepts only URIs which need no whitespace normalization and consist of printable
+     * ASCII characters, everything else is left to the schema validation.
+     */
+    private static String anyURI(XMLSecStartElement element, QName name, boolean required)
+        throws UnsupportedStructureException {
+        String uri = attribute(element, name);
+        if (uri == null) {
+            if (required) {
+                throw UnsupportedStructureException.INSTANCE;
+            }
+            return null;
+        }
+        for (int i = 0; i < uri.length(); i++) {
+            char c = uri.charAt(i);
+            if (c <= ' ' || c >= 0x7f || c == '"' || c == '<' || c == '>' || c == '\\' || c == '^'
+                || c == '`' || c == '{' || c == '|' || c == '}') {
+                throw UnsupportedStructureException.INSTANCE;
+            }
+        }
+        return uri;
+    }
+
+    private static boolean isNCName(String value) {
+        if (value.isEmpty()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            boolean nameStart = c >= 'A' && c <= 'Z' || c >= 'a' && c <= 'z' || c == '_';
+            if (!nameStart && (i == 0 || !(c >= '0' && c <= '9' || c == '-' || c == '.'))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static XMLSecStartElement requireChild(XMLSecStartElement child, QName name)
+        throws UnsupportedStructureException {
+        if (!isElement(child, name)) {
+            throw UnsupportedStructureException.INSTANCE;
+        }
+        return child;
+    }
+
+    private static void requireEnd(XMLSecStartElement child) throws UnsupportedStructureException {
+        if (child != null) {
+            throw UnsupportedStructureException.INSTANCE;
+        }
+    }
+
+    private static boolean isElement(XMLSecStartElement element, QName name) {
+        return element != null && name.equals(element.getName());
+    }
+
+    private static String trim(String value) {
+        int start = 0;
+        int end = value.length();
+        while (start < end && isWhitespace(value.charAt(start))) {
+            start++;
+        }
+        while (end > start && isWhitespace(value.charAt(end - 1))) {
+            end--;
+        }
+        return value.substring(start, end);
+    }
+
+    private static boolean isWhitespace(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            if (!isWhitespace(value.charAt(i))) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean isWhitespace(char c) {
+        return c == ' ' || c == '\t' || c == '\n' || c == '\r';
+    }
+
+    /**
+     * Signals a structure which is not bound here but by JAXB.
+     */
+    private static final class UnsupportedStructureException extends Exception {
+
+        private static final long serialVersionUID = 1L;
+
+        private static final UnsupportedStructureException INSTANCE = new UnsupportedStructureException();
+
+        private UnsupportedStructureException() {
+            super(null, null, false, false);
+        }
+    }
+}
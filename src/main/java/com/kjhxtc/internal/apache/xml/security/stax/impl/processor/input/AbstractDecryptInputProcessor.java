@@ -21,21 +21,25 @@ package com.kjhxtc.internal.apache.xml.security.stax.impl.processor.input;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
-import java.io.OutputStreamWriter;
-import java.io.PipedInputStream;
-import java.io.PipedOutputStream;
-import java.nio.charset.Charset;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
+import java.security.spec.AlgorithmParameterSpec;
 import java.util.ArrayDeque;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Deque;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
 
 import javax.crypto.BadPaddingException;
 import javax.crypto.Cipher;
@@ -46,7 +50,6 @@ import javax.security.auth.DestroyFailedException;
 import javax.security.auth.Destroyable;
 import javax.xml.bind.JAXBElement;
 import javax.xml.bind.JAXBException;
-import javax.xml.bind.Unmarshaller;
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamConstants;
@@ -54,7 +57,6 @@ import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 import javax.xml.stream.events.Attribute;
 
-import org.apache.commons.codec.binary.Base64OutputStream;
 import com.kjhxtc.internal.apache.xml.security.algorithms.JCEMapper;
 import com.kjhxtc.internal.apache.xml.security.binding.xmldsig.KeyInfoType;
 import com.kjhxtc.internal.apache.xml.security.binding.xmlenc.EncryptedDataType;
@@ -62,13 +64,13 @@ import com.kjhxtc.internal.apache.xml.security.binding.xmlenc.EncryptedKeyType;
 import com.kjhxtc.internal.apache.xml.security.binding.xmlenc.ReferenceList;
 import com.kjhxtc.internal.apache.xml.security.binding.xmlenc.ReferenceType;
 import com.kjhxtc.internal.apache.xml.security.binding.xop.Include;
+import com.kjhxtc.internal.apache.xml.security.encryption.XMLCipherUtil;
 import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
 import com.kjhxtc.internal.apache.xml.security.stax.config.ConfigurationProperties;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.AbstractInputProcessor;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.InboundSecurityContext;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.InputProcessorChain;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.SecurePart;
-import com.kjhxtc.internal.apache.xml.security.stax.ext.UncheckedXMLSecurityException;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.XMLSecurityConstants;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.XMLSecurityProperties;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.XMLSecurityUtils;
@@ -77,15 +79,19 @@ import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecNamespace;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecStartElement;
 import com.kjhxtc.internal.apache.xml.security.stax.impl.XMLSecurityEventReader;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.XMLSecurityStructureBinder;
 import com.kjhxtc.internal.apache.xml.security.stax.impl.util.FullyBufferedOutputStream;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.util.CompactXMLSecEventBuffer;
 import com.kjhxtc.internal.apache.xml.security.stax.impl.util.IDGenerator;
 import com.kjhxtc.internal.apache.xml.security.stax.impl.util.IVSplittingOutputStream;
 import com.kjhxtc.internal.apache.xml.security.stax.impl.util.MultiInputStream;
 import com.kjhxtc.internal.apache.xml.security.stax.impl.util.ReplaceableOuputStream;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.util.RingBufferPipe;
 import com.kjhxtc.internal.apache.xml.security.stax.securityToken.InboundSecurityToken;
 import com.kjhxtc.internal.apache.xml.security.stax.securityToken.SecurityTokenConstants;
 import com.kjhxtc.internal.apache.xml.security.stax.securityToken.SecurityTokenFactory;
 import com.kjhxtc.internal.apache.xml.security.stax.securityToken.SecurityTokenProvider;
+import com.kjhxtc.internal.apache.xml.security.utils.Base64DecodingWriter;
 import com.kjhxtc.internal.apache.xml.security.utils.UnsyncByteArrayInputStream;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -103,6 +109,10 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
     protected static final Integer maximumAllowedEncryptedDataEvents =
         Integer.valueOf(ConfigurationProperties.getProperty("MaximumAllowedEncryptedDataEvents"));
 
+    private static final int DECRYPTION_PIPE_SIZE = 8192 * 8;
+    private static final int DECRYPTION_BLOCK_SIZE = 8192 * 2;
+    private static final Executor DEFAULT_DECRYPTION_EXECUTOR = createDefaultDecryptionExecutor();
+
     private final KeyInfoType keyInfoType;
     private final Map<String, ReferenceType> references;
     private final List<ReferenceType> processedReferences;
@@ -110,7 +120,8 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
     private final String uuid = IDGenerator.generateID(null);
     private final QName wrapperElementName = new QName("http://dummy", "dummy", uuid);
 
-    private final ArrayDeque<XMLSecEvent> tmpXmlEventList = new ArrayDeque<>();
+    private final Deque<XMLSecEvent> tmpXmlEventList = getSecurityProperties().isCompactBufferedEvents()
+        ? new CompactXMLSecEventBuffer() : new ArrayDeque<>();
 
     public AbstractDecryptInputProcessor(XMLSecurityProperties securityProperties) throws XMLSecurityException {
         super(securityProperties);
@@ -179,7 +190,7 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
             throws XMLStreamException, XMLSecurityException {
 
         if (!tmpXmlEventList.isEmpty()) {
-            return tmpXmlEventList.pollLast();
+            return tmpXmlEventList.poll();
         }
 
         XMLSecEvent xmlSecEvent = isSecurityHeaderEvent
@@ -207,7 +218,7 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
                     if (referenceType == null) {
                         //if the events were not for us (no matching reference-id the we have to replay the EncryptedHeader elements)
                         if (!tmpXmlEventList.isEmpty()) {
-                            return tmpXmlEventList.pollLast();
+                            return tmpXmlEventList.poll();
                         }
                         return xmlSecEvent;
                     }
@@ -290,11 +301,10 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
                         xmlSecEvents.push(nextEvent);
                         xmlSecEvents.push(XMLSecEventFactory.createXmlSecEndElement(XMLSecurityConstants.TAG_XOP_INCLUDE));
 
-                        Unmarshaller unmarshaller =
-                                XMLSecurityConstants.getJaxbUnmarshaller(getSecurityProperties().isDisableSchemaValidation());
                         @SuppressWarnings("unchecked")
                         JAXBElement<Include> includeJAXBElement =
-                                (JAXBElement<Include>) unmarshaller.unmarshal(new XMLSecurityEventReader(xmlSecEvents, 0));
+                                (JAXBElement<Include>) XMLSecurityConstants.jaxbUnmarshal(
+                                    new XMLSecurityEventReader(xmlSecEvents, 0), getSecurityProperties().isDisableSchemaValidation());
                         Include include = includeJAXBElement.getValue();
                         String href = include.getHref();
 
@@ -304,30 +314,41 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
                         throw new XMLSecurityException(e);
                     }
                 } else {
-                    //create a new Thread for streaming decryption
-                    DecryptionThread decryptionThread = new DecryptionThread(subInputProcessorChain, isSecurityHeaderEvent, nextEvent);
                     Key decryptionKey =
                         inboundSecurityToken.getSecretKey(algorithmURI, XMLSecurityConstants.Enc, encryptedDataType.getId());
                     decryptionKey = XMLSecurityUtils.prepareSecretKey(algorithmURI, decryptionKey.getEncoded());
-                    decryptionThread.setSecretKey(decryptionKey);
-                    decryptionThread.setSymmetricCipher(symCipher);
-                    decryptionThread.setIvLength(ivLength);
-
-                    Thread thread = new Thread(decryptionThread);
-                    thread.setPriority(Thread.NORM_PRIORITY + 1);
-                    thread.setName("decryption thread");
-                    //when an exception in the decryption thread occurs, we want to forward them:
-                    thread.setUncaughtExceptionHandler(decryptedEventReaderInputProcessor);
-
-                    decryptedEventReaderInputProcessor.setDecryptionThread(thread);
 
-                    //we have to start the thread before we call decryptionThread.getPipedInputStream().
-                    //Otherwise we will end in a deadlock, because the StAX reader expects already data.
-                    //@See some lines below:
-                    LOG.debug("Starting decryption thread");
-                    thread.start();
+                    //small CipherValues are buffered and decrypted right here, without the handoff to a decryption task
+                    StringBuilder cipherValue = new StringBuilder();
+                    XMLSecEvent cipherValueEvent =
+                        bufferCipherValue(subInputProcessorChain, isSecurityHeaderEvent, nextEvent, cipherValue);
+                    if (cipherValueEvent == null) {
+                        decryptInputStream = new UnsyncByteArrayInputStream(
+                            decryptInline(cipherValue, symCipher, decryptionKey, algorithmURI, ivLength));
+                    } else {
+                        //create a new task for streaming decryption, which continues after the buffered CipherValue
+                        DecryptionThread decryptionThread =
+                            new DecryptionThread(subInputProcessorChain, isSecurityHeaderEvent, cipherValueEvent);
+                        decryptionThread.setBufferedCipherValue(cipherValue);
+                        decryptionThread.setSecretKey(decryptionKey);
+                        decryptionThread.setSymmetricCipher(symCipher);
+                        decryptionThread.setIvLength(ivLength);
+
+                        //when an exception in the decryption task occurs, we want to forward them:
+                        decryptedEventReaderInputProcessor.setDecryptionThread(decryptionThread);
+
+                        //we have to start the task before the StAX reader is created below.
+                        //Otherwise we will end in a deadlock, because the StAX reader expects already data.
+                        LOG.debug("Starting decryption thread");
+                        Executor executor = getSecurityProperties().getDecryptionExecutor();
+                        try {
+                            (executor != null ? executor : DEFAULT_DECRYPTION_EXECUTOR).execute(decryptionThread);
+                        } catch (RejectedExecutionException e) {
+                            throw new XMLSecurityException(e);
+                        }
 
-                    decryptInputStream = decryptionThread.getPipedInputStream();
+                        decryptInputStream = decryptionThread.getPipedInputStream();
+                    }
                 }
 
                 InputStream prologInputStream;  //NOPMD
@@ -343,13 +364,22 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
 
                 //spec says (4.2): "The cleartext octet sequence obtained in step 3 is
                 //interpreted as UTF-8 encoded character data."
-                XMLStreamReader xmlStreamReader =
-                        inputProcessorChain.getSecurityContext().<XMLInputFactory>get(
+                InputStream decryptedInputStream =
+                        new MultiInputStream(prologInputStream, decryptInputStream, epilogInputStream);
+                //closed by the processor when it is done or fails, which also releases a blocked decryption task
+                decryptedEventReaderInputProcessor.setDecryptedInputStream(decryptedInputStream);
+                XMLStreamReader xmlStreamReader;
+                try {
+                    xmlStreamReader = inputProcessorChain.getSecurityContext().<XMLInputFactory>get(
                                 XMLSecurityConstants.XMLINPUTFACTORY).createXMLStreamReader(
-                                new MultiInputStream(prologInputStream, decryptInputStream, epilogInputStream), StandardCharsets.UTF_8.name());
+                                decryptedInputStream, StandardCharsets.UTF_8.name());
 
-                //forward to wrapper element
-                forwardToWrapperElement(xmlStreamReader);
+                    //forward to wrapper element
+                    forwardToWrapperElement(xmlStreamReader);
+                } catch (XMLStreamException | RuntimeException e) {
+                    decryptedEventReaderInputProcessor.closeDecryptedInputStream();
+                    throw e;
+                }
 
                 decryptedEventReaderInputProcessor.setXmlStreamReader(xmlStreamReader);
 
@@ -363,6 +393,105 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
         return xmlSecEvent;
     }
 
+    /**
+     * Buffers the base64 encoded CipherValue, as long as it is not larger than the inline
+     * decryption threshold.
+     *
+     * @return null if the whole CipherValue was buffered, otherwise the first event which
+     * was not buffered
+     */
+    private XMLSecEvent bufferCipherValue(InputProcessorChain subInputProcessorChain, boolean isSecurityHeaderEvent,
+                                          XMLSecEvent xmlSecEvent, StringBuilder cipherValue)
+            throws XMLStreamException, XMLSecurityException {
+        final int threshold = getSecurityProperties().getInlineDecryptionThreshold();
+        if (threshold <= 0) {
+            return xmlSecEvent;
+        }
+        // End element must be the CipherValue EndElement.
+        while (xmlSecEvent.getEventType() != XMLStreamConstants.END_ELEMENT) {
+            if (xmlSecEvent.getEventType() != XMLStreamConstants.CHARACTERS) {
+                throw new XMLSecurityException(
+                        "stax.unexpectedXMLEvent",
+                        new Object[] {XMLSecurityUtils.getXMLEventAsString(xmlSecEvent)}
+                );
+            }
+            final char[] data = xmlSecEvent.asCharacters().getText();
+            if (cipherValue.length() + data.length > threshold) {
+                return xmlSecEvent;
+            }
+            cipherValue.append(data);
+
+            subInputProcessorChain.reset();
+            if (isSecurityHeaderEvent) {
+                xmlSecEvent = subInputProcessorChain.processHeaderEvent();
+            } else {
+                xmlSecEvent = subInputProcessorChain.processEvent();
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Decrypts a buffered CipherValue. Failures are reported in the same way as by the
+     * streaming DecryptionThread, as an XMLStreamException caused by an IOException.
+     */
+    private byte[] decryptInline(CharSequence cipherValue, Cipher cipher, Key secretKey, String algorithmURI,
+                                 int ivLength)
+            throws XMLStreamException {
+        try {
+            byte[] cipherBytes = Base64DecodingWriter.decode(cipherValue);
+            if (cipherBytes.length < ivLength) {
+                throw new IllegalBlockSizeException("CipherValue is shorter than the IV");
+            }
+            AlgorithmParameterSpec iv = XMLCipherUtil.constructBlockCipherParameters(
+                algorithmURI, Arrays.copyOf(cipherBytes, ivLength));
+            cipher.init(Cipher.DECRYPT_MODE, secretKey, iv);
+            return cipher.doFinal(cipherBytes, ivLength, cipherBytes.length - ivLength);
+        } catch (GeneralSecurityException e) {
+            throw new XMLStreamException(new IOException(e));
+        } catch (IOException e) {
+            throw new XMLStreamException(e);
+        } finally {
+            destroyKey(secretKey);
+        }
+    }
+
+    private static void destroyKey(Key secretKey) {
+        // Clean the secret key from memory now that we're done with it
+        if (secretKey instanceof Destroyable) {
+            try {
+                ((Destroyable)secretKey).destroy();
+            } catch (DestroyFailedException e) {
+                LOG.debug("Error destroying key: {}", e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Runs each decryption on a new virtual thread on Java 21 and later, and on a new
+     * platform thread otherwise.
+     */
+    private static Executor createDefaultDecryptionExecutor() {
+        String specVersion = System.getProperty("java.specification.version", "1.8");
+        if (!specVersion.startsWith("1.") && Integer.parseInt(specVersion) >= 21) {
+            try {
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+                builder = builderClass.getMethod("name", String.class).invoke(builder, "decryption thread");
+                ThreadFactory threadFactory = (ThreadFactory) builderClass.getMethod("factory").invoke(builder);
+                return runnable -> threadFactory.newThread(runnable).start();
+            } catch (ReflectiveOperationException | RuntimeException e) {
+                LOG.debug("Virtual threads are not available for decryption: {}", e.getMessage());
+            }
+        }
+        return runnable -> {
+            Thread thread = new Thread(runnable);
+            thread.setPriority(Thread.NORM_PRIORITY + 1);
+            thread.setName("decryption thread");
+            thread.start();
+        };
+    }
+
     protected InputStream applyTransforms(ReferenceType referenceType, InputStream inputStream) throws XMLSecurityException {
         return inputStream;
     }
@@ -532,11 +661,13 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
         EncryptedDataType encryptedDataType;
 
         try {
-            Unmarshaller unmarshaller =
-                    XMLSecurityConstants.getJaxbUnmarshaller(getSecurityProperties().isDisableSchemaValidation());
+            Object structure = XMLSecurityStructureBinder.bind(xmlSecEvents, 0);
+            if (structure == null) {
+                structure = XMLSecurityConstants.jaxbUnmarshal(
+                    new XMLSecurityEventReader(xmlSecEvents, 0), getSecurityProperties().isDisableSchemaValidation());
+            }
             @SuppressWarnings("unchecked")
-            JAXBElement<EncryptedDataType> encryptedDataTypeJAXBElement =
-                    (JAXBElement<EncryptedDataType>) unmarshaller.unmarshal(new XMLSecurityEventReader(xmlSecEvents, 0));
+            JAXBElement<EncryptedDataType> encryptedDataTypeJAXBElement = (JAXBElement<EncryptedDataType>) structure;
             encryptedDataType = encryptedDataTypeJAXBElement.getValue();
 
         } catch (JAXBException e) {
@@ -549,7 +680,7 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
                                                      XMLSecEvent xmlSecEvent) throws XMLStreamException, XMLSecurityException {
         InputProcessorChain subInputProcessorChain = inputProcessorChain.createSubChain(this);
         do {
-            tmpXmlEventList.push(xmlSecEvent);
+            tmpXmlEventList.offer(xmlSecEvent);
 
             subInputProcessorChain.reset();
             if (isSecurityHeaderEvent) {
@@ -561,7 +692,7 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
         while (!(xmlSecEvent.getEventType() == XMLStreamConstants.START_ELEMENT
                 && xmlSecEvent.asStartElement().getName().equals(XMLSecurityConstants.TAG_xenc_EncryptedData)));
 
-        tmpXmlEventList.push(xmlSecEvent);
+        tmpXmlEventList.offer(xmlSecEvent);
         return xmlSecEvent;
     }
 
@@ -615,7 +746,7 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
      * forwards the generated XMLEvents
      */
     public abstract class AbstractDecryptedEventReaderInputProcessor
-            extends AbstractInputProcessor implements Thread.UncaughtExceptionHandler {
+            extends AbstractInputProcessor {
 
         private int currentXMLStructureDepth;
         private XMLStreamReader xmlStreamReader;
@@ -624,7 +755,8 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
         private final InboundSecurityToken inboundSecurityToken;
         private boolean rootElementProcessed;
         private EncryptedDataType encryptedDataType;
-        private Thread decryptionThread;
+        private DecryptionThread decryptionThread;
+        private InputStream decryptedInputStream;
 
         public AbstractDecryptedEventReaderInputProcessor(
                 XMLSecurityProperties securityProperties, SecurePart.Modifier encryptionModifier,
@@ -646,7 +778,7 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
             }
         }
 
-        public void setDecryptionThread(Thread decryptionThread) {
+        void setDecryptionThread(DecryptionThread decryptionThread) {
             this.decryptionThread = decryptionThread;
         }
 
@@ -654,6 +786,25 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
             this.xmlStreamReader = xmlStreamReader;
         }
 
+        void setDecryptedInputStream(InputStream decryptedInputStream) {
+            this.decryptedInputStream = decryptedInputStream;
+        }
+
+        /**
+         * Closes the stream the decrypted events are read from. This closes the reading side of
+         * the pipe of a decryption task, so that the task fails instead of waiting for a reader.
+         */
+        void closeDecryptedInputStream() {
+            if (decryptedInputStream != null) {
+                try {
+                    decryptedInputStream.close();
+                } catch (IOException e) { //NOPMD
+                    //ignore, the stream is not read anymore
+                }
+                decryptedInputStream = null;
+            }
+        }
+
         @Override
         public XMLSecEvent processHeaderEvent(InputProcessorChain inputProcessorChain)
                 throws XMLStreamException, XMLSecurityException {
@@ -668,6 +819,16 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
 
         private XMLSecEvent processEvent(InputProcessorChain inputProcessorChain, boolean headerEvent)
                 throws XMLStreamException, XMLSecurityException {
+            try {
+                return processDecryptedEvent(inputProcessorChain, headerEvent);
+            } catch (XMLStreamException | XMLSecurityException | RuntimeException e) {
+                closeDecryptedInputStream();
+                throw e;
+            }
+        }
+
+        private XMLSecEvent processDecryptedEvent(InputProcessorChain inputProcessorChain, boolean headerEvent)
+                throws XMLStreamException, XMLSecurityException {
             //did an exception occur during decryption in the decryption thread?
             testAndThrowUncaughtException();
 
@@ -729,16 +890,20 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
                     }
 
                     if (decryptionThread != null) {
-                        //wait until the decryption thread dies...
+                        //wait until the decryption task is finished...
                         try {
-                            decryptionThread.join();
+                            decryptionThread.awaitFinished();
                         } catch (InterruptedException e) {
+                            Thread.currentThread().interrupt();
                             throw new XMLStreamException(e);
                         }
                         //...and test again for an exception in the decryption thread.
                         testAndThrowUncaughtException();
                     }
                     inputProcessorChain.removeProcessor(this);
+                    xmlStreamReader.next();
+                    closeDecryptedInputStream();
+                    return xmlSecEvent;
                 }
             }
             xmlStreamReader.next();
@@ -749,58 +914,55 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
                 InputProcessorChain inputProcessorChain, XMLSecStartElement xmlSecStartElement,
                 InboundSecurityToken inboundSecurityToken, EncryptedDataType encryptedDataType) throws XMLSecurityException;
 
-        private volatile Throwable thrownException;
-
-        @Override
-        public void uncaughtException(Thread t, Throwable e) {
-            this.thrownException = e;
-        }
-
         private void testAndThrowUncaughtException() throws XMLStreamException {
-            if (this.thrownException != null) {
-                if (this.thrownException instanceof UncheckedXMLSecurityException) {
-                    UncheckedXMLSecurityException uxse = (UncheckedXMLSecurityException) this.thrownException;
-                    throw new XMLStreamException(uxse.getCause());
-                } else {
-                    throw new XMLStreamException(this.thrownException.getCause());
-                }
+            Exception thrownException = decryptionThread != null ? decryptionThread.getThrownException() : null;
+            if (thrownException != null) {
+                throw new XMLStreamException(thrownException);
             }
         }
     }
 
     /**
-     * The DecryptionThread handles encrypted XML-Parts
+     * The DecryptionThread handles encrypted XML-Parts. It is run by the decryption Executor and
+     * writes the decrypted data into a pipe, which is read by the StAX reader of the
+     * DecryptedEventReaderInputProcessor.
      */
     static class DecryptionThread implements Runnable {
 
         private final InputProcessorChain inputProcessorChain;
         private final boolean header;
-        private final PipedOutputStream pipedOutputStream;
-        private final PipedInputStream pipedInputStream;
+        private final RingBufferPipe pipe = new RingBufferPipe(DECRYPTION_PIPE_SIZE);
+        private final CountDownLatch finished = new CountDownLatch(1);
+        private volatile Exception thrownException;
         private Cipher symmetricCipher;
         private int ivLength;
         private Key secretKey;
         private final XMLSecEvent firstEvent;
+        private CharSequence bufferedCipherValue;
 
         protected DecryptionThread(InputProcessorChain inputProcessorChain,
                                    boolean header,
-                                   XMLSecEvent firstEvent) throws XMLStreamException, XMLSecurityException {
+                                   XMLSecEvent firstEvent) {
 
             this.inputProcessorChain = inputProcessorChain;
             this.header = header;
             this.firstEvent = firstEvent;
+        }
 
-            //prepare the piped streams and connect them:
-            this.pipedInputStream = new PipedInputStream(8192 * 5);
-            try {
-                this.pipedOutputStream = new PipedOutputStream(pipedInputStream);
-            } catch (IOException e) {
-                throw new XMLStreamException(e);
-            }
+        public InputStream getPipedInputStream() {
+            return pipe.getInputStream();
+        }
+
+        void setBufferedCipherValue(CharSequence bufferedCipherValue) {
+            this.bufferedCipherValue = bufferedCipherValue;
+        }
+
+        Exception getThrownException() {
+            return thrownException;
         }
 
-        public PipedInputStream getPipedInputStream() {
-            return pipedInputStream;
+        void awaitFinished() throws InterruptedException {
+            finished.await();
         }
 
         private XMLSecEvent processNextEvent() throws XMLSecurityException, XMLStreamException {
@@ -822,9 +984,9 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
                 if (cipher.getAlgorithm().toUpperCase().contains("GCM")) {
                     //we have to buffer the whole data until they are authenticated.
                     //In GCM mode the authentication tag is appended after the last cipher block...
-                    outputStream = new FullyBufferedOutputStream(pipedOutputStream);
+                    outputStream = new FullyBufferedOutputStream(pipe.getOutputStream());
                 } else {
-                    outputStream = pipedOutputStream;
+                    outputStream = pipe.getOutputStream();
                 }
 
                 final CipherOutputStream cipherOutputStream = new CipherOutputStream(outputStream, cipher) { //NOPMD
@@ -845,23 +1007,22 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
                 IVSplittingOutputStream ivSplittingOutputStream = new IVSplittingOutputStream(  //NOPMD
                         cipherOutputStream,
                         cipher, getSecretKey(), getIvLength());
-                //buffering seems not to help
-                //bufferedOutputStream = new BufferedOutputStream(new Base64OutputStream(ivSplittingOutputStream, false), 8192 * 5);
                 ReplaceableOuputStream replaceableOuputStream = new ReplaceableOuputStream(ivSplittingOutputStream);    //NOPMD
-                OutputStream base64OutputStream = new Base64OutputStream(replaceableOuputStream, false); //NOPMD
+                //the characters are decoded as they are, and the cipher is fed in blocks of decoded octets
+                Writer base64Writer = new Base64DecodingWriter(replaceableOuputStream, DECRYPTION_BLOCK_SIZE); //NOPMD
                 ivSplittingOutputStream.setParentOutputStream(replaceableOuputStream);
-                OutputStreamWriter outputStreamWriter = //NOPMD
-                        new OutputStreamWriter(base64OutputStream,
-                                               Charset.forName(inputProcessorChain.getDocumentContext().getEncoding()));
 
                 //read the encrypted data from the stream until an end-element occurs and write then
                 //to the decrypter-stream
+                if (bufferedCipherValue != null) {
+                    base64Writer.append(bufferedCipherValue);
+                }
                 XMLSecEvent xmlSecEvent = firstEvent;
                 // End element must be the CipherValue EndElement.
                 while (xmlSecEvent.getEventType() != XMLStreamConstants.END_ELEMENT) {
                     if (xmlSecEvent.getEventType() == XMLStreamConstants.CHARACTERS) {
                         final char[] data = xmlSecEvent.asCharacters().getText();
-                        outputStreamWriter.write(data);
+                        base64Writer.write(data);
                     } else {
                         throw new XMLSecurityException(
                                 "stax.unexpectedXMLEvent",
@@ -872,28 +1033,23 @@ public abstract class AbstractDecryptInputProcessor extends AbstractInputProcess
                 }
 
                 //close to get Cipher.doFinal() called
-                outputStreamWriter.close();
+                base64Writer.close();
 
-                // Clean the secret key from memory now that we're done with it
-                if (secretKey instanceof Destroyable) {
-                    try {
-                        ((Destroyable)secretKey).destroy();
-                    } catch (DestroyFailedException e) {
-                        LOG.debug("Error destroying key: {}", e.getMessage());
-                    }
-                }
+                destroyKey(secretKey);
 
                 LOG.debug("Decryption thread finished");
 
             } catch (Exception e) {
+                thrownException = e;
+            } finally {
+                //we have to close the pipe when an exception occurs. Otherwise we can run into a deadlock when an exception occurs
+                //before we have written any byte to the pipe.
                 try {
-                    //we have to close the pipe when an exception occurs. Otherwise we can run into a deadlock when an exception occurs
-                    //before we have written any byte to the pipe.
-                    this.pipedOutputStream.close();
-                } catch (IOException e1) { //NOPMD
-                    //ignore since we will throw the original exception below
+                    pipe.getOutputStream().close();
+                } catch (IOException e) { //NOPMD
+                    //ignore since the original exception is reported by the reader
                 }
-                throw new UncheckedXMLSecurityException(e);
+                finished.countDown();
             }
         }
 
@@ -523,11 +523,14 @@ public abstract class AbstractSignatureReferenceVerifyInputProcessor extends Abs
         }
 
         public void setStartElement(XMLSecStartElement startElement) {
-            this.startElementPath = startElement.getElementPath();
+            this.startElementPath = null;
             this.startElement = startElement;
         }
 
         public List<QName> getStartElementPath() {
+            if (startElementPath == null && startElement != null) {
+                startElementPath = startElement.getElementPath();
+            }
             return startElementPath;
         }
     }
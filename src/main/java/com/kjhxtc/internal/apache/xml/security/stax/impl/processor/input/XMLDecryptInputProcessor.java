@@ -19,10 +19,8 @@
 package com.kjhxtc.internal.apache.xml.security.stax.impl.processor.input;
 
 import java.io.InputStream;
-import java.util.List;
 
 import javax.crypto.Cipher;
-import javax.xml.namespace.QName;
 
 import com.kjhxtc.internal.apache.xml.security.binding.xmlenc.EncryptedDataType;
 import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
@@ -77,11 +75,9 @@ public class XMLDecryptInputProcessor extends AbstractDecryptInputProcessor {
             throws XMLSecurityException {
 
         final DocumentContext documentContext = inputProcessorChain.getDocumentContext();
-        List<QName> elementPath = parentXMLSecStartElement.getElementPath();
 
         ContentEncryptedElementSecurityEvent contentEncryptedElementSecurityEvent =
                 new ContentEncryptedElementSecurityEvent(inboundSecurityToken, true, documentContext.getProtectionOrder());
-        contentEncryptedElementSecurityEvent.setElementPath(elementPath);
         contentEncryptedElementSecurityEvent.setXmlSecEvent(parentXMLSecStartElement);
         contentEncryptedElementSecurityEvent.setSecurityToken(inboundSecurityToken);
         contentEncryptedElementSecurityEvent.setCorrelationID(encryptedDataType.getId());
@@ -125,11 +121,9 @@ public class XMLDecryptInputProcessor extends AbstractDecryptInputProcessor {
                                               EncryptedDataType encryptedDataType) throws XMLSecurityException {
             //fire a SecurityEvent:
             final DocumentContext documentContext = inputProcessorChain.getDocumentContext();
-            List<QName> elementPath = xmlSecStartElement.getElementPath();
 
             EncryptedElementSecurityEvent encryptedElementSecurityEvent =
                     new EncryptedElementSecurityEvent(inboundSecurityToken, true, documentContext.getProtectionOrder());
-            encryptedElementSecurityEvent.setElementPath(elementPath);
             encryptedElementSecurityEvent.setXmlSecEvent(xmlSecStartElement);
             encryptedElementSecurityEvent.setSecurityToken(inboundSecurityToken);
             encryptedElementSecurityEvent.setCorrelationID(encryptedDataType.getId());
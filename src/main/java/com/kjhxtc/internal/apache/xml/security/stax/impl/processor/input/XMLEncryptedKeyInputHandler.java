@@ -18,6 +18,7 @@
  */
 package com.kjhxtc.internal.apache.xml.security.stax.impl.processor.input;
 
+import java.io.IOException;
 import java.security.InvalidAlgorithmParameterException;
 import java.security.InvalidKeyException;
 import java.security.Key;
@@ -25,7 +26,6 @@ import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 import java.security.NoSuchProviderException;
 import java.security.spec.MGF1ParameterSpec;
-import java.util.Base64;
 import java.util.Deque;
 
 import javax.crypto.Cipher;
@@ -58,6 +58,8 @@ import com.kjhxtc.internal.apache.xml.security.stax.securityToken.InboundSecurit
 import com.kjhxtc.internal.apache.xml.security.stax.securityToken.SecurityTokenConstants;
 import com.kjhxtc.internal.apache.xml.security.stax.securityToken.SecurityTokenFactory;
 import com.kjhxtc.internal.apache.xml.security.stax.securityToken.SecurityTokenProvider;
+import com.kjhxtc.internal.apache.xml.security.utils.Base64DecodingWriter;
+import com.kjhxtc.internal.apache.xml.security.utils.UnsyncByteArrayOutputStream;
 import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -267,23 +269,29 @@ public class XMLEncryptedKeyInputHandler extends AbstractInputSecurityHeaderHand
 
             private byte[] getEncryptedBytes(CipherValueType cipherValue) throws XMLSecurityException {
 
-                StringBuilder sb = new StringBuilder();
-
-                for (Object obj : cipherValue.getContent()) {
-                    if (obj instanceof String) {
-                        sb.append((String)obj);
-                    } else if (obj instanceof JAXBElement<?>) {
-                        JAXBElement<?> element = (JAXBElement<?>)obj;
-                        if (XMLSecurityConstants.TAG_XOP_INCLUDE.equals(element.getName())) {
-                            Include include = (Include)element.getValue();
-                            if (include != null && include.getHref() != null && include.getHref().startsWith("cid:")) {
-                                return getBytesFromAttachment(include.getHref(), securityProperties);
+                UnsyncByteArrayOutputStream encryptedBytes = new UnsyncByteArrayOutputStream(); //NOPMD
+                Base64DecodingWriter base64Writer = new Base64DecodingWriter(encryptedBytes); //NOPMD
+
+                try {
+                    for (Object obj : cipherValue.getContent()) {
+                        if (obj instanceof String) {
+                            base64Writer.write((String)obj);
+                        } else if (obj instanceof JAXBElement<?>) {
+                            JAXBElement<?> element = (JAXBElement<?>)obj;
+                            if (XMLSecurityConstants.TAG_XOP_INCLUDE.equals(element.getName())) {
+                                Include include = (Include)element.getValue();
+                                if (include != null && include.getHref() != null && include.getHref().startsWith("cid:")) {
+                                    return getBytesFromAttachment(include.getHref(), securityProperties);
+                                }
                             }
                         }
                     }
+                    base64Writer.close();
+                } catch (IOException e) {
+                    throw new XMLSecurityException(e);
                 }
 
-                return Base64.getMimeDecoder().decode(sb.toString());
+                return encryptedBytes.toByteArray();
             }
 
             @Override
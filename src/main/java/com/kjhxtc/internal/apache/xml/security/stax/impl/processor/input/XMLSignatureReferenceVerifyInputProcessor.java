@@ -52,7 +52,6 @@ public class XMLSignatureReferenceVerifyInputProcessor extends AbstractSignature
         final DocumentContext documentContext = inputProcessorChain.getDocumentContext();
         SignedElementSecurityEvent signedElementSecurityEvent =
                 new SignedElementSecurityEvent(getInboundSecurityToken(), true, documentContext.getProtectionOrder());
-        signedElementSecurityEvent.setElementPath(elementPath);
         signedElementSecurityEvent.setXmlSecEvent(xmlSecEvent);
         signedElementSecurityEvent.setCorrelationID(referenceType.getId());
         inputProcessorChain.getSecurityContext().registerSecurityEvent(signedElementSecurityEvent);
@@ -40,7 +40,6 @@ import javax.xml.stream.XMLEventWriter;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 
-import org.apache.commons.codec.binary.Base64OutputStream;
 import com.kjhxtc.internal.apache.xml.security.algorithms.JCEMapper;
 import com.kjhxtc.internal.apache.xml.security.encryption.XMLCipherUtil;
 import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
@@ -57,6 +56,7 @@ import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecStartElement;
 import com.kjhxtc.internal.apache.xml.security.stax.impl.EncryptionPartDef;
 import com.kjhxtc.internal.apache.xml.security.stax.impl.XMLSecurityEventWriter;
 import com.kjhxtc.internal.apache.xml.security.stax.impl.util.TrimmerOutputStream;
+import com.kjhxtc.internal.apache.xml.security.utils.Base64EncodingOutputStream;
 import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
 
 /**
@@ -175,12 +175,9 @@ public abstract class AbstractEncryptOutputProcessor extends AbstractOutputProce
                 symmetricCipher.init(Cipher.ENCRYPT_MODE, encryptionPartDef.getSymmetricKey(), parameterSpec);
 
                 characterEventGeneratorOutputStream = new CharacterEventGeneratorOutputStream();
-                Base64OutputStream base64EncoderStream = null;  //NOPMD
-                if (XMLUtils.isIgnoreLineBreaks()) {
-                    base64EncoderStream = new Base64OutputStream(characterEventGeneratorOutputStream, true, 0, null);
-                } else {
-                    base64EncoderStream = new Base64OutputStream(characterEventGeneratorOutputStream, true);
-                }
+                OutputStream base64EncoderStream = //NOPMD
+                    new Base64EncodingOutputStream(characterEventGeneratorOutputStream,
+                        XMLUtils.isIgnoreLineBreaks() ? 0 : Base64EncodingOutputStream.MIME_LINE_LENGTH);
                 base64EncoderStream.write(iv);
 
                 OutputStream outputStream = new CipherOutputStream(base64EncoderStream, symmetricCipher);   //NOPMD
@@ -410,9 +407,9 @@ public abstract class AbstractEncryptOutputProcessor extends AbstractOutputProce
     }
 
     private char[] byteToCharArray(byte[]  bytes, int off, int len) {
-        char[] chars = new char[len - off];
-        for (int i = off; i < len; i++) {
-            chars[i] = (char)bytes[i];
+        char[] chars = new char[len];
+        for (int i = 0; i < len; i++) {
+            chars[i] = (char)bytes[off + i];
         }
         return chars;
     }
@@ -18,12 +18,9 @@
  */
 package com.kjhxtc.internal.apache.xml.security.stax.impl.securityToken;
 
-import java.io.IOException;
-import java.io.InputStream;
 import java.security.Key;
 import java.security.PublicKey;
 import java.security.cert.CertificateException;
-import java.security.cert.CertificateFactory;
 import java.security.cert.X509Certificate;
 import java.util.Map;
 
@@ -35,6 +32,7 @@ import com.kjhxtc.internal.apache.xml.security.binding.xmldsig.X509DataType;
 import com.kjhxtc.internal.apache.xml.security.binding.xmldsig.X509IssuerSerialType;
 import com.kjhxtc.internal.apache.xml.security.binding.xmldsig11.ECKeyValueType;
 import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
+import com.kjhxtc.internal.apache.xml.security.keys.content.x509.X509CertificateCache;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.InboundSecurityContext;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.XMLSecurityConstants;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.XMLSecurityProperties;
@@ -45,7 +43,6 @@ import com.kjhxtc.internal.apache.xml.security.stax.securityToken.SecurityTokenC
 import com.kjhxtc.internal.apache.xml.security.stax.securityToken.SecurityTokenConstants.TokenType;
 import com.kjhxtc.internal.apache.xml.security.stax.securityToken.SecurityTokenFactory;
 import com.kjhxtc.internal.apache.xml.security.utils.RFC2253Parser;
-import com.kjhxtc.internal.apache.xml.security.utils.UnsyncByteArrayInputStream;
 
 /**
  * Factory to create SecurityToken Objects from keys in XML
@@ -294,10 +291,9 @@ public class SecurityTokenFactoryImpl extends SecurityTokenFactory {
      */
     private static X509Certificate getCertificateFromBytes(byte[] data)
             throws XMLSecurityException {
-        try (InputStream in = new UnsyncByteArrayInputStream(data)) {
-            CertificateFactory factory = CertificateFactory.getInstance("X.509");
-            return (X509Certificate) factory.generateCertificate(in);
-        } catch (CertificateException | IOException e) {
+        try {
+            return X509CertificateCache.getInstance().getCertificate(data);
+        } catch (CertificateException e) {
             throw new XMLSecurityException(e);
         }
     }
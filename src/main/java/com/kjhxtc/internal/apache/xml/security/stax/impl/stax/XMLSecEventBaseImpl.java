@@ -77,6 +77,22 @@ public abstract class XMLSecEventBaseImpl implements XMLSecEvent {
         return elementPath;
     }
 
+    @Override
+    public int getElementPathHash() {
+        if (parentXMLSecStartELement != null) {
+            return parentXMLSecStartELement.getElementPathHash();
+        }
+        return 1;
+    }
+
+    @Override
+    public boolean matchesElementPath(List<QName> elementPath) {
+        if (parentXMLSecStartELement != null) {
+            return parentXMLSecStartELement.matchesElementPath(elementPath);
+        }
+        return elementPath.isEmpty();
+    }
+
     @Override
     public XMLSecStartElement getStartElementAtLevel(int level) {
         if (getDocumentLevel() < level) {
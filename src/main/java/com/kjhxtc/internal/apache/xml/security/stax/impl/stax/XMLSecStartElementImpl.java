@@ -124,6 +124,25 @@ public class XMLSecStartElementImpl extends XMLSecEventBaseImpl implements XMLSe
         list.add(this.getName());
     }
 
+    @Override
+    public int getElementPathHash() {
+        return 31 * super.getElementPathHash() + this.elementName.hashCode();
+    }
+
+    @Override
+    public boolean matchesElementPath(List<QName> elementPath) {
+        int i = elementPath.size() - 1;
+        XMLSecStartElement xmlSecStartElement = this;
+        while (xmlSecStartElement != null) {
+            if (i < 0 || !xmlSecStartElement.getName().equals(elementPath.get(i))) {
+                return false;
+            }
+            xmlSecStartElement = xmlSecStartElement.getParentXMLSecStartElement();
+            i--;
+        }
+        return i < 0;
+    }
+
     @Override
     public XMLSecStartElement getStartElementAtLevel(int level) {
         int thisLevel = getDocumentLevel();
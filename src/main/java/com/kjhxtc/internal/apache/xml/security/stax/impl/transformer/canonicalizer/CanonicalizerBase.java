@@ -27,12 +27,12 @@ import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 import java.util.Map;
-import java.util.WeakHashMap;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamConstants;
 import javax.xml.stream.XMLStreamException;
 
+import com.kjhxtc.internal.apache.xml.security.c14n.implementations.Utf8NameCache;
 import com.kjhxtc.internal.apache.xml.security.c14n.implementations.UtfHelpper;
 import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.Transformer;
@@ -80,7 +80,7 @@ public abstract class CanonicalizerBase extends TransformIdentity {
         NODE_AFTER_DOCUMENT_ELEMENT
     }
 
-    private static final Map<String, byte[]> CACHE = Collections.synchronizedMap(new WeakHashMap<>());
+    private static final Utf8NameCache CACHE = Utf8NameCache.getInstance();
     private final C14NStack<XMLSecEvent> outputStack = new C14NStack<>();
     private boolean includeComments = false;
     private DocumentLevel currentDocumentLevel = DocumentLevel.NODE_BEFORE_DOCUMENT_ELEMENT;
@@ -413,7 +413,7 @@ public abstract class CanonicalizerBase extends TransformIdentity {
     }
 
     protected static void outputAttrToWriter(final String prefix, final String name, final String value, final OutputStream writer,
-                                             final Map<String, byte[]> CACHE) throws IOException {
+                                             final Utf8NameCache CACHE) throws IOException {
         writer.write(' ');
         if (prefix != null) {
             UtfHelpper.writeByte(prefix, writer, CACHE);
@@ -0,0 +1,188 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.stax.impl.util;
+
+import java.util.AbstractCollection;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEvent;
+
+/**
+ * The {@link Deque} operations shared by the FIFO event buffers. Adding events at the end,
+ * taking them from the front and pushing a taken event back keep the buffered events in
+ * their stored form. The other operations, such as iteration, the operations on the end of
+ * the queue and the removal of a given event, first move all buffered events into memory.
+ */
+abstract class AbstractXMLSecEventBuffer extends AbstractCollection<XMLSecEvent> implements Deque<XMLSecEvent> {
+
+    /**
+     * @return the events in front of the stored ones, which include the events pushed back
+     */
+    abstract ArrayDeque<XMLSecEvent> head();
+
+    /**
+     * Moves all buffered events in front of the buffer, where they are held in memory.
+     *
+     * @return the buffered events
+     */
+    ArrayDeque<XMLSecEvent> inMemory() {
+        ArrayDeque<XMLSecEvent> head = head();
+        if (head.size() != size()) {
+            ArrayDeque<XMLSecEvent> xmlSecEvents = new ArrayDeque<>(size());
+            for (XMLSecEvent xmlSecEvent = pollFirst(); xmlSecEvent != null; xmlSecEvent = pollFirst()) {
+                xmlSecEvents.addLast(xmlSecEvent);
+            }
+            head.addAll(xmlSecEvents);
+        }
+        return head;
+    }
+
+    @Override
+    public abstract boolean offerLast(XMLSecEvent xmlSecEvent);
+
+    @Override
+    public abstract XMLSecEvent pollFirst();
+
+    /**
+     * Puts an event which was taken from the front back in front of the buffer.
+     */
+    @Override
+    public abstract void addFirst(XMLSecEvent xmlSecEvent);
+
+    @Override
+    public boolean offerFirst(XMLSecEvent xmlSecEvent) {
+        addFirst(xmlSecEvent);
+        return true;
+    }
+
+    @Override
+    public void addLast(XMLSecEvent xmlSecEvent) {
+        offerLast(xmlSecEvent);
+    }
+
+    @Override
+    public XMLSecEvent removeFirst() {
+        XMLSecEvent xmlSecEvent = pollFirst();
+        if (xmlSecEvent == null) {
+            throw new NoSuchElementException();
+        }
+        return xmlSecEvent;
+    }
+
+    @Override
+    public XMLSecEvent peekFirst() {
+        XMLSecEvent xmlSecEvent = pollFirst();
+        if (xmlSecEvent != null) {
+            addFirst(xmlSecEvent);
+        }
+        return xmlSecEvent;
+    }
+
+    @Override
+    public XMLSecEvent getFirst() {
+        XMLSecEvent xmlSecEvent = peekFirst();
+        if (xmlSecEvent == null) {
+            throw new NoSuchElementException();
+        }
+        return xmlSecEvent;
+    }
+
+    @Override
+    public boolean add(XMLSecEvent xmlSecEvent) {
+        return offerLast(xmlSecEvent);
+    }
+
+    @Override
+    public boolean offer(XMLSecEvent xmlSecEvent) {
+        return offerLast(xmlSecEvent);
+    }
+
+    @Override
+    public XMLSecEvent remove() {
+        return removeFirst();
+    }
+
+    @Override
+    public XMLSecEvent poll() {
+        return pollFirst();
+    }
+
+    @Override
+    public XMLSecEvent element() {
+        return getFirst();
+    }
+
+    @Override
+    public XMLSecEvent peek() {
+        return peekFirst();
+    }
+
+    @Override
+    public void push(XMLSecEvent xmlSecEvent) {
+        addFirst(xmlSecEvent);
+    }
+
+    @Override
+    public XMLSecEvent pop() {
+        return removeFirst();
+    }
+
+    @Override
+    public XMLSecEvent removeLast() {
+        return inMemory().removeLast();
+    }
+
+    @Override
+    public XMLSecEvent pollLast() {
+        return inMemory().pollLast();
+    }
+
+    @Override
+    public XMLSecEvent getLast() {
+        return inMemory().getLast();
+    }
+
+    @Override
+    public XMLSecEvent peekLast() {
+        return inMemory().peekLast();
+    }
+
+    @Override
+    public boolean removeFirstOccurrence(Object o) {
+        return inMemory().removeFirstOccurrence(o);
+    }
+
+    @Override
+    public boolean removeLastOccurrence(Object o) {
+        return inMemory().removeLastOccurrence(o);
+    }
+
+    @Override
+    public Iterator<XMLSecEvent> iterator() {
+        return inMemory().iterator();
+    }
+
+    @Override
+    public Iterator<XMLSecEvent> descendingIterator() {
+        return inMemory().descendingIterator();
+    }
+}
@@ -0,0 +1,214 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.stax.impl.util;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+
+/**
+ * A FIFO buffer of XMLSecEvents which holds the events in memory in the compact binary form
+ * of the {@link XMLSecEventCodec} instead of as objects. A buffered start element takes a
+ * few bytes for its name and namespaces, which are shared through the symbol tables of the
+ * codec, plus its attribute values, instead of an event, its lists, and an object for each
+ * attribute and namespace.
+ * <p></p>
+ * The events taken from the buffer are new objects, equal to but not the same as the ones
+ * which were added. Their parent elements are set again from the buffered sequence, starting
+ * with the parent of the first event added to the empty buffer, so that the buffered events
+ * must form a contiguous part of a document. Events not created by the XMLSecEventFactory
+ * are kept as they are.
+ * <p></p>
+ * Adding events at the end, taking them from the front and pushing a taken event back keep
+ * the events encoded. The other {@link java.util.Deque} operations, such as iteration, decode
+ * all buffered events first.
+ */
+public class CompactXMLSecEventBuffer extends AbstractXMLSecEventBuffer {
+
+    /** The events which were pushed back, or decoded for an operation other than taking the first one */
+    private final ArrayDeque<XMLSecEvent> head = new ArrayDeque<>();
+
+    private final ByteQueue bytes = new ByteQueue();
+    private final List<XMLSecEvent> retained = new ArrayList<>();
+    private final XMLSecEventCodec.Encoder encoder;
+    private final XMLSecEventCodec.Decoder decoder;
+    private XMLSecStartElement parentXMLSecStartElement;
+    private int encodedEvents;
+
+    public CompactXMLSecEventBuffer() {
+        encoder = XMLSecEventCodec.newEncoder(new DataOutputStream(bytes.out), retained);
+        decoder = XMLSecEventCodec.newDecoder(new DataInputStream(bytes.in), retained);
+    }
+
+    /**
+     * @return the number of bytes the buffered events take in encoded form
+     */
+    public int getEncodedBytes() {
+        return bytes.size();
+    }
+
+    @Override
+    public boolean offerLast(XMLSecEvent xmlSecEvent) {
+        if (xmlSecEvent == null) {
+            throw new NullPointerException();
+        }
+        if (isEmpty()) {
+            parentXMLSecStartElement = xmlSecEvent.getParentXMLSecStartElement();
+        }
+        try {
+            encoder.write(xmlSecEvent);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        encodedEvents++;
+        return true;
+    }
+
+    @Override
+    public XMLSecEvent pollFirst() {
+        if (!head.isEmpty()) {
+            return head.pollFirst();
+        }
+        if (encodedEvents == 0) {
+            return null;
+        }
+        XMLSecEvent xmlSecEvent;
+        try {
+            xmlSecEvent = decoder.read();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        if (--encodedEvents == 0) {
+            bytes.reset();
+            retained.clear();
+        }
+
+        if (xmlSecEvent.getParentXMLSecStartElement() == null) {
+            xmlSecEvent.setParentXMLSecStartElement(parentXMLSecStartElement);
+        }
+        if (xmlSecEvent.isStartElement()) {
+            parentXMLSecStartElement = xmlSecEvent.asStartElement();
+        } else if (xmlSecEvent.isEndElement()) {
+            XMLSecStartElement startElement = xmlSecEvent.getParentXMLSecStartElement();
+            parentXMLSecStartElement = startElement != null ? startElement.getParentXMLSecStartElement() : null;
+        }
+        return xmlSecEvent;
+    }
+
+    @Override
+    ArrayDeque<XMLSecEvent> head() {
+        return head;
+    }
+
+    @Override
+    public void addFirst(XMLSecEvent xmlSecEvent) {
+        head.addFirst(xmlSecEvent);
+    }
+
+    @Override
+    public int size() {
+        return head.size() + encodedEvents;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head.isEmpty() && encodedEvents == 0;
+    }
+
+    @Override
+    public void clear() {
+        head.clear();
+        // the symbol tables of the codec must stay in step, so skip the unread events
+        while (encodedEvents > 0) {
+            pollFirst();
+        }
+        parentXMLSecStartElement = null;
+    }
+
+    /**
+     * A growable byte array which is written at the end and read from the front.
+     */
+    private static final class ByteQueue {
+
+        private byte[] buf = new byte[256];
+        private int readPos;
+        private int writePos;
+
+        final OutputStream out = new OutputStream() {
+            @Override
+            public void write(int b) {
+                ensureCapacity(1);
+                buf[writePos++] = (byte) b;
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) {
+                ensureCapacity(len);
+                System.arraycopy(b, off, buf, writePos, len);
+                writePos += len;
+            }
+        };
+
+        final InputStream in = new InputStream() {
+            @Override
+            public int read() throws IOException {
+                if (readPos == writePos) {
+                    throw new EOFException();
+                }
+                return buf[readPos++] & 0xff;
+            }
+        };
+
+        int size() {
+            return writePos - readPos;
+        }
+
+        void reset() {
+            readPos = 0;
+            writePos = 0;
+        }
+
+        private void ensureCapacity(int length) {
+            if (writePos + length <= buf.length) {
+                return;
+            }
+            // move the unread bytes to the front, into a larger array unless they fill
+            // less than half of the current one
+            int size = size();
+            byte[] target = buf;
+            if (size + length > buf.length >> 1) {
+                target = new byte[Math.max(buf.length << 1, size + length)];
+            }
+            System.arraycopy(buf, readPos, target, 0, size);
+            buf = target;
+            readPos = 0;
+            writePos = size;
+        }
+    }
+}
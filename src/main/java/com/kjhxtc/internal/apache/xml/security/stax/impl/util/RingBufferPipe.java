@@ -0,0 +1,214 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.stax.impl.util;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A bounded in-memory pipe between one writing and one reading thread, as a replacement
+ * for a PipedInputStream / PipedOutputStream pair.
+ * <p></p>
+ * Unlike the piped streams, the pipe is not bound to the identity of the writing and reading
+ * threads, so both sides may be run by pooled or virtual threads, and a waiting side is woken up
+ * as soon as there is data or space instead of polling once per second. Waiting is done with a
+ * {@link ReentrantLock}, so a virtual thread blocked on the pipe does not pin its carrier thread.
+ * <p></p>
+ * Closing the output stream signals the end of the data to the reader. Closing the input stream,
+ * or {@link #closeReader()}, makes any further write fail, so that a writer does not block forever
+ * when the reader has given up.
+ */
+public class RingBufferPipe {
+
+    private final byte[] buffer;
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition notEmpty = lock.newCondition();
+    private final Condition notFull = lock.newCondition();
+
+    private int readPos;
+    private int count;
+    private boolean writerClosed;
+    private boolean readerClosed;
+
+    private final InputStream inputStream = new PipeInputStream();
+    private final OutputStream outputStream = new PipeOutputStream();
+
+    public RingBufferPipe(int capacity) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("Pipe capacity must be positive: " + capacity);
+        }
+        this.buffer = new byte[capacity];
+    }
+
+    public InputStream getInputStream() {
+        return inputStream;
+    }
+
+    public OutputStream getOutputStream() {
+        return outputStream;
+    }
+
+    private int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        lock.lock();
+        try {
+            while (count == 0) {
+                if (writerClosed || readerClosed) {
+                    return -1;
+                }
+                await(notEmpty);
+            }
+            int n = Math.min(len, count);
+            int first = Math.min(n, buffer.length - readPos);
+            System.arraycopy(buffer, readPos, b, off, first);
+            System.arraycopy(buffer, 0, b, off + first, n - first);
+            readPos = (readPos + n) % buffer.length;
+            count -= n;
+            notFull.signal();
+            return n;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void write(byte[] b, int off, int len) throws IOException {
+        lock.lock();
+        try {
+            while (len > 0) {
+                if (writerClosed) {
+                    throw new IOException("Pipe closed");
+                }
+                if (readerClosed) {
+                    throw new IOException("Pipe broken");
+                }
+                if (count == buffer.length) {
+                    await(notFull);
+                    continue;
+                }
+                int writePos = (readPos + count) % buffer.length;
+                int n = Math.min(len, Math.min(buffer.length - count, buffer.length - writePos));
+                System.arraycopy(b, off, buffer, writePos, n);
+                count += n;
+                off += n;
+                len -= n;
+                notEmpty.signal();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private int available() {
+        lock.lock();
+        try {
+            return count;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void closeWriter() {
+        lock.lock();
+        try {
+            writerClosed = true;
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Closes the reading side of the pipe. Buffered data is discarded, and a writer which is
+     * blocked on the full pipe is woken up and fails, as does any later write.
+     */
+    public void closeReader() {
+        lock.lock();
+        try {
+            readerClosed = true;
+            count = 0;
+            notFull.signalAll();
+            notEmpty.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static void await(Condition condition) throws InterruptedIOException {
+        try {
+            condition.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException();
+        }
+    }
+
+    private final class PipeInputStream extends InputStream {
+
+        @Override
+        public int read() throws IOException {
+            byte[] b = new byte[1];
+            return RingBufferPipe.this.read(b, 0, 1) == -1 ? -1 : b[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (off < 0 || len < 0 || len > b.length - off) {
+                throw new IndexOutOfBoundsException();
+            }
+            return RingBufferPipe.this.read(b, off, len);
+        }
+
+        @Override
+        public int available() {
+            return RingBufferPipe.this.available();
+        }
+
+        @Override
+        public void close() {
+            closeReader();
+        }
+    }
+
+    private final class PipeOutputStream extends OutputStream {
+
+        @Override
+        public void write(int b) throws IOException {
+            RingBufferPipe.this.write(new byte[] {(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            if (off < 0 || len < 0 || len > b.length - off) {
+                throw new IndexOutOfBoundsException();
+            }
+            RingBufferPipe.this.write(b, off, len);
+        }
+
+        @Override
+        public void close() {
+            closeWriter();
+        }
+    }
+}
@@ -0,0 +1,391 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.stax.impl.util;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.StreamCorruptedException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLStreamConstants;
+
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecAttribute;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecCharacters;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecNamespace;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecStartDocument;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.stax.XMLSecCharactersImpl;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.stax.XMLSecCommentImpl;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.stax.XMLSecDTDImpl;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.stax.XMLSecEndDocumentImpl;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.stax.XMLSecEndElementImpl;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.stax.XMLSecEntityReferenceImpl;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.stax.XMLSecProcessingInstructionImpl;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.stax.XMLSecStartDocumentImpl;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.stax.XMLSecStartElementImpl;
+
+/**
+ * A compact binary encoding of XMLSecEvent sequences.
+ * <p></p>
+ * Element and attribute names, namespace prefixes and URIs are written once and referred to
+ * by number afterwards. Lengths and numbers are written as variable length integers and text
+ * as one to three bytes per char, so that ASCII content takes one byte per character.
+ * <p></p>
+ * Only the events created by the {@link XMLSecEventFactory} are encoded. Any other event is
+ * kept as is in a list shared by the {@link Encoder} and the {@link Decoder}, and the
+ * encoding only refers to its position in the list. Decoded events have no parent element:
+ * the parents are set again when the events are processed by a processor chain.
+ */
+public final class XMLSecEventCodec {
+
+    private static final int REFERENCE = 0;
+    private static final int NEW_NAME = 0;
+
+    private XMLSecEventCodec() {
+        // complete
+    }
+
+    /**
+     * @param out where to write the encoded events
+     * @param retained where to put the events which cannot be encoded
+     * @return a new Encoder with empty symbol tables
+     */
+    public static Encoder newEncoder(DataOutput out, List<XMLSecEvent> retained) {
+        return new Encoder(out, retained);
+    }
+
+    /**
+     * @param in where to read the encoded events from
+     * @param retained the events which the Encoder could not encode
+     * @return a new Decoder for the events written by one Encoder
+     */
+    public static Decoder newDecoder(DataInput in, List<XMLSecEvent> retained) {
+        return new Decoder(in, retained);
+    }
+
+    /**
+     * Encodes events to a DataOutput.
+     */
+    public static final class Encoder {
+
+        private final DataOutput out;
+        private final List<XMLSecEvent> retained;
+        private final Map<String, Integer> strings = new HashMap<>();
+        private final Map<QName, Integer> names = new HashMap<>();
+        private byte[] scratch = new byte[256];
+
+        Encoder(DataOutput out, List<XMLSecEvent> retained) {
+            this.out = out;
+            this.retained = retained;
+        }
+
+        public void write(XMLSecEvent xmlSecEvent) throws IOException {
+            Class<?> eventClass = xmlSecEvent.getClass();
+            int eventType = xmlSecEvent.getEventType();
+            if (eventClass == XMLSecStartElementImpl.class) {
+                XMLSecStartElement startElement = xmlSecEvent.asStartElement();
+                out.writeByte(eventType);
+                writeName(startElement.getName());
+                List<XMLSecNamespace> namespaces = startElement.getOnElementDeclaredNamespaces();
+                writeVarInt(namespaces.size());
+                for (int i = 0; i < namespaces.size(); i++) {
+                    XMLSecNamespace namespace = namespaces.get(i);
+                    writeSymbol(namespace.getPrefix());
+                    writeSymbol(namespace.getNamespaceURI());
+                }
+                List<XMLSecAttribute> attributes = startElement.getOnElementDeclaredAttributes();
+                writeVarInt(attributes.size());
+                for (int i = 0; i < attributes.size(); i++) {
+                    XMLSecAttribute attribute = attributes.get(i);
+                    writeName(attribute.getName());
+                    writeString(attribute.getValue());
+                }
+            } else if (eventClass == XMLSecEndElementImpl.class) {
+                out.writeByte(eventType);
+                writeName(xmlSecEvent.asEndElement().getName());
+            } else if (eventClass == XMLSecCharactersImpl.class) {
+                XMLSecCharacters characters = xmlSecEvent.asCharacters();
+                out.writeByte(eventType);
+                out.writeByte((characters.isIgnorableWhiteSpace() ? 1 : 0) | (characters.isWhiteSpace() ? 2 : 0));
+                writeChars(characters.getText());
+            } else if (eventClass == XMLSecCommentImpl.class) {
+                out.writeByte(eventType);
+                writeString(((XMLSecCommentImpl) xmlSecEvent).getText());
+            } else if (eventClass == XMLSecProcessingInstructionImpl.class) {
+                XMLSecProcessingInstructionImpl pi = (XMLSecProcessingInstructionImpl) xmlSecEvent;
+                out.writeByte(eventType);
+                writeString(pi.getTarget());
+                writeString(pi.getData());
+            } else if (eventClass == XMLSecStartDocumentImpl.class) {
+                XMLSecStartDocument startDocument = (XMLSecStartDocument) xmlSecEvent;
+                out.writeByte(eventType);
+                writeString(startDocument.getSystemId());
+                writeString(startDocument.encodingSet() ? startDocument.getCharacterEncodingScheme() : null);
+                out.writeByte(startDocument.standaloneSet() ? startDocument.isStandalone() ? 2 : 1 : 0);
+                writeString(startDocument.getVersion());
+            } else if (eventClass == XMLSecEndDocumentImpl.class) {
+                out.writeByte(eventType);
+            } else if (eventClass == XMLSecDTDImpl.class) {
+                out.writeByte(eventType);
+                writeString(((XMLSecDTDImpl) xmlSecEvent).getDocumentTypeDeclaration());
+            } else if (eventClass == XMLSecEntityReferenceImpl.class
+                && ((XMLSecEntityReferenceImpl) xmlSecEvent).getDeclaration() == null) {
+                out.writeByte(eventType);
+                writeString(((XMLSecEntityReferenceImpl) xmlSecEvent).getName());
+            } else {
+                out.writeByte(REFERENCE);
+                writeVarInt(retained.size());
+                retained.add(xmlSecEvent);
+            }
+        }
+
+        private void writeName(QName name) throws IOException {
+            Integer index = names.get(name);
+            if (index != null) {
+                writeVarInt(index);
+                return;
+            }
+            names.put(name, names.size() + 1);
+            writeVarInt(NEW_NAME);
+            writeSymbol(name.getNamespaceURI());
+            writeSymbol(name.getLocalPart());
+            writeSymbol(name.getPrefix());
+        }
+
+        private void writeSymbol(String symbol) throws IOException {
+            Integer index = strings.get(symbol);
+            if (index != null) {
+                writeVarInt(index);
+                return;
+            }
+            strings.put(symbol, strings.size() + 1);
+            writeVarInt(NEW_NAME);
+            writeString(symbol);
+        }
+
+        private void writeString(String s) throws IOException {
+            if (s == null) {
+                writeVarInt(0);
+                return;
+            }
+            int length = s.length();
+            writeVarInt(length + 1);
+            for (int off = 0; off < length; off += 1024) {
+                int end = Math.min(length, off + 1024);
+                int pos = 0;
+                ensureScratch((end - off) * 3);
+                for (int i = off; i < end; i++) {
+                    pos = encode(s.charAt(i), pos);
+                }
+                out.write(scratch, 0, pos);
+            }
+        }
+
+        private void writeChars(char[] text) throws IOException {
+            writeVarInt(text.length + 1);
+            for (int off = 0; off < text.length; off += 1024) {
+                int end = Math.min(text.length, off + 1024);
+                int pos = 0;
+                ensureScratch((end - off) * 3);
+                for (int i = off; i < end; i++) {
+                    pos = encode(text[i], pos);
+                }
+                out.write(scratch, 0, pos);
+            }
+        }
+
+        private void ensureScratch(int length) {
+            if (scratch.length < length) {
+                scratch = new byte[length];
+            }
+        }
+
+        private int encode(char c, int pos) {
+            if (c < 0x80) {
+                scratch[pos++] = (byte) c;
+            } else if (c < 0x800) {
+                scratch[pos++] = (byte) (0xc0 | c >> 6);
+                scratch[pos++] = (byte) (0x80 | c & 0x3f);
+            } else {
+                scratch[pos++] = (byte) (0xe0 | c >> 12);
+                scratch[pos++] = (byte) (0x80 | c >> 6 & 0x3f);
+                scratch[pos++] = (byte) (0x80 | c & 0x3f);
+            }
+            return pos;
+        }
+
+        private void writeVarInt(int value) throws IOException {
+            while ((value & ~0x7f) != 0) {
+                out.writeByte(value & 0x7f | 0x80);
+                value >>>= 7;
+            }
+            out.writeByte(value);
+        }
+    }
+
+    /**
+     * Decodes the events written by an {@link Encoder}.
+     */
+    public static final class Decoder {
+
+        private final DataInput in;
+        private final List<XMLSecEvent> retained;
+        private final List<String> strings = new ArrayList<>();
+        private final List<QName> names = new ArrayList<>();
+        private char[] chars = new char[256];
+
+        Decoder(DataInput in, List<XMLSecEvent> retained) {
+            this.in = in;
+            this.retained = retained;
+        }
+
+        public XMLSecEvent read() throws IOException {
+            int eventType = in.readUnsignedByte();
+            switch (eventType) {
+                case REFERENCE: {
+                    // every event is read once, so the list need not keep it any longer
+                    int index = readVarInt();
+                    XMLSecEvent xmlSecEvent = retained.get(index);
+                    retained.set(index, null);
+                    return xmlSecEvent;
+                }
+                case XMLStreamConstants.START_ELEMENT: {
+                    QName name = readName();
+                    int namespaceCount = readVarInt();
+                    List<XMLSecNamespace> namespaces = Collections.emptyList();
+                    if (namespaceCount > 0) {
+                        namespaces = new ArrayList<>(namespaceCount);
+                        for (int i = 0; i < namespaceCount; i++) {
+                            namespaces.add(XMLSecEventFactory.createXMLSecNamespace(readSymbol(), readSymbol()));
+                        }
+                    }
+                    int attributeCount = readVarInt();
+                    List<XMLSecAttribute> attributes = Collections.emptyList();
+                    if (attributeCount > 0) {
+                        attributes = new ArrayList<>(attributeCount);
+                        for (int i = 0; i < attributeCount; i++) {
+                            attributes.add(XMLSecEventFactory.createXMLSecAttribute(readName(), readString()));
+                        }
+                    }
+                    return new XMLSecStartElementImpl(name, attributes, namespaces, null);
+                }
+                case XMLStreamConstants.END_ELEMENT:
+                    return new XMLSecEndElementImpl(readName(), null);
+                case XMLStreamConstants.CHARACTERS:
+                case XMLStreamConstants.CDATA: {
+                    int flags = in.readUnsignedByte();
+                    return new XMLSecCharactersImpl(readChars(), eventType == XMLStreamConstants.CDATA,
+                                                    (flags & 1) != 0, (flags & 2) != 0, null);
+                }
+                case XMLStreamConstants.COMMENT:
+                    return new XMLSecCommentImpl(readString(), null);
+                case XMLStreamConstants.PROCESSING_INSTRUCTION:
+                    return new XMLSecProcessingInstructionImpl(readString(), readString(), null);
+                case XMLStreamConstants.START_DOCUMENT: {
+                    String systemId = readString();
+                    String encoding = readString();
+                    int standalone = in.readUnsignedByte();
+                    String version = readString();
+                    return new XMLSecStartDocumentImpl(systemId, encoding,
+                                                       standalone == 0 ? null : standalone == 2, version);
+                }
+                case XMLStreamConstants.END_DOCUMENT:
+                    return new XMLSecEndDocumentImpl();
+                case XMLStreamConstants.DTD:
+                    return new XMLSecDTDImpl(readString(), null);
+                case XMLStreamConstants.ENTITY_REFERENCE:
+                    return new XMLSecEntityReferenceImpl(readString(), null, null);
+                default:
+                    throw new StreamCorruptedException("Unknown event type " + eventType);
+            }
+        }
+
+        private QName readName() throws IOException {
+            int index = readVarInt();
+            if (index != NEW_NAME) {
+                return names.get(index - 1);
+            }
+            QName name = new QName(readSymbol(), readSymbol(), readSymbol());
+            names.add(name);
+            return name;
+        }
+
+        private String readSymbol() throws IOException {
+            int index = readVarInt();
+            if (index != NEW_NAME) {
+                return strings.get(index - 1);
+            }
+            String symbol = readString();
+            strings.add(symbol);
+            return symbol;
+        }
+
+        private String readString() throws IOException {
+            int length = readVarInt() - 1;
+            if (length < 0) {
+                return null;
+            }
+            if (chars.length < length) {
+                chars = new char[length];
+            }
+            decode(chars, length);
+            return new String(chars, 0, length);
+        }
+
+        private char[] readChars() throws IOException {
+            char[] text = new char[readVarInt() - 1];
+            decode(text, text.length);
+            return text;
+        }
+
+        private void decode(char[] target, int length) throws IOException {
+            for (int i = 0; i < length; i++) {
+                int b = in.readUnsignedByte();
+                if (b < 0x80) {
+                    target[i] = (char) b;
+                } else if (b < 0xe0) {
+                    target[i] = (char) ((b & 0x1f) << 6 | in.readUnsignedByte() & 0x3f);
+                } else {
+                    target[i] = (char) ((b & 0x0f) << 12 | (in.readUnsignedByte() & 0x3f) << 6
+                        | in.readUnsignedByte() & 0x3f);
+                }
+            }
+        }
+
+        private int readVarInt() throws IOException {
+            int value = 0;
+            for (int shift = 0; shift < 32; shift += 7) {
+                int b = in.readUnsignedByte();
+                value |= (b & 0x7f) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new StreamCorruptedException("Malformed variable length integer");
+        }
+    }
+}
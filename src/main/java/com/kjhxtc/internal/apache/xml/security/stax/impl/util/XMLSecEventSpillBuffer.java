@@ -0,0 +1,259 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.stax.impl.util;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEvent;
+
+/**
+ * A FIFO buffer of XMLSecEvents which keeps at most a given number of events in memory and
+ * writes any further event to a temporary file with the {@link XMLSecEventCodec}.
+ * <p></p>
+ * The buffering output processors add events at the end, take them from the front and push a
+ * taken event back. The other {@link java.util.Deque} operations, such as iteration, read all
+ * events from the file back into memory. I/O errors are thrown as an {@link UncheckedIOException}.
+ * <p></p>
+ * The temporary file is deleted as soon as all of its events have been read, or when the
+ * buffer is closed. It holds the buffered document in clear text and is created with the
+ * default permissions of {@link Files#createTempFile}, which are restricted to the owner on
+ * POSIX file systems.
+ */
+public class XMLSecEventSpillBuffer extends AbstractXMLSecEventBuffer implements Closeable {
+
+    private static final org.slf4j.Logger LOG =
+        org.slf4j.LoggerFactory.getLogger(XMLSecEventSpillBuffer.class);
+
+    private static final LongAdder SPILL_FILES = new LongAdder();
+    private static final LongAdder SPILLED_EVENTS = new LongAdder();
+    private static final LongAdder SPILLED_BYTES = new LongAdder();
+
+    private final int threshold;
+    private final Path directory;
+
+    /** The events before the spilled ones, and the ones pushed back */
+    private final ArrayDeque<XMLSecEvent> head = new ArrayDeque<>();
+    /** The events added once reading from the file has started */
+    private final ArrayDeque<XMLSecEvent> tail = new ArrayDeque<>();
+
+    private Path file;
+    private DataOutputStream out;
+    private DataInputStream in;
+    private XMLSecEventCodec.Encoder encoder;
+    private XMLSecEventCodec.Decoder decoder;
+    private final List<XMLSecEvent> retained = new ArrayList<>();
+    private long spilledEvents;
+    private long spilledBytes;
+    private long unreadEvents;
+
+    /**
+     * @param threshold the number of events kept in memory before the following ones are
+     * written to a temporary file
+     * @param directory the directory of the temporary file, or null for the default
+     * temporary-file directory
+     */
+    public XMLSecEventSpillBuffer(int threshold, Path directory) {
+        if (threshold <= 0) {
+            throw new IllegalArgumentException("Spill threshold must be positive: " + threshold);
+        }
+        this.threshold = threshold;
+        this.directory = directory;
+    }
+
+    /**
+     * @return the number of temporary files created by all buffers
+     */
+    public static long getTotalSpillFiles() {
+        return SPILL_FILES.sum();
+    }
+
+    /**
+     * @return the number of events written to temporary files by all buffers
+     */
+    public static long getTotalSpilledEvents() {
+        return SPILLED_EVENTS.sum();
+    }
+
+    /**
+     * @return the number of bytes written to temporary files by all buffers
+     */
+    public static long getTotalSpilledBytes() {
+        return SPILLED_BYTES.sum();
+    }
+
+    /**
+     * @return the number of events this buffer has written to its temporary file
+     */
+    public long getSpilledEvents() {
+        return spilledEvents;
+    }
+
+    /**
+     * @return the number of bytes this buffer has written to its temporary file, known once
+     * reading from the file has started
+     */
+    public long getSpilledBytes() {
+        return spilledBytes;
+    }
+
+    @Override
+    public boolean offerLast(XMLSecEvent xmlSecEvent) {
+        if (xmlSecEvent == null) {
+            throw new NullPointerException();
+        }
+        if (in != null) {
+            tail.addLast(xmlSecEvent);
+        } else if (out != null) {
+            try {
+                encoder.write(xmlSecEvent);
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            spilledEvents++;
+            unreadEvents++;
+        } else {
+            head.addLast(xmlSecEvent);
+            if (head.size() >= threshold) {
+                startSpilling();
+            }
+        }
+        return true;
+    }
+
+    private void startSpilling() {
+        try {
+            file = Files.createTempFile(directory, "xmlsec-events", ".bin");
+            out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(file), 65536));
+        } catch (IOException e) {
+            deleteFile();
+            throw new UncheckedIOException(e);
+        }
+        encoder = XMLSecEventCodec.newEncoder(out, retained);
+        SPILL_FILES.increment();
+        LOG.debug("Spilling buffered events to {}", file);
+    }
+
+    @Override
+    public XMLSecEvent pollFirst() {
+        if (!head.isEmpty()) {
+            return head.pollFirst();
+        }
+        if (unreadEvents > 0) {
+            try {
+                if (in == null) {
+                    startReading();
+                }
+                XMLSecEvent xmlSecEvent = decoder.read();
+                if (--unreadEvents == 0) {
+                    close();
+                }
+                return xmlSecEvent;
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        }
+        return tail.pollFirst();
+    }
+
+    private void startReading() throws IOException {
+        out.close();
+        out = null;
+        encoder = null;
+        spilledBytes = Files.size(file);
+        SPILLED_EVENTS.add(spilledEvents);
+        SPILLED_BYTES.add(spilledBytes);
+        in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file), 65536));
+        decoder = XMLSecEventCodec.newDecoder(in, retained);
+    }
+
+    /**
+     * Deletes the temporary file, if any, and drops the events which are still on it.
+     */
+    @Override
+    public void close() {
+        try {
+            if (out != null) {
+                out.close();
+            }
+            if (in != null) {
+                in.close();
+            }
+        } catch (IOException e) {
+            LOG.debug("Error closing the event spill file", e);
+        } finally {
+            out = null;
+            encoder = null;
+            decoder = null;
+            unreadEvents = 0;
+            retained.clear();
+            deleteFile();
+        }
+    }
+
+    private void deleteFile() {
+        if (file != null) {
+            try {
+                Files.deleteIfExists(file);
+            } catch (IOException e) {
+                LOG.warn("Could not delete the event spill file {}", file, e);
+            }
+            file = null;
+        }
+    }
+
+    @Override
+    ArrayDeque<XMLSecEvent> head() {
+        return head;
+    }
+
+    @Override
+    public void addFirst(XMLSecEvent xmlSecEvent) {
+        head.addFirst(xmlSecEvent);
+    }
+
+    @Override
+    public int size() {
+        long size = head.size() + unreadEvents + tail.size();
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return head.isEmpty() && unreadEvents == 0 && tail.isEmpty();
+    }
+
+    @Override
+    public void clear() {
+        head.clear();
+        tail.clear();
+        close();
+    }
+}
@@ -36,10 +36,28 @@ public abstract class AbstractElementSecurityEvent extends SecurityEvent {
         super(securityEventType);
     }
 
+    /**
+     * @return the element path which was set, or else the element path of the XMLSecEvent
+     */
     public List<QName> getElementPath() {
+        if (elementPath == null && xmlSecEvent != null) {
+            elementPath = xmlSecEvent.getElementPath();
+        }
         return elementPath;
     }
 
+    /**
+     * @param elementPath the element names from the document element down
+     * @return true if the element path of this event equals the given one. Unless an element
+     * path was set it is compared with the XMLSecEvent without building a list.
+     */
+    public boolean matchesElementPath(List<QName> elementPath) {
+        if (this.elementPath == null && xmlSecEvent != null) {
+            return xmlSecEvent.matchesElementPath(elementPath);
+        }
+        return elementPath.equals(this.elementPath);
+    }
+
     public void setElementPath(List<QName> elementPath) {
         this.elementPath = new ArrayList<>(elementPath);
     }
@@ -37,6 +37,8 @@ import org.w3c.dom.Element;
  */
 public class TransformC14N extends TransformSpi {
 
+    private static final Canonicalizer20010315 CANONICALIZER = new Canonicalizer20010315OmitComments();
+
     /**
      * {@inheritDoc}
      */
@@ -76,6 +78,6 @@ public class TransformC14N extends TransformSpi {
     }
 
     protected Canonicalizer20010315 getCanonicalizer() {
-        return new Canonicalizer20010315OmitComments();
+        return CANONICALIZER;
     }
 }
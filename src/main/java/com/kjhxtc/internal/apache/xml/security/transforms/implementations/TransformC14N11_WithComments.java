@@ -29,6 +29,8 @@ import com.kjhxtc.internal.apache.xml.security.transforms.Transforms;
  */
 public class TransformC14N11_WithComments extends TransformC14N {
 
+    private static final Canonicalizer20010315 CANONICALIZER = new Canonicalizer11_WithComments();
+
     /**
      * {@inheritDoc}
      */
@@ -42,6 +44,6 @@ public class TransformC14N11_WithComments extends TransformC14N {
      */
     @Override
     protected Canonicalizer20010315 getCanonicalizer() {
-        return new Canonicalizer11_WithComments();
+        return CANONICALIZER;
     }
 }
@@ -40,6 +40,8 @@ import org.w3c.dom.Node;
  */
 public class TransformC14NExclusive extends TransformSpi {
 
+    private static final Canonicalizer20010315Excl CANONICALIZER = new Canonicalizer20010315ExclOmitComments();
+
     /**
      * {@inheritDoc}
      */
@@ -101,7 +103,7 @@ public class TransformC14NExclusive extends TransformSpi {
     }
 
     protected Canonicalizer20010315Excl getCanonicalizer() {
-        return new Canonicalizer20010315ExclOmitComments();
+        return CANONICALIZER;
     }
 
     /**
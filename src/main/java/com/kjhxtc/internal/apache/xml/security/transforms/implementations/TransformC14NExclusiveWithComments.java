@@ -29,6 +29,8 @@ import com.kjhxtc.internal.apache.xml.security.transforms.Transforms;
  */
 public class TransformC14NExclusiveWithComments extends TransformC14NExclusive {
 
+    private static final Canonicalizer20010315Excl CANONICALIZER = new Canonicalizer20010315ExclWithComments();
+
     /**
      * {@inheritDoc}
      */
@@ -39,7 +41,7 @@ public class TransformC14NExclusiveWithComments extends TransformC14NExclusive {
 
     @Override
     protected Canonicalizer20010315Excl getCanonicalizer() {
-        return new Canonicalizer20010315ExclWithComments();
+        return CANONICALIZER;
     }
 
 }
@@ -28,6 +28,8 @@ import com.kjhxtc.internal.apache.xml.security.transforms.Transforms;
  */
 public class TransformC14NWithComments extends TransformC14N {
 
+    private static final Canonicalizer20010315 CANONICALIZER = new Canonicalizer20010315WithComments();
+
     /**
      * {@inheritDoc}
      */
@@ -41,7 +43,7 @@ public class TransformC14NWithComments extends TransformC14N {
      */
     @Override
     protected Canonicalizer20010315 getCanonicalizer() {
-        return new Canonicalizer20010315WithComments();
+        return CANONICALIZER;
     }
 
 }
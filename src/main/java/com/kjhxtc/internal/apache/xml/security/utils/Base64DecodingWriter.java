@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+
+/**
+ * A Writer which decodes the base64 text written to it and writes the decoded octets to an
+ * OutputStream in blocks.
+ * <p></p>
+ * The text is decoded straight from the char arrays it is written with, so that the text of
+ * a CipherValue or DigestValue can be decoded from the character events without building a
+ * String or re-encoding it. The decoded octets are buffered until a block is full, so that a
+ * cipher or digest downstream is fed in large blocks.
+ * <p></p>
+ * The decoding is as lenient as the commons-codec and MIME decoders it replaces: characters
+ * outside of the base64 alphabet are skipped, the text ends at the first padding character,
+ * and a final quantum of a single character is dropped. A tampered text is thereby reported
+ * by the integrity check of the decrypted or digested octets.
+ * <p></p>
+ * The OutputStream is flushed on {@link #flush()} and closed on {@link #close()}.
+ */
+public class Base64DecodingWriter extends Writer {
+
+    private static final int DEFAULT_BLOCK_SIZE = 8192;
+
+    private static final byte INVALID = -1;
+    private static final byte PADDING = -2;
+
+    private static final byte[] DECODE = new byte[128];
+
+    static {
+        for (int i = 0; i < DECODE.length; i++) {
+            DECODE[i] = INVALID;
+        }
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE[alphabet.charAt(i)] = (byte) i;
+        }
+        DECODE['='] = PADDING;
+    }
+
+    private final OutputStream out;
+    private final byte[] block;
+    private int blockPos;
+    private char[] chars;
+
+    /** The bits of the characters of the current quantum */
+    private int bits;
+    /** The number of characters of the current quantum */
+    private int count;
+    /** Whether the padding has been seen */
+    private boolean eof;
+
+    public Base64DecodingWriter(OutputStream out) {
+        this(out, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param out where to write the decoded octets
+     * @param blockSize the number of decoded octets to buffer before they are written
+     */
+    public Base64DecodingWriter(OutputStream out, int blockSize) {
+        if (blockSize < 3) {
+            throw new IllegalArgumentException("Block size must be at least 3: " + blockSize);
+        }
+        this.out = out;
+        this.block = new byte[blockSize];
+    }
+
+    /**
+     * Decodes a base64 text.
+     *
+     * @param text the base64 text, which may contain whitespace
+     * @return the decoded octets
+     */
+    public static byte[] decode(CharSequence text) throws IOException {
+        UnsyncByteArrayOutputStream bytes = new UnsyncByteArrayOutputStream();
+        try (Base64DecodingWriter decoder = new Base64DecodingWriter(bytes)) {
+            decoder.append(text);
+        }
+        return bytes.toByteArray();
+    }
+
+    @Override
+    public void write(char[] cbuf, int off, int len) throws IOException {
+        int end = off + len;
+        for (int i = off; i < end && !eof; i++) {
+            char c = cbuf[i];
+            int value = c < 128 ? DECODE[c] : INVALID;
+            if (value >= 0) {
+                bits = bits << 6 | value;
+                if (++count == 4) {
+                    if (blockPos > block.length - 3) {
+                        writeBlock();
+                    }
+                    block[blockPos++] = (byte) (bits >> 16);
+                    block[blockPos++] = (byte) (bits >> 8);
+                    block[blockPos++] = (byte) bits;
+                    bits = 0;
+                    count = 0;
+                }
+            } else if (value == PADDING) {
+                eof = true;
+                finishQuantum();
+            }
+        }
+    }
+
+    /**
+     * Writes the one or two octets of a final quantum of two or three characters.
+     */
+    private void finishQuantum() throws IOException {
+        if (blockPos > block.length - 2) {
+            writeBlock();
+        }
+        if (count == 2) {
+            block[blockPos++] = (byte) (bits >> 4);
+        } else if (count == 3) {
+            block[blockPos++] = (byte) (bits >> 10);
+            block[blockPos++] = (byte) (bits >> 2);
+        }
+        bits = 0;
+        count = 0;
+    }
+
+    @Override
+    public void write(String str, int off, int len) throws IOException {
+        if (chars == null) {
+            chars = new char[1024];
+        }
+        int end = off + len;
+        while (off < end) {
+            int n = Math.min(end - off, chars.length);
+            str.getChars(off, off + n, chars, 0);
+            write(chars, 0, n);
+            off += n;
+        }
+    }
+
+    @Override
+    public Writer append(CharSequence csq) throws IOException {
+        if (csq instanceof StringBuilder) {
+            // copied in chunks rather than through toString()
+            StringBuilder sb = (StringBuilder) csq;
+            if (chars == null) {
+                chars = new char[1024];
+            }
+            int length = sb.length();
+            for (int off = 0; off < length; off += chars.length) {
+                int n = Math.min(length - off, chars.length);
+                sb.getChars(off, off + n, chars, 0);
+                write(chars, 0, n);
+            }
+        } else {
+            String str = String.valueOf(csq);
+            write(str, 0, str.length());
+        }
+        return this;
+    }
+
+    @Override
+    public void write(int c) throws IOException {
+        write(new char[] {(char) c}, 0, 1);
+    }
+
+    private void writeBlock() throws IOException {
+        if (blockPos > 0) {
+            out.write(block, 0, blockPos);
+            blockPos = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+
+    /**
+     * Writes the rest of the decoded octets and closes the OutputStream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            finishQuantum();
+            writeBlock();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,160 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.utils;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * An OutputStream which base64 encodes the octets written to it and writes the encoded text,
+ * as ASCII octets, to another OutputStream in blocks.
+ * <p></p>
+ * The text is optionally broken into lines of a given length separated by CRLF, as in MIME.
+ * The last quantum is padded when the stream is closed. The encoded text is buffered until a
+ * block is full, so that the OutputStream downstream receives a few large writes.
+ * <p></p>
+ * The OutputStream is flushed on {@link #flush()}, which writes the complete quanta encoded
+ * so far, and closed on {@link #close()}.
+ */
+public class Base64EncodingOutputStream extends OutputStream {
+
+    /** The line length of MIME */
+    public static final int MIME_LINE_LENGTH = 76;
+
+    private static final int DEFAULT_BLOCK_SIZE = 8192;
+
+    private static final byte[] ALPHABET =
+        "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/".getBytes(StandardCharsets.US_ASCII);
+
+    private final OutputStream out;
+    private final int lineLength;
+    private final byte[] block;
+    private int blockPos;
+    private int lineChars;
+
+    /** The octets of the current, incomplete quantum */
+    private int pending;
+    private int pendingCount;
+    private boolean closed;
+
+    /**
+     * @param out where to write the encoded text
+     * @param lineLength the number of characters per line, rounded down to a multiple of four,
+     * or 0 to write a single line
+     */
+    public Base64EncodingOutputStream(OutputStream out, int lineLength) {
+        this(out, lineLength, DEFAULT_BLOCK_SIZE);
+    }
+
+    /**
+     * @param out where to write the encoded text
+     * @param lineLength the number of characters per line, rounded down to a multiple of four,
+     * or 0 to write a single line
+     * @param blockSize the number of encoded octets to buffer before they are written
+     */
+    public Base64EncodingOutputStream(OutputStream out, int lineLength, int blockSize) {
+        if (blockSize < 6) {
+            throw new IllegalArgumentException("Block size must be at least 6: " + blockSize);
+        }
+        this.out = out;
+        this.lineLength = lineLength / 4 * 4;
+        this.block = new byte[blockSize];
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[] {(byte) b}, 0, 1);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        int end = off + len;
+        while (pendingCount > 0 && pendingCount < 3 && off < end) {
+            pending = pending << 8 | b[off++] & 0xff;
+            pendingCount++;
+        }
+        if (pendingCount == 3) {
+            encode(pending);
+            pending = 0;
+            pendingCount = 0;
+        }
+        int last = end - 3;
+        while (off <= last) {
+            encode((b[off] & 0xff) << 16 | (b[off + 1] & 0xff) << 8 | b[off + 2] & 0xff);
+            off += 3;
+        }
+        while (off < end) {
+            pending = pending << 8 | b[off++] & 0xff;
+            pendingCount++;
+        }
+    }
+
+    private void encode(int triple) throws IOException {
+        if (blockPos > block.length - 6) {
+            writeBlock();
+        }
+        if (lineLength > 0 && lineChars == lineLength) {
+            block[blockPos++] = '\r';
+            block[blockPos++] = '\n';
+            lineChars = 0;
+        }
+        block[blockPos++] = ALPHABET[triple >> 18 & 0x3f];
+        block[blockPos++] = ALPHABET[triple >> 12 & 0x3f];
+        block[blockPos++] = ALPHABET[triple >> 6 & 0x3f];
+        block[blockPos++] = ALPHABET[triple & 0x3f];
+        lineChars += 4;
+    }
+
+    private void writeBlock() throws IOException {
+        if (blockPos > 0) {
+            out.write(block, 0, blockPos);
+            blockPos = 0;
+        }
+    }
+
+    @Override
+    public void flush() throws IOException {
+        writeBlock();
+        out.flush();
+    }
+
+    /**
+     * Writes the last quantum with its padding and closes the OutputStream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (closed) {
+            return;
+        }
+        closed = true;
+        try {
+            if (pendingCount > 0) {
+                encode(pending << (3 - pendingCount) * 8);
+                blockPos -= 3 - pendingCount;
+                for (int i = pendingCount; i < 3; i++) {
+                    block[blockPos++] = '=';
+                }
+            }
+            writeBlock();
+        } finally {
+            out.close();
+        }
+    }
+}
@@ -0,0 +1,83 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.utils;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The hit, miss and eviction counts of a cache. The counters can be updated by several
+ * threads without locking.
+ */
+public final class CacheStatistics {
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Counts a lookup which was answered from the cache.
+     */
+    public void hit() {
+        hits.increment();
+    }
+
+    /**
+     * Counts a lookup which was not answered from the cache.
+     */
+    public void miss() {
+        misses.increment();
+    }
+
+    /**
+     * Counts an entry which was dropped to make room for another one.
+     */
+    public void eviction() {
+        evictions.increment();
+    }
+
+    /**
+     * @return how many lookups were answered from the cache
+     */
+    public long getHits() {
+        return hits.sum();
+    }
+
+    /**
+     * @return how many lookups were not answered from the cache
+     */
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    /**
+     * @return how many entries were dropped to make room for others
+     */
+    public long getEvictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * @return the fraction of lookups answered from the cache, or 0 if there were none
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0 : (double) h / total;
+    }
+}
@@ -36,7 +36,7 @@ public final class Constants {
 
     /** Field exceptionMessagesResourceBundleDir */
     public static final String exceptionMessagesResourceBundleDir =
-        "com/kjhxtc/internal/apachexml/security/resource";
+        "com/kjhxtc/internal/apache/xml/security/resource";
 
     /** Field exceptionMessagesResourceBundleBase is the location of the <CODE>ResourceBundle</CODE> */
     public static final String exceptionMessagesResourceBundleBase =
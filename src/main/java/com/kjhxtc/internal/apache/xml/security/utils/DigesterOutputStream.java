@@ -30,6 +30,7 @@ public class DigesterOutputStream extends ByteArrayOutputStream {
         org.slf4j.LoggerFactory.getLogger(DigesterOutputStream.class);
 
     final MessageDigestAlgorithm mda;
+    private long bytesDigested;
 
     /**
      * @param mda
@@ -47,6 +48,7 @@ public class DigesterOutputStream extends ByteArrayOutputStream {
     /** {@inheritDoc} */
     @Override
     public void write(int arg0) {
+        bytesDigested++;
         mda.update((byte)arg0);
     }
 
@@ -61,6 +63,7 @@ public class DigesterOutputStream extends ByteArrayOutputStream {
             }
             LOG.debug(sb.toString());
         }
+        bytesDigested += arg2;
         mda.update(arg0, arg1, arg2);
     }
 
@@ -70,4 +73,11 @@ public class DigesterOutputStream extends ByteArrayOutputStream {
     public byte[] getDigestValue() {
         return mda.digest();
     }
+
+    /**
+     * @return the number of bytes written to (and digested by) this stream
+     */
+    public long getBytesDigested() {
+        return bytesDigested;
+    }
 }
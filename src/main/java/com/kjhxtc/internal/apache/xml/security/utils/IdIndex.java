@@ -0,0 +1,163 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.utils;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NamedNodeMap;
+import org.w3c.dom.Node;
+
+/**
+ * The elements of a document by the values of their ID attributes, collected in a single
+ * traversal. It answers the same question as
+ * {@link XMLUtils#protectAgainstWrappingAttack(Node, String)} in constant time, so that
+ * the document is walked once for all the same-document references of a signature rather
+ * than once for each of them.
+ * <p></p>
+ * As in <code>protectAgainstWrappingAttack</code>, only the attributes for which
+ * {@link Attr#isId()} is true are indexed, i.e. those declared or registered as IDs. The
+ * index is a snapshot: IDs registered after it was built are not in it.
+ */
+public final class IdIndex {
+
+    private final Map<String, Element> elements = new HashMap<>();
+    private final Set<String> duplicates = new HashSet<>();
+
+    private IdIndex() {
+    }
+
+    /**
+     * Indexes the ID attributes of the given element and its descendants.
+     *
+     * @param startNode the root of the indexed subtree, usually the document element
+     * @return the index
+     */
+    public static IdIndex build(Node startNode) {
+        IdIndex index = new IdIndex();
+        Node startParent = null;
+        Node processedNode = null;
+        if (startNode != null) {
+            startParent = startNode.getParentNode();
+        }
+
+        while (startNode != null) {
+            if (startNode.getNodeType() == Node.ELEMENT_NODE) {
+                index.add((Element) startNode);
+            }
+
+            processedNode = startNode;
+            startNode = startNode.getFirstChild();
+
+            // no child, this node is done.
+            if (startNode == null) {
+                // close node processing, get sibling
+                startNode = processedNode.getNextSibling();
+            }
+
+            // no more siblings, get parent, all children
+            // of parent are processed.
+            while (startNode == null) {
+                processedNode = processedNode.getParentNode();
+                if (processedNode == startParent) {
+                    return index;
+                }
+                // close parent node processing (processed node now)
+                startNode = processedNode.getNextSibling();
+            }
+        }
+        return index;
+    }
+
+    private void add(Element element) {
+        NamedNodeMap attributes = element.getAttributes();
+        if (attributes != null) {
+            int length = attributes.getLength();
+            for (int i = 0; i < length; i++) {
+                Attr attr = (Attr) attributes.item(i);
+                if (attr.isId()) {
+                    String value = attr.getValue();
+                    if (elements.putIfAbsent(value, element) != null) {
+                        duplicates.add(value);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * @param id an ID value
+     * @return the only element with this ID, or null if there is none or more than one
+     */
+    public Element getElement(String id) {
+        return duplicates.contains(id) ? null : elements.get(id);
+    }
+
+    /**
+     * @param id an ID value
+     * @return true if the ID is indexed, whether it is unique or not
+     */
+    public boolean contains(String id) {
+        return elements.containsKey(id);
+    }
+
+    /**
+     * @param id an ID value
+     * @return false if more than one element has this ID
+     */
+    public boolean isUnique(String id) {
+        return !duplicates.contains(id);
+    }
+
+    /**
+     * Keeps the index of one document for the duration of a signature operation, so that the
+     * references resolved during it share one traversal. Instances are safe for use by several
+     * threads.
+     */
+    public static final class Cache {
+
+        private Document document;
+        private IdIndex index;
+
+        /**
+         * @param doc a document
+         * @return the index of the document element of the document, built on first use
+         */
+        public synchronized IdIndex get(Document doc) {
+            if (index == null || document != doc) {
+                index = build(doc.getDocumentElement());
+                document = doc;
+            }
+            return index;
+        }
+
+        /**
+         * Drops the index, e.g. after new ID attributes have been registered.
+         */
+        public synchronized void clear() {
+            document = null;
+            index = null;
+        }
+    }
+}
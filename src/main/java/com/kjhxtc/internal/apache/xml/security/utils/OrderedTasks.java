@@ -0,0 +1,145 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Runs a list of independent tasks (e.g. the digest calculation of the References of a
+ * Signature) on an <code>Executor</code>, while the results are consumed in the order of the
+ * list. This way the first failure in document order is always the one that is reported,
+ * no matter which task actually finished first.
+ * <p></p>
+ * The consuming thread never just waits for a task that has not been started yet, but runs
+ * it itself. So a saturated (or even single threaded) executor cannot deadlock the caller.
+ */
+public final class OrderedTasks<T> {
+
+    private final List<Task<T>> tasks;
+
+    /**
+     * Submits the given tasks to the executor.
+     *
+     * @param executor the executor to run the tasks on
+     * @param callables the tasks
+     */
+    public OrderedTasks(Executor executor, List<? extends Callable<T>> callables) {
+        tasks = new ArrayList<>(callables.size());
+        for (Callable<T> callable : callables) {
+            tasks.add(new Task<>(callable));
+        }
+        for (Task<T> task : tasks) {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException ex) {
+                // The remaining tasks are run by the caller in get()
+                break;
+            }
+        }
+    }
+
+    /**
+     * Returns the result of the task at the given index, running the task in the
+     * calling thread if the executor has not started it yet.
+     *
+     * @param index the index of the task
+     * @return the result of the task
+     * @throws CancellationException if the task was cancelled
+     * @throws InterruptedException if the calling thread was interrupted while waiting
+     * @throws Exception the exception thrown by the task
+     */
+    public T get(int index) throws Exception {
+        Task<T> task = tasks.get(index);
+        // Does nothing if the task has already been started by the executor
+        task.run();
+        task.await();
+        if (task.failure instanceof Exception) {
+            throw (Exception) task.failure;
+        } else if (task.failure instanceof Error) {
+            throw (Error) task.failure;
+        }
+        return task.result;
+    }
+
+    /**
+     * Cancels the tasks that have not been started yet and waits for the ones that are
+     * already running, so that no task is still running once this method returns.
+     */
+    public void cancel() {
+        boolean interrupted = false;
+        for (Task<T> task : tasks) {
+            task.cancel();
+            while (true) {
+                try {
+                    task.await();
+                    break;
+                } catch (InterruptedException ex) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static final class Task<T> implements Runnable {
+        private final Callable<T> callable;
+        private final AtomicBoolean claimed = new AtomicBoolean();
+        private final CountDownLatch completed = new CountDownLatch(1);
+        private T result;
+        private Throwable failure;
+
+        Task(Callable<T> callable) {
+            this.callable = callable;
+        }
+
+        @Override
+        public void run() {
+            if (!claimed.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                result = callable.call();
+            } catch (Throwable t) {
+                failure = t;
+            } finally {
+                completed.countDown();
+            }
+        }
+
+        void cancel() {
+            if (claimed.compareAndSet(false, true)) {
+                failure = new CancellationException();
+                completed.countDown();
+            }
+        }
+
+        void await() throws InterruptedException {
+            completed.await();
+        }
+    }
+}
@@ -201,6 +201,36 @@ public final class XMLUtils {
         }
     }
 
+    /**
+     * Visits every node (and attribute value) below the given node once. A DOM built
+     * with deferred node expansion (the default of the JDK parser) creates its nodes
+     * on first access, so it must be fully expanded like this before several threads
+     * read the same tree concurrently.
+     *
+     * @param rootNode the root of the tree to expand
+     */
+    public static void expandNodes(Node rootNode) {
+        Node node = rootNode;
+        while (node != null) {
+            node.getNodeValue();
+            if (node.hasAttributes()) {
+                NamedNodeMap attributes = node.getAttributes();
+                int length = attributes.getLength();
+                for (int i = 0; i < length; i++) {
+                    attributes.item(i).getNodeValue();
+                }
+            }
+            Node next = node.getFirstChild();
+            while (next == null && node != rootNode) {
+                next = node.getNextSibling();
+                if (next == null) {
+                    node = node.getParentNode();
+                }
+            }
+            node = next;
+        }
+    }
+
     /**
      * Outputs a DOM tree to a {@link File}.
      *
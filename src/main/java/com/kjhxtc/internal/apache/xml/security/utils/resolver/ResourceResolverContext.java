@@ -23,7 +23,11 @@ import java.security.PrivilegedAction;
 import java.util.Collections;
 import java.util.Map;
 
+import com.kjhxtc.internal.apache.xml.security.utils.IdIndex;
+import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
 import org.w3c.dom.Attr;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
 
 public class ResourceResolverContext {
 
@@ -41,12 +45,24 @@ public class ResourceResolverContext {
 
     public final Attr attr;
 
+    private final IdIndex.Cache idIndexCache;
+
     public ResourceResolverContext(Attr attr, String baseUri, boolean secureValidation) {
         this(attr, baseUri, secureValidation, Collections.emptyMap());
     }
 
     public ResourceResolverContext(Attr attr, String baseUri, boolean secureValidation, Map<String, String> properties) {
+        this(attr, baseUri, secureValidation, properties, null);
+    }
+
+    /**
+     * @param idIndexCache the ID index shared by the references resolved in the same signature
+     * operation, or null to build one for each check of {@link #isUniqueId}
+     */
+    public ResourceResolverContext(Attr attr, String baseUri, boolean secureValidation, Map<String, String> properties,
+                                   IdIndex.Cache idIndexCache) {
         this.attr = attr;
+        this.idIndexCache = idIndexCache;
         this.baseUri = baseUri;
         this.secureValidation = secureValidation;
         this.uriToResolve = attr != null ? attr.getValue() : null;
@@ -57,6 +73,26 @@ public class ResourceResolverContext {
         return properties;
     }
 
+    /**
+     * Checks, to help prevent against wrapping attacks, that no other element of the document
+     * than the given one has an ID attribute with the given value. The check is answered by the
+     * ID index of the document; when the index does not confirm the element, e.g. because IDs
+     * were registered after it was built, the document is searched as by
+     * {@link XMLUtils#protectAgainstWrappingAttack(org.w3c.dom.Node, String)}.
+     *
+     * @param doc the document
+     * @param element the element found for the ID, or null
+     * @param id the ID value
+     * @return false if several elements have this ID
+     */
+    public boolean isUniqueId(Document doc, Element element, String id) {
+        IdIndex index = idIndexCache != null ? idIndexCache.get(doc) : IdIndex.build(doc.getDocumentElement());
+        if (element != null && index.isUnique(id) && index.getElement(id) == element) {
+            return true;
+        }
+        return XMLUtils.protectAgainstWrappingAttack(doc.getDocumentElement(), id);
+    }
+
     public boolean isURISafeToResolve() {
         if (allowUnsafeResourceResolving) {
             return true;
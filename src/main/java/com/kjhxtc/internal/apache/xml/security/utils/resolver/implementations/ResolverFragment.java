@@ -19,7 +19,6 @@
 package com.kjhxtc.internal.apache.xml.security.utils.resolver.implementations;
 
 import com.kjhxtc.internal.apache.xml.security.signature.XMLSignatureInput;
-import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
 import com.kjhxtc.internal.apache.xml.security.utils.resolver.ResourceResolverContext;
 import com.kjhxtc.internal.apache.xml.security.utils.resolver.ResourceResolverException;
 import com.kjhxtc.internal.apache.xml.security.utils.resolver.ResourceResolverSpi;
@@ -74,14 +73,11 @@ public class ResolverFragment extends ResourceResolverSpi {
                     "signature.Verification.MissingID", exArgs, context.uriToResolve, context.baseUri
                 );
             }
-            if (context.secureValidation) {
-                Element start = context.attr.getOwnerDocument().getDocumentElement();
-                if (!XMLUtils.protectAgainstWrappingAttack(start, id)) {
-                    Object[] exArgs = { id };
-                    throw new ResourceResolverException(
-                        "signature.Verification.MultipleIDs", exArgs, context.uriToResolve, context.baseUri
-                    );
-                }
+            if (context.secureValidation && !context.isUniqueId(doc, (Element) selectedElem, id)) {
+                Object[] exArgs = { id };
+                throw new ResourceResolverException(
+                    "signature.Verification.MultipleIDs", exArgs, context.uriToResolve, context.baseUri
+                );
             }
             LOG.debug(
                 "Try to catch an Element with ID {} and Element was {}", id, selectedElem
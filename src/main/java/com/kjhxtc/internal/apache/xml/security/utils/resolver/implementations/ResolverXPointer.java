@@ -19,7 +19,6 @@
 package com.kjhxtc.internal.apache.xml.security.utils.resolver.implementations;
 
 import com.kjhxtc.internal.apache.xml.security.signature.XMLSignatureInput;
-import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
 import com.kjhxtc.internal.apache.xml.security.utils.resolver.ResourceResolverContext;
 import com.kjhxtc.internal.apache.xml.security.utils.resolver.ResourceResolverException;
 import com.kjhxtc.internal.apache.xml.security.utils.resolver.ResourceResolverSpi;
@@ -65,14 +64,11 @@ public class ResolverXPointer extends ResourceResolverSpi {
             String id = getXPointerId(context.uriToResolve);
             resultNode = doc.getElementById(id);
 
-            if (context.secureValidation) {
-                Element start = context.attr.getOwnerDocument().getDocumentElement();
-                if (!XMLUtils.protectAgainstWrappingAttack(start, id)) {
-                    Object[] exArgs = { id };
-                    throw new ResourceResolverException(
-                        "signature.Verification.MultipleIDs", exArgs, context.uriToResolve, context.baseUri
-                    );
-                }
+            if (context.secureValidation && !context.isUniqueId(doc, (Element) resultNode, id)) {
+                Object[] exArgs = { id };
+                throw new ResourceResolverException(
+                    "signature.Verification.MultipleIDs", exArgs, context.uriToResolve, context.baseUri
+                );
             }
 
             if (resultNode == null) {
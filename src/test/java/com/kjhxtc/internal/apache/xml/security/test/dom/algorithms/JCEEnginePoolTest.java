@@ -0,0 +1,134 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.test.dom.algorithms;
+
+import java.nio.charset.StandardCharsets;
+import java.security.KeyPair;
+import java.security.KeyPairGenerator;
+import java.security.MessageDigest;
+
+import javax.crypto.SecretKey;
+import javax.crypto.spec.SecretKeySpec;
+
+import com.kjhxtc.internal.apache.xml.security.algorithms.JCEEnginePool;
+import com.kjhxtc.internal.apache.xml.security.algorithms.JCEMapper;
+import com.kjhxtc.internal.apache.xml.security.algorithms.MessageDigestAlgorithm;
+import com.kjhxtc.internal.apache.xml.security.algorithms.SignatureAlgorithm;
+import com.kjhxtc.internal.apache.xml.security.signature.XMLSignature;
+import com.kjhxtc.internal.apache.xml.security.test.dom.TestUtils;
+import com.kjhxtc.internal.apache.xml.security.transforms.Transforms;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Tests that MessageDigest engines are reused through the JCEEnginePool without carrying
+ * over any state from their previous user, and that keyed engines are created per use.
+ */
+public class JCEEnginePoolTest {
+
+    static {
+        com.kjhxtc.internal.apache.xml.security.Init.init();
+    }
+
+    @Test
+    public void testMessageDigestIsResetOnRelease() throws Exception {
+        JCEEnginePool<MessageDigest> pool = JCEEnginePool.MESSAGE_DIGEST;
+        MessageDigest md = pool.acquire("SHA-384", null);
+        md.update("dirty".getBytes(StandardCharsets.UTF_8));
+        pool.release("SHA-384", null, md);
+
+        long hits = pool.getHits();
+        MessageDigest reused = pool.acquire("SHA-384", null);
+        assertSame(md, reused);
+        assertTrue(pool.getHits() > hits);
+        assertArrayEquals(MessageDigest.getInstance("SHA-384").digest(), reused.digest());
+        pool.release("SHA-384", null, reused);
+    }
+
+    @Test
+    public void testMessageDigestAlgorithmAfterRelease() throws Exception {
+        Document doc = TestUtils.newDocument();
+        byte[] data = "data".getBytes(StandardCharsets.UTF_8);
+        byte[] expected = MessageDigest.getInstance("SHA-256").digest(data);
+
+        MessageDigestAlgorithm mda =
+            MessageDigestAlgorithm.getInstance(doc, MessageDigestAlgorithm.ALGO_ID_DIGEST_SHA256);
+        mda.update(data);
+        assertArrayEquals(expected, mda.digest());
+        mda.release();
+
+        // The algorithm takes a new engine when it is used again
+        mda.update(data);
+        assertArrayEquals(expected, mda.digest());
+        mda.release();
+    }
+
+    @Test
+    public void testRepeatedSignAndVerify() throws Exception {
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(2048);
+        KeyPair kp = kpg.generateKeyPair();
+        SecretKey hmacKey = new SecretKeySpec("secret".getBytes(StandardCharsets.US_ASCII), "HmacSHA256");
+
+        for (int i = 0; i < 3; i++) {
+            XMLSignature rsaSignature = sign(XMLSignature.ALGO_ID_SIGNATURE_RSA_SHA256, kp.getPrivate());
+            assertTrue(rsaSignature.checkSignatureValue(kp.getPublic()));
+            assertTrue(rsaSignature.checkSignatureValue(kp.getPublic()));
+
+            XMLSignature hmacSignature = sign(XMLSignature.ALGO_ID_MAC_HMAC_SHA256, hmacKey);
+            assertTrue(hmacSignature.checkSignatureValue(hmacKey));
+            assertTrue(hmacSignature.checkSignatureValue(hmacKey));
+        }
+    }
+
+    @Test
+    public void testHmacUsesConfiguredProvider() throws Exception {
+        String providerId = JCEMapper.getProviderId();
+        JCEMapper.setProviderId("SunJCE");
+        try {
+            SignatureAlgorithm hmac =
+                new SignatureAlgorithm(TestUtils.newDocument(), XMLSignature.ALGO_ID_MAC_HMAC_SHA256);
+            assertEquals("SunJCE", hmac.getJCEProviderName());
+        } finally {
+            JCEMapper.setProviderId(providerId);
+        }
+    }
+
+    private static XMLSignature sign(String signatureURI, java.security.Key key) throws Exception {
+        Document doc = TestUtils.newDocument();
+        Element root = doc.createElementNS(null, "root");
+        root.setTextContent("some content");
+        doc.appendChild(root);
+
+        XMLSignature sig = new XMLSignature(doc, null, signatureURI);
+        root.appendChild(sig.getElement());
+        Transforms transforms = new Transforms(doc);
+        transforms.addTransform(Transforms.TRANSFORM_ENVELOPED_SIGNATURE);
+        transforms.addTransform(Transforms.TRANSFORM_C14N_EXCL_OMIT_COMMENTS);
+        sig.addDocument("", transforms, MessageDigestAlgorithm.ALGO_ID_DIGEST_SHA256);
+        sig.sign(key);
+        return sig;
+    }
+}
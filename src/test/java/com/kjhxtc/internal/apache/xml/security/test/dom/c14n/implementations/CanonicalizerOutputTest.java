@@ -0,0 +1,151 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.test.dom.c14n.implementations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.kjhxtc.internal.apache.xml.security.c14n.Canonicalizer;
+import com.kjhxtc.internal.apache.xml.security.test.dom.TestUtils;
+import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Checks the escaping and UTF-8 encoding of the buffered canonicalizer output, in
+ * particular for content spanning several internal buffers.
+ */
+public class CanonicalizerOutputTest {
+
+    static {
+        com.kjhxtc.internal.apache.xml.security.Init.init();
+    }
+
+    @Test
+    public void testEscapingAndEncoding() throws Exception {
+        Document doc = TestUtils.newDocument();
+        Element root = doc.createElementNS(null, "résumé");
+        root.setAttributeNS(null, "a", "<\"&\t\n\r>é€😀");
+        root.appendChild(doc.createTextNode("<&>\r\"é€😀"));
+        root.appendChild(doc.createComment(" c\ré "));
+        root.appendChild(doc.createProcessingInstruction("pi", "d\r<&>"));
+        doc.appendChild(root);
+
+        String expected =
+            "<résumé a=\"&lt;&quot;&amp;&#x9;&#xA;&#xD;>é€😀\">"
+            + "&lt;&amp;&gt;&#xD;\"é€😀"
+            + "<!-- c&#xD;é --><?pi d&#xD;<&>?></résumé>";
+        assertEquals(expected, canonicalize(Canonicalizer.ALGO_ID_C14N_WITH_COMMENTS, root));
+    }
+
+    @Test
+    public void testLargeContent() throws Exception {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 20000; i++) {
+            text.append(i % 7 == 0 ? "€" : i % 11 == 0 ? "&" : "x");
+        }
+        StringBuilder name = new StringBuilder();
+        for (int i = 0; i < 10000; i++) {
+            name.append('n');
+        }
+
+        Document doc = TestUtils.newDocument();
+        Element root = doc.createElementNS(null, name.toString());
+        root.appendChild(doc.createTextNode(text.toString()));
+        doc.appendChild(root);
+
+        String expected =
+            "<" + name + ">" + text.toString().replace("&", "&amp;") + "</" + name + ">";
+        assertEquals(expected, canonicalize(Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS, root));
+    }
+
+    @Test
+    public void testAttributeOrder() throws Exception {
+        StringBuilder plain = new StringBuilder();
+        for (int i = 11; i >= 0; i--) {
+            plain.append(String.format(" p%02d=\"%d\"", i, i));
+        }
+        String input =
+            "<r><e z:b=\"1\" y=\"2\" a:c=\"3\" x=\"4\" a:a=\"5\"" + plain
+            + " xmlns:z=\"urn:z\" xmlns:a=\"urn:a\" xmlns=\"urn:d\"><f a:b=\"6\" b=\"7\"/></e></r>";
+        Document doc = XMLUtils.read(new ByteArrayInputStream(input.getBytes(StandardCharsets.UTF_8)), false);
+        Element element = (Element) doc.getDocumentElement().getFirstChild();
+
+        StringBuilder sorted = new StringBuilder();
+        for (int i = 0; i < 12; i++) {
+            sorted.append(String.format(" p%02d=\"%d\"", i, i));
+        }
+        String expected =
+            "<e xmlns=\"urn:d\" xmlns:a=\"urn:a\" xmlns:z=\"urn:z\"" + sorted
+            + " x=\"4\" y=\"2\" a:a=\"5\" a:c=\"3\" z:b=\"1\"><f b=\"7\" a:b=\"6\"></f></e>";
+        assertEquals(expected, canonicalize(Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS, element));
+        assertEquals(expected, canonicalize(Canonicalizer.ALGO_ID_C14N11_OMIT_COMMENTS, element));
+        assertEquals(expected, canonicalize(Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS, element));
+        assertEquals(expected, canonicalize(Canonicalizer.ALGO_ID_C14N_PHYSICAL, element));
+    }
+
+    @Test
+    public void testOutputIsWrittenInBlocks() throws Exception {
+        Document doc = TestUtils.newDocument();
+        Element root = doc.createElementNS(null, "root");
+        doc.appendChild(root);
+        for (int i = 0; i < 1000; i++) {
+            Element child = doc.createElementNS(null, "child");
+            child.setAttributeNS(null, "id", Integer.toString(i));
+            child.appendChild(doc.createTextNode("text"));
+            root.appendChild(child);
+        }
+
+        CountingOutputStream os = new CountingOutputStream();
+        Canonicalizer.getInstance(Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS).canonicalizeSubtree(doc, os);
+
+        assertTrue(os.bytes > 25000);
+        assertTrue(os.writes < 10, "Too many writes: " + os.writes);
+    }
+
+    private static String canonicalize(String algorithm, Element element) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Canonicalizer.getInstance(algorithm).canonicalizeSubtree(element, os);
+        return new String(os.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+    private static final class CountingOutputStream extends OutputStream {
+        private int writes;
+        private long bytes;
+
+        @Override
+        public void write(int b) throws IOException {
+            writes++;
+            bytes++;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            writes++;
+            bytes += len;
+        }
+    }
+}
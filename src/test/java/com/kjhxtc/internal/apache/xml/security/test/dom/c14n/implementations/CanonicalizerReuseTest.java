@@ -0,0 +1,195 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.test.dom.c14n.implementations;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.kjhxtc.internal.apache.xml.security.c14n.Canonicalizer;
+import com.kjhxtc.internal.apache.xml.security.c14n.implementations.Canonicalizer11_OmitComments;
+import com.kjhxtc.internal.apache.xml.security.c14n.implementations.Canonicalizer20010315ExclWithComments;
+import com.kjhxtc.internal.apache.xml.security.c14n.implementations.Canonicalizer20010315WithComments;
+import com.kjhxtc.internal.apache.xml.security.signature.XMLSignatureInput;
+import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Canonicalizer instances keep no per-call state, so a single instance can be reused
+ * sequentially and shared between threads (SANTUARIO-463).
+ */
+public class CanonicalizerReuseTest {
+
+    static {
+        com.kjhxtc.internal.apache.xml.security.Init.init();
+    }
+
+    private static final String XML =
+        "<a xmlns=\"urn:default\" xmlns:p=\"urn:p\" xml:lang=\"en\">\n"
+        + "  <!-- comment -->\n"
+        + "  <p:b p:x=\"1\" y=\"2\"><c xmlns:q=\"urn:q\" q:z=\"3\">text &amp; more</c></p:b>\n"
+        + "</a>";
+
+    private static final String[] ALGORITHMS = {
+        Canonicalizer.ALGO_ID_C14N_OMIT_COMMENTS,
+        Canonicalizer.ALGO_ID_C14N_WITH_COMMENTS,
+        Canonicalizer.ALGO_ID_C14N_EXCL_OMIT_COMMENTS,
+        Canonicalizer.ALGO_ID_C14N_EXCL_WITH_COMMENTS,
+        Canonicalizer.ALGO_ID_C14N11_OMIT_COMMENTS,
+        Canonicalizer.ALGO_ID_C14N11_WITH_COMMENTS,
+        Canonicalizer.ALGO_ID_C14N_PHYSICAL
+    };
+
+    @Test
+    public void testSubtreeReuse() throws Exception {
+        Canonicalizer20010315WithComments c14n = new Canonicalizer20010315WithComments();
+        Element b = getB(read());
+
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        c14n.engineCanonicalizeSubTree(b, first);
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        c14n.engineCanonicalizeSubTree(getB(read()), second);
+
+        // The inherited namespaces and xml:lang are output for the apex element every time
+        String expected =
+            "<p:b xmlns=\"urn:default\" xmlns:p=\"urn:p\" y=\"2\" xml:lang=\"en\" p:x=\"1\">"
+            + "<c xmlns:q=\"urn:q\" q:z=\"3\">text &amp; more</c></p:b>";
+        assertEquals(expected, new String(first.toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(expected, new String(second.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void testExcludeCommentsDoesNotLeak() throws Exception {
+        Canonicalizer20010315WithComments c14n = new Canonicalizer20010315WithComments();
+        Document doc = read();
+
+        XMLSignatureInput input = new XMLSignatureInput(doc);
+        input.setExcludeComments(true);
+        ByteArrayOutputStream withoutComments = new ByteArrayOutputStream();
+        c14n.engineCanonicalize(input, withoutComments, false);
+
+        ByteArrayOutputStream withComments = new ByteArrayOutputStream();
+        c14n.engineCanonicalizeSubTree(doc, withComments);
+
+        assertEquals(-1, new String(withoutComments.toByteArray(), StandardCharsets.UTF_8).indexOf("<!--"));
+        assertTrue(new String(withComments.toByteArray(), StandardCharsets.UTF_8).contains("<!-- comment -->"));
+    }
+
+    @Test
+    public void testInclusiveNamespacesDoNotLeak() throws Exception {
+        Canonicalizer20010315ExclWithComments c14n = new Canonicalizer20010315ExclWithComments();
+
+        ByteArrayOutputStream withPrefix = new ByteArrayOutputStream();
+        c14n.engineCanonicalizeSubTree(getB(read()), "#default", true, withPrefix);
+        ByteArrayOutputStream withoutPrefix = new ByteArrayOutputStream();
+        c14n.engineCanonicalizeSubTree(getB(read()), withoutPrefix);
+
+        assertEquals(
+            "<p:b xmlns=\"urn:default\" xmlns:p=\"urn:p\" y=\"2\" p:x=\"1\">",
+            startTag(withPrefix)
+        );
+        assertEquals("<p:b xmlns:p=\"urn:p\" y=\"2\" p:x=\"1\">", startTag(withoutPrefix));
+    }
+
+    @Test
+    public void testNodeSetReuse() throws Exception {
+        Canonicalizer11_OmitComments c14n = new Canonicalizer11_OmitComments();
+        Document doc = read();
+        Set<Node> nodeSet = new HashSet<>();
+        XMLUtils.getSet(doc, nodeSet, null, false);
+
+        ByteArrayOutputStream subtree = new ByteArrayOutputStream();
+        c14n.engineCanonicalizeSubTree(doc, subtree);
+        for (int i = 0; i < 3; i++) {
+            ByteArrayOutputStream xpath = new ByteArrayOutputStream();
+            c14n.engineCanonicalizeXPathNodeSet(nodeSet, xpath);
+            assertArrayEquals(subtree.toByteArray(), xpath.toByteArray());
+        }
+    }
+
+    @Test
+    public void testSubclassesNotShared() throws Exception {
+        assertTrue(new Canonicalizer11_OmitComments().engineIsThreadSafe());
+        // a subclass may keep per-call state in its fields, so it gets an instance per call
+        assertFalse(new Canonicalizer11_OmitComments() { }.engineIsThreadSafe());
+    }
+
+    @Test
+    public void testConcurrentUse() throws Exception {
+        List<byte[]> expected = new ArrayList<>();
+        for (String algorithm : ALGORITHMS) {
+            expected.add(canonicalize(algorithm, read()));
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(8);
+        try {
+            List<Future<?>> results = new ArrayList<>();
+            for (int t = 0; t < 16; t++) {
+                Callable<Void> task = () -> {
+                    for (int i = 0; i < 50; i++) {
+                        int index = i % ALGORITHMS.length;
+                        assertArrayEquals(expected.get(index), canonicalize(ALGORITHMS[index], read()));
+                    }
+                    return null;
+                };
+                results.add(executor.submit(task));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    private static byte[] canonicalize(String algorithm, Document doc) throws Exception {
+        ByteArrayOutputStream os = new ByteArrayOutputStream();
+        Canonicalizer.getInstance(algorithm).canonicalizeSubtree(getB(doc), os);
+        return os.toByteArray();
+    }
+
+    private static Document read() throws Exception {
+        return XMLUtils.read(new ByteArrayInputStream(XML.getBytes(StandardCharsets.UTF_8)), false);
+    }
+
+    private static Element getB(Document doc) {
+        return (Element) doc.getElementsByTagNameNS("urn:p", "b").item(0);
+    }
+
+    private static String startTag(ByteArrayOutputStream os) {
+        String result = new String(os.toByteArray(), StandardCharsets.UTF_8);
+        return result.substring(0, result.indexOf('>') + 1);
+    }
+}
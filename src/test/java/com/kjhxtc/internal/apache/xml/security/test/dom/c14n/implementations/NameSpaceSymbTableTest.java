@@ -27,6 +27,7 @@ import com.kjhxtc.internal.apache.xml.security.test.dom.TestUtils;
 import org.junit.jupiter.api.Test;
 import org.w3c.dom.Attr;
 import org.w3c.dom.Document;
+import org.w3c.dom.Node;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
@@ -209,4 +210,36 @@ public class NameSpaceSymbTableTest {
         ns.addMappingAndRender("ctrl", "http://foo.com/controls", node1);
         ns.addMappingAndRender("wiki", "http://foo.com/samples/wiki", node1);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testDeepNestingWithRedundantDeclarations() {
+        NameSpaceSymbTable ns = new NameSpaceSymbTable();
+        for (int i = 0; i < 100; i++) {
+            ns.outputNodePush();
+            Node n = ns.addMappingAndRender("a", "http://a", node1);
+            assertEquals(i == 0 ? node1 : null, n);
+            // a new prefix on every level forces the table and the undo log to grow
+            assertEquals(node2, ns.addMappingAndRender("p" + i, "http://b", node2));
+        }
+        assertEquals(100, ns.getLevel());
+        for (int i = 99; i >= 0; i--) {
+            assertNull(ns.getMappingWithoutRendered("p" + i));
+            ns.outputNodePop();
+            ns.push();
+            // p(i) went out of scope with the popped frame
+            assertTrue(ns.addMapping("p" + i, "http://b", node2));
+            assertEquals(node2, ns.getMapping("p" + i));
+            ns.pop();
+        }
+        assertEquals(0, ns.getLevel());
+        assertNull(ns.getMappingWithoutRendered("a"));
+        ns.push();
+        assertTrue(ns.addMapping("a", "http://a", node1));
+        assertEquals(node1, ns.getMapping("a"));
+
+        ns.reset();
+        assertEquals(0, ns.getLevel());
+        assertNull(ns.getMapping("xmlns"));
+        assertNull(ns.getMapping("a"));
+    }
+}
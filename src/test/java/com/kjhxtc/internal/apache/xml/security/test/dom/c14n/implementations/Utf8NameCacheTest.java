@@ -0,0 +1,88 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.test.dom.c14n.implementations;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.kjhxtc.internal.apache.xml.security.c14n.implementations.Utf8NameCache;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class Utf8NameCacheTest {
+
+    @Test
+    public void testHitsAndMisses() {
+        Utf8NameCache cache = new Utf8NameCache(16);
+        byte[] first = cache.get("d\u00e9j\u00e0:vu");
+        assertArrayEquals("d\u00e9j\u00e0:vu".getBytes(StandardCharsets.UTF_8), first);
+        assertSame(first, cache.get("d\u00e9j\u00e0:vu"));
+        assertEquals(1, cache.getStatistics().getHits());
+        assertEquals(1, cache.getStatistics().getMisses());
+        assertEquals(0.5, cache.getStatistics().getHitRate(), 0.0);
+
+        cache.clear();
+        cache.get("d\u00e9j\u00e0:vu");
+        assertEquals(2, cache.getStatistics().getMisses());
+    }
+
+    @Test
+    public void testBounded() {
+        Utf8NameCache cache = new Utf8NameCache(10);
+        assertEquals(16, cache.getCapacity());
+        for (int i = 0; i < 1000; i++) {
+            String name = "element" + i;
+            assertArrayEquals(name.getBytes(StandardCharsets.UTF_8), cache.get(name));
+        }
+        assertEquals(1000, cache.getStatistics().getMisses());
+        assertTrue(cache.getStatistics().getEvictions() >= 1000 - cache.getCapacity());
+    }
+
+    @Test
+    public void testConcurrentAccess() throws Exception {
+        Utf8NameCache cache = new Utf8NameCache(64);
+        ExecutorService executor = Executors.newFixedThreadPool(4);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int t = 0; t < 4; t++) {
+                futures.add(executor.submit(() -> {
+                    for (int i = 0; i < 10_000; i++) {
+                        String name = "ns" + i % 100 + ":\u00fcbung";
+                        assertArrayEquals(name.getBytes(StandardCharsets.UTF_8), cache.get(name));
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+        assertEquals(40_000, cache.getStatistics().getHits() + cache.getStatistics().getMisses());
+    }
+}
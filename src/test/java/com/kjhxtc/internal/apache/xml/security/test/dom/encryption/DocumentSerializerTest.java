@@ -0,0 +1,111 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.test.dom.encryption;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+
+import com.kjhxtc.internal.apache.xml.security.c14n.Canonicalizer;
+import com.kjhxtc.internal.apache.xml.security.encryption.DocumentSerializer;
+import com.kjhxtc.internal.apache.xml.security.encryption.Serializer;
+import com.kjhxtc.internal.apache.xml.security.encryption.TransformSerializer;
+import com.kjhxtc.internal.apache.xml.security.encryption.XMLEncryptionException;
+import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.Node;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ */
+public class DocumentSerializerTest {
+
+    static {
+        com.kjhxtc.internal.apache.xml.security.Init.init();
+    }
+
+    private static final String CONTEXT =
+        "<root xmlns=\"urn:default\" xmlns:a=\"urn:a\"><a:parent xmlns:b=\"urn:b\"/></root>";
+
+    private static final String FRAGMENT =
+        "text &amp; more<a:child b:attr=\"v&lt;\" plain=\"1\" xml:lang=\"en\">"
+        + "<b:inner xmlns:c=\"urn:c\" c:x=\"y\">inner<![CDATA[<cdata>]]></b:inner>"
+        + "<!-- comment --><?pi data?><unqualified xmlns=\"\"/><d:el xmlns:d=\"urn:d\"/>"
+        + "</a:child>é€ tail";
+
+    @Test
+    public void testStreamingDeserialize() throws Exception {
+        String expected = deserialize(new DocumentSerializer(true), false);
+        assertEquals(expected, deserialize(new DocumentSerializer(true), true));
+        assertEquals(expected, deserialize(new TransformSerializer(true), true));
+    }
+
+    @Test
+    public void testStreamingDeserializeMalformed() throws Exception {
+        Document document = XMLUtils.read(new ByteArrayInputStream(CONTEXT.getBytes(StandardCharsets.UTF_8)), true);
+        Node parent = document.getDocumentElement().getFirstChild();
+        DocumentSerializer serializer = new DocumentSerializer(true);
+        assertThrows(XMLEncryptionException.class, () -> serializer.deserialize(
+            new ByteArrayInputStream("<a:child>".getBytes(StandardCharsets.UTF_8)), parent));
+        assertThrows(XMLEncryptionException.class, () -> serializer.deserialize(
+            new ByteArrayInputStream("&undeclared;".getBytes(StandardCharsets.UTF_8)), parent));
+    }
+
+    @Test
+    public void testStreamingDeserializeAttributeLimit() throws Exception {
+        StringBuilder fragment = new StringBuilder("<a:child");
+        for (int i = 0; i < 10001; i++) {
+            fragment.append(" attr").append(i).append("=\"\"");
+        }
+        fragment.append("/>");
+        byte[] bytes = fragment.toString().getBytes(StandardCharsets.UTF_8);
+
+        Document document = XMLUtils.read(new ByteArrayInputStream(CONTEXT.getBytes(StandardCharsets.UTF_8)), true);
+        Node parent = document.getDocumentElement().getFirstChild();
+        assertThrows(XMLEncryptionException.class, () -> new DocumentSerializer(true).deserialize(
+            new ByteArrayInputStream(bytes), parent));
+    }
+
+    private static String deserialize(Serializer serializer, boolean streaming) throws Exception {
+        Document document = XMLUtils.read(new ByteArrayInputStream(CONTEXT.getBytes(StandardCharsets.UTF_8)), true);
+        Element parent = (Element) document.getDocumentElement().getFirstChild();
+        byte[] fragment = FRAGMENT.getBytes(StandardCharsets.UTF_8);
+
+        Node result;
+        if (streaming) {
+            try (InputStream is = new ByteArrayInputStream(fragment)) {
+                result = serializer.deserialize(is, parent);
+            }
+        } else {
+            result = serializer.deserialize(fragment, parent);
+        }
+        assertSame(document, result.getOwnerDocument());
+        parent.appendChild(result);
+
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        Canonicalizer.getInstance(Canonicalizer.ALGO_ID_C14N_WITH_COMMENTS).canonicalizeSubtree(document, out);
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -26,6 +26,7 @@ import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.Key;
 import java.security.KeyPair;
 import java.security.KeyPairGenerator;
@@ -50,6 +51,7 @@ import com.kjhxtc.internal.apache.xml.security.encryption.EncryptionMethod;
 import com.kjhxtc.internal.apache.xml.security.encryption.EncryptionProperties;
 import com.kjhxtc.internal.apache.xml.security.encryption.EncryptionProperty;
 import com.kjhxtc.internal.apache.xml.security.encryption.XMLCipher;
+import com.kjhxtc.internal.apache.xml.security.encryption.XMLEncryptionException;
 import com.kjhxtc.internal.apache.xml.security.keys.KeyInfo;
 import com.kjhxtc.internal.apache.xml.security.parser.XMLParserException;
 import com.kjhxtc.internal.apache.xml.security.test.dom.TestUtils;
@@ -64,9 +66,12 @@ import org.w3c.dom.Element;
 import org.w3c.dom.Node;
 import org.w3c.dom.NodeList;
 
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
 import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.junit.jupiter.api.Assumptions.assumeFalse;
 
 
@@ -911,6 +916,49 @@ public class XMLCipherTest {
         xmlCipher.decryptToByteArray(encryptedData);
     }
 
+    @Test
+    public void testDecryptToInputStream() throws Exception {
+        KeyGenerator keygen = KeyGenerator.getInstance("AES");
+        keygen.init(128);
+        Key key = keygen.generateKey();
+
+        Document d = document();
+        Element e = (Element) d.getElementsByTagName(element()).item(index());
+        Canonicalizer canon = Canonicalizer.getInstance(Canonicalizer.ALGO_ID_C14N_PHYSICAL);
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        canon.canonicalizeSubtree(e, expected);
+
+        XMLCipher cipher = XMLCipher.getInstance(XMLCipher.AES_128_GCM);
+        cipher.init(XMLCipher.ENCRYPT_MODE, key);
+        Document encrypted = cipher.doFinal(d, e);
+        Element encryptedData = (Element) encrypted.getElementsByTagNameNS(
+            EncryptionConstants.EncryptionSpecNS, EncryptionConstants._TAG_ENCRYPTEDDATA).item(0);
+
+        XMLCipher dcipher = XMLCipher.getInstance();
+        dcipher.init(XMLCipher.DECRYPT_MODE, key);
+        ByteArrayOutputStream decrypted = new ByteArrayOutputStream();
+        try (InputStream is = dcipher.decryptToInputStream(encryptedData)) {
+            byte[] buf = new byte[7];
+            int n;
+            while ((n = is.read(buf)) != -1) {
+                decrypted.write(buf, 0, n);
+            }
+        }
+        assertArrayEquals(expected.toByteArray(), decrypted.toByteArray());
+        assertArrayEquals(expected.toByteArray(), dcipher.decryptToByteArray(encryptedData));
+
+        // a tampered cipher text is reported by the stream, and no plaintext is returned
+        Element cipherValue = (Element) encryptedData.getElementsByTagNameNS(
+            EncryptionConstants.EncryptionSpecNS, EncryptionConstants._TAG_CIPHERVALUE).item(0);
+        String text = cipherValue.getTextContent();
+        cipherValue.setTextContent(text.substring(0, 40) + (text.charAt(40) == 'A' ? 'B' : 'A') + text.substring(41));
+        try (InputStream is = dcipher.decryptToInputStream(encryptedData)) {
+            IOException ex = assertThrows(IOException.class, is::read);
+            assertTrue(ex.getCause() instanceof GeneralSecurityException);
+        }
+        assertThrows(XMLEncryptionException.class, () -> dcipher.decryptToByteArray(encryptedData));
+    }
+
     @Test
     public void testMultipleKEKs() throws Exception {
 
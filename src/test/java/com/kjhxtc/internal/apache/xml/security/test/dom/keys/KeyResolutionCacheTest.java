@@ -0,0 +1,148 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.test.dom.keys;
+
+import java.io.FileInputStream;
+import java.security.KeyStore;
+import java.security.cert.X509Certificate;
+
+import com.kjhxtc.internal.apache.xml.security.Init;
+import com.kjhxtc.internal.apache.xml.security.keys.KeyInfo;
+import com.kjhxtc.internal.apache.xml.security.keys.KeyResolutionCache;
+import com.kjhxtc.internal.apache.xml.security.keys.content.RetrievalMethod;
+import com.kjhxtc.internal.apache.xml.security.keys.content.X509Data;
+import com.kjhxtc.internal.apache.xml.security.keys.storage.StorageResolver;
+import com.kjhxtc.internal.apache.xml.security.test.dom.TestUtils;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+
+import static com.kjhxtc.internal.apache.xml.security.test.XmlSecTestEnvironment.resolveFile;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+
+public class KeyResolutionCacheTest {
+
+    private final X509Certificate cert;
+    private final X509Certificate otherCert;
+
+    public KeyResolutionCacheTest() throws Exception {
+        Init.init();
+        KeyStore ks = KeyStore.getInstance("JCEKS");
+        try (FileInputStream fis = new FileInputStream(resolveFile("src/test/resources/test.jceks"))) {
+            ks.load(fis, "secret".toCharArray());
+        }
+        cert = (X509Certificate) ks.getCertificate("rsakey");
+        otherCert = (X509Certificate) ks.getCertificate("democa");
+    }
+
+    @Test
+    public void testSharedAcrossDocuments() throws Exception {
+        KeyResolutionCache cache = new KeyResolutionCache(10, 0L);
+
+        X509Certificate first = parse(newKeyInfo(cert), cache).getX509Certificate();
+        assertEquals(cert, first);
+        assertEquals(0, cache.getStatistics().getHits());
+        assertEquals(1, cache.getStatistics().getMisses());
+
+        // the same content in another document is answered from the cache
+        assertSame(first, parse(newKeyInfo(cert), cache).getX509Certificate());
+        assertEquals(1, cache.getStatistics().getHits());
+
+        // public keys are cached separately
+        assertEquals(cert.getPublicKey(), parse(newKeyInfo(cert), cache).getPublicKey());
+        assertEquals(2, cache.getStatistics().getMisses());
+        assertEquals(1, cache.size());
+
+        cache.clear();
+        assertEquals(0, cache.size());
+        assertEquals(cert, parse(newKeyInfo(cert), cache).getX509Certificate());
+        assertEquals(3, cache.getStatistics().getMisses());
+    }
+
+    @Test
+    public void testEviction() throws Exception {
+        KeyResolutionCache cache = new KeyResolutionCache(1, 0L);
+
+        assertEquals(cert, parse(newKeyInfo(cert), cache).getX509Certificate());
+        assertEquals(otherCert, parse(newKeyInfo(otherCert), cache).getX509Certificate());
+        assertEquals(1, cache.getStatistics().getEvictions());
+        assertEquals(cert, parse(newKeyInfo(cert), cache).getX509Certificate());
+        assertEquals(3, cache.getStatistics().getMisses());
+    }
+
+    @Test
+    public void testKeyedByConfiguration() throws Exception {
+        KeyResolutionCache cache = new KeyResolutionCache(10, 0L);
+        Document doc = newKeyInfo(cert);
+
+        assertEquals(cert, parse(doc, cache).getX509Certificate());
+
+        // another secure validation setting is resolved again
+        KeyInfo keyInfo = parse(doc, cache);
+        keyInfo.setSecureValidation(false);
+        assertEquals(cert, keyInfo.getX509Certificate());
+        assertEquals(2, cache.getStatistics().getMisses());
+
+        // as are other storage resolvers
+        StorageResolver storageResolver = new StorageResolver(otherCert);
+        keyInfo = parse(doc, cache);
+        keyInfo.addStorageResolver(storageResolver);
+        assertEquals(cert, keyInfo.getX509Certificate());
+        assertEquals(3, cache.getStatistics().getMisses());
+        assertEquals(3, cache.size());
+
+        // the same resolver instance shares the entry
+        keyInfo = parse(doc, cache);
+        keyInfo.addStorageResolver(storageResolver);
+        assertEquals(cert, keyInfo.getX509Certificate());
+        assertEquals(1, cache.getStatistics().getHits());
+    }
+
+    @Test
+    public void testRetrievalMethodNotCached() throws Exception {
+        KeyResolutionCache cache = new KeyResolutionCache(10, 0L);
+
+        Document doc = TestUtils.newDocument();
+        KeyInfo keyInfo = new KeyInfo(doc);
+        keyInfo.addRetrievalMethod("#x509", null, RetrievalMethod.TYPE_RAWX509);
+        doc.appendChild(keyInfo.getElement());
+        keyInfo.setKeyResolutionCache(cache);
+        keyInfo.getX509Certificate();
+
+        assertEquals(0, cache.getStatistics().getHits() + cache.getStatistics().getMisses());
+        assertEquals(0, cache.size());
+    }
+
+    private static Document newKeyInfo(X509Certificate certificate) throws Exception {
+        Document doc = TestUtils.newDocument();
+        KeyInfo keyInfo = new KeyInfo(doc);
+        X509Data x509Data = new X509Data(doc);
+        x509Data.addCertificate(certificate);
+        keyInfo.add(x509Data);
+        doc.appendChild(keyInfo.getElement());
+        return doc;
+    }
+
+    private static KeyInfo parse(Document doc, KeyResolutionCache cache) throws Exception {
+        KeyInfo keyInfo = new KeyInfo(doc.getDocumentElement(), "");
+        keyInfo.setKeyResolutionCache(cache);
+        return keyInfo;
+    }
+}
@@ -0,0 +1,94 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.test.dom.keys.content.x509;
+
+import java.io.FileInputStream;
+import java.security.KeyStore;
+import java.security.cert.CertificateException;
+import java.security.cert.X509Certificate;
+
+import com.kjhxtc.internal.apache.xml.security.keys.content.x509.X509CertificateCache;
+import org.junit.jupiter.api.Test;
+
+import static com.kjhxtc.internal.apache.xml.security.test.XmlSecTestEnvironment.resolveFile;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class X509CertificateCacheTest {
+
+    private final byte[] encoded;
+    private final byte[] otherEncoded;
+
+    public X509CertificateCacheTest() throws Exception {
+        KeyStore ks = KeyStore.getInstance("JCEKS");
+        try (FileInputStream fis = new FileInputStream(resolveFile("src/test/resources/test.jceks"))) {
+            ks.load(fis, "secret".toCharArray());
+        }
+        encoded = ks.getCertificate("rsakey").getEncoded();
+        otherEncoded = ks.getCertificate("democa").getEncoded();
+    }
+
+    @Test
+    public void testHitsAndMisses() throws Exception {
+        X509CertificateCache cache = new X509CertificateCache(16);
+        X509Certificate cert = cache.getCertificate(encoded);
+        assertEquals(cert, cache.getCertificate(encoded.clone()));
+        assertSame(cert, cache.getCertificate(encoded.clone()));
+        assertSame(cert.getPublicKey(), cache.getPublicKey(encoded));
+        assertEquals(3, cache.getStatistics().getHits());
+        assertEquals(1, cache.getStatistics().getMisses());
+
+        // the cached entry is not affected by changes to the bytes it was parsed from
+        byte[] copy = otherEncoded.clone();
+        X509Certificate other = cache.getCertificate(copy);
+        copy[copy.length - 1]++;
+        assertSame(other, cache.getCertificate(otherEncoded));
+
+        cache.clear();
+        assertEquals(cert, cache.getCertificate(encoded));
+        assertEquals(3, cache.getStatistics().getMisses());
+    }
+
+    @Test
+    public void testBounded() throws Exception {
+        X509CertificateCache cache = new X509CertificateCache(1);
+        assertEquals(2, cache.getCapacity());
+        for (int i = 0; i < 10; i++) {
+            cache.getCertificate(i % 2 == 0 ? encoded : otherEncoded);
+        }
+        assertEquals(8, cache.getStatistics().getHits());
+        assertEquals(0, cache.getStatistics().getEvictions());
+    }
+
+    @Test
+    public void testDisabled() throws Exception {
+        X509CertificateCache cache = new X509CertificateCache(0);
+        assertEquals(0, cache.getCapacity());
+        assertEquals(cache.getCertificate(encoded), cache.getCertificate(encoded));
+        assertEquals(2, cache.getStatistics().getMisses());
+        assertEquals(0, cache.getStatistics().getHits());
+    }
+
+    @Test
+    public void testInvalid() {
+        X509CertificateCache cache = new X509CertificateCache(16);
+        assertThrows(CertificateException.class, () -> cache.getCertificate(new byte[] {1, 2, 3}));
+    }
+}
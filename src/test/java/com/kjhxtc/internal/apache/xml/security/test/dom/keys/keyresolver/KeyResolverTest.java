@@ -22,10 +22,12 @@ package com.kjhxtc.internal.apache.xml.security.test.dom.keys.keyresolver;
 import java.io.FileInputStream;
 import java.math.BigInteger;
 import java.security.KeyFactory;
+import java.security.KeyPairGenerator;
 import java.security.KeyStore;
 import java.security.NoSuchAlgorithmException;
 import java.security.PrivateKey;
 import java.security.PublicKey;
+import java.security.cert.Certificate;
 import java.security.cert.X509Certificate;
 import java.security.interfaces.RSAPrivateKey;
 import java.security.interfaces.RSAPublicKey;
@@ -183,6 +185,86 @@ public class KeyResolverTest {
         assertEquals(secretKey, ki.getSecretKey());
     }
 
+    /**
+     * Test that the PrivateKeyResolver follows changes of the KeyStore.
+     */
+    @Test
+    public void testPrivateKeyResolverRefresh() throws Exception {
+        char[] pwd = "secret".toCharArray();
+        KeyStore ks = KeyStore.getInstance("JCEKS");
+        try (FileInputStream fis = new FileInputStream(resolveFile("src/test/resources/test.jceks"))) {
+            ks.load(fis, pwd);
+        }
+
+        X509Certificate cert = (X509Certificate)ks.getCertificate("rsakey");
+        PrivateKey privateKey = (PrivateKey) ks.getKey("rsakey", pwd);
+        PrivateKeyResolver privateKeyResolver = new PrivateKeyResolver(ks, pwd, 60000L);
+
+        Document doc = TestUtils.newDocument();
+        KeyInfo ki = new KeyInfo(doc);
+        X509Data x509data = new X509Data(doc);
+        x509data.add(new XMLX509IssuerSerial(doc, cert.getIssuerX500Principal().getName(), cert.getSerialNumber()));
+        ki.add(x509data);
+        ki.registerInternalKeyResolver(privateKeyResolver);
+        assertEquals(privateKey, ki.getPrivateKey());
+
+        KeyInfo kiName = new KeyInfo(doc);
+        kiName.addKeyName("rsakey");
+        kiName.registerInternalKeyResolver(privateKeyResolver);
+        assertEquals(privateKey, kiName.getPrivateKey());
+
+        // a removed entry keeps its cached key until the resolver is refreshed
+        ks.deleteEntry("rsakey");
+        assertEquals(privateKey, ki.getPrivateKey());
+        assertEquals(privateKey, kiName.getPrivateKey());
+
+        privateKeyResolver.refresh();
+        assertNull(ki.getPrivateKey());
+        assertNull(kiName.getPrivateKey());
+    }
+
+    /**
+     * Test that the PrivateKeyResolver notices a key entry replaced in place.
+     */
+    @Test
+    public void testPrivateKeyResolverReplacedEntry() throws Exception {
+        char[] pwd = "secret".toCharArray();
+        KeyStore ks = KeyStore.getInstance("JCEKS");
+        try (FileInputStream fis = new FileInputStream(resolveFile("src/test/resources/test.jceks"))) {
+            ks.load(fis, pwd);
+        }
+
+        X509Certificate cert = (X509Certificate)ks.getCertificate("rsakey");
+        PrivateKey privateKey = (PrivateKey) ks.getKey("rsakey", pwd);
+        // the CA certificate is given to the replaced entry, so drop the CA entry
+        X509Certificate otherCert = (X509Certificate)ks.getCertificate("democa");
+        ks.deleteEntry("democa");
+        PrivateKeyResolver privateKeyResolver = new PrivateKeyResolver(ks, pwd);
+
+        Document doc = TestUtils.newDocument();
+        KeyInfo ki = new KeyInfo(doc);
+        X509Data x509data = new X509Data(doc);
+        x509data.add(new XMLX509IssuerSerial(doc, cert.getIssuerX500Principal().getName(), cert.getSerialNumber()));
+        ki.add(x509data);
+        ki.registerInternalKeyResolver(privateKeyResolver);
+        assertEquals(privateKey, ki.getPrivateKey());
+
+        // replacing the entry leaves the KeyStore size as it was
+        KeyPairGenerator kpg = KeyPairGenerator.getInstance("RSA");
+        kpg.initialize(2048);
+        PrivateKey otherKey = kpg.generateKeyPair().getPrivate();
+        ks.setKeyEntry("rsakey", otherKey, pwd, new Certificate[] {otherCert});
+
+        assertNull(ki.getPrivateKey());
+        KeyInfo kiOther = new KeyInfo(doc);
+        x509data = new X509Data(doc);
+        x509data.add(new XMLX509IssuerSerial(doc, otherCert.getIssuerX500Principal().getName(),
+                                             otherCert.getSerialNumber()));
+        kiOther.add(x509data);
+        kiOther.registerInternalKeyResolver(privateKeyResolver);
+        assertEquals(otherKey, kiOther.getPrivateKey());
+    }
+
     /**
      * Encrypt some data, embedded the data encryption key
      * in the message using the key transport algorithm rsa-1_5.
@@ -21,16 +21,26 @@ package com.kjhxtc.internal.apache.xml.security.test.dom.keys.storage;
 
 import java.io.FileInputStream;
 import java.security.KeyStore;
+import java.security.MessageDigest;
 import java.security.cert.X509Certificate;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
 import java.util.NoSuchElementException;
 
+import com.kjhxtc.internal.apache.xml.security.Init;
+import com.kjhxtc.internal.apache.xml.security.algorithms.MessageDigestAlgorithm;
+import com.kjhxtc.internal.apache.xml.security.keys.storage.CertificateIndex;
+import com.kjhxtc.internal.apache.xml.security.keys.storage.StorageResolver;
 import com.kjhxtc.internal.apache.xml.security.keys.storage.implementations.KeyStoreResolver;
+import com.kjhxtc.internal.apache.xml.security.keys.storage.implementations.SingleCertificateResolver;
 import org.junit.jupiter.api.Test;
 
 import static com.kjhxtc.internal.apache.xml.security.test.XmlSecTestEnvironment.resolveFile;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
 import static org.junit.jupiter.api.Assertions.fail;
 
 
@@ -78,6 +88,117 @@ public class KeyStoreResolverTest {
         assertFalse(iter2.hasNext());
     }
 
+    @Test
+    public void testLookups() throws Exception {
+        if (!Init.isInitialized()) {
+            Init.init();
+        }
+        KeyStore ks = loadKeyStore();
+        List<X509Certificate> certs = getCertificates(new KeyStoreResolver(ks));
+        assertEquals(3, certs.size());
+
+        // the indexed lookups find what the linear ones of a plain StorageResolverSpi find
+        StorageResolver indexed = new StorageResolver(ks);
+        StorageResolver linear = new StorageResolver(new SingleCertificateResolver(certs.get(0)));
+        for (int i = 1; i < certs.size(); i++) {
+            linear.add(new SingleCertificateResolver(certs.get(i)));
+        }
+        for (X509Certificate cert : certs) {
+            String subjectName = CertificateIndex.getSubjectName(cert);
+            assertSame(linear.getCertificateBySubjectName(subjectName),
+                       indexed.getCertificateBySubjectName(subjectName));
+            assertEquals(subjectName, CertificateIndex.getSubjectName(indexed.getCertificateBySubjectName(subjectName)));
+
+            String issuerName = CertificateIndex.getIssuerName(cert);
+            assertSame(cert, indexed.getCertificateByIssuerSerial(issuerName, cert.getSerialNumber()));
+            assertSame(cert, linear.getCertificateByIssuerSerial(issuerName, cert.getSerialNumber()));
+
+            byte[] ski = CertificateIndex.getSKI(cert);
+            if (ski != null) {
+                assertSame(cert, indexed.getCertificateBySKI(ski));
+                assertSame(cert, linear.getCertificateBySKI(ski));
+            }
+
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(cert.getEncoded());
+            assertSame(cert, indexed.getCertificateByDigest(MessageDigestAlgorithm.ALGO_ID_DIGEST_SHA256, digest));
+            assertSame(cert, linear.getCertificateByDigest(MessageDigestAlgorithm.ALGO_ID_DIGEST_SHA256, digest));
+        }
+        assertNull(indexed.getCertificateBySubjectName("CN=unknown"));
+        assertNull(indexed.getCertificateBySKI(new byte[20]));
+    }
+
+    @Test
+    public void testRefresh() throws Exception {
+        List<X509Certificate> certs = getCertificates(new KeyStoreResolver(loadKeyStore()));
+        X509Certificate first = certs.get(0);
+        X509Certificate second = certs.get(certs.size() - 1);
+        assertFalse(first.equals(second));
+
+        KeyStore ks = KeyStore.getInstance("JKS");
+        ks.load(null, null);
+        ks.setCertificateEntry("a", first);
+        KeyStoreResolver ksResolver = new KeyStoreResolver(ks);
+        assertSame(first, find(ksResolver, first));
+        assertNull(find(ksResolver, second));
+
+        // a resolver keeps the certificates it has read
+        ks.setCertificateEntry("b", second);
+        assertNull(find(ksResolver, second));
+        ksResolver.refresh();
+        assertSame(second, find(ksResolver, second));
+        assertEquals(2, getCertificates(ksResolver).size());
+    }
+
+    @Test
+    public void testReplacedEntry() throws Exception {
+        List<X509Certificate> certs = getCertificates(new KeyStoreResolver(loadKeyStore()));
+        X509Certificate first = certs.get(0);
+        X509Certificate second = certs.get(certs.size() - 1);
+
+        KeyStore ks = KeyStore.getInstance("JKS");
+        ks.load(null, null);
+        ks.setCertificateEntry("a", first);
+        StorageResolver storageResolver = new StorageResolver(ks);
+        String issuerName = CertificateIndex.getIssuerName(first);
+        assertSame(first, storageResolver.getCertificateByIssuerSerial(issuerName, first.getSerialNumber()));
+
+        // an entry replaced in place, which leaves the KeyStore size as it was, is seen by a
+        // new resolver
+        ks.setCertificateEntry("a", second);
+        storageResolver = new StorageResolver(ks);
+        assertNull(storageResolver.getCertificateByIssuerSerial(issuerName, first.getSerialNumber()));
+        assertSame(second, storageResolver.getCertificateByIssuerSerial(
+            CertificateIndex.getIssuerName(second), second.getSerialNumber()));
+
+        // and so is an entry removed and added again
+        ks.deleteEntry("a");
+        ks.setCertificateEntry("a", first);
+        storageResolver = new StorageResolver(ks);
+        assertSame(first, storageResolver.getCertificateByIssuerSerial(issuerName, first.getSerialNumber()));
+    }
+
+    private static KeyStore loadKeyStore() throws Exception {
+        KeyStore ks = KeyStore.getInstance("JCEKS");
+        try (FileInputStream f = new FileInputStream(resolveFile("src", "test", "resources", "com", "kjhxtc", "internal",
+            "apache", "xml", "security", "samples", "input", "keystore2.jks"))) {
+            ks.load(f, "xmlsecurity".toCharArray());
+        }
+        return ks;
+    }
+
+    private static X509Certificate find(KeyStoreResolver ksResolver, X509Certificate cert) {
+        return ksResolver.getCertificateByIssuerSerial(CertificateIndex.getIssuerName(cert), cert.getSerialNumber());
+    }
+
+    private static List<X509Certificate> getCertificates(KeyStoreResolver ksResolver) {
+        List<X509Certificate> certs = new ArrayList<>();
+        Iterator<?> iter = ksResolver.getIterator();
+        while (iter.hasNext()) {
+            certs.add((X509Certificate) iter.next());
+        }
+        return certs;
+    }
+
     private void checkIterator(Iterator<?> iter) {
         int count = 0;
         iter.hasNext(); // hasNext() is idempotent
@@ -0,0 +1,260 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.test.dom.signature;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.crypto.SecretKey;
+
+import com.kjhxtc.internal.apache.xml.security.Init;
+import com.kjhxtc.internal.apache.xml.security.algorithms.MessageDigestAlgorithm;
+import com.kjhxtc.internal.apache.xml.security.signature.MissingResourceFailureException;
+import com.kjhxtc.internal.apache.xml.security.signature.SignedInfo;
+import com.kjhxtc.internal.apache.xml.security.signature.XMLSignature;
+import com.kjhxtc.internal.apache.xml.security.test.dom.TestUtils;
+import com.kjhxtc.internal.apache.xml.security.transforms.Transforms;
+import com.kjhxtc.internal.apache.xml.security.transforms.params.XPathContainer;
+import com.kjhxtc.internal.apache.xml.security.utils.Constants;
+import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The References of a signature can be verified concurrently on an Executor, with the
+ * same results as when they are verified sequentially.
+ */
+public class ConcurrentReferenceValidationTest {
+
+    private static final int REFERENCE_COUNT = 12;
+
+    private ExecutorService executor;
+
+    static {
+        Init.init();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testValidSignature() throws Exception {
+        SecretKey key = createKey();
+        Document doc = signDocument(key);
+
+        AtomicInteger submitted = new AtomicInteger();
+        XMLSignature signature = getSignature(doc, task -> {
+            submitted.incrementAndGet();
+            executor.execute(task);
+        });
+        assertTrue(signature.checkSignatureValue(key));
+        assertTrue(submitted.get() > 0);
+        SignedInfo signedInfo = signature.getSignedInfo();
+        for (int i = 0; i < REFERENCE_COUNT; i++) {
+            assertTrue(signedInfo.getVerificationResult(i));
+            assertEquals("#item" + i, signedInfo.getVerificationResults().get(i).getUri());
+        }
+    }
+
+    @Test
+    public void testXPathFilteredReference() throws Exception {
+        SecretKey key = createKey();
+        Document doc = signDocument(key, true);
+
+        // The XPath transform modifies the document, so the References are verified
+        // one after another in the calling thread
+        AtomicInteger submitted = new AtomicInteger();
+        XMLSignature signature = getSignature(doc, task -> {
+            submitted.incrementAndGet();
+            executor.execute(task);
+        });
+        assertTrue(signature.checkSignatureValue(key));
+        assertEquals(0, submitted.get());
+        SignedInfo signedInfo = signature.getSignedInfo();
+        assertEquals(REFERENCE_COUNT + 1, signedInfo.getLength());
+        for (int i = 0; i <= REFERENCE_COUNT; i++) {
+            assertTrue(signedInfo.getVerificationResult(i));
+        }
+
+        getItem(doc, 5).setTextContent("modified");
+        assertFalse(getSignature(doc, executor).checkSignatureValue(key));
+    }
+
+    @Test
+    public void testModifiedReferences() throws Exception {
+        SecretKey key = createKey();
+        Document doc = signDocument(key);
+        getItem(doc, 3).setTextContent("modified");
+        getItem(doc, 7).setTextContent("modified");
+
+        XMLSignature signature = getSignature(doc, executor);
+        assertFalse(signature.checkSignatureValue(key));
+        SignedInfo signedInfo = signature.getSignedInfo();
+        for (int i = 0; i < REFERENCE_COUNT; i++) {
+            assertEquals(i != 3 && i != 7, signedInfo.getVerificationResult(i));
+        }
+    }
+
+    @Test
+    public void testFirstMissingReferenceIsReported() throws Exception {
+        SecretKey key = createKey();
+        Document doc = signDocument(key);
+        for (int i : new int[] {9, 4, 10}) {
+            Element item = getItem(doc, i);
+            item.getParentNode().removeChild(item);
+        }
+
+        for (int run = 0; run < 10; run++) {
+            XMLSignature signature = getSignature(doc, executor);
+            MissingResourceFailureException ex =
+                assertThrows(MissingResourceFailureException.class, () -> signature.checkSignatureValue(key));
+            assertEquals("#item4", ex.getReference().getURI());
+        }
+    }
+
+    @Test
+    public void testDuplicateIdIsRejected() throws Exception {
+        SecretKey key = createKey();
+        Document doc = signDocument(key);
+        Element wrapper = doc.createElementNS(null, "item");
+        wrapper.setAttributeNS(null, "Id", "item6");
+        wrapper.setTextContent("content of item 6");
+        doc.getDocumentElement().appendChild(wrapper);
+
+        XMLSignature signature = getSignature(doc, executor);
+        wrapper.setIdAttributeNS(null, "Id", true);
+        MissingResourceFailureException ex =
+            assertThrows(MissingResourceFailureException.class, () -> signature.checkSignatureValue(key));
+        assertEquals("#item6", ex.getReference().getURI());
+    }
+
+    @Test
+    public void testSingleThreadedExecutor() throws Exception {
+        SecretKey key = createKey();
+        Document doc = signDocument(key);
+
+        // The calling thread runs the References the executor does not get to
+        ExecutorService singleThread = Executors.newSingleThreadExecutor();
+        try {
+            singleThread.submit(() -> {
+                XMLSignature signature = getSignature(doc, singleThread);
+                assertTrue(signature.checkSignatureValue(key));
+                return null;
+            }).get();
+        } finally {
+            singleThread.shutdownNow();
+        }
+
+        Executor rejecting = task -> {
+            throw new RejectedExecutionException();
+        };
+        assertTrue(getSignature(doc, rejecting).checkSignatureValue(key));
+    }
+
+    private static SecretKey createKey() throws Exception {
+        XMLSignature sig = new XMLSignature(TestUtils.newDocument(), null, XMLSignature.ALGO_ID_MAC_HMAC_SHA256);
+        return sig.createSecretKey("secret-secret-secret-secret-1234".getBytes(StandardCharsets.UTF_8));
+    }
+
+    private static Document signDocument(SecretKey key) throws Exception {
+        return signDocument(key, false);
+    }
+
+    private static Document signDocument(SecretKey key, boolean xpathFiltered) throws Exception {
+        Document doc = TestUtils.newDocument();
+        Element root = doc.createElementNS(null, "root");
+        doc.appendChild(root);
+        for (int i = 0; i < REFERENCE_COUNT; i++) {
+            Element item = doc.createElementNS(null, "item");
+            item.setAttributeNS(null, "Id", "item" + i);
+            item.setIdAttributeNS(null, "Id", true);
+            item.setTextContent("content of item " + i);
+            root.appendChild(item);
+        }
+
+        XMLSignature sig = new XMLSignature(doc, null, XMLSignature.ALGO_ID_MAC_HMAC_SHA256);
+        root.appendChild(sig.getElement());
+        for (int i = 0; i < REFERENCE_COUNT; i++) {
+            Transforms transforms = new Transforms(doc);
+            transforms.addTransform(Transforms.TRANSFORM_C14N_EXCL_OMIT_COMMENTS);
+            sig.addDocument("#item" + i, transforms, MessageDigestAlgorithm.ALGO_ID_DIGEST_SHA256);
+        }
+        if (xpathFiltered) {
+            Transforms transforms = new Transforms(doc);
+            XPathContainer xpath = new XPathContainer(doc);
+            xpath.setXPath("not(ancestor-or-self::*[local-name()='Signature'])");
+            transforms.addTransform(Transforms.TRANSFORM_XPATH, xpath.getElement());
+            transforms.addTransform(Transforms.TRANSFORM_C14N_OMIT_COMMENTS);
+            sig.addDocument("", transforms, MessageDigestAlgorithm.ALGO_ID_DIGEST_SHA256);
+        }
+        sig.sign(key);
+
+        // Re-parse, so that the document is built by the parser as in a real application
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        XMLUtils.outputDOM(doc, bos);
+        return XMLUtils.read(new ByteArrayInputStream(bos.toByteArray()), false);
+    }
+
+    private static XMLSignature getSignature(Document doc, Executor executor) throws Exception {
+        for (int i = 0; i < REFERENCE_COUNT; i++) {
+            Element item = getItem(doc, i);
+            if (item != null) {
+                item.setIdAttributeNS(null, "Id", true);
+            }
+        }
+        Element sigElement =
+            (Element) doc.getElementsByTagNameNS(Constants.SignatureSpecNS, Constants._TAG_SIGNATURE).item(0);
+        XMLSignature signature = new XMLSignature(sigElement, "");
+        signature.setReferenceValidationExecutor(executor);
+        return signature;
+    }
+
+    private static Element getItem(Document doc, int index) {
+        NodeList items = doc.getElementsByTagNameNS(null, "item");
+        for (int i = 0; i < items.getLength(); i++) {
+            Element item = (Element) items.item(i);
+            if (("item" + index).equals(item.getAttributeNS(null, "Id"))) {
+                return item;
+            }
+        }
+        return null;
+    }
+}
@@ -92,6 +92,7 @@ public class SignatureReferenceTest {
         ReferenceData referenceData = reference.getReferenceData();
         assertNotNull(referenceData);
         assertTrue(referenceData instanceof ReferenceNodeSetData);
+        assertEquals(reference.getReferencedBytes().length, reference.getBytesDigested());
 
         // Test the cached Element
         Element referenceElement =
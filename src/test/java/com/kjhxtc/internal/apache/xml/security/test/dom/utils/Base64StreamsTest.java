@@ -0,0 +1,100 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.test.dom.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import com.kjhxtc.internal.apache.xml.security.utils.Base64DecodingWriter;
+import com.kjhxtc.internal.apache.xml.security.utils.Base64EncodingOutputStream;
+import com.kjhxtc.internal.apache.xml.security.utils.UnsyncByteArrayOutputStream;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ */
+public class Base64StreamsTest {
+
+    @Test
+    public void testEncode() throws Exception {
+        Random random = new Random(42);
+        for (int length = 0; length < 200; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+
+            // written in uneven pieces, with a block smaller than a line
+            UnsyncByteArrayOutputStream bytes = new UnsyncByteArrayOutputStream();
+            try (Base64EncodingOutputStream encoder =
+                     new Base64EncodingOutputStream(bytes, Base64EncodingOutputStream.MIME_LINE_LENGTH, 10)) {
+                for (int off = 0; off < length; off += 7) {
+                    encoder.write(data, off, Math.min(7, length - off));
+                }
+            }
+            assertEquals(Base64.getMimeEncoder().encodeToString(data),
+                         new String(bytes.toByteArray(), StandardCharsets.US_ASCII));
+
+            bytes = new UnsyncByteArrayOutputStream();
+            try (Base64EncodingOutputStream encoder = new Base64EncodingOutputStream(bytes, 0)) {
+                for (byte b : data) {
+                    encoder.write(b);
+                }
+            }
+            assertEquals(Base64.getEncoder().encodeToString(data),
+                         new String(bytes.toByteArray(), StandardCharsets.US_ASCII));
+        }
+    }
+
+    @Test
+    public void testDecode() throws Exception {
+        Random random = new Random(42);
+        for (int length = 0; length < 200; length++) {
+            byte[] data = new byte[length];
+            random.nextBytes(data);
+            String mime = Base64.getMimeEncoder(64, "\n  ".getBytes(StandardCharsets.US_ASCII)).encodeToString(data);
+
+            UnsyncByteArrayOutputStream bytes = new UnsyncByteArrayOutputStream();
+            try (Base64DecodingWriter decoder = new Base64DecodingWriter(bytes, 3)) {
+                char[] chars = mime.toCharArray();
+                for (int off = 0; off < chars.length; off += 5) {
+                    decoder.write(chars, off, Math.min(5, chars.length - off));
+                }
+            }
+            assertArrayEquals(data, bytes.toByteArray());
+
+            String unpadded = Base64.getEncoder().withoutPadding().encodeToString(data);
+            assertArrayEquals(data, Base64DecodingWriter.decode(new StringBuilder(unpadded)));
+        }
+    }
+
+    @Test
+    public void testDecodeLenient() throws Exception {
+        byte[] abc = "ABC".getBytes(StandardCharsets.US_ASCII);
+        byte[] ab = "AB".getBytes(StandardCharsets.US_ASCII);
+        assertArrayEquals(abc, Base64DecodingWriter.decode("QU*JD\u00e9"));
+        assertArrayEquals(ab, Base64DecodingWriter.decode(" QU\r\nI= "));
+        assertArrayEquals(ab, Base64DecodingWriter.decode("QUI=QUJD"));
+        assertArrayEquals(ab, Base64DecodingWriter.decode("QUI"));
+        assertArrayEquals(abc, Base64DecodingWriter.decode("QUJDR"));
+        assertArrayEquals(new byte[0], Base64DecodingWriter.decode("=QUJD"));
+        assertArrayEquals(Base64.getMimeDecoder().decode("QUJD*R0hJ\u00e9"), Base64DecodingWriter.decode("QUJD*R0hJ\u00e9"));
+    }
+}
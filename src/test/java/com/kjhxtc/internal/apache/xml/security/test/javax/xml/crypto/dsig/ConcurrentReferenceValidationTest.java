@@ -0,0 +1,248 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.test.javax.xml.crypto.dsig;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.Security;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.xml.crypto.dsig.CanonicalizationMethod;
+import javax.xml.crypto.dsig.DigestMethod;
+import javax.xml.crypto.dsig.Reference;
+import javax.xml.crypto.dsig.SignatureMethod;
+import javax.xml.crypto.dsig.SignedInfo;
+import javax.xml.crypto.dsig.Transform;
+import javax.xml.crypto.dsig.XMLSignature;
+import javax.xml.crypto.dsig.XMLSignatureFactory;
+import javax.xml.crypto.dsig.dom.DOMSignContext;
+import javax.xml.crypto.dsig.dom.DOMValidateContext;
+import javax.xml.crypto.dsig.spec.C14NMethodParameterSpec;
+import javax.xml.crypto.dsig.spec.TransformParameterSpec;
+import javax.xml.crypto.dsig.spec.XPathFilter2ParameterSpec;
+import javax.xml.crypto.dsig.spec.XPathType;
+
+import com.kjhxtc.internal.apache.xml.security.test.javax.xml.crypto.KeySelectors;
+import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The References of a signature can be validated concurrently by setting an Executor
+ * as validation context property.
+ */
+public class ConcurrentReferenceValidationTest {
+
+    private static final String EXECUTOR_PROPERTY =
+        "com.kjhxtc.internal.apache.jcp.xml.dsig.referenceValidationExecutor";
+    private static final int REFERENCE_COUNT = 12;
+    private static final byte[] KEY = "secret-secret-secret-secret-1234".getBytes(StandardCharsets.US_ASCII);
+
+    private final XMLSignatureFactory fac;
+    private ExecutorService executor;
+
+    static {
+        Security.insertProviderAt
+            (new com.kjhxtc.internal.apache.jcp.xml.dsig.internal.dom.XMLDSigRI(), 1);
+    }
+
+    public ConcurrentReferenceValidationTest() {
+        fac = XMLSignatureFactory.getInstance
+            ("DOM", new com.kjhxtc.internal.apache.jcp.xml.dsig.internal.dom.XMLDSigRI());
+    }
+
+    @BeforeEach
+    public void setUp() {
+        executor = Executors.newFixedThreadPool(4);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        executor.shutdownNow();
+    }
+
+    @Test
+    public void testValidSignature() throws Exception {
+        Document doc = signDocument();
+
+        DOMValidateContext vc = getValidateContext(doc);
+        XMLSignature sig = fac.unmarshalXMLSignature(vc);
+        assertTrue(sig.validate(vc));
+        for (Object ref : sig.getSignedInfo().getReferences()) {
+            assertTrue(((Reference) ref).validate(vc));
+        }
+    }
+
+    @Test
+    public void testFirstInvalidReferenceFailsValidation() throws Exception {
+        Document doc = signDocument();
+        getItem(doc, 3).setTextContent("modified");
+        getItem(doc, 7).setTextContent("modified");
+
+        for (int run = 0; run < 10; run++) {
+            DOMValidateContext vc = getValidateContext(doc);
+            XMLSignature sig = fac.unmarshalXMLSignature(vc);
+            assertFalse(sig.validate(vc));
+
+            List<?> refs = sig.getSignedInfo().getReferences();
+            for (int i = 0; i < 3; i++) {
+                assertTrue(((Reference) refs.get(i)).validate(vc));
+            }
+            assertFalse(((Reference) refs.get(3)).validate(vc));
+            assertFalse(((Reference) refs.get(7)).validate(vc));
+        }
+    }
+
+    @Test
+    public void testEnvelopedReferences() throws Exception {
+        // canonicalizing the node-sets of the enveloped References copies namespace
+        // declarations onto the elements, which is done before the References are submitted
+        Document doc = signDocument(false, Arrays.asList(
+            newEnvelopedReference(CanonicalizationMethod.INCLUSIVE),
+            newEnvelopedReference(CanonicalizationMethod.EXCLUSIVE)));
+
+        for (int run = 0; run < 10; run++) {
+            AtomicInteger submitted = new AtomicInteger();
+            DOMValidateContext vc = getValidateContext(doc, submitted);
+            XMLSignature sig = fac.unmarshalXMLSignature(vc);
+            assertTrue(sig.validate(vc));
+            assertEquals(2, submitted.get());
+        }
+
+        getItem(doc, 5).setTextContent("modified");
+        DOMValidateContext vc = getValidateContext(doc);
+        assertFalse(fac.unmarshalXMLSignature(vc).validate(vc));
+    }
+
+    @Test
+    public void testXPathFilter2ReferenceValidatedSequentially() throws Exception {
+        Reference filtered = fac.newReference("",
+            fac.newDigestMethod(DigestMethod.SHA256, null),
+            Collections.singletonList(fac.newTransform(Transform.XPATH2,
+                new XPathFilter2ParameterSpec(Collections.singletonList(
+                    new XPathType("//item", XPathType.Filter.INTERSECT))))),
+            null, null);
+        Document doc = signDocument(true, Collections.singletonList(filtered));
+
+        // the XPath Filter 2.0 transform may modify the document, so the References are
+        // validated one after another in the calling thread
+        AtomicInteger submitted = new AtomicInteger();
+        DOMValidateContext vc = getValidateContext(doc, submitted);
+        XMLSignature sig = fac.unmarshalXMLSignature(vc);
+        assertTrue(sig.validate(vc));
+        assertEquals(0, submitted.get());
+    }
+
+    private Reference newEnvelopedReference(String c14nAlgorithm) throws Exception {
+        List<Transform> transforms = new ArrayList<>();
+        transforms.add(fac.newTransform(Transform.ENVELOPED, (TransformParameterSpec) null));
+        transforms.add(fac.newTransform(c14nAlgorithm, (TransformParameterSpec) null));
+        return fac.newReference("", fac.newDigestMethod(DigestMethod.SHA256, null), transforms, null, null);
+    }
+
+    private Document signDocument() throws Exception {
+        return signDocument(true, Collections.<Reference>emptyList());
+    }
+
+    private Document signDocument(boolean itemReferences, List<Reference> otherReferences) throws Exception {
+        Document doc = TestUtils.newDocument();
+        Element root = doc.createElementNS("urn:root", "r:root");
+        root.setAttributeNS("http://www.w3.org/2000/xmlns/", "xmlns:r", "urn:root");
+        root.setAttributeNS("http://www.w3.org/2000/xmlns/", "xmlns:a", "urn:a");
+        doc.appendChild(root);
+        List<Reference> refs = new ArrayList<>(otherReferences);
+        for (int i = 0; i < REFERENCE_COUNT; i++) {
+            Element item = doc.createElementNS(null, "item");
+            item.setAttributeNS(null, "Id", "item" + i);
+            item.setIdAttributeNS(null, "Id", true);
+            item.setTextContent("content of item " + i);
+            root.appendChild(item);
+
+            if (!itemReferences) {
+                continue;
+            }
+            refs.add(fac.newReference("#item" + i,
+                fac.newDigestMethod(DigestMethod.SHA256, null),
+                Collections.singletonList(fac.newTransform(CanonicalizationMethod.EXCLUSIVE,
+                    (TransformParameterSpec) null)),
+                null, null));
+        }
+
+        SignedInfo si = fac.newSignedInfo(
+            fac.newCanonicalizationMethod(CanonicalizationMethod.EXCLUSIVE,
+                (C14NMethodParameterSpec) null),
+            fac.newSignatureMethod(SignatureMethod.HMAC_SHA256, null),
+            refs);
+        XMLSignature sig = fac.newXMLSignature(si, null);
+        sig.sign(new DOMSignContext(new KeySelectors.SecretKeySelector(KEY), root));
+
+        // Re-parse, so that the document is built by the parser as in a real application
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+        XMLUtils.outputDOM(doc, bos);
+        return XMLUtils.read(new ByteArrayInputStream(bos.toByteArray()), false);
+    }
+
+    private DOMValidateContext getValidateContext(Document doc, AtomicInteger submitted) {
+        DOMValidateContext vc = getValidateContext(doc);
+        vc.setProperty(EXECUTOR_PROPERTY, (Executor) task -> {
+            submitted.incrementAndGet();
+            executor.execute(task);
+        });
+        return vc;
+    }
+
+    private DOMValidateContext getValidateContext(Document doc) {
+        NodeList sigs = doc.getElementsByTagNameNS(XMLSignature.XMLNS, "Signature");
+        DOMValidateContext vc =
+            new DOMValidateContext(new KeySelectors.SecretKeySelector(KEY), sigs.item(0));
+        NodeList items = doc.getElementsByTagNameNS(null, "item");
+        for (int i = 0; i < items.getLength(); i++) {
+            vc.setIdAttributeNS((Element) items.item(i), null, "Id");
+        }
+        vc.setProperty(EXECUTOR_PROPERTY, executor);
+        return vc;
+    }
+
+    private static Element getItem(Document doc, int index) {
+        NodeList items = doc.getElementsByTagNameNS(null, "item");
+        for (int i = 0; i < items.getLength(); i++) {
+            Element item = (Element) items.item(i);
+            if (("item" + index).equals(item.getAttributeNS(null, "Id"))) {
+                return item;
+            }
+        }
+        return null;
+    }
+}
@@ -49,6 +49,7 @@ import javax.xml.crypto.dsig.keyinfo.KeyInfoFactory;
 import javax.xml.crypto.dsig.spec.C14NMethodParameterSpec;
 import javax.xml.crypto.dsig.spec.TransformParameterSpec;
 
+import com.kjhxtc.internal.apache.jcp.xml.dsig.internal.dom.DOMReference;
 import org.junit.jupiter.api.Test;
 import org.w3c.dom.Document;
 
@@ -290,6 +291,7 @@ public class ReferenceTest {
                     byte[] dv = validated_ref.getDigestValue();
                     byte[] cdv = validated_ref.getCalculatedDigestValue();
                     assertArrayEquals(dv, cdv);
+                    assertEquals(in.length, ((DOMReference)validated_ref).getBytesDigested());
                     boolean valid = validated_ref.validate(validateContext);
                     assertTrue(valid);
                 }
@@ -0,0 +1,182 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.test.stax;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamReader;
+
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.util.CompactXMLSecEventBuffer;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ */
+public class CompactXMLSecEventBufferTest {
+
+    private static final String XML =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<!-- comment --><a:root xmlns:a=\"urn:a\" xmlns=\"urn:default\" id=\"1\">"
+        + "<child a:attr=\"v&amp;&#xe9;\">text € 😀</child><?pi data?>"
+        + "<child><![CDATA[<cdata>]]><b:inner xmlns:b=\"urn:b\" b:x=\"1\"/></child><empty/></a:root>";
+
+    @Test
+    public void testRoundTrip() throws Exception {
+        List<XMLSecEvent> events = readEvents();
+        // an event the codec does not encode is kept as is
+        events.add(3, XMLSecEventFactory.createXMLSecAttribute(new QName("x"), "y"));
+
+        CompactXMLSecEventBuffer buffer = new CompactXMLSecEventBuffer();
+        for (XMLSecEvent event : events) {
+            buffer.offer(event);
+        }
+        assertEquals(events.size(), buffer.size());
+        assertTrue(buffer.getEncodedBytes() < XML.length());
+
+        for (int i = 0; i < events.size(); i++) {
+            XMLSecEvent expected = events.get(i);
+            XMLSecEvent event = buffer.pop();
+            if (i == 3) {
+                assertSame(expected, event);
+                continue;
+            }
+            assertEquals(expected.getEventType(), event.getEventType());
+            assertEquals(toString(expected), toString(event));
+            // the parents are rebuilt from the buffered sequence
+            assertEquals(expected.getDocumentLevel(), event.getDocumentLevel());
+            assertEquals(expected.getElementPath(), event.getElementPath());
+            if (event.isStartElement()) {
+                assertEquals(expected.asStartElement().getNamespaceContext().getNamespaceURI("a"),
+                             event.asStartElement().getNamespaceContext().getNamespaceURI("a"));
+            }
+            if (i == 5) {
+                buffer.push(event);
+                assertSame(event, buffer.pop());
+            }
+        }
+        assertTrue(buffer.isEmpty());
+        assertEquals(0, buffer.getEncodedBytes());
+        assertThrows(NoSuchElementException.class, buffer::pop);
+    }
+
+    @Test
+    public void testInterleavedOfferAndPoll() throws Exception {
+        List<XMLSecEvent> events = readEvents();
+        XMLSecStartElement root = events.get(2).asStartElement();
+
+        CompactXMLSecEventBuffer buffer = new CompactXMLSecEventBuffer();
+        int next = 0;
+        // start buffering inside the document: the first event's parent is kept
+        for (int i = 3; i < events.size(); i++) {
+            buffer.offer(events.get(i));
+            if (i % 2 == 0) {
+                XMLSecEvent event = buffer.poll();
+                assertEquals(toString(events.get(3 + next)), toString(event));
+                assertEquals(events.get(3 + next).getElementPath(), event.getElementPath());
+                next++;
+            }
+        }
+        while (!buffer.isEmpty()) {
+            XMLSecEvent event = buffer.poll();
+            assertEquals(toString(events.get(3 + next)), toString(event));
+            assertEquals(events.get(3 + next).getElementPath(), event.getElementPath());
+            next++;
+        }
+        assertEquals(events.size() - 3, next);
+        assertSame(root, events.get(3).getParentXMLSecStartElement());
+
+        // a cleared buffer starts from the parent of the next event
+        buffer.offer(events.get(4));
+        buffer.clear();
+        assertTrue(buffer.isEmpty());
+        assertNull(buffer.poll());
+        buffer.offer(events.get(events.size() - 2));
+        assertEquals(events.get(events.size() - 2).getElementPath(), buffer.poll().getElementPath());
+    }
+
+    @Test
+    public void testDequeOperations() throws Exception {
+        List<XMLSecEvent> events = readEvents();
+        CompactXMLSecEventBuffer buffer = new CompactXMLSecEventBuffer();
+        for (XMLSecEvent event : events) {
+            buffer.offer(event);
+        }
+
+        // iterating decodes the buffered events
+        int i = 0;
+        for (XMLSecEvent event : buffer) {
+            assertEquals(toString(events.get(i)), toString(event));
+            assertEquals(events.get(i).getElementPath(), event.getElementPath());
+            i++;
+        }
+        assertEquals(events.size(), i);
+        assertEquals(0, buffer.getEncodedBytes());
+
+        XMLSecEvent last = buffer.removeLast();
+        assertEquals(toString(events.get(events.size() - 1)), toString(last));
+        // events added after decoding are encoded and keep their order
+        buffer.offer(events.get(events.size() - 2));
+        assertTrue(buffer.getEncodedBytes() > 0);
+        assertEquals(toString(events.get(events.size() - 2)), toString(buffer.peekLast()));
+        assertTrue(buffer.removeLastOccurrence(buffer.getLast()));
+        assertEquals(events.size() - 1, buffer.size());
+        assertEquals(toString(events.get(0)), toString(buffer.pop()));
+    }
+
+    private static List<XMLSecEvent> readEvents() throws Exception {
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(XML));
+        List<XMLSecEvent> events = new ArrayList<>();
+        XMLSecStartElement parent = null;
+        while (true) {
+            XMLSecEvent event = XMLSecEventFactory.allocate(reader, parent);
+            events.add(event);
+            if (event.isStartElement()) {
+                parent = event.asStartElement();
+            } else if (event.isEndElement()) {
+                parent = parent.getParentXMLSecStartElement();
+            }
+            if (!reader.hasNext()) {
+                break;
+            }
+            reader.next();
+        }
+        reader.close();
+        return events;
+    }
+
+    private static String toString(XMLSecEvent event) throws Exception {
+        StringWriter writer = new StringWriter();
+        event.writeAsEncodedUnicode(writer);
+        return writer.toString();
+    }
+}
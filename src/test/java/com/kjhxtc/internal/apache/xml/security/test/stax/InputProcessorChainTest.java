@@ -18,9 +18,12 @@
  */
 package com.kjhxtc.internal.apache.xml.security.test.stax;
 
+import java.util.Arrays;
 import java.util.HashSet;
 import java.util.Set;
+import java.util.concurrent.TimeUnit;
 
+import javax.xml.namespace.QName;
 import javax.xml.stream.XMLStreamException;
 
 import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
@@ -29,12 +32,16 @@ import com.kjhxtc.internal.apache.xml.security.stax.ext.InputProcessor;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.InputProcessorChain;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.XMLSecurityConstants;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
 import com.kjhxtc.internal.apache.xml.security.stax.impl.InboundSecurityContextImpl;
 import com.kjhxtc.internal.apache.xml.security.stax.impl.InputProcessorChainImpl;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.ProcessorStatistics;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  */
@@ -281,4 +288,65 @@ public class InputProcessorChainTest {
         assertEquals(inputProcessorChain.getProcessors().get(4), inputProcessor2);
         assertEquals(inputProcessorChain.getProcessors().get(5), inputProcessor1);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testProcessEventWithStatistics() throws Exception {
+        InputProcessorChainImpl inputProcessorChain = new InputProcessorChainImpl(new InboundSecurityContextImpl());
+
+        final XMLSecEvent xmlSecEvent = XMLSecEventFactory.createXmlSecEndElement(new QName("test"));
+        AbstractInputProcessor lastInputProcessor = new AbstractInputProcessor() {
+            @Override
+            public XMLSecEvent processEvent(InputProcessorChain inputProcessorChain) {
+                try {
+                    Thread.sleep(20);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                return xmlSecEvent;
+            }
+        };
+        inputProcessorChain.addProcessor(lastInputProcessor);
+
+        AbstractInputProcessor firstInputProcessor = new AbstractInputProcessor() {
+            private int count;
+
+            @Override
+            public XMLSecEvent processEvent(InputProcessorChain inputProcessorChain)
+                    throws XMLStreamException, XMLSecurityException {
+                if (++count == 2) {
+                    inputProcessorChain.removeProcessor(this);
+                }
+                return inputProcessorChain.processEvent();
+            }
+        };
+        inputProcessorChain.addProcessor(firstInputProcessor);
+
+        ProcessorStatistics.setEnabled(true);
+        try {
+            for (int i = 0; i < 3; i++) {
+                inputProcessorChain.reset();
+                assertSame(xmlSecEvent, inputProcessorChain.processEvent());
+            }
+        } finally {
+            ProcessorStatistics.setEnabled(false);
+        }
+        assertEquals(1, inputProcessorChain.getProcessors().size());
+
+        ProcessorStatistics firstStatistics =
+            ProcessorStatistics.getStatistics().get(firstInputProcessor.getClass().getName());
+        ProcessorStatistics lastStatistics =
+            ProcessorStatistics.getStatistics().get(lastInputProcessor.getClass().getName());
+        assertEquals(2, firstStatistics.getEvents());
+        assertEquals(3, lastStatistics.getEvents());
+        assertEquals(3, Arrays.stream(lastStatistics.getHistogram()).sum());
+        // the time of the last processor is not counted for the first one, which calls it
+        // twice and would otherwise have two thirds of its time
+        assertTrue(lastStatistics.getTotalNanos() >= TimeUnit.MILLISECONDS.toNanos(60));
+        assertTrue(firstStatistics.getTotalNanos() < lastStatistics.getTotalNanos() / 2);
+
+        // nothing is counted while disabled
+        inputProcessorChain.reset();
+        inputProcessorChain.processEvent();
+        assertEquals(3, lastStatistics.getEvents());
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.test.stax;
+
+import java.io.StringReader;
+
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.JAXBException;
+import javax.xml.stream.XMLEventReader;
+import javax.xml.stream.XMLInputFactory;
+
+import com.kjhxtc.internal.apache.xml.security.binding.xmldsig.KeyInfoType;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.JAXBUnmarshallerPool;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.XMLSec;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.XMLSecurityConstants;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ */
+public class JAXBUnmarshallerPoolTest {
+
+    private static final String KEY_INFO =
+        "<dsig:KeyInfo xmlns:dsig=\"http://www.w3.org/2000/09/xmldsig#\" Id=\"KeyInfo-1\">"
+        + "<dsig:KeyName>test</dsig:KeyName></dsig:KeyInfo>";
+    private static final String INVALID_KEY_INFO =
+        "<dsig:KeyInfo xmlns:dsig=\"http://www.w3.org/2000/09/xmldsig#\" Id=\"KeyInfo-1\" unknown=\"value\"/>";
+
+    static {
+        XMLSec.init();
+    }
+
+    private final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+    @Test
+    public void testUnmarshallersAreReused() throws Exception {
+        JAXBUnmarshallerPool pool = XMLSecurityConstants.getJaxbUnmarshallerPool(false);
+        long count = pool.getUnmarshalCount(KeyInfoType.class);
+
+        for (int i = 0; i < 3; i++) {
+            KeyInfoType keyInfoType = unmarshalKeyInfo(KEY_INFO, false);
+            assertEquals("KeyInfo-1", keyInfoType.getId());
+        }
+
+        assertTrue(pool.getHits() >= 2);
+        assertEquals(count + 3, pool.getUnmarshalCount(KeyInfoType.class));
+        assertTrue(pool.getUnmarshalTimeNanos(KeyInfoType.class) > 0);
+    }
+
+    @Test
+    public void testSchemaValidation() throws Exception {
+        assertThrows(JAXBException.class, () -> unmarshalKeyInfo(INVALID_KEY_INFO, false));
+        // The pooled Unmarshallers keep validating after a failure
+        assertThrows(JAXBException.class, () -> unmarshalKeyInfo(INVALID_KEY_INFO, false));
+        assertEquals("KeyInfo-1", unmarshalKeyInfo(KEY_INFO, false).getId());
+
+        assertEquals("KeyInfo-1", unmarshalKeyInfo(INVALID_KEY_INFO, true).getId());
+    }
+
+    @SuppressWarnings("unchecked")
+    private KeyInfoType unmarshalKeyInfo(String keyInfo, boolean disableSchemaValidation) throws Exception {
+        XMLEventReader xmlEventReader = xmlInputFactory.createXMLEventReader(new StringReader(keyInfo));
+        try {
+            Object result = XMLSecurityConstants.jaxbUnmarshal(xmlEventReader, disableSchemaValidation);
+            return ((JAXBElement<KeyInfoType>) result).getValue();
+        } finally {
+            xmlEventReader.close();
+        }
+    }
+}
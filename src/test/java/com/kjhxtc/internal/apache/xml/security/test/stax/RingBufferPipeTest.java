@@ -0,0 +1,144 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.test.stax;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import com.kjhxtc.internal.apache.xml.security.stax.impl.util.MultiInputStream;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.util.RingBufferPipe;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ */
+public class RingBufferPipeTest {
+
+    @Test
+    public void testTransferLargerThanCapacity() throws Exception {
+        byte[] data = new byte[100_000];
+        new Random(42).nextBytes(data);
+        RingBufferPipe pipe = new RingBufferPipe(1000);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> writer = executor.submit(() -> {
+                try (OutputStream outputStream = pipe.getOutputStream()) {
+                    int written = 0;
+                    int count = 0;
+                    while (written < data.length) {
+                        count = Math.min(count % 2500 + 1, data.length - written);
+                        outputStream.write(data, written, count);
+                        written += count;
+                    }
+                }
+                return null;
+            });
+
+            ByteArrayOutputStream baos = new ByteArrayOutputStream();
+            byte[] buf = new byte[777];
+            try (InputStream inputStream = pipe.getInputStream()) {
+                int read;
+                while ((read = inputStream.read(buf)) != -1) {
+                    baos.write(buf, 0, read);
+                }
+            }
+            writer.get();
+            assertArrayEquals(data, baos.toByteArray());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testSingleBytes() throws Exception {
+        RingBufferPipe pipe = new RingBufferPipe(2);
+        OutputStream outputStream = pipe.getOutputStream();
+        InputStream inputStream = pipe.getInputStream();
+        for (int i = 0; i < 10; i++) {
+            outputStream.write(0xf0 + i);
+            assertEquals(1, inputStream.available());
+            assertEquals(0xf0 + i, inputStream.read());
+        }
+        outputStream.close();
+        assertEquals(-1, inputStream.read());
+    }
+
+    @Test
+    public void testWriteAfterReaderClosed() throws Exception {
+        RingBufferPipe pipe = new RingBufferPipe(4);
+        OutputStream outputStream = pipe.getOutputStream();
+        outputStream.write(new byte[4]);
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            // the writer blocks on the full pipe until the reader gives up
+            Future<?> writer = executor.submit(() -> {
+                outputStream.write(new byte[4]);
+                return null;
+            });
+            pipe.getInputStream().close();
+            Exception e = assertThrows(Exception.class, writer::get);
+            assertEquals(IOException.class, e.getCause().getClass());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCloseConsumingStream() throws Exception {
+        RingBufferPipe pipe = new RingBufferPipe(4);
+        OutputStream outputStream = pipe.getOutputStream();
+        outputStream.write(new byte[4]);
+        InputStream consumingStream = new MultiInputStream(pipe.getInputStream());
+
+        ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            Future<?> writer = executor.submit(() -> {
+                outputStream.write(new byte[4]);
+                return null;
+            });
+            // closing the stream which wraps the pipe closes the reader of the pipe
+            consumingStream.close();
+            Exception e = assertThrows(Exception.class, writer::get);
+            assertEquals(IOException.class, e.getCause().getClass());
+            assertEquals(-1, pipe.getInputStream().read());
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void testCloseReader() throws Exception {
+        RingBufferPipe pipe = new RingBufferPipe(4);
+        pipe.getOutputStream().write(new byte[2]);
+        pipe.closeReader();
+        assertEquals(-1, pipe.getInputStream().read());
+        assertThrows(IOException.class, () -> pipe.getOutputStream().write(1));
+    }
+}
@@ -0,0 +1,224 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.test.stax;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.stream.Stream;
+
+import javax.xml.namespace.QName;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import com.kjhxtc.internal.apache.xml.security.exceptions.XMLSecurityException;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.AbstractBufferingOutputProcessor;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.AbstractOutputProcessor;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.OutputProcessorChain;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.XMLSecurityConstants;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.XMLSecurityProperties;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.OutboundSecurityContextImpl;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.OutputProcessorChainImpl;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.XMLSecurityStreamWriter;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.util.XMLSecEventSpillBuffer;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ */
+public class XMLSecEventSpillBufferTest {
+
+    private static final String XML =
+        "<?xml version=\"1.0\" encoding=\"UTF-8\"?>"
+        + "<!-- comment --><a:root xmlns:a=\"urn:a\" xmlns=\"urn:default\" id=\"1\">"
+        + "<child a:attr=\"v&amp;&#xe9;\">text € 😀</child><?pi data?>"
+        + "<child><![CDATA[<cdata>]]></child><empty/></a:root>";
+
+    @Test
+    public void testRoundTrip(@TempDir Path directory) throws Exception {
+        List<XMLSecEvent> events = readEvents();
+        // an event the codec does not encode is kept as is
+        events.add(3, XMLSecEventFactory.createXMLSecAttribute(new QName("x"), "y"));
+
+        long spilledEvents = XMLSecEventSpillBuffer.getTotalSpilledEvents();
+        XMLSecEventSpillBuffer buffer = new XMLSecEventSpillBuffer(3, directory);
+        for (XMLSecEvent event : events) {
+            buffer.offer(event);
+        }
+        assertEquals(events.size(), buffer.size());
+        assertEquals(events.size() - 3, buffer.getSpilledEvents());
+        assertEquals(1, countFiles(directory));
+
+        for (int i = 0; i < events.size(); i++) {
+            XMLSecEvent event = buffer.pop();
+            if (i == 3) {
+                assertSame(events.get(i), event);
+            }
+            assertEquals(events.get(i).getEventType(), event.getEventType());
+            assertEquals(toString(events.get(i)), toString(event));
+            if (i == 5) {
+                // the signature ending processor pushes back the event it went too far for
+                buffer.push(event);
+                assertSame(event, buffer.pop());
+            }
+        }
+        assertTrue(buffer.isEmpty());
+        assertThrows(NoSuchElementException.class, buffer::pop);
+        assertTrue(buffer.getSpilledBytes() > 0);
+        assertEquals(spilledEvents + events.size() - 3, XMLSecEventSpillBuffer.getTotalSpilledEvents());
+        assertEquals(0, countFiles(directory));
+
+        // events added once the file has been read keep their order
+        buffer.offer(events.get(0));
+        assertSame(events.get(0), buffer.pop());
+    }
+
+    @Test
+    public void testCloseDeletesFile(@TempDir Path directory) throws Exception {
+        XMLSecEventSpillBuffer buffer = new XMLSecEventSpillBuffer(1, directory);
+        for (XMLSecEvent event : readEvents()) {
+            buffer.offer(event);
+        }
+        assertEquals(1, countFiles(directory));
+        buffer.pop();
+        buffer.pop();
+        buffer.close();
+        assertEquals(0, countFiles(directory));
+        assertTrue(buffer.isEmpty());
+    }
+
+    @Test
+    public void testDequeOperations(@TempDir Path directory) throws Exception {
+        List<XMLSecEvent> events = readEvents();
+        XMLSecEventSpillBuffer buffer = new XMLSecEventSpillBuffer(2, directory);
+        for (XMLSecEvent event : events) {
+            buffer.offer(event);
+        }
+        assertEquals(1, countFiles(directory));
+
+        // iterating reads the spilled events back into memory
+        List<String> iterated = new ArrayList<>();
+        for (XMLSecEvent event : buffer) {
+            iterated.add(toString(event));
+        }
+        assertEquals(events.size(), iterated.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(toString(events.get(i)), iterated.get(i));
+        }
+        assertEquals(0, countFiles(directory));
+
+        XMLSecEvent last = buffer.pollLast();
+        assertEquals(toString(events.get(events.size() - 1)), toString(last));
+        XMLSecEvent first = buffer.peekFirst();
+        assertTrue(buffer.removeFirstOccurrence(first));
+        assertEquals(events.size() - 2, buffer.size());
+        buffer.offer(last);
+        assertSame(last, buffer.descendingIterator().next());
+        assertEquals(toString(events.get(1)), toString(buffer.pop()));
+    }
+
+    @Test
+    public void testAbortedWriterDeletesFile(@TempDir Path directory) throws Exception {
+        XMLSecurityProperties properties = new XMLSecurityProperties();
+        properties.setBufferedEventSpillThreshold(2);
+        properties.setBufferedEventSpillDirectory(directory);
+
+        OutputProcessorChainImpl outputProcessorChain = new OutputProcessorChainImpl(new OutboundSecurityContextImpl());
+        AbstractOutputProcessor failingProcessor = new AbstractOutputProcessor() {
+            @Override
+            public void processEvent(XMLSecEvent xmlSecEvent, OutputProcessorChain outputProcessorChain)
+                throws XMLStreamException, XMLSecurityException {
+                if (xmlSecEvent.isStartElement()
+                    && "fail".equals(xmlSecEvent.asStartElement().getName().getLocalPart())) {
+                    throw new XMLStreamException("failed");
+                }
+                outputProcessorChain.processEvent(xmlSecEvent);
+            }
+        };
+        failingProcessor.setPhase(XMLSecurityConstants.Phase.PREPROCESSING);
+        failingProcessor.init(outputProcessorChain);
+        AbstractBufferingOutputProcessor bufferingProcessor = new AbstractBufferingOutputProcessor() {
+            @Override
+            protected void processHeaderEvent(OutputProcessorChain outputProcessorChain) {
+            }
+        };
+        bufferingProcessor.setXMLSecurityProperties(properties);
+        bufferingProcessor.init(outputProcessorChain);
+
+        XMLSecurityStreamWriter writer = new XMLSecurityStreamWriter(outputProcessorChain);
+        writer.writeStartDocument();
+        writer.writeStartElement("root");
+        for (int i = 0; i < 5; i++) {
+            writer.writeStartElement("child");
+            writer.writeCharacters("secret " + i);
+            writer.writeEndElement();
+        }
+        assertEquals(1, countFiles(directory));
+
+        writer.writeStartElement("fail");
+        assertThrows(XMLStreamException.class, writer::writeEndElement);
+        assertEquals(0, countFiles(directory));
+    }
+
+    private static List<XMLSecEvent> readEvents() throws Exception {
+        XMLStreamReader reader = XMLInputFactory.newInstance().createXMLStreamReader(new StringReader(XML));
+        List<XMLSecEvent> events = new ArrayList<>();
+        XMLSecStartElement parent = null;
+        while (true) {
+            XMLSecEvent event = XMLSecEventFactory.allocate(reader, parent);
+            events.add(event);
+            if (event.isStartElement()) {
+                parent = event.asStartElement();
+            } else if (event.isEndElement()) {
+                parent = parent.getParentXMLSecStartElement();
+            }
+            if (!reader.hasNext()) {
+                break;
+            }
+            reader.next();
+        }
+        reader.close();
+        return events;
+    }
+
+    private static String toString(XMLSecEvent event) throws Exception {
+        StringWriter writer = new StringWriter();
+        event.writeAsEncodedUnicode(writer);
+        return writer.toString();
+    }
+
+    private static long countFiles(Path directory) throws Exception {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.count();
+        }
+    }
+}
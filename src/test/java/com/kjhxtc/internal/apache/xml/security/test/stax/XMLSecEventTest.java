@@ -20,7 +20,10 @@ package com.kjhxtc.internal.apache.xml.security.test.stax;
 
 import java.io.StringWriter;
 import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.Deque;
+import java.util.List;
 
 import javax.xml.namespace.QName;
 import javax.xml.stream.XMLEventReader;
@@ -37,6 +40,7 @@ import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEvent;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecNamespace;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecProcessingInstruction;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecStartElement;
 import com.kjhxtc.internal.apache.xml.security.stax.impl.XMLSecurityEventReader;
 import com.kjhxtc.internal.apache.xml.security.stax.impl.stax.XMLSecAttributeImpl;
 import com.kjhxtc.internal.apache.xml.security.stax.impl.stax.XMLSecCharactersImpl;
@@ -48,6 +52,9 @@ import com.kjhxtc.internal.apache.xml.security.stax.impl.stax.XMLSecProcessingIn
 import org.junit.jupiter.api.Test;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
 
 /**
  */
@@ -198,4 +205,50 @@ public class XMLSecEventTest {
 
         assertEquals(secWriter.toString(), stdWriter.toString());
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testElementPath() throws Exception {
+        QName a = new QName("urn:a", "a");
+        QName b = new QName("urn:b", "b");
+        QName c = new QName("urn:a", "c");
+        XMLSecStartElement start = XMLSecEventFactory.createXmlSecStartElement(b, null, null);
+        XMLSecStartElement parent = XMLSecEventFactory.createXmlSecStartElement(a, null, null);
+        XMLSecStartElement child = XMLSecEventFactory.createXmlSecStartElement(c, null, null);
+        XMLSecCharacters text = new XMLSecCharactersImpl("text", false, false, false, child);
+        assertEquals(1, start.getDocumentLevel());
+        assertEquals(Collections.singletonList(b).hashCode(), start.getElementPathHash());
+
+        // the parents may be set in any order
+        child.setParentXMLSecStartElement(start);
+        start.setParentXMLSecStartElement(parent);
+        List<QName> elementPath = Arrays.asList(a, b, c);
+        assertEquals(3, child.getDocumentLevel());
+        assertEquals(3, text.getDocumentLevel());
+        assertEquals(elementPath, child.getElementPath());
+        assertEquals(elementPath, text.getElementPath());
+        assertEquals(elementPath.hashCode(), child.getElementPathHash());
+        assertEquals(elementPath.hashCode(), text.getElementPathHash());
+        assertTrue(child.matchesElementPath(elementPath));
+        assertTrue(text.matchesElementPath(elementPath));
+        assertTrue(start.matchesElementPath(Arrays.asList(a, b)));
+        assertFalse(child.matchesElementPath(Arrays.asList(a, b)));
+        assertFalse(child.matchesElementPath(Arrays.asList(a, c, c)));
+        assertFalse(child.matchesElementPath(Arrays.asList(b, b, c)));
+        assertSame(start, text.getStartElementAtLevel(2));
+
+        // re-parenting an ancestor changes the path of the events inside it
+        QName r = new QName("urn:r", "r");
+        parent.setParentXMLSecStartElement(XMLSecEventFactory.createXmlSecStartElement(r, null, null));
+        assertEquals(4, text.getDocumentLevel());
+        assertEquals(Arrays.asList(r, a, b, c).hashCode(), child.getElementPathHash());
+        assertTrue(child.matchesElementPath(Arrays.asList(r, a, b, c)));
+        assertFalse(child.matchesElementPath(elementPath));
+        parent.setParentXMLSecStartElement(null);
+
+        XMLSecEvent end = XMLSecEventFactory.createXmlSecEndElement(c);
+        end.setParentXMLSecStartElement(child);
+        assertEquals(elementPath, end.getElementPath());
+        assertTrue(end.matchesElementPath(elementPath));
+        assertTrue(new XMLSecCommentImpl("c", null).matchesElementPath(Collections.emptyList()));
+    }
+}
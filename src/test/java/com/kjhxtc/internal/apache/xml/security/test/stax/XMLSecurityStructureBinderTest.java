@@ -0,0 +1,210 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.test.stax;
+
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import javax.xml.bind.JAXBContext;
+import javax.xml.bind.JAXBElement;
+import javax.xml.bind.Marshaller;
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamReader;
+
+import com.kjhxtc.internal.apache.xml.security.binding.xmldsig.SignatureType;
+import com.kjhxtc.internal.apache.xml.security.binding.xmlenc.EncryptedDataType;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.XMLSec;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.XMLSecurityConstants;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEvent;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecEventFactory;
+import com.kjhxtc.internal.apache.xml.security.stax.ext.stax.XMLSecStartElement;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.XMLSecurityEventReader;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.XMLSecurityStructureBinder;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+/**
+ */
+public class XMLSecurityStructureBinderTest {
+
+    private static final String SIGNATURE =
+        "<dsig:Signature xmlns:dsig=\"http://www.w3.org/2000/09/xmldsig#\" Id=\"Signature-1\">\n"
+        + "  <dsig:SignedInfo>\n"
+        + "    <dsig:CanonicalizationMethod Algorithm=\"http://www.w3.org/2001/10/xml-exc-c14n#\">"
+        + "<ec:InclusiveNamespaces xmlns:ec=\"http://www.w3.org/2001/10/xml-exc-c14n#\" PrefixList=\"a  b\"/>"
+        + "</dsig:CanonicalizationMethod>\n"
+        + "    <dsig:SignatureMethod Algorithm=\"http://www.w3.org/2000/09/xmldsig#hmac-sha1\">\n"
+        + "      <dsig:HMACOutputLength> 160 </dsig:HMACOutputLength>\n"
+        + "    </dsig:SignatureMethod>\n"
+        + "    <dsig:Reference Id=\"Reference-1\" URI=\"#Body\">\n"
+        + "      <dsig:Transforms>\n"
+        + "        <dsig:Transform Algorithm=\"http://www.w3.org/2000/09/xmldsig#enveloped-signature\"/>\n"
+        + "        <dsig:Transform Algorithm=\"http://www.w3.org/2001/10/xml-exc-c14n#\"/>\n"
+        + "      </dsig:Transforms>\n"
+        + "      <dsig:DigestMethod Algorithm=\"http://www.w3.org/2000/09/xmldsig#sha1\"/>\n"
+        + "      <dsig:DigestValue>AAECAwQ=</dsig:DigestValue>\n"
+        + "    </dsig:Reference>\n"
+        + "    <dsig:Reference URI=\"\">"
+        + "<dsig:DigestMethod Algorithm=\"http://www.w3.org/2001/04/xmlenc#sha256\"/>"
+        + "<dsig:DigestValue>AAEC\nAwQF</dsig:DigestValue></dsig:Reference>\n"
+        + "  </dsig:SignedInfo>\n"
+        + "  <dsig:SignatureValue>AAECAwQFBg==</dsig:SignatureValue>\n"
+        + "  <dsig:KeyInfo Id=\"KeyInfo-1\">\n"
+        + "    <dsig:KeyName>test key</dsig:KeyName>\n"
+        + "    <dsig:X509Data>\n"
+        + "      <dsig:X509IssuerSerial><dsig:X509IssuerName>CN=Issuer</dsig:X509IssuerName>"
+        + "<dsig:X509SerialNumber>+12345678901234567890</dsig:X509SerialNumber></dsig:X509IssuerSerial>\n"
+        + "      <dsig:X509SKI>AAECAw==</dsig:X509SKI>\n"
+        + "      <dsig:X509SubjectName>CN=Subject</dsig:X509SubjectName>\n"
+        + "    </dsig:X509Data>\n"
+        + "  </dsig:KeyInfo>\n"
+        + "</dsig:Signature>";
+
+    private static final String ENCRYPTED_DATA =
+        "<xenc:EncryptedData xmlns:xenc=\"http://www.w3.org/2001/04/xmlenc#\" "
+        + "xmlns:dsig=\"http://www.w3.org/2000/09/xmldsig#\" Id=\"ED-1\" "
+        + "Type=\"http://www.w3.org/2001/04/xmlenc#Element\" MimeType=\"text/xml\">"
+        + "<xenc:EncryptionMethod Algorithm=\"http://www.w3.org/2009/xmlenc11#aes128-gcm\"/>"
+        + "<dsig:KeyInfo>"
+        + "<xenc:EncryptedKey Id=\"EK-1\" Recipient=\"someone\">\n"
+        + "<xenc:EncryptionMethod Algorithm=\"http://www.w3.org/2009/xmlenc11#rsa-oaep\">"
+        + "<xenc:KeySize>128</xenc:KeySize><xenc:OAEPparams>AAECAw==</xenc:OAEPparams>"
+        + "<dsig:DigestMethod Algorithm=\"http://www.w3.org/2001/04/xmlenc#sha256\"/>"
+        + "<xenc11:MGF xmlns:xenc11=\"http://www.w3.org/2009/xmlenc11#\" "
+        + "Algorithm=\"http://www.w3.org/2009/xmlenc11#mgf1sha256\"/>"
+        + "</xenc:EncryptionMethod>\n"
+        + "<xenc:CipherData><xenc:CipherValue>AAEC\nAwQF</xenc:CipherValue></xenc:CipherData>\n"
+        + "<xenc:ReferenceList><xenc:DataReference URI=\"#ED-1\"/><xenc:KeyReference URI=\"#EK-2\"/>"
+        + "</xenc:ReferenceList>\n"
+        + "<xenc:CarriedKeyName>carried</xenc:CarriedKeyName>\n"
+        + "</xenc:EncryptedKey>"
+        + "</dsig:KeyInfo>"
+        + "<xenc:CipherData><xenc:CipherValue>AAECAwQFBgcICQ==</xenc:CipherValue></xenc:CipherData>"
+        + "</xenc:EncryptedData>";
+
+    static {
+        XMLSec.init();
+    }
+
+    private final XMLInputFactory xmlInputFactory = XMLInputFactory.newInstance();
+
+    @Test
+    public void testSignature() throws Exception {
+        Deque<XMLSecEvent> xmlSecEvents = allocate(SIGNATURE);
+        @SuppressWarnings("unchecked")
+        JAXBElement<SignatureType> bound = (JAXBElement<SignatureType>) XMLSecurityStructureBinder.bind(xmlSecEvents, 0);
+        assertNotNull(bound);
+
+        SignatureType signatureType = bound.getValue();
+        assertEquals("Signature-1", signatureType.getId());
+        assertEquals(2, signatureType.getSignedInfo().getReference().size());
+        assertArrayEquals(new byte[] {0, 1, 2, 3, 4, 5},
+                          signatureType.getSignedInfo().getReference().get(1).getDigestValue());
+        assertEquals(unmarshalAndMarshal(xmlSecEvents), marshal(bound));
+    }
+
+    @Test
+    public void testEncryptedData() throws Exception {
+        Deque<XMLSecEvent> xmlSecEvents = allocate(ENCRYPTED_DATA);
+        @SuppressWarnings("unchecked")
+        JAXBElement<EncryptedDataType> bound =
+            (JAXBElement<EncryptedDataType>) XMLSecurityStructureBinder.bind(xmlSecEvents, 0);
+        assertNotNull(bound);
+
+        assertEquals("ED-1", bound.getValue().getId());
+        assertEquals(unmarshalAndMarshal(xmlSecEvents), marshal(bound));
+    }
+
+    @Test
+    public void testUnsupportedStructuresAreLeftToJAXB() throws Exception {
+        long fallbacks = XMLSecurityStructureBinder.getFallbackCount();
+
+        // ds:Object
+        assertNull(bind(SIGNATURE.replace("</dsig:KeyInfo>\n", "</dsig:KeyInfo><dsig:Object/>")));
+        // comment
+        assertNull(bind(SIGNATURE.replace("<dsig:SignedInfo>", "<dsig:SignedInfo><!-- comment -->")));
+        // unknown attribute
+        assertNull(bind(SIGNATURE.replace("<dsig:SignedInfo>", "<dsig:SignedInfo foo=\"bar\">")));
+        // wrong order
+        assertNull(bind(SIGNATURE.replace("<dsig:SignatureValue>AAECAwQFBg==</dsig:SignatureValue>", "")
+                            .replace("</dsig:Signature>", "<dsig:SignatureValue>AAECAwQFBg==</dsig:SignatureValue>"
+                                + "</dsig:Signature>")));
+        // invalid base64: non zero padding bits and missing padding
+        assertNull(bind(SIGNATURE.replace("AAECAwQFBg==", "AAECAwQFBh==")));
+        assertNull(bind(SIGNATURE.replace("AAECAwQFBg==", "AAECAwQFBg")));
+        // invalid and duplicate Ids
+        assertNull(bind(SIGNATURE.replace("Id=\"Reference-1\"", "Id=\"1-Reference\"")));
+        assertNull(bind(SIGNATURE.replace("Id=\"Reference-1\"", "Id=\"Signature-1\"")));
+        // invalid integer
+        assertNull(bind(SIGNATURE.replace(" 160 ", "1 60")));
+        // non whitespace text in element-only content
+        assertNull(bind(SIGNATURE.replace("<dsig:SignedInfo>", "<dsig:SignedInfo>text")));
+        // missing required attribute
+        assertNull(bind(ENCRYPTED_DATA.replace(" URI=\"#ED-1\"", "")));
+
+        assertEquals(fallbacks + 11, XMLSecurityStructureBinder.getFallbackCount());
+    }
+
+    private Object bind(String xml) throws Exception {
+        return XMLSecurityStructureBinder.bind(allocate(xml), 0);
+    }
+
+    private Deque<XMLSecEvent> allocate(String xml) throws Exception {
+        XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(new StringReader(xml));
+        Deque<XMLSecEvent> xmlSecEvents = new ArrayDeque<>();
+        XMLSecStartElement parentXMLSecStartElement = null;
+        while (xmlStreamReader.next() != XMLStreamConstants.END_DOCUMENT) {
+            XMLSecEvent xmlSecEvent = XMLSecEventFactory.allocate(xmlStreamReader, parentXMLSecStartElement);
+            if (xmlSecEvent.getEventType() == XMLStreamConstants.START_ELEMENT) {
+                parentXMLSecStartElement = xmlSecEvent.asStartElement();
+            } else if (xmlSecEvent.getEventType() == XMLStreamConstants.END_ELEMENT) {
+                parentXMLSecStartElement = parentXMLSecStartElement.getParentXMLSecStartElement();
+            }
+            xmlSecEvents.push(xmlSecEvent);
+        }
+        xmlStreamReader.close();
+        return xmlSecEvents;
+    }
+
+    private String unmarshalAndMarshal(Deque<XMLSecEvent> xmlSecEvents) throws Exception {
+        return marshal(XMLSecurityConstants.jaxbUnmarshal(new XMLSecurityEventReader(xmlSecEvents, 0), false));
+    }
+
+    private String marshal(Object structure) throws Exception {
+        JAXBContext jaxbContext = JAXBContext.newInstance(
+            com.kjhxtc.internal.apache.xml.security.binding.xmlenc.ObjectFactory.class,
+            com.kjhxtc.internal.apache.xml.security.binding.xmlenc11.ObjectFactory.class,
+            com.kjhxtc.internal.apache.xml.security.binding.xmldsig.ObjectFactory.class,
+            com.kjhxtc.internal.apache.xml.security.binding.xmldsig11.ObjectFactory.class,
+            com.kjhxtc.internal.apache.xml.security.binding.excc14n.ObjectFactory.class,
+            com.kjhxtc.internal.apache.xml.security.binding.xop.ObjectFactory.class
+        );
+        Marshaller marshaller = jaxbContext.createMarshaller();
+        StringWriter stringWriter = new StringWriter();
+        marshaller.marshal(structure, stringWriter);
+        return stringWriter.toString();
+    }
+}
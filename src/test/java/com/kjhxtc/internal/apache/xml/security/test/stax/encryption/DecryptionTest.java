@@ -31,6 +31,9 @@ import java.security.PublicKey;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
 
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
@@ -338,6 +341,87 @@ public class DecryptionTest {
                 securityEventListener, "http://www.w3.org/2001/04/xmlenc#tripledes-cbc", null);
     }
 
+    @Test
+    public void testDecryptMultipleElementsWithExecutor() throws Exception {
+        // By default all EncryptedData elements are streamed to the executor
+        assertEquals(2, decryptMultipleElementsWithExecutor(new XMLSecurityProperties().getInlineDecryptionThreshold()));
+    }
+
+    @Test
+    public void testDecryptMultipleElementsInline() throws Exception {
+        // The EncryptedData elements are small enough to be decrypted without the executor
+        assertEquals(0, decryptMultipleElementsWithExecutor(8192));
+    }
+
+    @Test
+    public void testDecryptMultipleElementsAboveInlineThreshold() throws Exception {
+        // A part of the CipherValue is buffered before it is streamed to the executor
+        assertEquals(2, decryptMultipleElementsWithExecutor(10));
+    }
+
+    private int decryptMultipleElementsWithExecutor(int inlineDecryptionThreshold) throws Exception {
+        // Read in plaintext document
+        InputStream sourceDocument =
+                this.getClass().getClassLoader().getResourceAsStream(
+                        "ie/baltimore/merlin-examples/merlin-xmlenc-five/plaintext.xml");
+        Document document = XMLUtils.read(sourceDocument, false);
+
+        // Set up the Key
+        KeyGenerator keygen = KeyGenerator.getInstance("AES");
+        keygen.init(128);
+        SecretKey secretKey = keygen.generateKey();
+
+        // Encrypt using DOM
+        List<String> localNames = new ArrayList<>();
+        localNames.add("PaymentInfo");
+        localNames.add("ShippingAddress");
+        encryptUsingDOM(
+            "http://www.w3.org/2009/xmlenc11#aes128-gcm", secretKey, null, null, document,
+            localNames, false
+        );
+
+        // Convert Document to a Stream Reader
+        javax.xml.transform.Transformer transformer = transformerFactory.newTransformer();
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        transformer.transform(new DOMSource(document), new StreamResult(baos));
+
+        XMLStreamReader xmlStreamReader = null;
+        try (InputStream is = new ByteArrayInputStream(baos.toByteArray())) {
+           xmlStreamReader = xmlInputFactory.createXMLStreamReader(is);
+        }
+
+        // Decrypt on a thread pool
+        ExecutorService executorService = Executors.newCachedThreadPool();
+        AtomicInteger decryptions = new AtomicInteger();
+        try {
+            XMLSecurityProperties properties = new XMLSecurityProperties();
+            properties.setDecryptionKey(secretKey);
+            properties.setInlineDecryptionThreshold(inlineDecryptionThreshold);
+            properties.setDecryptionExecutor(task -> {
+                decryptions.incrementAndGet();
+                executorService.execute(task);
+            });
+            InboundXMLSec inboundXMLSec = XMLSec.getInboundWSSec(properties);
+            TestSecurityEventListener securityEventListener = new TestSecurityEventListener();
+            XMLStreamReader securityStreamReader =
+                    inboundXMLSec.processInMessage(xmlStreamReader, null, securityEventListener);
+
+            document = StAX2DOM.readDoc(securityStreamReader);
+
+            // Check the SecurityEvents
+            checkMultipleEncryptedElementSecurityEvents(securityEventListener);
+        } finally {
+            executorService.shutdownNow();
+        }
+
+        // Check the CreditCard and the ShippingAddress decrypted ok
+        NodeList nodeList = document.getElementsByTagNameNS("urn:example:po", "CreditCard");
+        assertEquals(nodeList.getLength(), 1);
+        nodeList = document.getElementsByTagNameNS("urn:example:po", "ShippingAddress");
+        assertEquals(nodeList.getLength(), 1);
+        return decryptions.get();
+    }
+
     /**
      * Test encryption using a generated AES 128 bit key that is
      * encrypted using a AES 192 bit key.  Then reverse using the KEK
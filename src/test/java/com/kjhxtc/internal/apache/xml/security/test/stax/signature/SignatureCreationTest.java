@@ -23,12 +23,15 @@ import java.io.ByteArrayOutputStream;
 import java.io.FileInputStream;
 import java.io.InputStream;
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.security.Key;
 import java.security.KeyStore;
 import java.security.cert.X509Certificate;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.stream.Stream;
 
 import javax.crypto.SecretKey;
 import javax.crypto.spec.SecretKeySpec;
@@ -49,12 +52,16 @@ import com.kjhxtc.internal.apache.xml.security.stax.ext.XMLSecurityConstants;
 import com.kjhxtc.internal.apache.xml.security.stax.ext.XMLSecurityProperties;
 import com.kjhxtc.internal.apache.xml.security.stax.securityEvent.SecurityEventConstants;
 import com.kjhxtc.internal.apache.xml.security.stax.securityEvent.SignatureValueSecurityEvent;
+import com.kjhxtc.internal.apache.xml.security.stax.impl.util.XMLSecEventSpillBuffer;
 import com.kjhxtc.internal.apache.xml.security.stax.securityToken.SecurityTokenConstants;
 import com.kjhxtc.internal.apache.xml.security.test.dom.DSNamespaceContext;
 import com.kjhxtc.internal.apache.xml.security.test.stax.utils.XmlReaderToWriter;
 import com.kjhxtc.internal.apache.xml.security.utils.XMLUtils;
 import org.junit.jupiter.api.Assumptions;
 import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.ValueSource;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -129,6 +136,67 @@ public class SignatureCreationTest extends AbstractSignatureCreationTest {
         verifyUsingDOM(document, cert, properties.getSignatureSecureParts());
     }
 
+    @ParameterizedTest
+    @ValueSource(strings = {"spill", "compact"})
+    public void testSignatureCreationWithEventBuffer(String bufferKind, @TempDir Path spillDirectory) throws Exception {
+        // Set up the Configuration
+        XMLSecurityProperties properties = new XMLSecurityProperties();
+        List<XMLSecurityConstants.Action> actions = new ArrayList<>();
+        actions.add(XMLSecurityConstants.SIGNATURE);
+        properties.setActions(actions);
+        if ("spill".equals(bufferKind)) {
+            properties.setBufferedEventSpillThreshold(10);
+            properties.setBufferedEventSpillDirectory(spillDirectory);
+        } else {
+            properties.setCompactBufferedEvents(true);
+        }
+
+        // Set the key up
+        KeyStore keyStore = KeyStore.getInstance("jks");
+        keyStore.load(
+            this.getClass().getClassLoader().getResource("transmitter.jks").openStream(),
+            "default".toCharArray()
+        );
+        Key key = keyStore.getKey("transmitter", "default".toCharArray());
+        properties.setSignatureKey(key);
+        X509Certificate cert = (X509Certificate)keyStore.getCertificate("transmitter");
+        properties.setSignatureCerts(new X509Certificate[]{cert});
+
+        SecurePart securePart =
+               new SecurePart(new QName("urn:example:po", "PaymentInfo"), SecurePart.Modifier.Content);
+        properties.addSignaturePart(securePart);
+
+        long spilledEvents = XMLSecEventSpillBuffer.getTotalSpilledEvents();
+
+        OutboundXMLSec outboundXMLSec = XMLSec.getOutboundXMLSec(properties);
+        ByteArrayOutputStream baos = new ByteArrayOutputStream();
+        XMLStreamWriter xmlStreamWriter = outboundXMLSec.processOutMessage(baos, StandardCharsets.UTF_8.name());
+
+        InputStream sourceDocument =
+                this.getClass().getClassLoader().getResourceAsStream(
+                        "ie/baltimore/merlin-examples/merlin-xmlenc-five/plaintext.xml");
+        XMLStreamReader xmlStreamReader = xmlInputFactory.createXMLStreamReader(sourceDocument);
+
+        XmlReaderToWriter.writeAll(xmlStreamReader, xmlStreamWriter);
+        xmlStreamWriter.close();
+
+        if ("spill".equals(bufferKind)) {
+            assertTrue(XMLSecEventSpillBuffer.getTotalSpilledEvents() > spilledEvents);
+        }
+        // the spill file is deleted once it has been read
+        try (Stream<Path> files = Files.list(spillDirectory)) {
+            assertEquals(0, files.count());
+        }
+
+        Document document = null;
+        try (InputStream is = new ByteArrayInputStream(baos.toByteArray())) {
+            document = XMLUtils.read(is, false);
+        }
+
+        // Verify using DOM
+        verifyUsingDOM(document, cert, properties.getSignatureSecureParts());
+    }
+
     @Test
     public void testSignatureCreationRetrieveSignatureValue() throws Exception {
         // Set up the Configuration
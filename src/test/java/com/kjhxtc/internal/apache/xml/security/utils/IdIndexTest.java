@@ -0,0 +1,82 @@
+/**
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements. See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership. The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied. See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package com.kjhxtc.internal.apache.xml.security.utils;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import com.kjhxtc.internal.apache.xml.security.utils.resolver.ResourceResolverContext;
+import org.junit.jupiter.api.Test;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class IdIndexTest {
+
+    @Test
+    void uniqueAndDuplicateIds() throws Exception {
+        Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().newDocument();
+        Element root = doc.createElementNS(null, "root");
+        doc.appendChild(root);
+        Element first = addChild(root, "a");
+        Element second = addChild(root, "b");
+        Element third = addChild(second, "b");
+        Element unregistered = doc.createElementNS(null, "child");
+        unregistered.setAttributeNS(null, "Id", "c");
+        root.appendChild(unregistered);
+
+        IdIndex index = IdIndex.build(root);
+        assertSame(first, index.getElement("a"));
+        assertTrue(index.isUnique("a"));
+        assertNull(index.getElement("b"));
+        assertFalse(index.isUnique("b"));
+        assertTrue(index.contains("b"));
+        // only registered ID attributes are indexed, as by protectAgainstWrappingAttack
+        assertFalse(index.contains("c"));
+
+        IdIndex.Cache cache = new IdIndex.Cache();
+        ResourceResolverContext context = new ResourceResolverContext(null, null, true, null, cache);
+        assertTrue(context.isUniqueId(doc, first, "a"));
+        assertFalse(context.isUniqueId(doc, second, "b"));
+
+        // an ID registered after the index was built is searched in the document
+        Element late = addChild(third, "d");
+        assertTrue(context.isUniqueId(doc, late, "d"));
+        addChild(root, "d");
+        assertFalse(context.isUniqueId(doc, late, "d"));
+
+        // the index is rebuilt once cleared
+        addChild(third, "a");
+        assertTrue(cache.get(doc).isUnique("a"));
+        cache.clear();
+        assertFalse(cache.get(doc).isUnique("a"));
+        assertFalse(context.isUniqueId(doc, first, "a"));
+    }
+
+    private static Element addChild(Element parent, String id) {
+        Element child = parent.getOwnerDocument().createElementNS(null, "child");
+        child.setAttributeNS(null, "Id", id);
+        child.setIdAttributeNS(null, "Id", true);
+        parent.appendChild(child);
+        return child;
+    }
+}